@@ -13,6 +13,7 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventError;
@@ -25,8 +26,11 @@ import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -95,6 +99,36 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
     /** Device Orientationのキャッシュを残す時間を定義する. */
     private static final long DEVICE_ORIENTATION_CACHE_TIME = 100;
 
+    /** パラメータ: 1つのイベントにまとめるサンプルの最大数. */
+    private static final String PARAM_BATCH_SIZE = "batchSize";
+
+    /** パラメータ: 1つのイベントにまとめるサンプルの期間(ミリ秒). */
+    private static final String PARAM_BATCH_INTERVAL = "batchInterval";
+
+    /** パラメータ: まとめて送信するサンプル. */
+    private static final String PARAM_SAMPLES = "samples";
+
+    /** パラメータ: サンプルの数. */
+    private static final String PARAM_COUNT = "count";
+
+    /** パラメータ: サンプルの時刻(UNIX時間のミリ秒). センサーがサンプルを計測した時刻を格納する. */
+    private static final String PARAM_TIMESTAMP = "timestamp";
+
+    /** 1つのイベントにまとめるサンプルの最大数の上限. */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /** 1サンプルあたりの値の数. 加速度、重力付き加速度、角速度の順に3つずつ格納する. */
+    private static final int SAMPLE_CHANNELS = 9;
+
+    /** サンプルをまとめて送信するイベントの設定. キーはイベントのオリジン. */
+    private final Map<String, Batch> mBatches = new ConcurrentHashMap<>();
+
+    /** サンプルを作成するための作業領域. */
+    private final double[] mSample = new double[SAMPLE_CHANNELS];
+
+    /** サンプルを記録するきっかけにするセンサーの種類. */
+    private int mPrimarySensorType = Sensor.TYPE_ACCELEROMETER;
+
     private final DConnectApi mGetOnDeviceOrientationApi = new GetApi() {
 
         @Override
@@ -119,6 +153,14 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         public boolean onRequest(final Intent request, final Intent response) {
             String serviceId = getServiceID(request);
 
+            Batch batch;
+            try {
+                batch = createBatch(request);
+            } catch (IllegalArgumentException e) {
+                MessageUtils.setInvalidRequestParameterError(response, e.getMessage());
+                return true;
+            }
+
             try {
                 String interval = request.getStringExtra(PARAM_INTERVAL);
                 mSensorInterval = Long.parseLong(interval);
@@ -129,6 +171,12 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
             // イベントの登録
             EventError error = EventManager.INSTANCE.addEvent(request);
             if (error == EventError.NONE) {
+                String key = getBatchKey(request.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN));
+                if (batch != null) {
+                    mBatches.put(key, batch);
+                } else {
+                    mBatches.remove(key);
+                }
                 registerDeviceOrientationEvent(response, serviceId);
             } else {
                 MessageUtils.setUnknownError(response, "Can not register event.");
@@ -149,6 +197,7 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
             // イベントの解除
             EventError error = EventManager.INSTANCE.removeEvent(request);
             if (error == EventError.NONE) {
+                mBatches.remove(getBatchKey(request.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN)));
                 unregisterDeviceOrientationEvent(response);
             } else {
                 MessageUtils.setUnknownError(response, "Can not unregister event.");
@@ -171,6 +220,57 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         return (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
     }
 
+    /**
+     * リクエストからサンプルをまとめて送信する設定を作成する.
+     * <p>
+     * batchSize と batchInterval のどちらも指定されていない場合には null を返却する。
+     * </p>
+     * @param request リクエスト
+     * @return サンプルをまとめて送信する設定
+     * @throws IllegalArgumentException パラメータが不正な場合
+     */
+    private Batch createBatch(final Intent request) {
+        String batchSize = request.getStringExtra(PARAM_BATCH_SIZE);
+        String batchInterval = request.getStringExtra(PARAM_BATCH_INTERVAL);
+        if (batchSize == null && batchInterval == null) {
+            return null;
+        }
+
+        int maxSamples = MAX_BATCH_SIZE;
+        if (batchSize != null) {
+            try {
+                maxSamples = Integer.parseInt(batchSize);
+            } catch (NumberFormatException e) {
+                maxSamples = 0;
+            }
+            if (maxSamples <= 0 || maxSamples > MAX_BATCH_SIZE) {
+                throw new IllegalArgumentException(PARAM_BATCH_SIZE + " must be between 1 and " + MAX_BATCH_SIZE + ".");
+            }
+        }
+
+        long window = 0;
+        if (batchInterval != null) {
+            try {
+                window = Long.parseLong(batchInterval);
+            } catch (NumberFormatException e) {
+                window = 0;
+            }
+            if (window <= 0) {
+                throw new IllegalArgumentException(PARAM_BATCH_INTERVAL + " must be larger than 0.");
+            }
+        }
+        return new Batch(maxSamples, window);
+    }
+
+    /**
+     * サンプルをまとめて送信する設定のキーを取得する.
+     * @param origin イベントのオリジン
+     * @return キー
+     */
+    private static String getBatchKey(final String origin) {
+        return origin == null ? "" : origin;
+    }
+
     /**
      * イベント登録が空か確認する.
      * @return 空の場合はtrue、それ以外はfalse
@@ -279,11 +379,13 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
 
         List<Sensor> sensors;
         int unsupported = 0;
+        int primarySensorType = -1;
         sensors = mSensorManager
                 .getSensorList(Sensor.TYPE_ACCELEROMETER);
         if (sensors.size() > 0) {
             Sensor sensor = sensors.get(0);
             mSensorManager.registerListener(this, sensor, (int)mSensorInterval * 1000);
+            primarySensorType = Sensor.TYPE_ACCELEROMETER;
         } else {
             unsupported++;
         }
@@ -293,6 +395,9 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         if (sensors.size() > 0) {
             Sensor sensor = sensors.get(0);
             mSensorManager.registerListener(this, sensor, (int)mSensorInterval * 1000);
+            if (primarySensorType == -1) {
+                primarySensorType = Sensor.TYPE_GRAVITY;
+            }
         } else {
             unsupported++;
         }
@@ -301,9 +406,13 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         if (sensors.size() > 0) {
             Sensor sensor = sensors.get(0);
             mSensorManager.registerListener(this, sensor, (int)mSensorInterval * 1000);
+            if (primarySensorType == -1) {
+                primarySensorType = Sensor.TYPE_GYROSCOPE;
+            }
         } else {
             unsupported++;
         }
+        mPrimarySensorType = primarySensorType;
 
         if (unsupported == NO_SENSOR) {
             MessageUtils.setNotSupportAttributeError(response);
@@ -360,6 +469,41 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         return orientation;
     }
 
+    /**
+     * 現在のセンサーの値をサンプルとして作業領域に格納する.
+     * @param sample 格納先の配列
+     */
+    private void fillSample(final double[] sample) {
+        sample[0] = mAccellX - mGravityX;
+        sample[1] = mAccellY - mGravityY;
+        sample[2] = mAccellZ - mGravityZ;
+        sample[3] = mAccellX;
+        sample[4] = mAccellY;
+        sample[5] = mAccellZ;
+        sample[6] = mGyroX;
+        sample[7] = mGyroY;
+        sample[8] = mGyroZ;
+    }
+
+    /**
+     * 蓄積したサンプルをまとめてイベントで送信する.
+     * @param event 送信先のイベント
+     * @param buffer 蓄積したサンプル
+     */
+    private void sendSamples(final Event event, final SensorSampleBuffer buffer) {
+        Bundle samples = new Bundle();
+        samples.putInt(PARAM_COUNT, buffer.size());
+        samples.putLongArray(PARAM_TIMESTAMP, buffer.copyTimestamps());
+        samples.putDoubleArray(DeviceOrientationProfile.PARAM_ACCELERATION, buffer.copyValues(0, 3));
+        samples.putDoubleArray(DeviceOrientationProfile.PARAM_ACCELERATION_INCLUDING_GRAVITY, buffer.copyValues(3, 3));
+        samples.putDoubleArray(DeviceOrientationProfile.PARAM_ROTATION_RATE, buffer.copyValues(6, 3));
+        buffer.clear();
+
+        Intent intent = EventManager.createEventMessage(event);
+        intent.putExtra(PARAM_SAMPLES, samples);
+        sendEvent(intent, event.getAccessToken());
+    }
+
     private void processSensorData(final SensorEvent sensorEvent) {
         if (sensorEvent.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
             mAccellX = sensorEvent.values[0];
@@ -396,33 +540,113 @@ public class HostDeviceOrientationProfile extends DeviceOrientationProfile imple
         processSensorData(sensorEvent);
 
         if (mIsAccellReady.get() || mIsGravityReady.get() || mIsGyroReady.get()) {
-            Bundle orientation = createOrientation();
-            mAccelLastTime = System.currentTimeMillis();
+            long now = System.currentTimeMillis();
+            mAccelLastTime = now;
 
-            if (isEmptyEventList()) {
+            List<Event> events = EventManager.INSTANCE.getEventList(mServiceId,
+                    DeviceOrientationProfile.PROFILE_NAME, null,
+                    DeviceOrientationProfile.ATTRIBUTE_ON_DEVICE_ORIENTATION);
+            if (events == null || events.size() == 0) {
                 mSensorManager.unregisterListener(this);
+                mBatches.clear();
                 return;
             }
 
-            long interval = System.currentTimeMillis() - mLastEventSendTime;
-            if (interval > mSensorInterval) {
-                List<Event> events = EventManager.INSTANCE.getEventList(mServiceId,
-                        DeviceOrientationProfile.PROFILE_NAME, null,
-                        DeviceOrientationProfile.ATTRIBUTE_ON_DEVICE_ORIENTATION);
+            // サンプルをまとめて送信するイベントには、サンプルを蓄積して条件を満たした時に送信する
+            if (!mBatches.isEmpty() && sensorEvent.sensor.getType() == mPrimarySensorType) {
+                long sampleTime = toEpochMillis(sensorEvent.timestamp, now);
+                fillSample(mSample);
+                for (int i = 0; i < events.size(); i++) {
+                    Event event = events.get(i);
+                    Batch batch = mBatches.get(getBatchKey(event.getOrigin()));
+                    if (batch != null) {
+                        batch.mBuffer.add(sampleTime, mSample);
+                        if (batch.isReady(sampleTime)) {
+                            sendSamples(event, batch.mBuffer);
+                        }
+                    }
+                }
+            }
 
+            long interval = now - mLastEventSendTime;
+            if (interval > mSensorInterval) {
+                Bundle orientation = null;
                 for (int i = 0; i < events.size(); i++) {
                     Event event = events.get(i);
+                    if (mBatches.containsKey(getBatchKey(event.getOrigin()))) {
+                        continue;
+                    }
+                    if (orientation == null) {
+                        orientation = createOrientation();
+                    }
                     Intent intent = EventManager.createEventMessage(event);
                     intent.putExtra(DeviceOrientationProfile.PARAM_ORIENTATION, orientation);
                     sendEvent(intent, event.getAccessToken());
                 }
-                mLastEventSendTime = System.currentTimeMillis();
+                mLastEventSendTime = now;
             }
         }
     }
 
+    /**
+     * センサーの計測時刻をUNIX時間のミリ秒に変換する.
+     * <p>
+     * {@link SensorEvent#timestamp} は端末の起動からの経過時間(ナノ秒)なので、
+     * 現在時刻との差分からUNIX時間を求める。
+     * 計測時刻が未来になる場合は、時刻の基準が異なる端末なので現在時刻を使用する。
+     * </p>
+     * @param timestamp センサーの計測時刻(ナノ秒)
+     * @param now 現在時刻(UNIX時間のミリ秒)
+     * @return 計測時刻(UNIX時間のミリ秒)
+     */
+    private static long toEpochMillis(final long timestamp, final long now) {
+        long age = SystemClock.elapsedRealtimeNanos() - timestamp;
+        if (age < 0) {
+            return now;
+        }
+        return now - age / 1000000L;
+    }
+
     @Override
     public void onAccuracyChanged(final Sensor sensor, final int accuracy) {
         // No operation
     }
+
+    /**
+     * サンプルをまとめて送信するイベントの設定.
+     */
+    private static class Batch {
+        /** 1つのイベントにまとめるサンプルの最大数. */
+        private final int mMaxSamples;
+
+        /** 1つのイベントにまとめるサンプルの期間(ミリ秒). 0の場合は期間で区切らない. */
+        private final long mWindow;
+
+        /** 蓄積したサンプル. */
+        private final SensorSampleBuffer mBuffer;
+
+        /**
+         * コンストラクタ.
+         * @param maxSamples 1つのイベントにまとめるサンプルの最大数
+         * @param window 1つのイベントにまとめるサンプルの期間(ミリ秒)
+         */
+        Batch(final int maxSamples, final long window) {
+            mMaxSamples = maxSamples;
+            mWindow = window;
+            mBuffer = new SensorSampleBuffer(maxSamples, SAMPLE_CHANNELS);
+        }
+
+        /**
+         * 蓄積したサンプルを送信する条件を満たしているか確認する.
+         * @param now 最新のサンプルの時刻(ミリ秒)
+         * @return 送信する場合はtrue、それ以外はfalse
+         */
+        boolean isReady(final long now) {
+            int size = mBuffer.size();
+            if (size >= mMaxSamples) {
+                return true;
+            }
+            return mWindow > 0 && size > 0 && now - mBuffer.getOldestTimestamp() >= mWindow;
+        }
+    }
 }
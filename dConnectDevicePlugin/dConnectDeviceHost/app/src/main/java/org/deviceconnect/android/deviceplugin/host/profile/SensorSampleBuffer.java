@@ -0,0 +1,146 @@
+/*
+ SensorSampleBuffer.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.profile;
+
+/**
+ * センサーのサンプルを時刻付きで蓄積するリングバッファ.
+ * <p>
+ * サンプルの追加時にオブジェクトを生成しないように、あらかじめ確保したプリミティブ型の配列に値を格納します。
+ * 容量を超えてサンプルを追加した場合には、古いサンプルから上書きします。
+ * </p>
+ * <p>
+ * このクラスはスレッドセーフではありません。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class SensorSampleBuffer {
+    /** サンプルの時刻(ミリ秒). */
+    private final long[] mTimestamps;
+
+    /** サンプルの値. サンプルごとに {@link #mChannels} 個ずつ格納する. */
+    private final double[] mValues;
+
+    /** 1サンプルあたりの値の数. */
+    private final int mChannels;
+
+    /** 最も古いサンプルの位置. */
+    private int mHead;
+
+    /** 格納されているサンプルの数. */
+    private int mSize;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param capacity 格納できるサンプルの最大数
+     * @param channels 1サンプルあたりの値の数
+     */
+    SensorSampleBuffer(final int capacity, final int channels) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be larger than 0.");
+        }
+        if (channels <= 0) {
+            throw new IllegalArgumentException("channels must be larger than 0.");
+        }
+        mTimestamps = new long[capacity];
+        mValues = new double[capacity * channels];
+        mChannels = channels;
+    }
+
+    /**
+     * サンプルを追加します.
+     *
+     * @param timestamp サンプルの時刻(ミリ秒)
+     * @param values サンプルの値. 先頭から1サンプルあたりの値の数だけ使用する
+     */
+    void add(final long timestamp, final double[] values) {
+        int capacity = mTimestamps.length;
+        int index;
+        if (mSize < capacity) {
+            index = (mHead + mSize) % capacity;
+            mSize++;
+        } else {
+            index = mHead;
+            mHead = (mHead + 1) % capacity;
+        }
+        mTimestamps[index] = timestamp;
+        System.arraycopy(values, 0, mValues, index * mChannels, mChannels);
+    }
+
+    /**
+     * 格納されているサンプルの数を取得します.
+     *
+     * @return サンプルの数
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * 格納できるサンプルの最大数を取得します.
+     *
+     * @return サンプルの最大数
+     */
+    int capacity() {
+        return mTimestamps.length;
+    }
+
+    /**
+     * 最も古いサンプルの時刻を取得します.
+     *
+     * @return 最も古いサンプルの時刻(ミリ秒)、サンプルがない場合は0
+     */
+    long getOldestTimestamp() {
+        return mSize == 0 ? 0 : mTimestamps[mHead];
+    }
+
+    /**
+     * 格納されているサンプルの時刻を古い順に取得します.
+     *
+     * @return サンプルの時刻の配列
+     */
+    long[] copyTimestamps() {
+        long[] result = new long[mSize];
+        int capacity = mTimestamps.length;
+        for (int i = 0; i < mSize; i++) {
+            result[i] = mTimestamps[(mHead + i) % capacity];
+        }
+        return result;
+    }
+
+    /**
+     * 格納されているサンプルの指定された範囲の値を古い順に取得します.
+     * <p>
+     * 戻り値には、サンプルごとに指定された数の値を並べて格納します。
+     * </p>
+     *
+     * @param firstChannel 取得する最初の値の位置
+     * @param channelCount 1サンプルあたりに取得する値の数
+     * @return 値の配列
+     */
+    double[] copyValues(final int firstChannel, final int channelCount) {
+        if (firstChannel < 0 || channelCount <= 0 || firstChannel + channelCount > mChannels) {
+            throw new IllegalArgumentException("Invalid channel range.");
+        }
+        double[] result = new double[mSize * channelCount];
+        int capacity = mTimestamps.length;
+        for (int i = 0; i < mSize; i++) {
+            int src = ((mHead + i) % capacity) * mChannels + firstChannel;
+            System.arraycopy(mValues, src, result, i * channelCount, channelCount);
+        }
+        return result;
+    }
+
+    /**
+     * 格納されているサンプルを全て破棄します.
+     */
+    void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+}
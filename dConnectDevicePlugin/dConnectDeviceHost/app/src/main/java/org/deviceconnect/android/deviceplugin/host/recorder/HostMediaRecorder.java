@@ -1786,6 +1786,24 @@ public interface HostMediaRecorder extends HostDevicePhotoRecorder, HostDeviceSt
             }
         }
 
+        /**
+         * 同じエンコード設定の配信で映像エンコーダを共有するか確認します.
+         *
+         * @return 映像エンコーダを共有する場合はtrue、それ以外はfalse
+         */
+        public boolean isUseSharedEncoder() {
+            return mProperty.getBoolean("preview_shared_encoder", true);
+        }
+
+        /**
+         * 同じエンコード設定の配信で映像エンコーダを共有するか設定します.
+         *
+         * @param used 映像エンコーダを共有する場合はtrue、それ以外はfalse
+         */
+        public void setUseSharedEncoder(boolean used) {
+            mProperty.put("preview_shared_encoder", used);
+        }
+
         /// サポートしているデータサイズ
 
         /**
@@ -0,0 +1,907 @@
+/*
+ VideoEncoderHub.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder;
+
+import android.graphics.Rect;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import org.deviceconnect.android.deviceplugin.host.BuildConfig;
+import org.deviceconnect.android.libmedia.streaming.MediaEncoder;
+import org.deviceconnect.android.libmedia.streaming.MediaEncoderException;
+import org.deviceconnect.android.libmedia.streaming.video.VideoEncoder;
+import org.deviceconnect.android.libmedia.streaming.video.VideoQuality;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同じエンコード設定の映像エンコーダを複数の配信で共有するためのクラス.
+ *
+ * <p>
+ * プレビュー配信とブロードキャストを同じ解像度、ビットレート、フレームレートなどで同時に行う場合に、
+ * エンコードを 1 回だけ行い、エンコードされたデータを各配信に渡します。
+ * </p>
+ *
+ * <p>
+ * {@link #createVideoEncoder(String)} で作成したエンコーダは、開始するとエンコード設定が一致する
+ * 実行中のエンコーダに参加します。一致するエンコーダがない場合にはエンコーダを新しく開始し、
+ * 参加しているエンコーダがなくなった時点で停止します。
+ * 途中から参加したエンコーダには、保持しているフォーマットとコーデック設定のデータを渡した後に
+ * キーフレームを要求し、キーフレームが届くまでは P フレームを渡しません。
+ * </p>
+ *
+ * <p>
+ * エンコードされたデータは 1 回だけコピーし、参照カウント付きで各配信のキューに追加します。
+ * 各配信はそれぞれのスレッドでキューからデータを取り出して書き込むので、送信に時間がかかる配信があっても
+ * 他の配信やエンコードは止まりません。キューが一杯になった配信は、溜まっているデータを破棄して
+ * 次のキーフレームから書き込みを再開します。全ての配信で使い終わったバッファは再利用します。
+ * </p>
+ *
+ * <p>
+ * 切り抜き範囲は配信ごとに異なるので、切り抜き範囲が設定されたエンコーダは共有せずに専用のエンコーダで
+ * エンコードを行います。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class VideoEncoderHub {
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    private static final String TAG = "host.dplugin";
+
+    /**
+     * 配信ごとのキューに保持するフレーム数の上限.
+     */
+    private static final int MAX_QUEUED_FRAMES = 30;
+
+    /**
+     * 再利用のために保持するバッファ数の上限.
+     */
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    /**
+     * 書き込みスレッドの停止を待つ時間(ミリ秒).
+     */
+    private static final long WRITER_STOP_TIMEOUT = 1000;
+
+    /**
+     * エンコードを行うエンコーダを作成するファクトリー.
+     */
+    private final Factory mFactory;
+
+    /**
+     * 共有できるエンコーダのマップ.
+     *
+     * <p>
+     * キーはエンコード設定から作成した文字列。
+     * </p>
+     */
+    private final Map<String, Source> mSources = new HashMap<>();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param factory エンコードを行うエンコーダを作成するファクトリー
+     */
+    public VideoEncoderHub(Factory factory) {
+        mFactory = factory;
+    }
+
+    /**
+     * 共有のエンコーダを使用する映像エンコーダを作成します.
+     *
+     * @param mimeType エンコードのマイムタイプ
+     * @return 映像エンコーダ
+     */
+    public VideoEncoder createVideoEncoder(String mimeType) {
+        return new SharedVideoEncoder(mimeType);
+    }
+
+    /**
+     * 映像エンコーダをエンコード設定が一致するエンコーダに参加させます.
+     *
+     * @param client 映像エンコーダ
+     * @param notify 開始イベントを通知する場合はtrue、それ以外はfalse
+     */
+    private synchronized void attach(SharedVideoEncoder client, boolean notify) {
+        if (client.mSource != null) {
+            return;
+        }
+
+        VideoQuality quality = client.getVideoQuality();
+        String key = quality.getCropRect() == null ? createKey(quality) : null;
+        Source source = key != null ? mSources.get(key) : null;
+        if (source == null) {
+            source = new Source(key, mFactory.createVideoEncoder(quality.getMimeType()));
+            source.mEncoder.getVideoQuality().set(quality);
+            source.mEncoder.getVideoQuality().setCropRect(copyRect(quality.getCropRect()));
+            source.mEncoder.getVideoQuality().setLowLatency(quality.getLowLatency());
+            source.mEncoder.setCallback(source);
+            if (key != null) {
+                mSources.put(key, source);
+            }
+            client.mSource = source;
+            client.waitForKeyFrame();
+            source.mClients.add(client);
+            source.mEncoder.start();
+
+            if (DEBUG) {
+                Log.d(TAG, "VideoEncoderHub: started a encoder. key=" + key);
+            }
+        } else {
+            // 途中から参加するので、フォーマットとコーデック設定のデータを先に渡す
+            if (notify && source.mStarted) {
+                client.notifyStarted();
+            }
+            client.waitForKeyFrame();
+            if (source.mFormat != null) {
+                client.offerFrame(new Frame(source.mFormat));
+            }
+            if (source.mConfig != null) {
+                client.offerFrame(source.mConfig);
+            }
+            client.mSource = source;
+            source.mClients.add(client);
+            source.mEncoder.requestSyncKeyFrame();
+
+            if (DEBUG) {
+                Log.d(TAG, "VideoEncoderHub: joined a encoder. key=" + key
+                        + " clients=" + source.mClients.size());
+            }
+        }
+    }
+
+    /**
+     * 映像エンコーダを参加しているエンコーダから外します.
+     *
+     * <p>
+     * 参加している映像エンコーダがなくなった場合にはエンコーダを停止します。
+     * </p>
+     *
+     * @param client 映像エンコーダ
+     * @param notify 停止イベントを通知する場合はtrue、それ以外はfalse
+     */
+    private synchronized void detach(SharedVideoEncoder client, boolean notify) {
+        Source source = client.mSource;
+        if (source == null) {
+            return;
+        }
+
+        client.mSource = null;
+        source.mClients.remove(client);
+        if (source.mClients.isEmpty()) {
+            if (source.mKey != null) {
+                mSources.remove(source.mKey);
+            }
+            source.mEncoder.stop();
+
+            if (DEBUG) {
+                Log.d(TAG, "VideoEncoderHub: stopped a encoder. key=" + source.mKey);
+            }
+        }
+
+        if (notify) {
+            client.notifyStopped();
+        }
+    }
+
+    /**
+     * 映像エンコーダのエンコード設定を反映します.
+     *
+     * <p>
+     * 参加しているエンコーダから外した後に、変更後のエンコード設定で参加し直します。
+     * </p>
+     *
+     * @param client 映像エンコーダ
+     */
+    private synchronized void restart(SharedVideoEncoder client) {
+        if (client.mSource == null) {
+            return;
+        }
+        detach(client, false);
+        attach(client, false);
+    }
+
+    /**
+     * 映像エンコーダのビットレートを反映します.
+     *
+     * <p>
+     * エンコーダを他の配信と共有している場合には、変更後のエンコード設定のエンコーダに参加し直します。
+     * </p>
+     *
+     * @param client 映像エンコーダ
+     * @return ビットレートの変更に成功した場合はtrue、それ以外はfalse
+     */
+    private synchronized boolean requestBitRate(SharedVideoEncoder client) {
+        Source source = client.mSource;
+        if (source == null) {
+            return false;
+        }
+
+        if (source.mClients.size() > 1) {
+            restart(client);
+            return true;
+        }
+
+        source.mEncoder.getVideoQuality().setBitRate(client.getVideoQuality().getBitRate());
+        if (source.mKey != null) {
+            mSources.remove(source.mKey);
+            String key = createKey(source.mEncoder.getVideoQuality());
+            if (mSources.containsKey(key)) {
+                source.mKey = null;
+            } else {
+                source.mKey = key;
+                mSources.put(key, source);
+            }
+        }
+        return source.mEncoder.requestBitRate();
+    }
+
+    /**
+     * 映像エンコーダの切り抜き範囲を反映します.
+     *
+     * <p>
+     * エンコーダを他の配信と共有している場合には、専用のエンコーダに移ります。
+     * </p>
+     *
+     * @param client 映像エンコーダ
+     * @param rect 切り抜き範囲
+     */
+    private synchronized void setCropRect(SharedVideoEncoder client, Rect rect) {
+        Source source = client.mSource;
+        if (source == null) {
+            return;
+        }
+
+        if (source.mClients.size() > 1) {
+            restart(client);
+            return;
+        }
+
+        // 切り抜き範囲は移動するので、他の配信とは共有しない
+        if (source.mKey != null) {
+            mSources.remove(source.mKey);
+            source.mKey = null;
+        }
+        source.mEncoder.getVideoQuality().setCropRect(copyRect(rect));
+    }
+
+    /**
+     * エンコード設定から共有するエンコーダのキーを作成します.
+     *
+     * @param quality エンコード設定
+     * @return キー
+     */
+    private static String createKey(VideoQuality quality) {
+        return quality.getMimeType()
+                + "/" + quality.getVideoWidth() + "x" + quality.getVideoHeight()
+                + "/" + quality.getBitRate()
+                + "/" + quality.getFrameRate()
+                + "/" + quality.getIFrameInterval()
+                + "/" + quality.getIntraRefresh()
+                + "/" + quality.getBitRateMode()
+                + "/" + quality.getProfile()
+                + "/" + quality.getLevel()
+                + "/" + quality.isUseSoftwareEncoder()
+                + "/" + quality.getLowLatency();
+    }
+
+    private static Rect copyRect(Rect rect) {
+        return rect != null ? new Rect(rect) : null;
+    }
+
+    /**
+     * 共有するエンコーダ.
+     */
+    private class Source implements MediaEncoder.Callback {
+        /**
+         * 共有に使用するキー.
+         *
+         * <p>
+         * 共有しない場合は null。
+         * </p>
+         */
+        private String mKey;
+
+        /**
+         * エンコードを行うエンコーダ.
+         */
+        private final VideoEncoder mEncoder;
+
+        /**
+         * 参加している映像エンコーダのリスト.
+         */
+        private final List<SharedVideoEncoder> mClients = new CopyOnWriteArrayList<>();
+
+        /**
+         * エンコーダの開始フラグ.
+         */
+        private boolean mStarted;
+
+        /**
+         * 最後に通知されたフォーマット.
+         */
+        private MediaFormat mFormat;
+
+        /**
+         * コーデック設定のデータ.
+         */
+        private Frame mConfig;
+
+        /**
+         * 再利用するバッファ.
+         */
+        private final ArrayDeque<ByteBuffer> mBufferPool = new ArrayDeque<>();
+
+        Source(String key, VideoEncoder encoder) {
+            mKey = key;
+            mEncoder = encoder;
+        }
+
+        @Override
+        public void onStarted() {
+            synchronized (VideoEncoderHub.this) {
+                mStarted = true;
+                for (SharedVideoEncoder client : mClients) {
+                    client.notifyStarted();
+                }
+            }
+        }
+
+        @Override
+        public void onStopped() {
+        }
+
+        @Override
+        public void onFormatChanged(MediaFormat newFormat) {
+            synchronized (VideoEncoderHub.this) {
+                mFormat = newFormat;
+                mConfig = null;
+                Frame frame = new Frame(newFormat);
+                for (SharedVideoEncoder client : mClients) {
+                    client.offerFrame(frame);
+                }
+            }
+        }
+
+        @Override
+        public void onWriteData(ByteBuffer encodedData, MediaCodec.BufferInfo bufferInfo) {
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                synchronized (VideoEncoderHub.this) {
+                    // 途中から参加する映像エンコーダのためにコーデック設定のデータを保持しておく
+                    mConfig = new Frame(null, encodedData, bufferInfo);
+                    for (SharedVideoEncoder client : mClients) {
+                        client.offerFrame(mConfig);
+                    }
+                }
+                return;
+            }
+
+            Frame frame = new Frame(this, encodedData, bufferInfo);
+            try {
+                for (SharedVideoEncoder client : mClients) {
+                    if (client.mSource == this) {
+                        client.offerFrame(frame);
+                    }
+                }
+            } finally {
+                frame.release();
+            }
+        }
+
+        /**
+         * データのコピー先のバッファを取得します.
+         *
+         * @param size データサイズ
+         * @return バッファ
+         */
+        private ByteBuffer obtainBuffer(int size) {
+            ByteBuffer buffer;
+            synchronized (mBufferPool) {
+                buffer = mBufferPool.poll();
+            }
+            if (buffer == null || buffer.capacity() < size) {
+                return ByteBuffer.allocateDirect(size);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        /**
+         * 使い終わったバッファを再利用のために返却します.
+         *
+         * @param buffer バッファ
+         */
+        private void recycleBuffer(ByteBuffer buffer) {
+            synchronized (mBufferPool) {
+                if (mBufferPool.size() < MAX_POOLED_BUFFERS) {
+                    mBufferPool.add(buffer);
+                }
+            }
+        }
+
+        @Override
+        public void onError(MediaEncoderException e) {
+            synchronized (VideoEncoderHub.this) {
+                // エラーが発生したエンコーダには新しく参加させない
+                if (mKey != null) {
+                    mSources.remove(mKey);
+                    mKey = null;
+                }
+            }
+            for (SharedVideoEncoder client : mClients) {
+                client.notifyError(e);
+            }
+        }
+    }
+
+    /**
+     * 共有のエンコーダを使用する映像エンコーダ.
+     *
+     * <p>
+     * 自身ではエンコードを行わず、参加しているエンコーダの処理結果を通知します。
+     * </p>
+     */
+    private class SharedVideoEncoder extends VideoEncoder {
+        /**
+         * 映像のエンコード設定.
+         */
+        private final SharedVideoQuality mVideoQuality;
+
+        /**
+         * エンコード処理を通知するコールバック.
+         */
+        private MediaEncoder.Callback mCallback;
+
+        /**
+         * 参加しているエンコーダ.
+         */
+        private volatile Source mSource;
+
+        /**
+         * 開始イベントの通知済みフラグ.
+         */
+        private boolean mStartedNotified;
+
+        /**
+         * 書き込み待ちのフレーム.
+         */
+        private final ArrayDeque<Frame> mFrames = new ArrayDeque<>();
+
+        /**
+         * 書き込み待ちのフレームのうち、エンコードされたデータの数.
+         */
+        private int mQueuedDataCount;
+
+        /**
+         * キーフレームが届くまでデータを破棄する場合はtrue.
+         */
+        private boolean mWaitingKeyFrame;
+
+        /**
+         * 書き込みを行うスレッド.
+         */
+        private Thread mWriterThread;
+
+        SharedVideoEncoder(String mimeType) {
+            mVideoQuality = new SharedVideoQuality(this, mimeType);
+        }
+
+        @Override
+        public void setCallback(Callback callback) {
+            super.setCallback(callback);
+            mCallback = callback;
+        }
+
+        @Override
+        public void start() {
+            startWriter();
+            attach(this, true);
+        }
+
+        @Override
+        public void stop() {
+            stopWriter();
+            detach(this, true);
+        }
+
+        @Override
+        public void restart() {
+            VideoEncoderHub.this.restart(this);
+        }
+
+        @Override
+        public boolean requestSyncKeyFrame() {
+            Source source = mSource;
+            return source != null && source.mEncoder.requestSyncKeyFrame();
+        }
+
+        @Override
+        public boolean requestBitRate() {
+            return VideoEncoderHub.this.requestBitRate(this);
+        }
+
+        @Override
+        public int getColorFormat() {
+            return MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface;
+        }
+
+        @Override
+        public VideoQuality getVideoQuality() {
+            return mVideoQuality;
+        }
+
+        @Override
+        protected void startRecording() {
+        }
+
+        @Override
+        protected void stopRecording() {
+        }
+
+        /**
+         * 書き込みを行うスレッドを開始します.
+         */
+        private void startWriter() {
+            synchronized (mFrames) {
+                if (mWriterThread != null) {
+                    return;
+                }
+                mWriterThread = new Thread(this::writeFrames, "VideoEncoderHub-Writer");
+                mWriterThread.start();
+            }
+        }
+
+        /**
+         * 書き込みを行うスレッドを停止し、書き込み待ちのフレームを破棄します.
+         */
+        private void stopWriter() {
+            Thread thread;
+            synchronized (mFrames) {
+                thread = mWriterThread;
+                if (thread == null) {
+                    return;
+                }
+                mWriterThread = null;
+                for (Frame frame : mFrames) {
+                    frame.release();
+                }
+                mFrames.clear();
+                mQueuedDataCount = 0;
+                mFrames.notifyAll();
+            }
+
+            thread.interrupt();
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join(WRITER_STOP_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * 次のキーフレームが届くまで、エンコードされたデータを破棄するように設定します.
+         */
+        private void waitForKeyFrame() {
+            synchronized (mFrames) {
+                mWaitingKeyFrame = true;
+            }
+        }
+
+        /**
+         * フレームを書き込み待ちのキューに追加します.
+         *
+         * <p>
+         * キューが一杯の場合には、書き込みが追いついていないので溜まっているデータを破棄して、
+         * キーフレームを要求します。
+         * </p>
+         *
+         * @param frame フレーム
+         */
+        private void offerFrame(Frame frame) {
+            boolean requestKeyFrame = false;
+            synchronized (mFrames) {
+                if (mWriterThread == null) {
+                    return;
+                }
+
+                if (frame.isData()) {
+                    if (mQueuedDataCount >= MAX_QUEUED_FRAMES) {
+                        dropDataFrames();
+                        mWaitingKeyFrame = true;
+                        requestKeyFrame = true;
+                    }
+                    // P フレームはキーフレームがないとデコードできないので渡さない
+                    if (mWaitingKeyFrame && !frame.isKeyFrame()) {
+                        frame = null;
+                    } else {
+                        mWaitingKeyFrame = false;
+                        mQueuedDataCount++;
+                    }
+                }
+
+                if (frame != null) {
+                    frame.retain();
+                    mFrames.add(frame);
+                    mFrames.notifyAll();
+                }
+            }
+
+            if (requestKeyFrame) {
+                if (DEBUG) {
+                    Log.w(TAG, "VideoEncoderHub: dropped frames of a slow client.");
+                }
+                requestSyncKeyFrame();
+            }
+        }
+
+        /**
+         * 書き込み待ちのエンコードされたデータを破棄します.
+         *
+         * <p>
+         * フォーマットとコーデック設定のデータは破棄しません。
+         * </p>
+         */
+        private void dropDataFrames() {
+            Iterator<Frame> it = mFrames.iterator();
+            while (it.hasNext()) {
+                Frame frame = it.next();
+                if (frame.isData()) {
+                    it.remove();
+                    frame.release();
+                }
+            }
+            mQueuedDataCount = 0;
+        }
+
+        /**
+         * キューからフレームを取り出して書き込みます.
+         */
+        private void writeFrames() {
+            Thread thread = Thread.currentThread();
+            while (true) {
+                Frame frame;
+                synchronized (mFrames) {
+                    while (mWriterThread == thread && mFrames.isEmpty()) {
+                        try {
+                            mFrames.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (mWriterThread != thread) {
+                        return;
+                    }
+                    frame = mFrames.poll();
+                    if (frame.isData()) {
+                        mQueuedDataCount--;
+                    }
+                }
+
+                try {
+                    if (frame.mFormat != null) {
+                        notifyFormatChanged(frame.mFormat);
+                    } else {
+                        notifyWriteData(frame.mData, frame.mInfo);
+                    }
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+
+        private void notifyStarted() {
+            // 参加し直した場合に開始イベントを重複して通知しない
+            if (mStartedNotified) {
+                return;
+            }
+            mStartedNotified = true;
+
+            MediaEncoder.Callback callback = mCallback;
+            if (callback != null) {
+                callback.onStarted();
+            }
+        }
+
+        private void notifyStopped() {
+            mStartedNotified = false;
+
+            MediaEncoder.Callback callback = mCallback;
+            if (callback != null) {
+                callback.onStopped();
+            }
+        }
+
+        private void notifyFormatChanged(MediaFormat newFormat) {
+            MediaEncoder.Callback callback = mCallback;
+            if (callback != null) {
+                try {
+                    callback.onFormatChanged(newFormat);
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        Log.e(TAG, "", e);
+                    }
+                }
+            }
+        }
+
+        private void notifyWriteData(ByteBuffer encodedData, MediaCodec.BufferInfo bufferInfo) {
+            MediaEncoder.Callback callback = mCallback;
+            if (callback != null) {
+                // 書き込み先で位置や情報を変更しても他の配信に影響しないように複製して渡す
+                MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+                info.set(bufferInfo.offset, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+                try {
+                    callback.onWriteData(encodedData.duplicate(), info);
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        Log.e(TAG, "", e);
+                    }
+                }
+            }
+        }
+
+        private void notifyError(MediaEncoderException e) {
+            MediaEncoder.Callback callback = mCallback;
+            if (callback != null) {
+                callback.onError(e);
+            }
+        }
+    }
+
+    /**
+     * 配信ごとのキューに追加するフレーム.
+     *
+     * <p>
+     * フォーマットの変更、またはエンコードされたデータのコピーを保持します。
+     * 全ての配信で書き込みが終わった時点で、データのバッファをエンコーダに返却して再利用します。
+     * </p>
+     */
+    private static class Frame {
+        /**
+         * 変更後のフォーマット.
+         *
+         * <p>
+         * エンコードされたデータの場合は null。
+         * </p>
+         */
+        private final MediaFormat mFormat;
+
+        /**
+         * エンコードされたデータ.
+         */
+        private final ByteBuffer mData;
+
+        /**
+         * エンコードされたデータの情報.
+         */
+        private final MediaCodec.BufferInfo mInfo;
+
+        /**
+         * バッファを返却するエンコーダ.
+         *
+         * <p>
+         * バッファを再利用しない場合は null。
+         * </p>
+         */
+        private final Source mOwner;
+
+        /**
+         * 参照カウント.
+         */
+        private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+        Frame(MediaFormat format) {
+            mFormat = format;
+            mData = null;
+            mInfo = null;
+            mOwner = null;
+        }
+
+        Frame(Source owner, ByteBuffer encodedData, MediaCodec.BufferInfo bufferInfo) {
+            ByteBuffer data = encodedData.duplicate();
+            data.position(bufferInfo.offset);
+            data.limit(bufferInfo.offset + bufferInfo.size);
+            ByteBuffer copy = owner != null ? owner.obtainBuffer(bufferInfo.size)
+                    : ByteBuffer.allocateDirect(bufferInfo.size);
+            copy.put(data);
+            copy.flip();
+
+            mFormat = null;
+            mData = copy;
+            mInfo = new MediaCodec.BufferInfo();
+            mInfo.set(0, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+            mOwner = owner;
+        }
+
+        /**
+         * エンコードされたデータか確認します.
+         *
+         * <p>
+         * フォーマットの変更とコーデック設定のデータは false を返却します。
+         * </p>
+         *
+         * @return エンコードされたデータの場合はtrue、それ以外はfalse
+         */
+        boolean isData() {
+            return mInfo != null && (mInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0;
+        }
+
+        /**
+         * キーフレームか確認します.
+         *
+         * @return キーフレームの場合はtrue、それ以外はfalse
+         */
+        boolean isKeyFrame() {
+            return mInfo != null && (mInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        }
+
+        /**
+         * 参照カウントを増やします.
+         */
+        void retain() {
+            mRefCount.incrementAndGet();
+        }
+
+        /**
+         * 参照カウントを減らし、参照がなくなった場合にはバッファを返却します.
+         */
+        void release() {
+            if (mRefCount.decrementAndGet() == 0 && mOwner != null) {
+                mOwner.recycleBuffer(mData);
+            }
+        }
+    }
+
+    /**
+     * 共有のエンコーダを使用する映像エンコーダのエンコード設定.
+     *
+     * <p>
+     * 切り抜き範囲の変更を参加しているエンコーダに反映します。
+     * </p>
+     */
+    private class SharedVideoQuality extends VideoQuality {
+        /**
+         * エンコード設定を持つ映像エンコーダ.
+         */
+        private final SharedVideoEncoder mClient;
+
+        SharedVideoQuality(SharedVideoEncoder client, String mimeType) {
+            super(mimeType);
+            mClient = client;
+        }
+
+        @Override
+        public void setCropRect(Rect cropRect) {
+            super.setCropRect(cropRect);
+            VideoEncoderHub.this.setCropRect(mClient, cropRect);
+        }
+    }
+
+    /**
+     * エンコードを行う映像エンコーダを作成するファクトリー.
+     */
+    public interface Factory {
+        /**
+         * 映像エンコーダを作成します.
+         *
+         * @param mimeType エンコードのマイムタイプ
+         * @return 映像エンコーダ
+         */
+        VideoEncoder createVideoEncoder(String mimeType);
+    }
+}
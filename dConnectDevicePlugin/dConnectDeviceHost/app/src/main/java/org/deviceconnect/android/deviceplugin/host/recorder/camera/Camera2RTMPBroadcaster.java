@@ -11,6 +11,6 @@ public class Camera2RTMPBroadcaster extends AbstractRTMPBroadcaster {
 
     @Override
     protected VideoEncoder createVideoEncoder() {
-        return new CameraVideoEncoder((Camera2Recorder) getRecorder());
+        return ((Camera2Recorder) getRecorder()).createVideoEncoder("video/avc");
     }
 }
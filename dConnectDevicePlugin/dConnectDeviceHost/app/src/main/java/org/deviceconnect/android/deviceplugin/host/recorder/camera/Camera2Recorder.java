@@ -28,12 +28,14 @@ import org.deviceconnect.android.deviceplugin.host.recorder.AbstractMediaRecorde
 import org.deviceconnect.android.deviceplugin.host.recorder.BroadcasterProvider;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostMediaRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.PreviewServerProvider;
+import org.deviceconnect.android.deviceplugin.host.recorder.VideoEncoderHub;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.CapabilityUtil;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.ImageUtil;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.MP4Recorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.MediaProjectionProvider;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.SurfaceMP4Recorder;
 import org.deviceconnect.android.libmedia.streaming.gles.EGLSurfaceDrawingThread;
+import org.deviceconnect.android.libmedia.streaming.video.VideoEncoder;
 import org.deviceconnect.android.provider.FileManager;
 
 import java.io.File;
@@ -149,6 +151,11 @@ public class Camera2Recorder extends AbstractMediaRecorder {
      */
     private final CameraSettings mSettings;
 
+    /**
+     * 配信で共有する映像エンコーダを管理するクラス.
+     */
+    private final VideoEncoderHub mVideoEncoderHub = new VideoEncoderHub((mimeType) -> new CameraVideoEncoder(this, mimeType));
+
     /**
      * コンストラクタ.
      *
@@ -337,6 +344,23 @@ public class Camera2Recorder extends AbstractMediaRecorder {
         return mCameraSurfaceDrawingThread;
     }
 
+    /**
+     * 映像エンコーダを作成します.
+     *
+     * <p>
+     * エンコーダの共有が有効な場合には、同じエンコード設定の配信とエンコードを共有する映像エンコーダを作成します。
+     * </p>
+     *
+     * @param mimeType エンコードのマイムタイプ
+     * @return 映像エンコーダ
+     */
+    public VideoEncoder createVideoEncoder(String mimeType) {
+        if (mSettings.isUseSharedEncoder()) {
+            return mVideoEncoderHub.createVideoEncoder(mimeType);
+        }
+        return new CameraVideoEncoder(this, mimeType);
+    }
+
     @Override
     public void onDisplayRotation(int rotation) {
         mCurrentRotation = rotation;
@@ -14,9 +14,9 @@ public class Camera2SRTPreviewServer extends AbstractSRTPreviewServer {
         switch (getEncoderSettings().getPreviewEncoderName()) {
             case H264:
             default:
-                return new CameraVideoEncoder(recorder);
+                return recorder.createVideoEncoder("video/avc");
             case H265:
-                return new CameraVideoEncoder(recorder, "video/hevc");
+                return recorder.createVideoEncoder("video/hevc");
         }
     }
 }
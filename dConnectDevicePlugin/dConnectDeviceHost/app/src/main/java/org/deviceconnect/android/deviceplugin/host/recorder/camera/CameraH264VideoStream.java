@@ -16,7 +16,7 @@ public class CameraH264VideoStream extends H264VideoStream {
      * @param port 送信先のポート番号
      */
     CameraH264VideoStream(Camera2Recorder camera2Recorder, int port) {
-        mVideoEncoder = new CameraVideoEncoder(camera2Recorder);
+        mVideoEncoder = camera2Recorder.createVideoEncoder("video/avc");
         setDestinationPort(port);
     }
 
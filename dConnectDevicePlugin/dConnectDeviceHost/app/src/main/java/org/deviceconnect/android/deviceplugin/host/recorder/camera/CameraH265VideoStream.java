@@ -16,7 +16,7 @@ public class CameraH265VideoStream extends H265VideoStream {
      * @param port            送信先のポート番号
      */
     CameraH265VideoStream(Camera2Recorder camera2Recorder, int port) {
-        mVideoEncoder = new CameraVideoEncoder(camera2Recorder, "video/hevc");
+        mVideoEncoder = camera2Recorder.createVideoEncoder("video/hevc");
         setDestinationPort(port);
     }
 
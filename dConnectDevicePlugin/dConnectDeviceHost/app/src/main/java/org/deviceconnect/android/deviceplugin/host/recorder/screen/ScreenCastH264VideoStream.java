@@ -4,10 +4,10 @@ import org.deviceconnect.android.libmedia.streaming.rtsp.session.video.H264Video
 import org.deviceconnect.android.libmedia.streaming.video.VideoEncoder;
 
 public class ScreenCastH264VideoStream extends H264VideoStream {
-    private final ScreenCastVideoEncoder mVideoEncoder;
+    private final VideoEncoder mVideoEncoder;
 
     ScreenCastH264VideoStream(ScreenCastRecorder recorder, int port) {
-        mVideoEncoder = new ScreenCastVideoEncoder(recorder);
+        mVideoEncoder = recorder.createVideoEncoder("video/avc");
         setDestinationPort(port);
     }
 
@@ -4,10 +4,10 @@ import org.deviceconnect.android.libmedia.streaming.rtsp.session.video.H265Video
 import org.deviceconnect.android.libmedia.streaming.video.VideoEncoder;
 
 public class ScreenCastH265VideoStream extends H265VideoStream {
-    private final ScreenCastVideoEncoder mVideoEncoder;
+    private final VideoEncoder mVideoEncoder;
 
     ScreenCastH265VideoStream(ScreenCastRecorder recorder, int port) {
-        mVideoEncoder = new ScreenCastVideoEncoder(recorder, "video/hevc");
+        mVideoEncoder = recorder.createVideoEncoder("video/hevc");
         setDestinationPort(port);
     }
 
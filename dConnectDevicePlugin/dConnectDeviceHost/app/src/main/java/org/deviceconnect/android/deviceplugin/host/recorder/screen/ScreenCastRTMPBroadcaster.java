@@ -10,6 +10,6 @@ public class ScreenCastRTMPBroadcaster extends AbstractRTMPBroadcaster {
 
     @Override
     protected VideoEncoder createVideoEncoder() {
-        return new ScreenCastVideoEncoder((ScreenCastRecorder) getRecorder());
+        return ((ScreenCastRecorder) getRecorder()).createVideoEncoder("video/avc");
     }
 }
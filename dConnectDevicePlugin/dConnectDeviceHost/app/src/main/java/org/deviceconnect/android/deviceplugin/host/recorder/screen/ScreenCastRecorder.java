@@ -32,11 +32,13 @@ import org.deviceconnect.android.deviceplugin.host.recorder.AbstractMediaRecorde
 import org.deviceconnect.android.deviceplugin.host.recorder.BroadcasterProvider;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostMediaRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.PreviewServerProvider;
+import org.deviceconnect.android.deviceplugin.host.recorder.VideoEncoderHub;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.CapabilityUtil;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.MP4Recorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.MediaProjectionProvider;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.SurfaceMP4Recorder;
 import org.deviceconnect.android.libmedia.streaming.gles.EGLSurfaceDrawingThread;
+import org.deviceconnect.android.libmedia.streaming.video.VideoEncoder;
 import org.deviceconnect.android.provider.FileManager;
 
 import java.io.ByteArrayOutputStream;
@@ -77,6 +79,11 @@ public class ScreenCastRecorder extends AbstractMediaRecorder {
     private final ScreenCastBroadcasterProvider mScreenCastBroadcasterProvider;
     private final ScreenCastSurfaceDrawingThread mScreenCastSurfaceDrawingThread;
 
+    /**
+     * 配信で共有する映像エンコーダを管理するクラス.
+     */
+    private final VideoEncoderHub mVideoEncoderHub = new VideoEncoderHub((mimeType) -> new ScreenCastVideoEncoder(this, mimeType));
+
     public ScreenCastRecorder(Context context, FileManager fileMgr, MediaProjectionProvider provider) {
         super(context, fileMgr, provider);
 
@@ -238,6 +245,23 @@ public class ScreenCastRecorder extends AbstractMediaRecorder {
         return mScreenCastSurfaceDrawingThread;
     }
 
+    /**
+     * 映像エンコーダを作成します.
+     *
+     * <p>
+     * エンコーダの共有が有効な場合には、同じエンコード設定の配信とエンコードを共有する映像エンコーダを作成します。
+     * </p>
+     *
+     * @param mimeType エンコードのマイムタイプ
+     * @return 映像エンコーダ
+     */
+    public VideoEncoder createVideoEncoder(String mimeType) {
+        if (mSettings.isUseSharedEncoder()) {
+            return mVideoEncoderHub.createVideoEncoder(mimeType);
+        }
+        return new ScreenCastVideoEncoder(this, mimeType);
+    }
+
     @Override
     public void clean() {
         super.clean();
@@ -15,9 +15,9 @@ public class ScreenCastSRTBroadcaster extends AbstractSRTBroadcaster {
         switch (getEncoderSettings().getPreviewEncoderName()) {
             case H264:
             default:
-                return new ScreenCastVideoEncoder(recorder);
+                return recorder.createVideoEncoder("video/avc");
             case H265:
-                return new ScreenCastVideoEncoder(recorder, "video/hevc");
+                return recorder.createVideoEncoder("video/hevc");
         }
     }
 }
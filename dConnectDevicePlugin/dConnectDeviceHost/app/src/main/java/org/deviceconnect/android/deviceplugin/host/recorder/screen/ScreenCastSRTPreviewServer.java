@@ -25,9 +25,9 @@ class ScreenCastSRTPreviewServer extends AbstractSRTPreviewServer {
         switch (getEncoderSettings().getPreviewEncoderName()) {
             case H264:
             default:
-                return new ScreenCastVideoEncoder(recorder);
+                return recorder.createVideoEncoder("video/avc");
             case H265:
-                return new ScreenCastVideoEncoder(recorder, "video/hevc");
+                return recorder.createVideoEncoder("video/hevc");
         }
     }
 }
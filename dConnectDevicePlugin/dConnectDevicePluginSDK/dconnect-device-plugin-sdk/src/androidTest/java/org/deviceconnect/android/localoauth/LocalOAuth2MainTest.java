@@ -416,6 +416,28 @@ public class LocalOAuth2MainTest {
         assertThat(result.isNotExpired(), is(false));
     }
 
+    @Test
+    public void LocalOAuth2Main_checkAccessToken_repeat() {
+        final String origin = "test_check_repeat";
+        final String serviceId = "test_service_id_check_repeat";
+        final String[] scopes = {
+                "serviceDiscovery"
+        };
+        AccessTokenData data = createAccessToken(origin, serviceId, scopes);
+
+        for (int i = 0; i < 3; i++) {
+            CheckAccessTokenResult result = mLocalOAuth2Main.checkAccessToken(data.getAccessToken(), scopes[0], null);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.checkResult(), is(true));
+
+            result = mLocalOAuth2Main.checkAccessToken(data.getAccessToken(), "battery", null);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.checkResult(), is(false));
+            assertThat(result.isExistAccessToken(), is(true));
+            assertThat(result.isExistScope(), is(false));
+        }
+    }
+
     @Test
     public void LocalOAuth2Main_checkAccessToken_illegal_access_token() {
         CheckAccessTokenResult result = mLocalOAuth2Main.checkAccessToken("test", "battery", null);
@@ -146,6 +146,35 @@ final class ClientDao implements ClientSchema {
         return result;
     }
 
+    /**
+     * 全ての行データを取得する.
+     * 
+     * @param db データベース操作オブジェクト
+     * @return 全ての行データ。無い場合はnullを返す。
+     */
+    static Client[] getAll(final SQLiteDatabase db) {
+
+        Client[] result = null;
+        Cursor c = db.query(TABLE_NAME, new String[] {_ID, ORIGIN, ACCESS_TOKEN, RECEIVER}, null,
+                null, null, null, null);
+
+        if (c.moveToFirst()) {
+            int index = 0;
+            result = new Client[c.getCount()];
+            do {
+                Client data = new Client();
+                data.mId = c.getLong(0);
+                data.mOrigin = c.getString(1);
+                data.mAccessToken = c.getString(2);
+                data.mReceiver = c.getString(3);
+                result[index++] = data;
+            } while (c.moveToNext());
+        }
+        c.close();
+
+        return result;
+    }
+
     /**
      * IDから行データを取得する.
      * 
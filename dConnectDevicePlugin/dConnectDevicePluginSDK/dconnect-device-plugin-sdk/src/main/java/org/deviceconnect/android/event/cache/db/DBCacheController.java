@@ -327,6 +327,43 @@ public final class DBCacheController extends BaseCacheController {
         // do-nothing.
     }
 
+    /**
+     * 保存されている全てのイベントデータを取得する.
+     * 
+     * @return イベントデータのリスト
+     */
+    synchronized List<Event> getAllEvents() {
+
+        List<Event> result = new ArrayList<Event>();
+        SQLiteDatabase db;
+        do {
+            db = openDB();
+            if (db == null) {
+                break;
+            }
+            Client[] clients = ClientDao.getAll(db);
+            if (clients == null) {
+                break;
+            }
+
+            for (Client client : clients) {
+                List<Event> events = EventSessionDao.getEventsByCid(db, client.mId);
+                for (Event event : events) {
+                    event.setOrigin(client.mOrigin);
+                    event.setAccessToken(client.mAccessToken);
+                    event.setReceiverName(client.mReceiver);
+                    result.add(event);
+                }
+            }
+        } while (false);
+
+        if (db != null) {
+            db.close();
+        }
+
+        return result;
+    }
+
     @Override
     public synchronized boolean removeEvents(final String origin) {
         
@@ -0,0 +1,392 @@
+/*
+ WriteThroughCacheController.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.event.cache.db;
+
+import android.content.Context;
+
+import org.deviceconnect.android.event.Event;
+import org.deviceconnect.android.event.EventError;
+import org.deviceconnect.android.event.cache.BaseCacheController;
+import org.deviceconnect.android.event.cache.Utils;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * イベントデータをメモリ上の索引で管理し、変更をデータベースに非同期で書き込むキャッシュコントローラー.
+ * <p>
+ * サービスID、プロファイル、インターフェース、アトリビュートをキーにした索引を保持します。
+ * 索引は変更のたびに複製して差し替えるため、イベントの取得はロックを取らずに行えます。
+ * センサーのイベントのように、イベントの送信のたびに {@link #getEvents(String, String, String, String)}
+ * を呼び出す場合でもデータベースにはアクセスしません。
+ * </p>
+ * <p>
+ * 変更は {@link DBCacheController} を使用して、専用のスレッドで登録された順番にデータベースに書き込みます。
+ * 生成時にデータベースから全てのイベントデータを読み込むので、プラグインを再起動してもイベントの登録状態は維持されます。
+ * 書き込みが完了するまで待つ場合には {@link #flush()} を呼び出してください。
+ * </p>
+ * <p>
+ * 取得したイベントデータのリストは、他のキャッシュコントローラーと同じく呼び出し元で変更できる複製です。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class WriteThroughCacheController extends BaseCacheController {
+
+    /**
+     * 書き込み用スレッドが処理を待つ時間(秒).
+     */
+    private static final long KEEP_ALIVE_TIME = 30;
+
+    /**
+     * 空のレシーバー用キー.
+     */
+    private static final String NULL_RECEIVER_NAME = "";
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * イベントデータを保存するデータベース.
+     */
+    private final DBCacheController mStore;
+
+    /**
+     * データベースへの書き込みを行うスレッド.
+     */
+    private final ThreadPoolExecutor mWriteExecutor;
+
+    /**
+     * イベントデータの索引.
+     * <p>
+     * キーはサービスID、プロファイル、インターフェース、アトリビュートを連結した文字列。
+     * 値を含めて変更しないので、差し替えるまではロックを取らずに参照できる。
+     * </p>
+     */
+    private volatile Map<String, List<Event>> mIndex;
+
+    /**
+     * 指定されたコンテキストでWriteThroughCacheControllerのインスタンスを生成する.
+     * <p>
+     * データベースに保存されているイベントデータを読み込んで索引を作成します。
+     * </p>
+     *
+     * @param context コンテキストオブジェクト
+     */
+    public WriteThroughCacheController(final Context context) {
+        mStore = new DBCacheController(context);
+        mWriteExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), (r) -> {
+                    Thread thread = new Thread(r, "EventCacheWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        mWriteExecutor.allowCoreThreadTimeOut(true);
+        mIndex = createIndex(mStore.getAllEvents());
+    }
+
+    @Override
+    public synchronized EventError addEvent(final Event event) {
+        if (!checkParameter(event)) {
+            return EventError.INVALID_PARAMETER;
+        }
+
+        String key = createKey(event.getServiceId(), event.getProfile(),
+                event.getInterface(), event.getAttribute());
+        List<Event> current = mIndex.get(key);
+        List<Event> events = new ArrayList<>();
+        Timestamp now = Utils.getCurreTimestamp();
+        boolean registered = false;
+        if (current != null) {
+            for (Event e : current) {
+                if (!registered && isSameClient(e, event.getOrigin(), event.getReceiverName())) {
+                    // 登録済みの場合はアクセストークンを上書きしたイベントに差し替える
+                    event.setCreateDate(e.getCreateDate());
+                    event.setUpdateDate(now);
+                    events.add(event);
+                    registered = true;
+                } else {
+                    events.add(e);
+                }
+            }
+        }
+        if (!registered) {
+            event.setCreateDate(now);
+            event.setUpdateDate(now);
+            events.add(event);
+        }
+        replace(key, events);
+
+        write(() -> {
+            EventError error = mStore.addEvent(event);
+            if (error != EventError.NONE) {
+                mLogger.warning("WriteThroughCacheController: Failed to write an event. error=" + error);
+            }
+        });
+        return EventError.NONE;
+    }
+
+    @Override
+    public synchronized EventError removeEvent(final Event event) {
+        if (!checkParameter(event)) {
+            return EventError.INVALID_PARAMETER;
+        }
+
+        String key = createKey(event.getServiceId(), event.getProfile(),
+                event.getInterface(), event.getAttribute());
+        List<Event> current = mIndex.get(key);
+        if (current == null) {
+            return EventError.NOT_FOUND;
+        }
+
+        List<Event> events = new ArrayList<>(current);
+        boolean removed = false;
+        for (Event e : current) {
+            if (isSameClient(e, event.getOrigin(), event.getReceiverName())) {
+                events.remove(e);
+                removed = true;
+                break;
+            }
+        }
+        if (!removed) {
+            return EventError.NOT_FOUND;
+        }
+        replace(key, events);
+
+        write(() -> {
+            EventError error = mStore.removeEvent(event);
+            if (error != EventError.NONE && error != EventError.NOT_FOUND) {
+                mLogger.warning("WriteThroughCacheController: Failed to remove an event. error=" + error);
+            }
+        });
+        return EventError.NONE;
+    }
+
+    @Override
+    public synchronized boolean removeEvents(final String origin) {
+        if (origin == null) {
+            throw new IllegalArgumentException("origin is null.");
+        }
+
+        Map<String, List<Event>> index = new HashMap<>();
+        boolean changed = false;
+        for (Map.Entry<String, List<Event>> entry : mIndex.entrySet()) {
+            List<Event> events = new ArrayList<>();
+            for (Event e : entry.getValue()) {
+                if (origin.equals(e.getOrigin())) {
+                    changed = true;
+                } else {
+                    events.add(e);
+                }
+            }
+            if (!events.isEmpty()) {
+                index.put(entry.getKey(), Collections.unmodifiableList(events));
+            }
+        }
+        if (!changed) {
+            return true;
+        }
+        mIndex = Collections.unmodifiableMap(index);
+
+        write(() -> {
+            if (!mStore.removeEvents(origin)) {
+                mLogger.warning("WriteThroughCacheController: Failed to remove events. origin=" + origin);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeAll() {
+        mIndex = Collections.emptyMap();
+
+        write(() -> {
+            if (!mStore.removeAll()) {
+                mLogger.warning("WriteThroughCacheController: Failed to remove all events.");
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public Event getEvent(final String serviceId, final String profile, final String inter,
+                          final String attribute, final String origin, final String receiver) {
+        List<Event> events = mIndex.get(createKey(serviceId, profile, inter, attribute));
+        if (events == null) {
+            return null;
+        }
+        for (Event e : events) {
+            if (isSameClient(e, origin, receiver)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Event> getEvents(final String serviceId, final String profile,
+                                 final String inter, final String attribute) {
+        List<Event> events = mIndex.get(createKey(serviceId, profile, inter, attribute));
+        if (events == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(events);
+    }
+
+    @Override
+    public List<Event> getEvents(final String origin) {
+        if (origin == null) {
+            throw new IllegalArgumentException("origin key is null.");
+        }
+
+        List<Event> result = new ArrayList<>();
+        for (List<Event> events : mIndex.values()) {
+            for (Event e : events) {
+                if (origin.equals(e.getOrigin())) {
+                    result.add(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * データベースへの書き込みが完了するまで待つ.
+     */
+    @Override
+    public void flush() {
+        try {
+            Future<?> future = mWriteExecutor.submit(() -> {});
+            future.get();
+        } catch (RejectedExecutionException | ExecutionException e) {
+            mLogger.warning("WriteThroughCacheController: Failed to flush. " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 索引の指定されたキーのイベントデータのリストを差し替える.
+     * <p>
+     * 参照中のスレッドに影響しないように、索引を複製してから差し替える。
+     * </p>
+     *
+     * @param key キー
+     * @param events イベントデータのリスト
+     */
+    private void replace(final String key, final List<Event> events) {
+        Map<String, List<Event>> index = new HashMap<>(mIndex);
+        if (events.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableList(events));
+        }
+        mIndex = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * データベースへの書き込みを登録する.
+     *
+     * @param task 書き込み処理
+     */
+    private void write(final Runnable task) {
+        try {
+            mWriteExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mLogger.warning("WriteThroughCacheController: Failed to write. " + e.getMessage());
+        }
+    }
+
+    /**
+     * データベースから読み込んだイベントデータから索引を作成する.
+     * <p>
+     * データベースでは null を空文字として保存しているので、インターフェースとアトリビュートの空文字は null に戻す。
+     * </p>
+     *
+     * @param events イベントデータのリスト
+     * @return 索引
+     */
+    private static Map<String, List<Event>> createIndex(final List<Event> events) {
+        Map<String, List<Event>> index = new HashMap<>();
+        for (Event event : events) {
+            if (event.getInterface() != null && event.getInterface().isEmpty()) {
+                event.setInterface(null);
+            }
+            if (event.getAttribute() != null && event.getAttribute().isEmpty()) {
+                event.setAttribute(null);
+            }
+
+            String key = createKey(event.getServiceId(), event.getProfile(),
+                    event.getInterface(), event.getAttribute());
+            List<Event> list = index.get(key);
+            if (list == null) {
+                list = new ArrayList<>();
+                index.put(key, list);
+            }
+            list.add(event);
+        }
+        for (Map.Entry<String, List<Event>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * 索引のキーを作成する.
+     * <p>
+     * データベースと同じく、null と空文字は同じものとして扱う。
+     * </p>
+     *
+     * @param serviceId サービスID
+     * @param profile プロファイル名
+     * @param inter インターフェース名
+     * @param attribute アトリビュート名
+     * @return キー
+     */
+    private static String createKey(final String serviceId, final String profile,
+                                    final String inter, final String attribute) {
+        return nullToEmpty(serviceId) + "/" + nullToEmpty(profile)
+                + "/" + nullToEmpty(inter) + "/" + nullToEmpty(attribute);
+    }
+
+    /**
+     * イベントデータのオリジンとレシーバーが一致するか確認する.
+     *
+     * @param event イベントデータ
+     * @param origin オリジン
+     * @param receiver レシーバー名
+     * @return 一致する場合はtrue、それ以外はfalse
+     */
+    private static boolean isSameClient(final Event event, final String origin, final String receiver) {
+        String r1 = event.getReceiverName() == null ? NULL_RECEIVER_NAME : event.getReceiverName();
+        String r2 = receiver == null ? NULL_RECEIVER_NAME : receiver;
+        return event.getOrigin() != null && event.getOrigin().equals(origin) && r1.equals(r2);
+    }
+
+    /**
+     * 文字列がnullの場合空文字を返す.
+     *
+     * @param str 文字列
+     * @return nullの場合空文字、その他は引数の文字列をそのまま返す。
+     */
+    private static String nullToEmpty(final String str) {
+        return str == null ? "" : str;
+    }
+}
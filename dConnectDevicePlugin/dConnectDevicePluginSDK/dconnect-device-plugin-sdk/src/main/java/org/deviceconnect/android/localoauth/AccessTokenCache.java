@@ -0,0 +1,261 @@
+/*
+ AccessTokenCache.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.localoauth;
+
+import org.deviceconnect.android.BuildConfig;
+import org.deviceconnect.android.localoauth.oauthserver.db.SQLiteToken;
+import org.restlet.ext.oauth.internal.Scope;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * アクセストークンの情報をメモリ上に保持するキャッシュ.
+ * <p>
+ * アクセストークンの確認のたびにDBへアクセスしないようにするために使用する。
+ * スコープの有効期限は確認時の時刻で判定するので、キャッシュしている間に有効期限が切れた場合も正しく判定できる。
+ * </p>
+ * <p>
+ * トークンやクライアントを更新・削除した場合には {@link #clear()} でキャッシュを破棄すること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class AccessTokenCache {
+
+    /** アクセストークンをキーにしたキャッシュ. */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** キャッシュにヒットした回数. */
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    /** キャッシュにヒットしなかった回数. */
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * キャッシュからアクセストークンの情報を取得する.
+     * <p>
+     * キャッシュの保持時間を過ぎている場合には、キャッシュから削除してnullを返却する。
+     * ヒットした回数とヒットしなかった回数を数える。
+     * </p>
+     * @param accessToken アクセストークン
+     * @return アクセストークンの情報、キャッシュに存在しない場合はnull
+     */
+    Entry get(final String accessToken) {
+        Entry entry = peek(accessToken);
+        if (entry != null) {
+            mHitCount.incrementAndGet();
+        } else {
+            mMissCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * ヒットした回数を数えずに、キャッシュからアクセストークンの情報を取得する.
+     * <p>
+     * キャッシュの保持時間を過ぎている場合には、キャッシュから削除してnullを返却する。
+     * </p>
+     * @param accessToken アクセストークン
+     * @return アクセストークンの情報、キャッシュに存在しない場合はnull
+     */
+    Entry peek(final String accessToken) {
+        Entry entry = mEntries.get(accessToken);
+        if (entry != null && entry.isStale()) {
+            mEntries.remove(accessToken, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * アクセストークンの情報をキャッシュに追加する.
+     * <p>
+     * キャッシュの上限数を超える場合には、キャッシュを全て破棄してから追加する。
+     * </p>
+     * @param accessToken アクセストークン
+     * @param entry アクセストークンの情報
+     */
+    void put(final String accessToken, final Entry entry) {
+        if (mEntries.size() >= LocalOAuth2Settings.ACCESS_TOKEN_CACHE_MAX) {
+            mEntries.clear();
+        }
+        mEntries.put(accessToken, entry);
+    }
+
+    /**
+     * キャッシュを全て破棄する.
+     */
+    void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * キャッシュにヒットした回数を取得する.
+     *
+     * @return ヒットした回数
+     */
+    long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * キャッシュにヒットしなかった回数を取得する.
+     *
+     * @return ヒットしなかった回数
+     */
+    long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * アクセストークンの情報.
+     * <p>
+     * DBから読み込んだ時点の内容を保持し、変更されない。
+     * </p>
+     */
+    static final class Entry {
+
+        /** true: アクセストークンを発行したクライアントIDあり / false: アクセストークンを発行したクライアントIDなし. */
+        private final boolean mExistClientId;
+
+        /** true: アクセストークンあり / false: アクセストークンなし. */
+        private final boolean mExistAccessToken;
+
+        /** アクセストークンに登録されているスコープ. */
+        private final Scope[] mScopes;
+
+        /** アクセストークンの登録日時. */
+        private final long mRegistrationDate;
+
+        /** true: 初回アクセス / false: 初回アクセスではない. */
+        private final boolean mFirstAccess;
+
+        /** キャッシュした日時. */
+        private final long mCachedTime;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param existClientId true: アクセストークンを発行したクライアントIDあり / false: アクセストークンを発行したクライアントIDなし
+         * @param existAccessToken true: アクセストークンあり / false: アクセストークンなし
+         * @param scopes アクセストークンに登録されているスコープ
+         * @param registrationDate アクセストークンの登録日時
+         * @param firstAccess true: 初回アクセス / false: 初回アクセスではない
+         * @param cachedTime キャッシュした日時
+         */
+        private Entry(final boolean existClientId, final boolean existAccessToken, final Scope[] scopes,
+                      final long registrationDate, final boolean firstAccess, final long cachedTime) {
+            mExistClientId = existClientId;
+            mExistAccessToken = existAccessToken;
+            mScopes = scopes;
+            mRegistrationDate = registrationDate;
+            mFirstAccess = firstAccess;
+            mCachedTime = cachedTime;
+        }
+
+        /**
+         * アクセストークンが存在しない場合の情報を作成する.
+         *
+         * @return アクセストークンの情報
+         */
+        static Entry notFound() {
+            return new Entry(false, false, new Scope[0], 0, false, System.currentTimeMillis());
+        }
+
+        /**
+         * トークンデータからアクセストークンの情報を作成する.
+         *
+         * @param token トークンデータ
+         * @param existClientId true: アクセストークンを発行したクライアントIDあり / false: アクセストークンを発行したクライアントIDなし
+         * @return アクセストークンの情報
+         */
+        static Entry fromToken(final SQLiteToken token, final boolean existClientId) {
+            Scope[] src = token.getScope();
+            Scope[] scopes = new Scope[src != null ? src.length : 0];
+            for (int i = 0; i < scopes.length; i++) {
+                scopes[i] = new Scope(src[i].getScope(), src[i].getTimestamp(), src[i].getExpirePeriod());
+            }
+            return new Entry(existClientId, true, scopes, token.getRegistrationDate(),
+                    token.isFirstAccess(), System.currentTimeMillis());
+        }
+
+        /**
+         * 初回アクセスが完了した後の情報を取得する.
+         *
+         * @return アクセストークンの情報
+         */
+        Entry afterFirstAccess() {
+            if (!mFirstAccess) {
+                return this;
+            }
+            return new Entry(mExistClientId, mExistAccessToken, mScopes, mRegistrationDate, false, mCachedTime);
+        }
+
+        /**
+         * キャッシュの保持時間を過ぎているか確認する.
+         *
+         * @return true: 保持時間を過ぎている / false: 保持時間内
+         */
+        boolean isStale() {
+            long t = System.currentTimeMillis() - mCachedTime;
+            return t < 0 || t > LocalOAuth2Settings.ACCESS_TOKEN_CACHE_TIME * LocalOAuth2Settings.MSEC;
+        }
+
+        /**
+         * 指定されたスコープにアクセスできるか確認する.
+         *
+         * @param scope スコープ
+         * @return チェック結果
+         */
+        CheckAccessTokenResult check(final String scope) {
+            // true: スコープあり / false: スコープなし
+            boolean isExistScope = false;
+            // true: 有効期限内 / false: 有効期限切れ
+            boolean isNotExpired = false;
+
+            for (Scope s : mScopes) {
+                // token.scopeに"*"が含まれていたら、どんなスコープにもアクセスできる
+                if (BuildConfig.DEBUG && s.getScope().equals("*")) {
+                    isExistScope = true; // スコープあり
+                    isNotExpired = true; // 有効期限
+                    break;
+                }
+
+                if (s.getScope().equals(scope)) {
+                    isExistScope = true; // スコープあり
+
+                    if (s.getExpirePeriod() == 0) {
+                        // 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする
+                        long t = System.currentTimeMillis() - mRegistrationDate;
+                        if (checkTime(t) && mFirstAccess) {
+                            isNotExpired = true;
+                        }
+                    } else if (s.getExpirePeriod() > 0) {
+                        // 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定して返す
+                        isNotExpired = !s.isExpired();
+                    } else {
+                        // 有効期限にマイナス値が設定されていたら、有効期限切れとみなす
+                        isNotExpired = false;
+                    }
+                    break;
+                }
+            }
+
+            return new CheckAccessTokenResult(mExistClientId, mExistAccessToken, isExistScope, isNotExpired);
+        }
+
+        /**
+         * 1分以内かチェックします.
+         * @param t チェックする経過時間
+         * @return trueの場合は1分以内、falseの場合はそれ以外
+         */
+        private static boolean checkTime(final long t) {
+            return 0 <= t && t <= (LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC);
+        }
+    }
+}
@@ -147,6 +147,9 @@ public class LocalOAuth2Main {
     /** DBアクセス用Lockオブジェクト. */
     private final Object mLockForDbAccess = new Object();
 
+    /** アクセストークンのキャッシュ(更新する際はmLockForDbAccessのロックが必要). */
+    private final AccessTokenCache mAccessTokenCache = new AccessTokenCache();
+
     /** 承認確認画面リクエストキュー(アクセスする際はsynchronizedが必要). */
     private List<ConfirmAuthRequest> mRequestQueue = new ArrayList<>();
 
@@ -219,6 +222,8 @@ public class LocalOAuth2Main {
     public void destroy() {
         unregister(mContext);
 
+        mAccessTokenCache.clear();
+
         // DBをまとめてクローズ
         if (mDbHelper != null) {
             mDbHelper.close();
@@ -295,6 +300,7 @@ public class LocalOAuth2Main {
                 throw new RuntimeException(e);
             } finally {
                 mDb.endTransaction();
+                mAccessTokenCache.clear();
             }
         }
         
@@ -383,15 +389,6 @@ public class LocalOAuth2Main {
         }
     }
 
-    /**
-     * 1分以内かチェックします.
-     * @param t チェックする経過時間
-     * @return trueの場合は1分以内、falseの場合はそれ以外
-     */
-    private static boolean checkTime(final long t) {
-        return 0 <= t && t <= (LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC);
-    }
-
     /**
      * (7)アクセストークンを確認する.
      * 
@@ -406,16 +403,6 @@ public class LocalOAuth2Main {
             throw new IllegalArgumentException("scope is null.");
         }
 
-        // true: アクセストークンを発行したクライアントIDあり
-        // false: アクセストークンを発行したクライアントIDなし
-        boolean isExistClientId = false;
-        // true: アクセストークンあり / false: アクセストークンなし
-        boolean isExistAccessToken = false;
-        // true: スコープあり / false: スコープなし
-        boolean isExistScope = false;
-        // true: 有効期限内 / false: 有効期限切れ
-        boolean isNotExpired = false;
-
         // 無視するスコープが指定されていた場合
         if (specialScopes != null && Arrays.asList(specialScopes).contains(scope)) {
             return new CheckAccessTokenResult(true, true, true, true);
@@ -426,7 +413,42 @@ public class LocalOAuth2Main {
             return new CheckAccessTokenResult(false, false, false, false);
         }
 
+        // キャッシュに存在する場合にはDBにアクセスしない
+        AccessTokenCache.Entry entry = mAccessTokenCache.get(accessToken);
+        if (entry == null) {
+            entry = loadAccessToken(accessToken);
+        }
+
+        CheckAccessTokenResult result = entry.check(scope);
+        if (!result.checkResult()) {
+            sLogger.warning("checkAccessToken() - error.");
+            sLogger.warning(" - isExistClientId: " + result.isExistClientId());
+            sLogger.warning(" - isExistAccessToken: " + result.isExistAccessToken());
+            sLogger.warning(" - isExistScope:" + result.isExistScope());
+            sLogger.warning(" - isNotExpired:" + result.isNotExpired());
+            sLogger.warning(" - accessToken:" + accessToken);
+            sLogger.warning(" - scope:" + scope);
+        }
+        return result;
+    }
+
+    /**
+     * DBからアクセストークンの情報を読み込み、キャッシュに追加する.
+     * <p>
+     * 初回アクセスの場合には、DBのアクセス時間を更新する。
+     * 返却する情報は初回アクセスとして判定し、キャッシュには初回アクセス後の情報を格納する。
+     * </p>
+     * @param accessToken アクセストークン
+     * @return アクセストークンの情報
+     */
+    private AccessTokenCache.Entry loadAccessToken(final String accessToken) {
         synchronized (mLockForDbAccess) {
+            // 同時にキャッシュが切れた場合には、先にロックを取得したスレッドが読み込んだ情報を使用する
+            AccessTokenCache.Entry entry = mAccessTokenCache.peek(accessToken);
+            if (entry != null) {
+                return entry;
+            }
+
             if (!mDb.isOpen()) {
                 throw new RuntimeException("Database is not opened.");
             }
@@ -437,68 +459,46 @@ public class LocalOAuth2Main {
                 // アクセストークンを元にトークンを検索する
                 SQLiteToken token = (SQLiteToken) mTokenManager.findTokenByAccessToken(accessToken);
                 if (token != null) {
-                    // アクセストークンあり
-                    isExistAccessToken = true;
-                    Scope[] scopes = token.getScope();
-                    for (Scope s : scopes) {
-                        // token.scopeに"*"が含まれていたら、どんなスコープにもアクセスできる
-                        if (BuildConfig.DEBUG && s.getScope().equals("*")) {
-                            isExistScope = true; // スコープあり
-                            isNotExpired = true; // 有効期限
-                            break;
-                        }
-
-                        if (s.getScope().equals(scope)) {
-                            isExistScope = true; // スコープあり
-                            
-                            if (s.getExpirePeriod() == 0) {
-                                // 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする
-                                long t = System.currentTimeMillis() - token.getRegistrationDate();
-                                if (checkTime(t) && token.isFirstAccess()) {
-                                    isNotExpired = true;
-                                }
-                            } else if (s.getExpirePeriod() > 0) {
-                                // 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定して返す
-                                isNotExpired = !s.isExpired();
-                            } else {
-                                // 有効期限にマイナス値が設定されていたら、有効期限切れとみなす
-                                isNotExpired = false;
-                            }
-                            break;
-                        }
-                    }
-    
                     // このトークンを発行したクライアントIDが存在するかチェック
-                    if (mClientManager.findById(token.getClientId()) != null) {
-                        isExistClientId = true;
-                    }
-    
+                    boolean isExistClientId = mClientManager.findById(token.getClientId()) != null;
+                    entry = AccessTokenCache.Entry.fromToken(token, isExistClientId);
+
                     // トークンのアクセス時間更新
                     if (token.isFirstAccess()) {
                         token.dbUpdateTokenAccessTime(mDb);
                     }
+                } else {
+                    entry = AccessTokenCache.Entry.notFound();
                 }
-                
+
                 mDb.setTransactionSuccessful();
             } catch (SQLiteException e) {
                 throw new RuntimeException(e);
             } finally {
                 mDb.endTransaction();
             }
+
+            mAccessTokenCache.put(accessToken, entry.afterFirstAccess());
+            return entry;
         }
-        
-        CheckAccessTokenResult result = new CheckAccessTokenResult(isExistClientId,
-                isExistAccessToken, isExistScope, isNotExpired);
-        if (!result.checkResult()) {
-            sLogger.warning("checkAccessToken() - error.");
-            sLogger.warning(" - isExistClientId: " + isExistClientId);
-            sLogger.warning(" - isExistAccessToken: " + isExistAccessToken);
-            sLogger.warning(" - isExistScope:" + isExistScope);
-            sLogger.warning(" - isNotExpired:" + isNotExpired);
-            sLogger.warning(" - accessToken:" + accessToken);
-            sLogger.warning(" - scope:" + scope);
-        }
-        return result;
+    }
+
+    /**
+     * アクセストークンの確認でキャッシュにヒットした回数を取得する.
+     *
+     * @return ヒットした回数
+     */
+    public long getAccessTokenCacheHitCount() {
+        return mAccessTokenCache.getHitCount();
+    }
+
+    /**
+     * アクセストークンの確認でキャッシュにヒットせずにDBから読み込んだ回数を取得する.
+     *
+     * @return ヒットしなかった回数
+     */
+    public long getAccessTokenCacheMissCount() {
+        return mAccessTokenCache.getMissCount();
     }
 
     /**
@@ -597,6 +597,7 @@ public class LocalOAuth2Main {
                 throw new RuntimeException(e);
             } finally {
                 mDb.endTransaction();
+                mAccessTokenCache.clear();
             }
         }
     }
@@ -621,6 +622,7 @@ public class LocalOAuth2Main {
                 throw new RuntimeException(e);
             } finally {
                 mDb.endTransaction();
+                mAccessTokenCache.clear();
             }
         }
     }
@@ -669,6 +671,7 @@ public class LocalOAuth2Main {
                 throw new RuntimeException(e);
             } finally {
                 mDb.endTransaction();
+                mAccessTokenCache.clear();
             }
         }
         
@@ -715,6 +718,7 @@ public class LocalOAuth2Main {
                             exception = new AuthorizationException(AuthorizationException.SQLITE_ERROR);
                         } finally {
                             mDb.endTransaction();
+                            mAccessTokenCache.clear();
                         }
                     }
                 }
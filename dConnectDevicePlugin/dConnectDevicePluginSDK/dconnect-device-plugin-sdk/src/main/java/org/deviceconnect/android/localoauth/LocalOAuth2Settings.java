@@ -39,6 +39,12 @@ public final class LocalOAuth2Settings {
     /** 有効期限0が設定されたときに、初回アクセスを「有効期限内」として返す猶予時間[秒]. */
     public static final long ACCESS_TOKEN_GRACE_TIME = MINUTE; /* 1分[秒] */
 
+    /** アクセストークンの確認結果をメモリ上にキャッシュしておく時間[秒]. */
+    public static final long ACCESS_TOKEN_CACHE_TIME = MINUTE; /* 1分[秒] */
+
+    /** メモリ上にキャッシュしておくアクセストークンの上限数. */
+    public static final int ACCESS_TOKEN_CACHE_MAX = 256;
+
     /**
      * コンストラクタ.
      */
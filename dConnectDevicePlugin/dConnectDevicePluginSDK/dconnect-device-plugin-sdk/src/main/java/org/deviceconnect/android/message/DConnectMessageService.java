@@ -28,6 +28,7 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.DConnectProfileProvider;
 import org.deviceconnect.android.profile.SystemProfile;
+import org.deviceconnect.android.profile.api.ConcurrencyMode;
 import org.deviceconnect.android.service.DConnectServiceProvider;
 import org.deviceconnect.android.ssl.KeyStoreCallback;
 import org.deviceconnect.android.ssl.KeyStoreError;
@@ -55,6 +56,11 @@ import javax.net.ssl.SSLContext;
  * @author NTT DOCOMO, INC.
  */
 public abstract class DConnectMessageService extends Service implements DConnectProfileProvider {
+    /**
+     * {@link ConcurrencyMode#PARALLEL} のリクエストを同時に処理する最大数のデフォルト値.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_REQUESTS = 4;
+
     /**
      * ロガー.
      */
@@ -70,6 +76,11 @@ public abstract class DConnectMessageService extends Service implements DConnect
      */
     private ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
 
+    /**
+     * {@link ConcurrencyMode} が指定されたリクエストを配送するクラス.
+     */
+    private RequestDispatcher mRequestDispatcher;
+
     /**
      * 同じ apk 内からバインドされた場合のバインダー.
      */
@@ -126,6 +137,8 @@ public abstract class DConnectMessageService extends Service implements DConnect
             return;
         }
 
+        mRequestDispatcher = new RequestDispatcher(getMaxParallelRequests());
+
         registerReceiver();
     }
 
@@ -136,6 +149,11 @@ public abstract class DConnectMessageService extends Service implements DConnect
             mExecutorService = null;
         }
 
+        if (mRequestDispatcher != null) {
+            mRequestDispatcher.shutdown();
+            mRequestDispatcher = null;
+        }
+
         if (mPluginContext != null) {
             mPluginContext.release();
             mPluginContext = null;
@@ -505,15 +523,41 @@ public abstract class DConnectMessageService extends Service implements DConnect
         return Thread.currentThread().equals(getMainLooper().getThread());
     }
 
+    /**
+     * {@link ConcurrencyMode#PARALLEL} のリクエストを同時に処理する最大数を取得します.
+     * <p>
+     * 変更したい場合は本メソッドをオーバーライドしてください。
+     * </p>
+     * @return 同時に処理する最大数
+     */
+    protected int getMaxParallelRequests() {
+        return DEFAULT_MAX_PARALLEL_REQUESTS;
+    }
+
     /**
      * 送られてきたメッセージを配送します.
      * <p>
-     * メインスレッドから呼び出された場合には、別スレッドで実行します。<br>
+     * API またはプロファイルに {@link ConcurrencyMode} が指定されている場合には、その割り当て方で実行します。<br>
+     * 指定されていない場合、メインスレッドから呼び出された場合には、別スレッドで実行します。<br>
      * メインスレッド以外から呼び出された場合には、そのままのスレッドで実行します。
      * </p>
      * @param message 送られてきたメッセージ
      */
     private void handleMessage(final Intent message) {
+        DevicePluginContext pluginContext = mPluginContext;
+        RequestDispatcher dispatcher = mRequestDispatcher;
+        if (pluginContext != null && dispatcher != null) {
+            ConcurrencyMode mode = pluginContext.getConcurrencyMode(message);
+            if (mode != null) {
+                dispatcher.dispatch(mode, DConnectProfile.getProfile(message), () -> {
+                    if (mPluginContext != null) {
+                        mPluginContext.handleMessage(message);
+                    }
+                }, () -> sendRejectedResponse(message));
+                return;
+            }
+        }
+
         if (isCurrentMainThread()) {
             mExecutorService.execute(() -> {
                 if (mPluginContext != null) {
@@ -527,6 +571,20 @@ public abstract class DConnectMessageService extends Service implements DConnect
         }
     }
 
+    /**
+     * 停止処理中のために処理できなかったリクエストにエラーのレスポンスを返却します.
+     *
+     * @param message 処理できなかったリクエスト
+     */
+    private void sendRejectedResponse(final Intent message) {
+        DevicePluginContext pluginContext = mPluginContext;
+        if (pluginContext != null) {
+            Intent response = MessageUtils.createResponseIntent(message);
+            MessageUtils.setIllegalServerStateError(response, "Plug-in is shutting down.");
+            pluginContext.sendResponse(response);
+        }
+    }
+
     /**
      * アンインストールの通知を受け取るレシーバを登録します.
      */
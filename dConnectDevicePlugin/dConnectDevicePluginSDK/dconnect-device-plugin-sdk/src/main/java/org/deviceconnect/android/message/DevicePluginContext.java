@@ -32,6 +32,7 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.DConnectProfileProvider;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.android.profile.SystemProfile;
+import org.deviceconnect.android.profile.api.ConcurrencyMode;
 import org.deviceconnect.android.service.DConnectService;
 import org.deviceconnect.android.service.DConnectServiceManager;
 import org.deviceconnect.android.service.DConnectServiceProvider;
@@ -300,6 +301,34 @@ public abstract class DevicePluginContext implements DConnectProfileProvider, DC
         }
     }
 
+    /**
+     * 指定されたメッセージを処理するスレッドの割り当て方を取得する.
+     * <p>
+     * リクエスト以外のメッセージや、API とプロファイルのどちらにも割り当て方が指定されていない場合には null を返却する。
+     * </p>
+     *
+     * @param message リクエストなどの情報が格納されたIntent
+     * @return スレッドの割り当て方
+     */
+    public ConcurrencyMode getConcurrencyMode(final Intent message) {
+        if (!checkRequestAction(message.getAction())) {
+            return null;
+        }
+
+        // 変換は何度行っても同じ結果になるので、ここで変換してからプロファイルを探す
+        MessageConverterHelper.convert(message);
+        String profileName = DConnectProfile.getProfile(message);
+        DConnectProfile profile = getProfile(profileName);
+        if (profile == null) {
+            String serviceId = DConnectProfile.getServiceID(message);
+            DConnectService service = getServiceProvider().getService(serviceId);
+            if (service != null) {
+                profile = service.getProfile(profileName);
+            }
+        }
+        return profile != null ? profile.getConcurrencyMode(message) : null;
+    }
+
     /**
      * EventCacheControllerのインスタンスを返す.
      *
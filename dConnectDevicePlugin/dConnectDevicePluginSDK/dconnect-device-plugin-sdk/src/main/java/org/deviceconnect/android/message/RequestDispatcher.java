@@ -0,0 +1,321 @@
+/*
+ RequestDispatcher.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import org.deviceconnect.android.profile.api.ConcurrencyMode;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * {@link ConcurrencyMode} に従ってリクエストの処理をスレッドに割り当てるクラス.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class RequestDispatcher {
+    /**
+     * スレッドが処理を待つ時間(秒).
+     */
+    private static final long KEEP_ALIVE_TIME = 30;
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * {@link ConcurrencyMode#SERIAL} と {@link ConcurrencyMode#FIRE_AND_FORGET} の処理を行うスレッドプール.
+     */
+    private final ExecutorService mWorkerExecutor;
+
+    /**
+     * {@link ConcurrencyMode#PARALLEL} の処理を行う上限のあるスレッドプール.
+     */
+    private final ThreadPoolExecutor mParallelExecutor;
+
+    /**
+     * プロファイル名ごとの {@link ConcurrencyMode#SERIAL} の処理の順番を管理するクラス.
+     * <p>
+     * 実行待ちの処理がなくなったものは削除します。
+     * </p>
+     */
+    private final Map<String, SerialExecutor> mSerialExecutors = new HashMap<>();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param maxParallel {@link ConcurrencyMode#PARALLEL} のリクエストを同時に処理する最大数
+     */
+    RequestDispatcher(final int maxParallel) {
+        if (maxParallel <= 0) {
+            throw new IllegalArgumentException("maxParallel must be larger than 0.");
+        }
+        mWorkerExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("DConnectRequestWorker"));
+        mParallelExecutor = new ThreadPoolExecutor(maxParallel, maxParallel,
+                KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("DConnectRequestParallel"));
+        mParallelExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * リクエストの処理をスレッドに割り当てます.
+     * <p>
+     * 停止済みのためにリクエストの処理を実行できない場合には、rejectedTask を呼び出したスレッドで実行します。
+     * {@link ConcurrencyMode#SERIAL} の実行待ちの処理が停止で破棄された場合も同様です。
+     * </p>
+     *
+     * @param mode スレッドの割り当て方
+     * @param profileName リクエストのプロファイル名
+     * @param task リクエストの処理
+     * @param rejectedTask リクエストの処理を実行できない場合の処理
+     */
+    void dispatch(final ConcurrencyMode mode, final String profileName, final Runnable task,
+                  final Runnable rejectedTask) {
+        try {
+            switch (mode) {
+                case SERIAL:
+                    executeSerial(profileName, task, rejectedTask);
+                    break;
+                case PARALLEL:
+                    mParallelExecutor.execute(task);
+                    break;
+                case FIRE_AND_FORGET:
+                default:
+                    mWorkerExecutor.execute(task);
+                    break;
+            }
+        } catch (RejectedExecutionException e) {
+            mLogger.warning("RequestDispatcher: request is rejected. profile=" + profileName);
+            rejectedTask.run();
+        }
+    }
+
+    /**
+     * 処理を停止します.
+     * <p>
+     * 処理中のリクエストは最後まで処理しますが、新しいリクエストは受け付けません。
+     * </p>
+     */
+    void shutdown() {
+        mParallelExecutor.shutdown();
+        mWorkerExecutor.shutdown();
+    }
+
+    /**
+     * 指定されたプロファイルの {@link ConcurrencyMode#SERIAL} の処理を登録します.
+     *
+     * @param profileName プロファイル名
+     * @param task 処理
+     * @param rejectedTask 処理を実行できない場合の処理
+     */
+    private void executeSerial(final String profileName, final Runnable task, final Runnable rejectedTask) {
+        // XXXX パスの大文字小文字を無視
+        String key = profileName == null ? "" : profileName.toLowerCase(Locale.ENGLISH);
+        synchronized (mSerialExecutors) {
+            SerialExecutor executor = mSerialExecutors.get(key);
+            if (executor == null) {
+                executor = new SerialExecutor(key, mWorkerExecutor);
+                mSerialExecutors.put(key, executor);
+            }
+            executor.execute(task, rejectedTask);
+            if (executor.isIdle()) {
+                // 停止済みのために処理を実行できなかった
+                mSerialExecutors.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 実行待ちの処理がなくなった {@link SerialExecutor} を削除します.
+     * <p>
+     * 削除する前に処理が登録された場合には削除しません。
+     * </p>
+     *
+     * @param executor 削除する SerialExecutor
+     */
+    private void removeIfIdle(final SerialExecutor executor) {
+        synchronized (mSerialExecutors) {
+            if (executor.isIdle() && mSerialExecutors.get(executor.mKey) == executor) {
+                mSerialExecutors.remove(executor.mKey);
+            }
+        }
+    }
+
+    /**
+     * 指定されたプロファイルの {@link ConcurrencyMode#SERIAL} の処理を管理するクラスの数を取得します.
+     *
+     * @return 処理を管理するクラスの数
+     */
+    int getSerialExecutorCount() {
+        synchronized (mSerialExecutors) {
+            return mSerialExecutors.size();
+        }
+    }
+
+    /**
+     * 登録された順番に1つずつ処理を実行するクラス.
+     * <p>
+     * 処理はスレッドプールで実行するので、プロファイルごとにスレッドを占有しません。
+     * 実行待ちの処理がなくなった場合には、{@link RequestDispatcher#removeIfIdle(SerialExecutor)} で削除されます。
+     * </p>
+     */
+    private class SerialExecutor {
+        /**
+         * プロファイル名のキー.
+         */
+        private final String mKey;
+
+        /**
+         * 実行待ちの処理.
+         */
+        private final ArrayDeque<SerialTask> mTasks = new ArrayDeque<>();
+
+        /**
+         * 処理を実行するスレッドプール.
+         */
+        private final Executor mExecutor;
+
+        /**
+         * 実行中の処理.
+         */
+        private Runnable mActive;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param key プロファイル名のキー
+         * @param executor 処理を実行するスレッドプール
+         */
+        SerialExecutor(final String key, final Executor executor) {
+            mKey = key;
+            mExecutor = executor;
+        }
+
+        /**
+         * 処理を登録します.
+         *
+         * @param task 処理
+         * @param rejectedTask 処理を実行できない場合の処理
+         */
+        synchronized void execute(final Runnable task, final Runnable rejectedTask) {
+            mTasks.offer(new SerialTask(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (!scheduleNext()) {
+                        removeIfIdle(this);
+                    }
+                }
+            }, rejectedTask));
+            if (mActive == null) {
+                scheduleNext();
+            }
+        }
+
+        /**
+         * 実行中の処理と実行待ちの処理がないか確認します.
+         *
+         * @return ない場合はtrue、それ以外はfalse
+         */
+        synchronized boolean isIdle() {
+            return mActive == null && mTasks.isEmpty();
+        }
+
+        /**
+         * 次の処理を実行します.
+         *
+         * @return 次の処理を実行した場合はtrue、それ以外はfalse
+         */
+        private synchronized boolean scheduleNext() {
+            SerialTask next = mTasks.poll();
+            mActive = next != null ? next.mTask : null;
+            if (mActive == null) {
+                return false;
+            }
+            try {
+                mExecutor.execute(mActive);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // 停止済みの場合は、実行待ちの処理を破棄
+                mLogger.warning("RequestDispatcher: request is rejected. profile=" + mKey);
+                mActive = null;
+                next.mRejectedTask.run();
+                while ((next = mTasks.poll()) != null) {
+                    next.mRejectedTask.run();
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * {@link SerialExecutor} の実行待ちの処理.
+     */
+    private static class SerialTask {
+        /**
+         * 処理.
+         */
+        private final Runnable mTask;
+
+        /**
+         * 処理を実行できない場合の処理.
+         */
+        private final Runnable mRejectedTask;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param task 処理
+         * @param rejectedTask 処理を実行できない場合の処理
+         */
+        SerialTask(final Runnable task, final Runnable rejectedTask) {
+            mTask = task;
+            mRejectedTask = rejectedTask;
+        }
+    }
+
+    /**
+     * スレッドに名前を付けるファクトリー.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        /**
+         * スレッド名のプレフィクス.
+         */
+        private final String mPrefix;
+
+        /**
+         * 作成したスレッドの数.
+         */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        /**
+         * コンストラクタ.
+         *
+         * @param prefix スレッド名のプレフィクス
+         */
+        NamedThreadFactory(final String prefix) {
+            mPrefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(r, mPrefix + "-" + mCount.incrementAndGet());
+        }
+    }
+}
@@ -11,17 +11,18 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.message.DevicePluginContext;
 import org.deviceconnect.android.message.MessageUtils;
+import org.deviceconnect.android.profile.api.ConcurrencyMode;
 import org.deviceconnect.android.profile.api.DConnectApi;
 import org.deviceconnect.android.profile.spec.DConnectServiceSpec;
-import org.deviceconnect.android.profile.spec.OpenAPIValidator;
+import org.deviceconnect.android.profile.spec.OpenAPIValidationPlan;
 import org.deviceconnect.android.profile.spec.models.Method;
 import org.deviceconnect.android.profile.spec.models.Swagger;
-import org.deviceconnect.android.profile.spec.models.parameters.Parameter;
 import org.deviceconnect.android.service.DConnectService;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
@@ -36,6 +37,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -74,6 +76,11 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      */
     private Responder mResponder;
 
+    /**
+     * リクエストを処理するスレッドの割り当て方.
+     */
+    private volatile ConcurrencyMode mConcurrencyMode;
+
     /**
      * ロガー.
      */
@@ -84,6 +91,11 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      */
     protected final Map<ApiIdentifier, DConnectApi> mApis = new HashMap<>();
 
+    /**
+     * API ごとのパラメータの確認方法.
+     */
+    private final Map<ApiIdentifier, ValidationPlanEntry> mValidationPlans = new ConcurrentHashMap<>();
+
     /**
      * プロファイルに設定されているDevice Connect API実装のリストを返す.
      *
@@ -100,13 +112,25 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      * @return 指定されたリクエストに対応するAPI実装を返す. 存在しない場合は<code>null</code>
      */
     public DConnectApi findApi(final Intent request) {
-        String action = request.getAction();
-        Method method = Method.fromAction(action);
+        ApiIdentifier identifier = createApiIdentifier(request);
+        if (identifier == null) {
+            return null;
+        }
+        return mApis.get(identifier);
+    }
+
+    /**
+     * 指定されたリクエストに対応するAPIの識別子を作成する.
+     *
+     * @param request リクエスト
+     * @return APIの識別子. メソッドが不正な場合は<code>null</code>
+     */
+    private ApiIdentifier createApiIdentifier(final Intent request) {
+        Method method = Method.fromAction(request.getAction());
         if (method == null) {
             return null;
         }
-        String path = getApiPath(request);
-        return findApi(path, method);
+        return new ApiIdentifier(getApiPath(request), method);
     }
 
     /**
@@ -126,7 +150,9 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      * @param api API 追加するAPI実装
      */
     public void addApi(final DConnectApi api) {
-        mApis.put(new ApiIdentifier(getApiPath(api), api.getMethod()), api);
+        ApiIdentifier identifier = new ApiIdentifier(getApiPath(api), api.getMethod());
+        mApis.put(identifier, api);
+        mValidationPlans.remove(identifier);
     }
 
     /**
@@ -135,7 +161,9 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      * @param api 削除するAPI実装
      */
     public void removeApi(final DConnectApi api) {
-        mApis.remove(new ApiIdentifier(getApiPath(api), api.getMethod()));
+        ApiIdentifier identifier = new ApiIdentifier(getApiPath(api), api.getMethod());
+        mApis.remove(identifier);
+        mValidationPlans.remove(identifier);
     }
 
     /**
@@ -224,59 +252,39 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
     public abstract String getProfileName();
 
     /**
-     * リクエストのパラメータの妥当性を確認します.
+     * リクエストされたAPIのパラメータの確認方法を取得します.
      *
      * <p>
-     * プロファイル定義が存在しない場合は、パラメータのチェックが
-     * できないので妥当として true を返却します。
+     * 確認方法はAPIごとに一度だけ作成して保持します。
+     * サービスに設定されているプロファイル定義が差し替えられた場合には作成し直します。
      * </p>
      *
+     * @param identifier APIの識別子
      * @param request リクエスト
-     * @return 妥当な場合はtrue、それ以外はfalse
+     * @return パラメータの確認方法. プロファイル定義が存在しない場合は<code>null</code>
      */
-    private boolean validateRequest(final Intent request) {
+    private OpenAPIValidationPlan findValidationPlan(final ApiIdentifier identifier, final Intent request) {
         DConnectService service = getService();
-        if (service != null) {
-            DConnectServiceSpec spec = service.getServiceSpec();
-            if (spec != null) {
-                Swagger swagger = spec.findProfileSpec(getProfile(request));
-                if (swagger != null) {
-                    return OpenAPIValidator.validate(swagger, request);
-                }
-            }
+        if (service == null) {
+            return null;
         }
-        return true;
-    }
-    /**
-     * 不正なリクエストパラメータを返します.
-     *
-     * @param request リクエスト
-     * @return 不正なリクエストパラメータ
-     */
-    private String getInvalidParameter(final Intent request) {
-        DConnectService service = getService();
-        StringBuilder builder = new StringBuilder();
-        if (service != null) {
-            DConnectServiceSpec spec = service.getServiceSpec();
-            if (spec != null) {
-                Swagger swagger = spec.findProfileSpec(getProfile(request));
-                if (swagger != null) {
-                    Bundle extras = request.getExtras();
-                    if (extras == null) {
-                        return "Unknown";
-                    }
-                    List<Parameter> parameters = OpenAPIValidator.findParameters(swagger, request);
-                    for (Parameter parameter : parameters) {
-                        Object value = extras.get(parameter.getName());
-                        if (!OpenAPIValidator.validate(parameter, value)) {
-                            builder.append(parameter.getName()).append(",");
-                        }
-                    }
-                }
-            }
+        DConnectServiceSpec spec = service.getServiceSpec();
+        if (spec == null) {
+            return null;
+        }
+        Swagger swagger = spec.findProfileSpec(getProfile(request));
+        if (swagger == null) {
+            return null;
         }
-        return builder.toString().substring(0, builder.length() - 1);
+
+        ValidationPlanEntry entry = mValidationPlans.get(identifier);
+        if (entry == null || entry.mSwagger != swagger) {
+            entry = new ValidationPlanEntry(swagger, OpenAPIValidationPlan.compile(swagger, request));
+            mValidationPlans.put(identifier, entry);
+        }
+        return entry.mPlan;
     }
+
     /**
      * RESPONSEメソッドハンドラー.
      *
@@ -290,10 +298,13 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
      * @return レスポンスパラメータを送信するか否か
      */
     public boolean onRequest(final Intent request, final Intent response) {
-        DConnectApi api = findApi(request);
+        ApiIdentifier identifier = createApiIdentifier(request);
+        DConnectApi api = identifier != null ? mApis.get(identifier) : null;
         if (api != null) {
-            if (!validateRequest(request)) {
-                String invalidDetails = getInvalidParameter(request);
+            // プロファイル定義が存在しない場合は、パラメータのチェックができないので妥当とする
+            OpenAPIValidationPlan plan = findValidationPlan(identifier, request);
+            if (plan != null && !plan.validate(request)) {
+                String invalidDetails = TextUtils.join(",", plan.findInvalidParameters(request));
                 // API 定義ファイルでパラメータエラーとなった
                 MessageUtils.setInvalidRequestParameterError(response, "Request parameters are invalid: " + invalidDetails);
                 return true;
@@ -407,6 +418,45 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
         return mService;
     }
 
+    /**
+     * 本プロファイルへのリクエストを処理するスレッドの割り当て方を設定する.
+     * <p>
+     * {@link DConnectApi#getConcurrencyMode()} で割り当て方を指定した API には、そちらが優先される。<br>
+     * nullを設定した場合には、従来通りの方法でリクエストを処理する。
+     * </p>
+     *
+     * @param mode スレッドの割り当て方
+     */
+    public void setConcurrencyMode(final ConcurrencyMode mode) {
+        mConcurrencyMode = mode;
+    }
+
+    /**
+     * 本プロファイルへのリクエストを処理するスレッドの割り当て方を取得する.
+     *
+     * @return スレッドの割り当て方、設定されていない場合はnull
+     */
+    public ConcurrencyMode getConcurrencyMode() {
+        return mConcurrencyMode;
+    }
+
+    /**
+     * 指定されたリクエストを処理するスレッドの割り当て方を取得する.
+     *
+     * @param request リクエスト
+     * @return スレッドの割り当て方、指定されていない場合はnull
+     */
+    public ConcurrencyMode getConcurrencyMode(final Intent request) {
+        DConnectApi api = findApi(request);
+        if (api != null) {
+            ConcurrencyMode mode = api.getConcurrencyMode();
+            if (mode != null) {
+                return mode;
+            }
+        }
+        return getConcurrencyMode();
+    }
+
     /**
      * DConnectApi からパスを作成します.
      *
@@ -1077,6 +1127,26 @@ public abstract class DConnectProfile implements DConnectProfileConstants {
         boolean sendEvent(final Event event, final Bundle bundle);
     }
 
+    /**
+     * プロファイル定義から作成したパラメータの確認方法.
+     */
+    private static class ValidationPlanEntry {
+        /**
+         * 確認方法を作成したプロファイル定義.
+         */
+        private final Swagger mSwagger;
+
+        /**
+         * パラメータの確認方法.
+         */
+        private final OpenAPIValidationPlan mPlan;
+
+        ValidationPlanEntry(final Swagger swagger, final OpenAPIValidationPlan plan) {
+            mSwagger = swagger;
+            mPlan = plan;
+        }
+    }
+
     private static class ApiIdentifier {
         /**
          * Device Connect Method.
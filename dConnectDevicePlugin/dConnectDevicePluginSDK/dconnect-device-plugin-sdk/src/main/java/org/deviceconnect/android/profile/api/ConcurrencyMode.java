@@ -0,0 +1,45 @@
+/*
+ ConcurrencyMode.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.api;
+
+/**
+ * リクエストを処理するスレッドの割り当て方.
+ * <p>
+ * {@link DConnectApi#getConcurrencyMode()} または
+ * {@link org.deviceconnect.android.profile.DConnectProfile#setConcurrencyMode(ConcurrencyMode)} で指定します。
+ * どちらも指定されていない場合には、従来通りの方法でリクエストを処理します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public enum ConcurrencyMode {
+    /**
+     * プロファイルごとに1つずつ、受信した順番にリクエストを処理する.
+     * <p>
+     * 同じプロファイルの処理の順番を保証する必要がある API に使用します。
+     * 他のプロファイルのリクエストの処理を待たせることはありません。
+     * </p>
+     */
+    SERIAL,
+
+    /**
+     * プラグインで共有する上限のあるスレッドプールで、並列にリクエストを処理する.
+     * <p>
+     * 処理の順番は保証しません。
+     * </p>
+     */
+    PARALLEL,
+
+    /**
+     * 他のリクエストの処理を待たずに、すぐに別スレッドでリクエストを処理する.
+     * <p>
+     * 処理中の操作を停止する API など、時間のかかる処理の後ろで待たせたくない API に使用します。
+     * 同時に処理する数に上限がないため、すぐに終わる処理に限って使用してください。
+     * </p>
+     */
+    FIRE_AND_FORGET
+}
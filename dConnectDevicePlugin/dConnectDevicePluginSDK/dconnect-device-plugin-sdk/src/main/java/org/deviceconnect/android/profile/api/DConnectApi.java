@@ -37,6 +37,17 @@ public abstract class DConnectApi {
      */
     public abstract Method getMethod();
 
+    /**
+     * リクエストを処理するスレッドの割り当て方を取得する.
+     * <p>
+     * nullを返却した場合には、プロファイルに設定された割り当て方に従う。
+     * </p>
+     * @return スレッドの割り当て方
+     */
+    public ConcurrencyMode getConcurrencyMode() {
+        return null;
+    }
+
     /**
      * RESPONSEメソッドハンドラー.
      *
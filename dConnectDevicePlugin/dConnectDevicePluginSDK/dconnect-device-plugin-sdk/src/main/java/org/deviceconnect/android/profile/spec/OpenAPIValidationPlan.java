@@ -0,0 +1,761 @@
+/*
+ OpenAPIValidationPlan.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.spec;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.deviceconnect.android.profile.spec.models.DataFormat;
+import org.deviceconnect.android.profile.spec.models.Property;
+import org.deviceconnect.android.profile.spec.models.Swagger;
+import org.deviceconnect.android.profile.spec.models.parameters.BodyParameter;
+import org.deviceconnect.android.profile.spec.models.parameters.Parameter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * API 定義からパラメータの確認方法を事前に作成したクラス.
+ *
+ * <p>
+ * {@link OpenAPIValidator#findParameters(Swagger, Intent)} で取得したパラメータの仕様を
+ * パラメータごとの確認処理の配列に変換して保持します。
+ * enum、最大値・最小値、正規表現などは作成時に解析しておくので、リクエストごとに API 定義を辿る必要がありません。
+ * </p>
+ * <p>
+ * 作成後に API 定義を変更しても反映されないので、API 定義を変更した場合には作成し直してください。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class OpenAPIValidationPlan {
+
+    /**
+     * RGB のパターン解析用の正規表現.
+     */
+    private static final Pattern RGB_PATTERN = Pattern.compile("[0-9a-fA-F]{6}");
+
+    /**
+     * trueの文字列.
+     */
+    private static final String TRUE = "true";
+
+    /**
+     * falseの文字列.
+     */
+    private static final String FALSE = "false";
+
+    /**
+     * 値を確認しない場合の確認処理.
+     */
+    private static final ValueChecker ANY = (value) -> true;
+
+    /**
+     * パラメータごとの確認処理.
+     */
+    private final ParameterChecker[] mCheckers;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param checkers パラメータごとの確認処理
+     */
+    private OpenAPIValidationPlan(final ParameterChecker[] checkers) {
+        mCheckers = checkers;
+    }
+
+    /**
+     * リクエストされた API の定義から確認方法を作成します.
+     *
+     * @param swagger API 定義
+     * @param request リクエスト
+     * @return 確認方法
+     */
+    public static OpenAPIValidationPlan compile(final Swagger swagger, final Intent request) {
+        return compile(OpenAPIValidator.findParameters(swagger, request));
+    }
+
+    /**
+     * パラメータの仕様のリストから確認方法を作成します.
+     *
+     * @param parameters パラメータの仕様のリスト
+     * @return 確認方法
+     */
+    public static OpenAPIValidationPlan compile(final List<Parameter> parameters) {
+        ParameterChecker[] checkers = new ParameterChecker[parameters.size()];
+        for (int i = 0; i < checkers.length; i++) {
+            checkers[i] = new ParameterChecker(parameters.get(i));
+        }
+        return new OpenAPIValidationPlan(checkers);
+    }
+
+    /**
+     * リクエストの妥当性を確認します.
+     *
+     * <p>
+     * 送られてきたリクエストのパラメータに仕様にないパラメータが存在した場合には特にチェックは行わずに妥当とします。
+     * </p>
+     *
+     * @param request リクエスト
+     * @return 妥当なリクエストの場合はtrue、それ以外はfalse
+     */
+    public boolean validate(final Intent request) {
+        Bundle extras = request.getExtras();
+        if (extras == null) {
+            return true;
+        }
+        for (ParameterChecker checker : mCheckers) {
+            if (!checker.check(extras.get(checker.mName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 妥当ではないパラメータの名前のリストを取得します.
+     *
+     * @param request リクエスト
+     * @return 妥当ではないパラメータの名前のリスト
+     */
+    public List<String> findInvalidParameters(final Intent request) {
+        List<String> result = new ArrayList<>();
+        Bundle extras = request.getExtras();
+        if (extras == null) {
+            return result;
+        }
+        for (ParameterChecker checker : mCheckers) {
+            if (!checker.check(extras.get(checker.mName))) {
+                result.add(checker.mName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * リクエストされたパラメータが妥当か確認します.
+     *
+     * @param parameter パラメータの仕様
+     * @param value リクエストされたパラメータの値
+     * @return パラメータが妥当な場合はtrue、それ以外はfalse
+     */
+    static boolean validate(final Parameter parameter, final Object value) {
+        return new ParameterChecker(parameter).check(value);
+    }
+
+    /**
+     * パラメータの仕様から値の確認処理を作成します.
+     *
+     * @param property パラメータの仕様
+     * @return 値の確認処理
+     */
+    private static ValueChecker createChecker(final Property property) {
+        if (property == null || property.getType() == null) {
+            // TODO 定義ファイルのフォーマットエラー
+            return ANY;
+        }
+
+        switch (property.getType()) {
+            case INTEGER:
+                return new IntegerChecker(property);
+            case NUMBER:
+                return new NumberChecker(property);
+            case STRING:
+                return new StringChecker(property);
+            case ARRAY:
+                return new ArrayChecker(property);
+            case BOOLEAN:
+                return new BooleanChecker(property);
+            case FILE:
+            default:
+                // TODO 定義ファイルのフォーマットエラー
+                return ANY;
+        }
+    }
+
+    /**
+     * enum に定義された値の集合を作成します.
+     *
+     * @param enums enumに定義されたリスト
+     * @return 値の集合、enum が定義されていない場合はnull
+     */
+    private static Set<Object> createEnumSet(final List<Object> enums) {
+        if (enums == null) {
+            return null;
+        }
+        Set<Object> result = new HashSet<>();
+        for (Object e : enums) {
+            if (e != null) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 値の確認処理.
+     */
+    private interface ValueChecker {
+        /**
+         * 値が妥当か確認します.
+         *
+         * @param value リクエストされたパラメータの値
+         * @return 値が妥当な場合はtrue、それ以外はfalse
+         */
+        boolean check(Object value);
+    }
+
+    /**
+     * パラメータの確認処理.
+     */
+    private static class ParameterChecker {
+        /**
+         * パラメータ名.
+         */
+        private final String mName;
+
+        /**
+         * パラメータが必須か.
+         */
+        private final boolean mRequired;
+
+        /**
+         * 値の確認処理.
+         */
+        private final ValueChecker mValueChecker;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param parameter パラメータの仕様
+         */
+        ParameterChecker(final Parameter parameter) {
+            mName = parameter.getName();
+            mRequired = parameter.isRequired();
+            if (parameter instanceof BodyParameter) {
+                mValueChecker = createChecker(((BodyParameter) parameter).getSchema());
+            } else {
+                mValueChecker = createChecker((Property) parameter);
+            }
+        }
+
+        /**
+         * パラメータの値が妥当か確認します.
+         *
+         * @param value リクエストされたパラメータの値
+         * @return 値が妥当な場合はtrue、それ以外はfalse
+         */
+        boolean check(final Object value) {
+            if (value == null) {
+                // パラメータが必須の場合は不正
+                return !mRequired;
+            }
+            return mValueChecker.check(value);
+        }
+    }
+
+    /**
+     * Integer のパラメータの確認処理.
+     *
+     * <p>
+     * 整数値の妥当性を確認しますが、リクエストされたパラメータ値が
+     * 整数値の文字列の場合も妥当とみなします。
+     * format が省略された場合は、int で処理を行います。
+     * </p>
+     */
+    private static class IntegerChecker implements ValueChecker {
+        /**
+         * データフォーマット.
+         */
+        private final DataFormat mFormat;
+
+        /**
+         * true: long として扱う / false: int として扱う.
+         */
+        private final boolean mInt64;
+
+        /**
+         * enum に定義された値の集合.
+         */
+        private final Set<Object> mEnums;
+
+        /**
+         * 最大値. 定義されていない場合はnull.
+         */
+        private final Long mMaximum;
+
+        /**
+         * 最小値. 定義されていない場合はnull.
+         */
+        private final Long mMinimum;
+
+        /**
+         * 最大値を含まないか.
+         */
+        private final boolean mExclusiveMaximum;
+
+        /**
+         * 最小値を含まないか.
+         */
+        private final boolean mExclusiveMinimum;
+
+        /**
+         * 倍数. 定義されていない場合は0.
+         */
+        private final long mMultipleOf;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param property パラメータの仕様
+         */
+        IntegerChecker(final Property property) {
+            mFormat = property.getFormat();
+            mInt64 = mFormat == DataFormat.INT64;
+            mEnums = createEnumSet(property.getEnum());
+            mMaximum = toLong(property.getMaximum());
+            mMinimum = toLong(property.getMinimum());
+            mExclusiveMaximum = Boolean.TRUE.equals(property.isExclusiveMaximum());
+            mExclusiveMinimum = Boolean.TRUE.equals(property.isExclusiveMinimum());
+            Long multipleOf = toLong(property.getMultipleOf());
+            mMultipleOf = multipleOf != null ? multipleOf : 0;
+        }
+
+        /**
+         * 数値をフォーマットに合わせて long に変換します.
+         *
+         * @param number 数値
+         * @return 変換した値、数値がnullの場合はnull
+         */
+        private Long toLong(final Number number) {
+            if (number == null) {
+                return null;
+            }
+            return mInt64 ? number.longValue() : (long) number.intValue();
+        }
+
+        @Override
+        public boolean check(Object value) {
+            if (value instanceof String) {
+                // 文字列を数値に変換できるか確認
+                try {
+                    if (mFormat == null || mFormat == DataFormat.INT32) {
+                        value = Integer.parseInt((String) value);
+                    } else if (mInt64) {
+                        value = Long.parseLong((String) value);
+                    }
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+
+            if (!(value instanceof Integer || value instanceof Long)) {
+                return false;
+            }
+
+            if (mFormat != null && mFormat != DataFormat.INT32 && !mInt64) {
+                // TODO 定義ファイルのフォーマットエラー
+                return true;
+            }
+
+            long v = mInt64 ? ((Number) value).longValue() : ((Number) value).intValue();
+            if (mEnums != null) {
+                return mEnums.contains(mInt64 ? (Object) v : (Object) (int) v);
+            }
+            if (mMaximum != null && !(mExclusiveMaximum ? (mMaximum > v) : (mMaximum >= v))) {
+                return false;
+            }
+            if (mMinimum != null && !(mExclusiveMinimum ? (mMinimum < v) : (mMinimum <= v))) {
+                return false;
+            }
+            return mMultipleOf == 0 || v % mMultipleOf == 0;
+        }
+    }
+
+    /**
+     * Number のパラメータの確認処理.
+     *
+     * <p>
+     * 実数値の妥当性を確認しますが、リクエストされたパラメータ値が
+     * 実数値の文字列の場合も妥当とみなします。
+     * format が省略された場合は、float で処理を行います。
+     * </p>
+     */
+    private static class NumberChecker implements ValueChecker {
+        /**
+         * データフォーマット.
+         */
+        private final DataFormat mFormat;
+
+        /**
+         * true: double として扱う / false: float として扱う.
+         */
+        private final boolean mDouble;
+
+        /**
+         * enum に定義された値の集合.
+         */
+        private final Set<Object> mEnums;
+
+        /**
+         * 最大値. 定義されていない場合はnull.
+         */
+        private final Double mMaximum;
+
+        /**
+         * 最小値. 定義されていない場合はnull.
+         */
+        private final Double mMinimum;
+
+        /**
+         * 最大値を含まないか.
+         */
+        private final boolean mExclusiveMaximum;
+
+        /**
+         * 最小値を含まないか.
+         */
+        private final boolean mExclusiveMinimum;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param property パラメータの仕様
+         */
+        NumberChecker(final Property property) {
+            mFormat = property.getFormat();
+            mDouble = mFormat == DataFormat.DOUBLE;
+            mEnums = createEnumSet(property.getEnum());
+            mMaximum = toDouble(property.getMaximum());
+            mMinimum = toDouble(property.getMinimum());
+            mExclusiveMaximum = Boolean.TRUE.equals(property.isExclusiveMaximum());
+            mExclusiveMinimum = Boolean.TRUE.equals(property.isExclusiveMinimum());
+        }
+
+        /**
+         * 数値をフォーマットに合わせて double に変換します.
+         *
+         * @param number 数値
+         * @return 変換した値、数値がnullの場合はnull
+         */
+        private Double toDouble(final Number number) {
+            if (number == null) {
+                return null;
+            }
+            return mDouble ? number.doubleValue() : (double) number.floatValue();
+        }
+
+        @Override
+        public boolean check(Object value) {
+            if (value instanceof String) {
+                // 文字列を数値に変換できるか確認
+                try {
+                    if (mFormat == null || mFormat == DataFormat.FLOAT) {
+                        value = Float.parseFloat((String) value);
+                    } else if (mDouble) {
+                        value = Double.parseDouble((String) value);
+                    }
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+
+            if (!(value instanceof Number)) {
+                return false;
+            }
+
+            if (mFormat != null && mFormat != DataFormat.FLOAT && !mDouble) {
+                // TODO 定義ファイルのフォーマットエラー
+                return true;
+            }
+
+            double v = mDouble ? ((Number) value).doubleValue() : ((Number) value).floatValue();
+            if (mEnums != null) {
+                return mEnums.contains(mDouble ? (Object) v : (Object) (float) v);
+            }
+            if (mMaximum != null && !(mExclusiveMaximum ? (mMaximum > v) : (mMaximum >= v))) {
+                return false;
+            }
+            return mMinimum == null || (mExclusiveMinimum ? (mMinimum < v) : (mMinimum <= v));
+        }
+    }
+
+    /**
+     * 文字列のパラメータの確認処理.
+     */
+    private static class StringChecker implements ValueChecker {
+        /**
+         * enum に定義された値の集合.
+         */
+        private final Set<Object> mEnums;
+
+        /**
+         * 値が満たす正規表現. 定義されていない場合はnull.
+         */
+        private final Pattern mPattern;
+
+        /**
+         * データフォーマット.
+         */
+        private final DataFormat mFormat;
+
+        /**
+         * 最大の長さ. 定義されていない場合はnull.
+         */
+        private final Integer mMaxLength;
+
+        /**
+         * 最小の長さ. 定義されていない場合はnull.
+         */
+        private final Integer mMinLength;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param property パラメータの仕様
+         */
+        StringChecker(final Property property) {
+            mEnums = createEnumSet(property.getEnum());
+            mPattern = property.getPattern() != null ? Pattern.compile(property.getPattern()) : null;
+            mFormat = property.getFormat();
+            mMaxLength = property.getMaxLength();
+            mMinLength = property.getMinLength();
+        }
+
+        @Override
+        public boolean check(final Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+
+            String str = (String) value;
+            if (mEnums != null) {
+                return mEnums.contains(str);
+            }
+
+            if (mPattern != null && !mPattern.matcher(str).find()) {
+                return false;
+            }
+
+            if (mFormat == null) {
+                return checkLength(str);
+            }
+
+            switch (mFormat) {
+                case TEXT:
+                    return checkLength(str);
+                case RGB:
+                    return RGB_PATTERN.matcher(str).matches();
+                case BYTE:
+                case BINARY:
+                    // TODO 未実装
+                    // バイナリのサイズ確認 (現状、プラグインにはURL形式で通知される)
+                case DATE:
+                case DATE_TIME:
+                    // TODO 未実装
+                    // RFC3339 形式であることの確認を実装すること。
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * 文字列の長さの妥当性を確認します.
+         *
+         * <p>
+         * TODO 最大値、最小値を含むのか、含まないのか仕様がなかったので、ここでは含まないようにしています。
+         * </p>
+         *
+         * @param value リクエストされたパラメータの値
+         * @return 値が妥当な場合はtrue、それ以外はfalse
+         */
+        private boolean checkLength(final String value) {
+            int stringLength = value.length();
+            return (mMaxLength == null || stringLength < mMaxLength) &&
+                    (mMinLength == null || stringLength > mMinLength);
+        }
+    }
+
+    /**
+     * 配列のパラメータの確認処理.
+     */
+    private static class ArrayChecker implements ValueChecker {
+        /**
+         * 空の配列を許可するか.
+         */
+        private final boolean mAllowEmptyValue;
+
+        /**
+         * 区切り文字. multi の場合はnull.
+         */
+        private final String mDelimiter;
+
+        /**
+         * 最大の要素数. 定義されていない場合はnull.
+         */
+        private final Integer mMaxItems;
+
+        /**
+         * 最小の要素数. 定義されていない場合はnull.
+         */
+        private final Integer mMinItems;
+
+        /**
+         * 要素が重複してはいけないか.
+         */
+        private final boolean mUniqueItems;
+
+        /**
+         * 要素の確認処理.
+         */
+        private final ValueChecker mItemChecker;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param property パラメータの仕様
+         */
+        ArrayChecker(final Property property) {
+            mAllowEmptyValue = Boolean.TRUE.equals(property.isAllowEmptyValue());
+            mDelimiter = getDelimiter(property.getCollectionFormat());
+            mMaxItems = property.getMaxItems();
+            mMinItems = property.getMinItems();
+            mUniqueItems = Boolean.TRUE.equals(property.isUniqueItems());
+            mItemChecker = createChecker(property.getItems());
+        }
+
+        /**
+         * 配列のフォーマットから区切り文字を取得します.
+         *
+         * @param collectionFormat 配列のフォーマット
+         * @return 区切り文字、multi の場合はnull
+         */
+        private static String getDelimiter(final String collectionFormat) {
+            if (collectionFormat == null) {
+                return ",";
+            }
+            switch (collectionFormat) {
+                default:
+                case "csv":
+                    return ",";
+                case "ssv":
+                    return " ";
+                case "tsv":
+                    return "\t";
+                case "pipes":
+                    return "|";
+                case "multi":
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean check(final Object value) {
+            // TODO 文字列以外の数値も文字列に変換して使用しているが問題ないかを確認すること。
+
+            String arrayValue = value.toString();
+            if (arrayValue.equals("")) {
+                // 空の配列が許可されているか
+                return mAllowEmptyValue;
+            }
+
+            if (mDelimiter == null) {
+                // Device Connect では同じパラメータ名があった場合には後勝ちになるので使用できない。
+                return true;
+            }
+
+            String[] array = splitString(arrayValue, mDelimiter);
+            if (mMaxItems != null && array.length >= mMaxItems) {
+                return false;
+            }
+            if (mMinItems != null && array.length < mMinItems) {
+                return false;
+            }
+
+            if (mUniqueItems) {
+                for (int i = 0; i < array.length; i++) {
+                    for (int j = i + 1; j < array.length; j++) {
+                        if (array[i].equals(array[j])) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            for (String v : array) {
+                if (!mItemChecker.check(v)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 文字列を分割して配列に変換します.
+         *
+         * <p>
+         * {@link String#split(String)} で分割しようとしたが、pipe が正規表現の
+         * 文字のために使用できなかったので、分割するメソッドを自作しました。
+         * </p>
+         *
+         * @param str 分割する文字列
+         * @param delimiter 区切り文字
+         * @return 分割された文字列
+         */
+        private static String[] splitString(final String str, final String delimiter) {
+            List<String> strings = new ArrayList<>();
+            int delimiterLen = delimiter.length();
+            int limit = str.length();
+            int start = 0;
+            int end;
+            for (int i = 1; i < limit; i++) {
+                end = str.indexOf(delimiter, start);
+                if (end < 0) {
+                    break;
+                }
+                strings.add(str.substring(start, end));
+                start = end + delimiterLen;
+            }
+            strings.add(str.substring(start));
+            return strings.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * boolean のパラメータの確認処理.
+     */
+    private static class BooleanChecker implements ValueChecker {
+        /**
+         * enum に定義された値の集合.
+         */
+        private final Set<Object> mEnums;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param property パラメータの仕様
+         */
+        BooleanChecker(final Property property) {
+            mEnums = createEnumSet(property.getEnum());
+        }
+
+        @Override
+        public boolean check(final Object value) {
+            if (mEnums != null) {
+                return mEnums.contains(value);
+            }
+
+            if (value instanceof String) {
+                return TRUE.equalsIgnoreCase((String) value) || FALSE.equalsIgnoreCase((String) value);
+            }
+            return (value instanceof Boolean);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ WriteThroughCacheControllerTest.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.event.cache.db;
+
+import android.content.Context;
+
+import org.deviceconnect.android.PluginSDKTestRunner;
+import org.deviceconnect.android.event.Event;
+import org.deviceconnect.android.event.EventError;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(PluginSDKTestRunner.class)
+public class WriteThroughCacheControllerTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        new DBCacheController(mContext).removeAll();
+    }
+
+    private static Event createEvent(final String serviceId, final String attribute,
+                                     final String origin, final String accessToken) {
+        Event event = new Event();
+        event.setServiceId(serviceId);
+        event.setProfile("deviceOrientation");
+        event.setAttribute(attribute);
+        event.setOrigin(origin);
+        event.setAccessToken(accessToken);
+        return event;
+    }
+
+    /**
+     * イベントを登録して取得する。
+     * <pre>
+     * 【期待する動作】
+     * ・登録したイベントが取得できること。
+     * ・同じオリジンで登録し直した場合にアクセストークンが更新されること。
+     * </pre>
+     */
+    @Test
+    public void testAddEvent() {
+        WriteThroughCacheController controller = new WriteThroughCacheController(mContext);
+        assertThat(controller.addEvent(createEvent("host", "onDeviceOrientation", "origin1", "token1")),
+                is(EventError.NONE));
+        assertThat(controller.addEvent(createEvent("host", "onDeviceOrientation", "origin2", "token2")),
+                is(EventError.NONE));
+        assertThat(controller.addEvent(createEvent("host", "onDeviceOrientation", "origin1", "token3")),
+                is(EventError.NONE));
+
+        List<Event> events = controller.getEvents("host", "deviceOrientation", null, "onDeviceOrientation");
+        assertThat(events.size(), is(2));
+
+        Event event = controller.getEvent("host", "deviceOrientation", null, "onDeviceOrientation",
+                "origin1", null);
+        assertThat(event, is(notNullValue()));
+        assertThat(event.getAccessToken(), is("token3"));
+    }
+
+    /**
+     * イベントを解除する。
+     * <pre>
+     * 【期待する動作】
+     * ・解除したイベントが取得できないこと。
+     * ・登録されていないイベントの解除で NOT_FOUND が返ること。
+     * </pre>
+     */
+    @Test
+    public void testRemoveEvent() {
+        WriteThroughCacheController controller = new WriteThroughCacheController(mContext);
+        Event event = createEvent("host", "onDeviceOrientation", "origin1", "token1");
+        controller.addEvent(event);
+        assertThat(controller.removeEvent(event), is(EventError.NONE));
+        assertThat(controller.removeEvent(event), is(EventError.NOT_FOUND));
+        assertThat(controller.getEvents("host", "deviceOrientation", null, "onDeviceOrientation").size(),
+                is(0));
+
+        controller.addEvent(createEvent("host", "onDeviceOrientation", "origin1", "token1"));
+        controller.addEvent(createEvent("host2", "onDeviceOrientation", "origin1", "token1"));
+        controller.addEvent(createEvent("host", "onDeviceOrientation", "origin2", "token2"));
+        assertThat(controller.removeEvents("origin1"), is(true));
+        assertThat(controller.getEvents("origin1").size(), is(0));
+        assertThat(controller.getEvents("origin2").size(), is(1));
+    }
+
+    /**
+     * 再生成したコントローラーでイベントを取得する。
+     * <pre>
+     * 【期待する動作】
+     * ・flush した後に生成したコントローラーで、登録したイベントが取得できること。
+     * ・null で登録したインターフェースが null として取得できること。
+     * </pre>
+     */
+    @Test
+    public void testRestore() {
+        WriteThroughCacheController controller = new WriteThroughCacheController(mContext);
+        controller.addEvent(createEvent("host", "onDeviceOrientation", "origin1", "token1"));
+        controller.addEvent(createEvent("host", "onDeviceOrientation", "origin2", "token2"));
+        controller.removeEvent(createEvent("host", "onDeviceOrientation", "origin2", "token2"));
+        controller.flush();
+
+        WriteThroughCacheController restored = new WriteThroughCacheController(mContext);
+        List<Event> events = restored.getEvents("host", "deviceOrientation", null, "onDeviceOrientation");
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getOrigin(), is("origin1"));
+        assertThat(events.get(0).getAccessToken(), is("token1"));
+        assertThat(events.get(0).getInterface(), is(nullValue()));
+    }
+
+    /**
+     * 取得したイベントデータのリストを変更する。
+     * <pre>
+     * 【期待する動作】
+     * ・取得したリストが変更できること。
+     * ・リストを変更しても、キャッシュのイベントデータは変更されないこと。
+     * </pre>
+     */
+    @Test
+    public void testGetEventsModifiable() {
+        WriteThroughCacheController controller = new WriteThroughCacheController(mContext);
+        controller.addEvent(createEvent("service1", "onDeviceOrientation", "origin1", "token1"));
+        controller.addEvent(createEvent("service1", "onDeviceOrientation", "origin2", "token2"));
+
+        List<Event> events = controller.getEvents("service1", "deviceOrientation", null, "onDeviceOrientation");
+        assertThat(events.size(), is(2));
+        events.remove(0);
+        assertThat(controller.getEvents("service1", "deviceOrientation", null, "onDeviceOrientation").size(), is(2));
+
+        List<Event> empty = controller.getEvents("service2", "deviceOrientation", null, "onDeviceOrientation");
+        assertThat(empty.size(), is(0));
+        empty.add(createEvent("service2", "onDeviceOrientation", "origin1", "token1"));
+        assertThat(controller.getEvents("service2", "deviceOrientation", null, "onDeviceOrientation").size(), is(0));
+
+        List<Event> byOrigin = controller.getEvents("origin1");
+        assertThat(byOrigin.size(), is(1));
+        byOrigin.clear();
+        assertThat(controller.getEvents("origin1").size(), is(1));
+    }
+
+    /**
+     * オリジンにnullを指定してイベントデータを取得する。
+     * <pre>
+     * 【期待する動作】
+     * ・DBCacheController と同じく IllegalArgumentException が発生すること。
+     * </pre>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetEventsWithNullOrigin() {
+        WriteThroughCacheController controller = new WriteThroughCacheController(mContext);
+        controller.getEvents(null);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ RequestDispatcherTest.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import org.deviceconnect.android.profile.api.ConcurrencyMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RequestDispatcherTest {
+
+    private RequestDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        mDispatcher = new RequestDispatcher(2);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.shutdown();
+    }
+
+    /**
+     * SERIAL で同じプロファイルに配送したリクエストの処理順を確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・配送した順番に処理されること。
+     * </pre>
+     */
+    @Test
+    public void testSerialKeepsOrder() throws Exception {
+        final int count = 100;
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            mDispatcher.dispatch(ConcurrencyMode.SERIAL, "camera", () -> {
+                results.add(index);
+                latch.countDown();
+            }, () -> {});
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        for (int i = 0; i < count; i++) {
+            assertThat(results.get(i), is(i));
+        }
+    }
+
+    /**
+     * SERIAL で処理中のプロファイルがある場合に、他のプロファイルのリクエストが処理されることを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・他のプロファイルのリクエストが先に処理されること。
+     * </pre>
+     */
+    @Test
+    public void testSerialDoesNotBlockOtherProfiles() throws Exception {
+        final CountDownLatch block = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        mDispatcher.dispatch(ConcurrencyMode.SERIAL, "camera", () -> {
+            try {
+                block.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // ignore.
+            }
+        }, () -> {});
+        mDispatcher.dispatch(ConcurrencyMode.SERIAL, "battery", done::countDown, () -> {});
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        block.countDown();
+    }
+
+    /**
+     * PARALLEL で同時に処理されるリクエストの数を確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・同時に処理される数がコンストラクタで指定した上限を超えないこと。
+     * ・全てのリクエストが処理されること。
+     * </pre>
+     */
+    @Test
+    public void testParallelIsBounded() throws Exception {
+        final int count = 20;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            mDispatcher.dispatch(ConcurrencyMode.PARALLEL, "file", () -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    // ignore.
+                }
+                running.decrementAndGet();
+                latch.countDown();
+            }, () -> {});
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(maxRunning.get() <= 2, is(true));
+    }
+
+    /**
+     * FIRE_AND_FORGET のリクエストが、処理中の SERIAL と PARALLEL のリクエストを待たないことを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・FIRE_AND_FORGET のリクエストが先に処理されること。
+     * </pre>
+     */
+    @Test
+    public void testFireAndForgetDoesNotWait() throws Exception {
+        final CountDownLatch block = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            try {
+                block.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // ignore.
+            }
+        };
+        mDispatcher.dispatch(ConcurrencyMode.SERIAL, "mediaStreamRecording", blocking, () -> {});
+        mDispatcher.dispatch(ConcurrencyMode.PARALLEL, "mediaStreamRecording", blocking, () -> {});
+        mDispatcher.dispatch(ConcurrencyMode.PARALLEL, "mediaStreamRecording", blocking, () -> {});
+        mDispatcher.dispatch(ConcurrencyMode.FIRE_AND_FORGET, "mediaStreamRecording", done::countDown, () -> {});
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        block.countDown();
+    }
+
+    /**
+     * 停止後に配送したリクエストを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・リクエストの処理は実行されずに、実行できない場合の処理が呼び出されること。
+     * </pre>
+     */
+    @Test
+    public void testRejectedAfterShutdown() {
+        mDispatcher.shutdown();
+        for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+            final AtomicInteger executed = new AtomicInteger();
+            final AtomicInteger rejected = new AtomicInteger();
+            mDispatcher.dispatch(mode, "camera", executed::incrementAndGet, rejected::incrementAndGet);
+            assertThat(executed.get(), is(0));
+            assertThat(rejected.get(), is(1));
+        }
+    }
+
+    /**
+     * SERIAL の処理が終わった後に、プロファイルごとの管理クラスが削除されることを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・全ての処理が終わった後に、管理クラスが残っていないこと。
+     * </pre>
+     */
+    @Test
+    public void testSerialExecutorIsEvicted() throws Exception {
+        final int count = 10;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            mDispatcher.dispatch(ConcurrencyMode.SERIAL, "profile" + i, latch::countDown, () -> {});
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        for (int i = 0; i < 100 && mDispatcher.getSerialExecutorCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(mDispatcher.getSerialExecutorCount(), is(0));
+    }
+}
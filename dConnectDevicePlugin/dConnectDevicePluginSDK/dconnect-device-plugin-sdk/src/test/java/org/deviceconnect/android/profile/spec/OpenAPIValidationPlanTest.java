@@ -0,0 +1,141 @@
+/*
+ OpenAPIValidationPlanTest.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.spec;
+
+import android.content.Intent;
+
+import org.deviceconnect.android.PluginSDKTestRunner;
+import org.deviceconnect.android.profile.spec.models.DataFormat;
+import org.deviceconnect.android.profile.spec.models.DataType;
+import org.deviceconnect.android.profile.spec.models.Items;
+import org.deviceconnect.android.profile.spec.models.Operation;
+import org.deviceconnect.android.profile.spec.models.Path;
+import org.deviceconnect.android.profile.spec.models.Paths;
+import org.deviceconnect.android.profile.spec.models.Swagger;
+import org.deviceconnect.android.profile.spec.models.parameters.QueryParameter;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * OpenAPIValidationPlan のテスト.
+ */
+@RunWith(PluginSDKTestRunner.class)
+public class OpenAPIValidationPlanTest {
+
+    /**
+     * serviceId、interval、mode、color、ids のパラメータを持つ API 定義を作成する。
+     *
+     * @return API 定義
+     */
+    private static Swagger createSwagger() {
+        QueryParameter serviceId = new QueryParameter();
+        serviceId.setName("serviceId");
+        serviceId.setType(DataType.STRING);
+        serviceId.setRequired(true);
+        serviceId.setMaxLength(64);
+
+        QueryParameter interval = new QueryParameter();
+        interval.setName("interval");
+        interval.setType(DataType.INTEGER);
+        interval.setFormat(DataFormat.INT64);
+        interval.setMinimum(0);
+        interval.setMaximum(60000);
+
+        List<Object> modes = new ArrayList<>();
+        modes.add("fast");
+        modes.add("normal");
+        modes.add("slow");
+        QueryParameter mode = new QueryParameter();
+        mode.setName("mode");
+        mode.setType(DataType.STRING);
+        mode.setEnum(modes);
+
+        QueryParameter color = new QueryParameter();
+        color.setName("color");
+        color.setType(DataType.STRING);
+        color.setFormat(DataFormat.RGB);
+
+        Items items = new Items();
+        items.setType(DataType.INTEGER);
+        items.setMinimum(0);
+        QueryParameter ids = new QueryParameter();
+        ids.setName("ids");
+        ids.setType(DataType.ARRAY);
+        ids.setItems(items);
+        ids.setUniqueItems(true);
+
+        Operation operation = new Operation();
+        operation.addParameter(interval);
+        operation.addParameter(mode);
+        operation.addParameter(color);
+        operation.addParameter(ids);
+
+        Path path = new Path();
+        path.setPut(operation);
+        path.addParameter(serviceId);
+
+        Paths paths = new Paths();
+        paths.addPath("/a0", path);
+
+        Swagger swagger = new Swagger();
+        swagger.setPaths(paths);
+        return swagger;
+    }
+
+    /**
+     * リクエストを作成する。
+     *
+     * @param interval interval の値
+     * @param color color の値
+     * @return リクエスト
+     */
+    private static Intent createRequest(final String interval, final String color) {
+        Intent request = new Intent();
+        request.setAction(IntentDConnectMessage.ACTION_PUT);
+        request.putExtra("profile", "a0");
+        request.putExtra("serviceId", "host");
+        request.putExtra("interval", interval);
+        request.putExtra("mode", "normal");
+        request.putExtra("color", color);
+        request.putExtra("ids", "1,2,3");
+        return request;
+    }
+
+    /**
+     * OpenAPIValidationPlan#validate(Intent) と OpenAPIValidator#validate(Swagger, Intent) の結果を比較する。
+     * <pre>
+     * 【期待する動作】
+     * ・同じ結果が返ること。
+     * ・妥当ではないパラメータの名前が取得できること。
+     * </pre>
+     */
+    @Test
+    public void testValidate() {
+        Swagger swagger = createSwagger();
+        Intent valid = createRequest("1000", "ff00ff");
+        Intent invalid = createRequest("-1", "red");
+
+        OpenAPIValidationPlan plan = OpenAPIValidationPlan.compile(swagger, valid);
+        assertThat(plan.validate(valid), is(true));
+        assertThat(OpenAPIValidator.validate(swagger, valid), is(true));
+        assertThat(plan.validate(invalid), is(false));
+        assertThat(OpenAPIValidator.validate(swagger, invalid), is(false));
+
+        List<String> names = plan.findInvalidParameters(invalid);
+        assertThat(names.size(), is(2));
+        assertThat(names.contains("interval"), is(true));
+        assertThat(names.contains("color"), is(true));
+        assertThat(plan.findInvalidParameters(valid).size(), is(0));
+    }
+}
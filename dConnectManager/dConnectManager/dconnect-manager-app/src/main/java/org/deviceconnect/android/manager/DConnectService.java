@@ -39,7 +39,6 @@ import org.deviceconnect.android.localoauth.DevicePluginXmlUtil;
 import org.deviceconnect.android.manager.core.DConnectManager;
 import org.deviceconnect.android.manager.core.DConnectSettings;
 import org.deviceconnect.android.manager.core.WebSocketInfoManager;
-import org.deviceconnect.android.manager.core.event.KeepAlive;
 import org.deviceconnect.android.manager.core.plugin.ConnectionType;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.core.plugin.DevicePluginManager;
@@ -348,10 +347,7 @@ public class DConnectService extends Service {
         if (status.equals("RESPONSE")) {
             String serviceId = intent.getStringExtra("serviceId");
             if (serviceId != null) {
-                KeepAlive keepAlive = mManager.getKeepAliveManager().getKeepAlive(serviceId);
-                if (keepAlive != null) {
-                    keepAlive.setResponseFlag();
-                }
+                mManager.getKeepAliveManager().onKeepAliveResponse(serviceId);
             }
         } else if (status.equals("DISCONNECT")) {
             String receiverId = intent.getStringExtra(EXTRA_EVENT_RECEIVER_ID);
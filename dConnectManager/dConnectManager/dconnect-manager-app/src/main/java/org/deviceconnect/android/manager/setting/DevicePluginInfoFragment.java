@@ -32,6 +32,7 @@ import org.deviceconnect.android.localoauth.DevicePluginXmlProfileLocale;
 import org.deviceconnect.android.manager.BuildConfig;
 import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.R;
+import org.deviceconnect.android.manager.core.plugin.CircuitBreaker;
 import org.deviceconnect.android.manager.core.plugin.CommunicationHistory;
 import org.deviceconnect.android.manager.core.plugin.ConnectionError;
 import org.deviceconnect.android.manager.core.plugin.ConnectionState;
@@ -165,6 +166,24 @@ public class DevicePluginInfoFragment extends BaseSettingFragment {
         }
         connectionTypeView.setText(getString(resId));
 
+        CircuitBreaker circuitBreaker = plugin.getCircuitBreaker();
+        TextView circuitBreakerView = view.findViewById(R.id.plugin_circuit_breaker_state);
+        switch (circuitBreaker.getState()) {
+            case OPEN:
+                resId = R.string.activity_deviceplugin_info_circuit_breaker_open;
+                break;
+            case HALF_OPEN:
+                resId = R.string.activity_deviceplugin_info_circuit_breaker_half_open;
+                break;
+            default:
+                resId = R.string.activity_deviceplugin_info_circuit_breaker_closed;
+                break;
+        }
+        circuitBreakerView.setText(getString(resId));
+        TextView rejectedView = view.findViewById(R.id.plugin_circuit_breaker_rejected);
+        rejectedView.setText(getString(R.string.activity_deviceplugin_info_circuit_breaker_rejected,
+                circuitBreaker.getRejectedCount()));
+
         LinearLayout mainLayout = view.findViewById(R.id.plugin_support_profiles);
 
         Map<String, DevicePluginXmlProfile> profiles = mPluginInfo.getSupportedProfiles();
@@ -61,11 +61,29 @@ public interface DConnectConst {
      */
     String INNER_APP_TYPE_WEB = "web";
 
+    /**
+     * 内部用: JSON に変換せずに HTTP レスポンスのボディとして返却する文字列を定義する.
+     * <p>
+     * Manager 自身のプロファイルだけが使用できる。プラグインからのレスポンスに含まれている場合は削除する。
+     * </p>
+     */
+    String EXTRA_INNER_RAW_BODY = "_raw_body";
+
+    /**
+     * 内部用: {@link #EXTRA_INNER_RAW_BODY} を返却する時の Content-Type を定義する.
+     */
+    String EXTRA_INNER_RAW_CONTENT_TYPE = "_raw_content_type";
+
     /**
      * JSONレスポンス用のContent-Type.
      */
     String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
+    /**
+     * テキストレスポンス用のContent-Type.
+     */
+    String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
     /**
      * キーストアファイル名.
      */
@@ -19,6 +19,7 @@ import org.deviceconnect.android.manager.core.event.EventBroker;
 import org.deviceconnect.android.manager.core.event.EventSessionTable;
 import org.deviceconnect.android.manager.core.event.KeepAliveManager;
 import org.deviceconnect.android.manager.core.hmac.HmacManager;
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
 import org.deviceconnect.android.manager.core.plugin.ConnectionState;
 import org.deviceconnect.android.manager.core.plugin.DefaultConnectionFactory;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
@@ -31,6 +32,7 @@ import org.deviceconnect.android.manager.core.profile.DConnectDeliveryProfile;
 import org.deviceconnect.android.manager.core.profile.DConnectServiceDiscoveryProfile;
 import org.deviceconnect.android.manager.core.profile.DConnectSystemProfile;
 import org.deviceconnect.android.manager.core.request.DConnectRequestManager;
+import org.deviceconnect.android.manager.core.request.ServiceDiscoveryCache;
 import org.deviceconnect.android.manager.core.util.DConnectUtil;
 import org.deviceconnect.android.manager.core.util.VersionName;
 import org.deviceconnect.android.message.DevicePluginContext;
@@ -127,6 +129,16 @@ public class DConnectCore extends DevicePluginContext {
      */
     private MessageConverterHelper mConverterHelper;
 
+    /**
+     * Service Discovery の結果のキャッシュ.
+     */
+    private ServiceDiscoveryCache mServiceDiscoveryCache;
+
+    /**
+     * 性能情報を集計するクラス.
+     */
+    private DConnectMetrics mMetrics;
+
     /**
      * プラグインからの返答を受け取るコールバック.
      * <p>
@@ -173,9 +185,16 @@ public class DConnectCore extends DevicePluginContext {
         // リクエスト管理クラス
         mRequestManager = new DConnectRequestManager(context);
 
+        // 性能情報の集計
+        mMetrics = new DConnectMetrics();
+        mRequestManager.setMetrics(mMetrics);
+
         // ファイル管理クラス
         mFileMgr = new FileManager(context);
 
+        // Service Discovery の結果のキャッシュ
+        mServiceDiscoveryCache = new ServiceDiscoveryCache(mSettings.getServiceDiscoveryCacheTime());
+
         // プラグイン管理クラスの初期化
         mPluginManager = pluginManager;
         mPluginManager.addEventListener(new DevicePluginManager.DevicePluginEventListener() {
@@ -186,6 +205,7 @@ public class DConnectCore extends DevicePluginContext {
 
             @Override
             public void onDeviceLost(final DevicePlugin plugin) {
+                mServiceDiscoveryCache.remove(plugin.getPluginId());
                 mEventBroker.removeSessionForPlugin(plugin.getPluginId());
                 mLocalOAuth.deleteOAuthDatas(plugin.getPluginId());
                 getServiceProvider().removeService(plugin);
@@ -197,11 +217,12 @@ public class DConnectCore extends DevicePluginContext {
         });
         mPluginManager.setConnectionFactory(new DefaultConnectionFactory(context, mCallback));
 
-        mKeepAliveManager = new KeepAliveManager(getContext(), mEventSessionTable);
+        mKeepAliveManager = new KeepAliveManager(getContext(), mEventSessionTable, mRequestManager);
         mKeepAliveManager.setKeepAliveFunction(mSettings.isEnableKeepAlive());
 
         // イベントブローカの初期化
         mEventBroker = new EventBroker(mSettings, mEventSessionTable, mLocalOAuth, mPluginManager, factory);
+        mEventBroker.setServiceDiscoveryCache(mServiceDiscoveryCache);
         mEventBroker.setRegistrationListener(new EventBroker.RegistrationListener() {
             @Override
             public void onPutEventSession(final Intent request, final DevicePlugin plugin) {
@@ -221,7 +242,8 @@ public class DConnectCore extends DevicePluginContext {
         // プロファイルの追加
         addProfile(new AuthorizationProfile(mSettings, mRequestManager, getLocalOAuth2Main()));
         addProfile(new DConnectAvailabilityProfile(mSettings));
-        addProfile(new DConnectServiceDiscoveryProfile(null, mPluginManager, mRequestManager));
+        addProfile(new DConnectServiceDiscoveryProfile(null, mSettings, mPluginManager, mRequestManager,
+                mServiceDiscoveryCache));
 
         // 各プラグインに配送するプロファイル
         mDeliveryProfile = new DConnectDeliveryProfile(mPluginManager, mRequestManager,
@@ -293,6 +315,24 @@ public class DConnectCore extends DevicePluginContext {
         return mEventBroker;
     }
 
+    /**
+     * Service Discovery の結果のキャッシュを取得します.
+     *
+     * @return Service Discovery の結果のキャッシュ
+     */
+    public ServiceDiscoveryCache getServiceDiscoveryCache() {
+        return mServiceDiscoveryCache;
+    }
+
+    /**
+     * 性能情報を集計するクラスを取得します.
+     *
+     * @return 性能情報を集計するクラス
+     */
+    public DConnectMetrics getMetrics() {
+        return mMetrics;
+    }
+
     /**
      * ファイル管理クラスを取得します.
      *
@@ -389,7 +429,11 @@ public class DConnectCore extends DevicePluginContext {
         mHmacManager = new HmacManager(getContext());
         mPluginManager.startMonitoring();
 
+        mRequestManager.setMaxInFlightPerPlugin(mSettings.getMaxInFlightPerPlugin());
+        mRequestManager.setCircuitBreakerEnabled(mSettings.isCircuitBreakerEnabled());
         mRequestManager.start();
+        mKeepAliveManager.start();
+        mEventBroker.start();
 
         sendLaunchedEvent();
     }
@@ -402,7 +446,9 @@ public class DConnectCore extends DevicePluginContext {
 
         mPluginManager.stopMonitoring();
         mPluginManager.disconnectAllPlugins();
+        mKeepAliveManager.stop();
         mRequestManager.stop();
+        mEventBroker.stop();
 
         mHmacManager = null;
         mOriginValidator = null;
@@ -542,6 +588,10 @@ public class DConnectCore extends DevicePluginContext {
      * @param response レスポンス用Intent
      */
     private void onReceivedResponse(final Intent response) {
+        // JSON 以外の形式での返却は Manager 自身のプロファイルだけに許可するので、プラグインからの指定は削除する
+        response.removeExtra(DConnectConst.EXTRA_INNER_RAW_BODY);
+        response.removeExtra(DConnectConst.EXTRA_INNER_RAW_CONTENT_TYPE);
+
         // レスポンスをリクエスト管理クラスに渡す
         if (mRequestManager != null) {
             mRequestManager.setResponse(response);
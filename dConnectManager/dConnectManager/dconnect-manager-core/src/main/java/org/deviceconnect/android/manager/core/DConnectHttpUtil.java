@@ -6,12 +6,15 @@
  */
 package org.deviceconnect.android.manager.core;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import androidx.annotation.NonNull;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
 
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
 import org.deviceconnect.android.manager.core.util.DConnectUtil;
 import org.deviceconnect.android.provider.FileManager;
 import org.deviceconnect.android.service.DConnectService;
@@ -21,11 +24,13 @@ import org.deviceconnect.profile.FileProfileConstants;
 import org.deviceconnect.server.http.HttpRequest;
 import org.deviceconnect.server.http.HttpResponse;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -56,6 +61,11 @@ final class DConnectHttpUtil {
      */
     private static final int SEGMENT_INTERFACES = 4;
 
+    /**
+     * 1つのリクエストで指定できる Range の最大数 {@value}.
+     */
+    private static final int MAX_RANGES = 16;
+
     /**
      * コンストラクタ.
      * <p>
@@ -72,11 +82,13 @@ final class DConnectHttpUtil {
      * </p>
      * @param context コンテキスト
      * @param fileMgr ファイル管理クラス
+     * @param metrics ファイル転送を記録する性能情報
      * @param request HTTPリクエスト
      * @param response HTTPレスポンス
      * @return リクエスト情報を格納したIntent、
      */
-    static Intent convertHttp2Intent(final Context context, final FileManager fileMgr, final HttpRequest request, final HttpResponse response) {
+    static Intent convertHttp2Intent(final Context context, final FileManager fileMgr, final DConnectMetrics metrics,
+                                     final HttpRequest request, final HttpResponse response) {
         final int requestCode = UUID.randomUUID().hashCode();
 
         String[] paths = parsePath(request);
@@ -173,7 +185,7 @@ final class DConnectHttpUtil {
         // files の時は、Device Connect Managerまでは渡さずに、ここで処理を行う
         if ("files".equalsIgnoreCase(profile)) {
             if (request.getMethod().equals(HttpRequest.Method.GET)) {
-                serveFile(context, request, response);
+                serveFile(context, metrics, request, response);
             } else {
                 response.setCode(HttpResponse.StatusCode.BAD_REQUEST);
                 setErrorResponse(response, 1, "Not implements a method.");
@@ -223,150 +235,297 @@ final class DConnectHttpUtil {
 
     /**
      * ファイルを読み込み.
+     * <p>
+     * content:// のURIをファイルディスクリプタとして開き、位置指定で読み込むので、
+     * Rangeで指定された範囲の前を読み飛ばすことはありません。
+     * 複数の範囲が指定された場合には、multipart/byteranges で返却します。
+     * </p>
      *
      * @param context コンテキスト
+     * @param metrics ファイル転送を記録する性能情報
      * @param request リクエスト
      * @param response レスポンス
      */
-    private static void serveFile(final Context context, final HttpRequest request, final HttpResponse response) {
+    private static void serveFile(final Context context, final DConnectMetrics metrics,
+                                  final HttpRequest request, final HttpResponse response) {
         String uri = request.getQueryParameters().get("uri");
-        String range = request.getHeaders().get("range");
-
-        long startFrom = 0;
-        long endAt = -1;
-        if (range != null) {
-            if (range.startsWith("bytes=")) {
-                range = range.substring("bytes=".length());
-                int minus = range.indexOf('-');
-                try {
-                    if (minus > 0) {
-                        startFrom = Long.parseLong(range.substring(0, minus));
-                        endAt = Long.parseLong(range.substring(minus + 1));
-                    }
-                } catch (NumberFormatException ignored) {
-                    // ignored.
-                }
-            }
+        if (uri == null) {
+            response.setCode(HttpResponse.StatusCode.NOT_FOUND);
+            setErrorResponse(response, 1, "Not found a resource.");
+            return;
         }
 
+        ParcelFileDescriptor pfd;
         try {
-            ContentResolver r = context.getContentResolver();
-            InputStream in = r.openInputStream(Uri.parse(uri));
-            if (in == null) {
-                response.setCode(HttpResponse.StatusCode.NOT_FOUND);
-                setErrorResponse(response, 1, "Not found a resource.");
-                return;
-            }
+            pfd = context.getContentResolver().openFileDescriptor(Uri.parse(uri), "r");
+        } catch (Exception e) {
+            pfd = null;
+        }
+        if (pfd == null) {
+            response.setCode(HttpResponse.StatusCode.NOT_FOUND);
+            setErrorResponse(response, 1, "Not found a resource.");
+            return;
+        }
 
-            int fileLen = in.available();
+        long fileLen = pfd.getStatSize();
+        if (fileLen < 0) {
+            // パイプなどのサイズが取得できないファイルは、範囲指定に対応しない
+            serveStream(pfd, response);
+            return;
+        }
 
-            String etag = Integer.toHexString((uri + fileLen).hashCode());
+        FileRangeInputStream in = new FileRangeInputStream(pfd, metrics);
+        boolean hasBody = false;
+        try {
+            String etag = createETag(uri, pfd, fileLen);
+            String range = request.getHeaders().get("range");
+            List<long[]> ranges = parseRanges(range, fileLen);
 
             String ifRange = request.getHeaders().get("if-range");
             boolean headerIfRangeMissingOrMatching = (ifRange == null || etag.equals(ifRange));
 
             String ifNoneMatch = request.getHeaders().get("if-none-match");
-            boolean headerIfNoneMatchPresentAndMatching = ifNoneMatch != null && ("*".equals(ifNoneMatch) || ifNoneMatch.equals(etag));
+            boolean headerIfNoneMatchPresentAndMatching = matchesETag(ifNoneMatch, etag);
 
-            if (headerIfRangeMissingOrMatching && range != null && startFrom >= 0 && startFrom < fileLen) {
+            if (headerIfRangeMissingOrMatching && ranges != null && !ranges.isEmpty()) {
                 if (headerIfNoneMatchPresentAndMatching) {
                     response.setCode(HttpResponse.StatusCode.NOT_MODIFIED);
                     response.addHeader("ETag", etag);
                 } else {
-                    if (endAt < 0) {
-                        endAt = fileLen - 1;
-                    }
-
-                    int newLen = (int) (endAt - startFrom + 1);
-                    if (newLen < 0) {
-                        newLen = 0;
-                    }
-
-                    in = new TempInputStream(in, newLen);
-                    if (startFrom > 0) {
-                        in.skip(startFrom);
+                    if (ranges.size() == 1) {
+                        long[] r = ranges.get(0);
+                        in.addRange(r[0], r[1] - r[0] + 1);
+                        response.addHeader("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + fileLen);
+                    } else {
+                        String boundary = UUID.randomUUID().toString();
+                        String contentType = context.getContentResolver().getType(Uri.parse(uri));
+                        for (long[] r : ranges) {
+                            StringBuilder part = new StringBuilder();
+                            part.append("\r\n--").append(boundary).append("\r\n");
+                            if (contentType != null) {
+                                part.append("Content-Type: ").append(contentType).append("\r\n");
+                            }
+                            part.append("Content-Range: bytes ").append(r[0]).append("-").append(r[1])
+                                    .append("/").append(fileLen).append("\r\n\r\n");
+                            in.addBytes(part.toString().getBytes(StandardCharsets.US_ASCII));
+                            in.addRange(r[0], r[1] - r[0] + 1);
+                        }
+                        in.addBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+                        response.setContentType("multipart/byteranges; boundary=" + boundary);
                     }
-
+                    setFileBody(response, in);
+                    hasBody = true;
                     response.addHeader("Accept-Ranges", "bytes");
-                    response.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + fileLen);
-                    response.addHeader("Content-Length", String.valueOf(newLen));
                     response.addHeader("ETag", etag);
-                    response.setBody(in);
-                    response.setContentLength(newLen);
                     response.setCode(HttpResponse.StatusCode.PARTIAL_CONTENT);
                 }
+            } else if (headerIfRangeMissingOrMatching && ranges != null) {
+                // return the size of the file
+                // 4xx responses are not trumped by if-none-match
+                response.setCode(HttpResponse.StatusCode.REQUEST_RANGE_NOT_SATISFIABLE);
+                response.addHeader("Content-Range", "bytes */" + fileLen);
+                response.addHeader("ETag", etag);
+            } else if (headerIfNoneMatchPresentAndMatching) {
+                // full-file-fetch request, or range request that doesn't match current etag
+                // would return entire file
+                // respond with not-modified
+                response.setCode(HttpResponse.StatusCode.NOT_MODIFIED);
+                response.addHeader("ETag", etag);
             } else {
-                if (headerIfRangeMissingOrMatching && range != null && startFrom >= fileLen) {
-                    // return the size of the file
-                    // 4xx responses are not trumped by if-none-match
-                    response.setCode(HttpResponse.StatusCode.REQUEST_RANGE_NOT_SATISFIABLE);
-                    response.addHeader("Content-Range", "bytes */" + fileLen);
-                    response.addHeader("ETag", etag);
-                } else if (range == null && headerIfNoneMatchPresentAndMatching) {
-                    // full-file-fetch request
-                    // would return entire file
-                    // respond with not-modified
-                    response.setCode(HttpResponse.StatusCode.NOT_MODIFIED);
-                    response.addHeader("ETag", etag);
-                } else if (!headerIfRangeMissingOrMatching && headerIfNoneMatchPresentAndMatching) {
-                    // range request that doesn't match current etag
-                    // would return entire (different) file
-                    // respond with not-modified
-                    response.setCode(HttpResponse.StatusCode.NOT_MODIFIED);
-                    response.addHeader("ETag", etag);
-                } else {
-                    // supply the file
-                    response.setBody(in);
-                    response.setCode(HttpResponse.StatusCode.OK);
-                    response.addHeader("Content-Length", String.valueOf(fileLen));
-                    response.addHeader("ETag", etag);
-                    response.addHeader("Accept-Ranges", "bytes");
-                }
+                // supply the file
+                in.addRange(0, fileLen);
+                setFileBody(response, in);
+                hasBody = true;
+                response.setCode(HttpResponse.StatusCode.OK);
+                response.addHeader("ETag", etag);
+                response.addHeader("Accept-Ranges", "bytes");
             }
-        } catch (Exception e) {
+        } finally {
+            if (!hasBody) {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * サイズが取得できないファイルを先頭から全て返却します.
+     *
+     * @param pfd ファイルディスクリプタ
+     * @param response レスポンス
+     */
+    private static void serveStream(final ParcelFileDescriptor pfd, final HttpResponse response) {
+        InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        try {
+            int fileLen = in.available();
+            response.setBody(in);
+            response.setCode(HttpResponse.StatusCode.OK);
+            response.addHeader("Content-Length", String.valueOf(fileLen));
+        } catch (IOException e) {
+            closeQuietly(in);
             response.setCode(HttpResponse.StatusCode.NOT_FOUND);
             setErrorResponse(response, 1, "Not found a resource.");
         }
     }
 
-    private static class TempInputStream extends InputStream {
-
-        private InputStream mInputStream;
-        private int mFileSize;
+    /**
+     * ファイルのストリームをレスポンスのボディに設定します.
+     * <p>
+     * 2GBを超えるファイルにも対応するため、Content-Length はヘッダーで指定します。
+     * </p>
+     *
+     * @param response レスポンス
+     * @param in ファイルのストリーム
+     */
+    private static void setFileBody(final HttpResponse response, final FileRangeInputStream in) {
+        long length = in.getLength();
+        response.setBody(in);
+        response.setContentLength((int) Math.min(length, Integer.MAX_VALUE));
+        response.addHeader("Content-Length", String.valueOf(length));
+    }
 
-        TempInputStream(InputStream in, int fileSize) {
-            mInputStream = in;
-            mFileSize = fileSize;
+    /**
+     * ファイルの更新日時とサイズから ETag を作成します.
+     * <p>
+     * 更新日時が取得できない場合には、URIとサイズから作成します。
+     * </p>
+     *
+     * @param uri ファイルのURI
+     * @param pfd ファイルディスクリプタ
+     * @param fileLen ファイルサイズ
+     * @return ETag
+     */
+    private static String createETag(final String uri, final ParcelFileDescriptor pfd, final long fileLen) {
+        String tag;
+        try {
+            StructStat stat = Os.fstat(pfd.getFileDescriptor());
+            tag = Long.toHexString(stat.st_mtime);
+        } catch (ErrnoException e) {
+            tag = Integer.toHexString(uri.hashCode());
         }
+        return "\"" + tag + "-" + Long.toHexString(fileLen) + "\"";
+    }
 
-        @Override
-        public int read(@NonNull byte[] b) throws IOException {
-            return mInputStream.read(b);
+    /**
+     * If-None-Match ヘッダーに ETag が含まれているか確認します.
+     *
+     * @param ifNoneMatch If-None-Match ヘッダーの値
+     * @param etag ETag
+     * @return 含まれている場合はtrue、それ以外はfalse
+     */
+    private static boolean matchesETag(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        @Override
-        public int read(@NonNull byte[] b, int off, int len) throws IOException {
-            return mInputStream.read(b, off, len);
+    /**
+     * Range ヘッダーを解析します.
+     * <p>
+     * 返却する範囲は、開始位置と終了位置(終了位置を含む)の配列のリストです。
+     * 重なっている範囲と隣接している範囲は、1つの範囲にまとめます。
+     * </p>
+     *
+     * @param range Range ヘッダーの値
+     * @param fileLen ファイルサイズ
+     * @return 範囲のリスト、満たせる範囲がない場合は空のリスト、Range ヘッダーが無い・無効な場合はnull
+     */
+    private static List<long[]> parseRanges(final String range, final long fileLen) {
+        if (range == null || !range.startsWith("bytes=")) {
+            return null;
         }
 
-        @Override
-        public long skip(long n) throws IOException {
-            return mInputStream.skip(n);
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : range.substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int minus = spec.indexOf('-');
+            if (minus < 0) {
+                return null;
+            }
+            long startFrom;
+            long endAt;
+            try {
+                if (minus == 0) {
+                    // 末尾からのサイズ指定
+                    long suffix = Long.parseLong(spec.substring(1));
+                    startFrom = Math.max(0, fileLen - suffix);
+                    endAt = fileLen - 1;
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                } else {
+                    startFrom = Long.parseLong(spec.substring(0, minus));
+                    String end = spec.substring(minus + 1);
+                    endAt = end.isEmpty() ? fileLen - 1 : Long.parseLong(end);
+                    if (startFrom < 0 || endAt < startFrom) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (startFrom >= fileLen) {
+                continue;
+            }
+            ranges.add(new long[] {startFrom, Math.min(endAt, fileLen - 1)});
+            if (ranges.size() > MAX_RANGES) {
+                // 範囲が多すぎる場合には Range ヘッダーを無視する
+                return null;
+            }
         }
+        return mergeRanges(ranges);
+    }
 
-        @Override
-        public int available() throws IOException {
-            return mFileSize;
+    /**
+     * 重なっている範囲と隣接している範囲をまとめます.
+     * <p>
+     * 同じデータを何度も返却しないように、開始位置の順に並べ替えてからまとめます。
+     * </p>
+     *
+     * @param ranges 開始位置と終了位置(終了位置を含む)の配列のリスト
+     * @return まとめた範囲のリスト
+     */
+    private static List<long[]> mergeRanges(final List<long[]> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
         }
 
-        @Override
-        public void close() throws IOException {
-            mInputStream.close();
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] r = ranges.get(i);
+            if (r[0] <= current[1] + 1) {
+                current[1] = Math.max(current[1], r[1]);
+            } else {
+                merged.add(current);
+                current = r;
+            }
         }
+        merged.add(current);
+        return merged;
+    }
 
-        @Override
-        public int read() throws IOException {
-            return mInputStream.read();
+    /**
+     * ストリームを閉じます.
+     *
+     * @param in ストリーム
+     */
+    private static void closeQuietly(final InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // ignore.
         }
     }
 
@@ -575,9 +734,16 @@ final class DConnectHttpUtil {
      */
     public static void convertResponse(final DConnectSettings settings, final HttpResponse response, final Intent resp)
             throws JSONException, UnsupportedEncodingException {
-        JSONObject root = new JSONObject();
-        DConnectUtil.convertBundleToJSON(settings, root, resp.getExtras());
+        // JSON 以外の形式で返却するレスポンスの場合
+        String rawBody = resp.getStringExtra(DConnectConst.EXTRA_INNER_RAW_BODY);
+        if (rawBody != null) {
+            String contentType = resp.getStringExtra(DConnectConst.EXTRA_INNER_RAW_CONTENT_TYPE);
+            response.setContentType(contentType != null ? contentType : DConnectConst.CONTENT_TYPE_TEXT);
+            response.setBody(rawBody.getBytes("UTF-8"));
+            return;
+        }
+
         response.setContentType(DConnectConst.CONTENT_TYPE_JSON);
-        response.setBody(root.toString().getBytes("UTF-8"));
+        response.setBody(DConnectUtil.convertBundleToJSONBytes(settings, resp.getExtras()));
     }
 }
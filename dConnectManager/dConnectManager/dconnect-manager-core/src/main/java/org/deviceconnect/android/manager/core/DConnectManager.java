@@ -19,8 +19,10 @@ import org.deviceconnect.android.logger.AndroidHandler;
 import org.deviceconnect.android.manager.core.event.AbstractEventSessionFactory;
 import org.deviceconnect.android.manager.core.event.EventSession;
 import org.deviceconnect.android.manager.core.event.KeepAliveManager;
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
 import org.deviceconnect.android.manager.core.plugin.DevicePluginManager;
 import org.deviceconnect.android.manager.core.util.DConnectUtil;
+import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.ssl.EndPointKeyStoreManager;
 import org.deviceconnect.android.ssl.KeyStoreCallback;
@@ -49,9 +51,14 @@ import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -107,6 +114,11 @@ public abstract class DConnectManager implements DConnectInterface {
      */
     private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
 
+    /**
+     * レスポンスのタイムアウトを管理するExecutor.
+     */
+    private final ScheduledExecutorService mTimeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+
     /**
      * Device Connect Managerの処理を行うクラス.
      */
@@ -319,8 +331,12 @@ public abstract class DConnectManager implements DConnectInterface {
 
             mCore.stop();
 
-            synchronized (mRequestMap) {
-                mRequestMap.clear();
+            // 応答待ちのリクエストはタイムアウト扱いにする
+            for (Integer requestCode : mRequestMap.keySet()) {
+                ResponseHolder holder = mRequestMap.remove(requestCode);
+                if (holder != null) {
+                    holder.setResponse(null);
+                }
             }
         });
     }
@@ -412,6 +428,7 @@ public abstract class DConnectManager implements DConnectInterface {
         public void sendEvent(final Intent event) {
             event.setComponent(mBroadcastReceiver);
             getContext().sendBroadcast(event);
+            mCore.getMetrics().recordEvent(DConnectMetrics.TRANSPORT_BROADCAST, true);
         }
     }
 
@@ -440,18 +457,24 @@ public abstract class DConnectManager implements DConnectInterface {
                         mLogger.info(String.format("sendEvent: %s extra: %s", key, event.getExtras()));
                     }
 
-                    mExecutor.execute(() -> {
-                        try {
-                            JSONObject root = new JSONObject();
-                            DConnectUtil.convertBundleToJSON(getSettings(), root, event.getExtras());
-                            webSocket.sendMessage(root.toString());
-                        } catch (Exception e) {
-                            mLogger.warning("JSONException in sendMessage: " + e.toString());
-                        }
-                    });
+                    // EventDispatcher の送信スレッドから呼び出されるので、ここで送信まで行う
+                    try {
+                        JSONObject root = new JSONObject();
+                        DConnectUtil.convertBundleToJSON(getSettings(), root, event.getExtras());
+                        webSocket.sendMessage(root.toString());
+                        mCore.getMetrics().recordEvent(DConnectMetrics.TRANSPORT_WEBSOCKET, true);
+                    } catch (Exception e) {
+                        mCore.getMetrics().recordEvent(DConnectMetrics.TRANSPORT_WEBSOCKET, false);
+                        mLogger.warning("JSONException in sendMessage: " + e.toString());
+                    }
                 }
             }
         }
+
+        @Override
+        public void disconnect() {
+            disconnectWebSocketWithReceiverId(getReceiverId());
+        }
     }
 
     /**
@@ -460,45 +483,49 @@ public abstract class DConnectManager implements DConnectInterface {
     private final ConcurrentHashMap<Integer, ResponseHolder> mRequestMap = new ConcurrentHashMap<>();
 
     /**
-     * リクエストとレスポンスを一時的に格納するクラス
+     * リクエストとレスポンスを一時的に格納するクラス.
+     * <p>
+     * レスポンスはスレッドを待機させずに {@link CompletableFuture} で通知します。
+     * </p>
      */
     private class ResponseHolder {
         /**
          * リクエスト.
          */
-        private Intent mRequest;
+        private final Intent mRequest;
 
         /**
-         * レスポンス.
+         * レスポンスを通知する Future.
+         * <p>
+         * タイムアウトした場合には null が通知されます。
+         * </p>
          */
-        private Intent mResponse;
+        private final CompletableFuture<Intent> mFuture = new CompletableFuture<>();
 
         /**
-         * レスポンスを設定し、{@link #waitResponse()} で停止しているスレッドを解除します.
-         *
-         * @param response レスポンス
+         * タイムアウト処理.
          */
-        synchronized void setResponse(final Intent response) {
-            mResponse = response;
-            notify();
-        }
+        private ScheduledFuture<?> mTimeoutFuture;
 
         /**
-         * レスポンスが存在するか確認します.
+         * コンストラクタ.
          *
-         * @return レスポンスが存在する場合はtrue、それ以外はfalse
+         * @param request リクエスト
          */
-        synchronized boolean hasResponse() {
-            return mResponse != null;
+        ResponseHolder(final Intent request) {
+            mRequest = request;
         }
 
         /**
-         * レスポンスが設定されるのを待ちます.
+         * レスポンスを設定し、Future を完了させます.
          *
-         * @throws InterruptedException タイムアウトした場合に発生
+         * @param response レスポンス、タイムアウトの場合はnull
          */
-        synchronized void waitResponse() throws InterruptedException {
-            wait(mSettings.getRequestTimeout());
+        void setResponse(final Intent response) {
+            if (mTimeoutFuture != null) {
+                mTimeoutFuture.cancel(false);
+            }
+            mFuture.complete(response);
         }
     }
 
@@ -513,41 +540,62 @@ public abstract class DConnectManager implements DConnectInterface {
             return;
         }
 
-        ResponseHolder holder = mRequestMap.get(requestCode);
+        ResponseHolder holder = mRequestMap.remove(requestCode);
         if (holder != null) {
             holder.setResponse(mCore.createResponseIntent(holder.mRequest, response));
         }
     }
 
     /**
-     * リクエストを DConnectCore に送信して実行します.
+     * リクエストを DConnectCore に送信して、レスポンスを非同期に受け取ります.
+     * <p>
+     * レスポンスを待つ間にスレッドを占有しません。
+     * タイムアウトした場合には、Future に null が通知されます。
+     * </p>
      *
      * @param request リクエスト
-     * @return レスポンス
+     * @return レスポンスを通知する Future
      */
-    private Intent executeRequest(final Intent request) {
+    private CompletableFuture<Intent> executeRequestAsync(final Intent request) {
         final int requestCode = UUID.randomUUID().hashCode();
 
-        ResponseHolder holder = new ResponseHolder();
-        holder.mRequest = request;
-        holder.mRequest.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
-        try {
-            mRequestMap.put(requestCode, holder);
+        final ResponseHolder holder = new ResponseHolder(request);
+        request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
+        mRequestMap.put(requestCode, holder);
+        holder.mTimeoutFuture = mTimeoutExecutor.schedule(() -> {
+            if (mRequestMap.remove(requestCode, holder)) {
+                holder.setResponse(null);
+            }
+        }, mSettings.getRequestTimeout(), TimeUnit.MILLISECONDS);
 
+        try {
             mCore.handleMessage(request);
+        } catch (RuntimeException e) {
+            mRequestMap.remove(requestCode, holder);
+            holder.mTimeoutFuture.cancel(false);
+            holder.mFuture.completeExceptionally(e);
+        }
+        return holder.mFuture;
+    }
 
-            // 既にレスポンスが設定されている場合には wait せずに結果を返す
-            if (!holder.hasResponse()) {
-                try {
-                    holder.waitResponse();
-                } catch (InterruptedException e) {
-                    // ignore.
-                }
-            }
-        } finally {
-            mRequestMap.remove(requestCode);
+    /**
+     * リクエストを DConnectCore に送信して実行します.
+     * <p>
+     * HTTP サーバのワーカースレッドから呼び出されるため、レスポンスを受け取るまで待機します。
+     * </p>
+     *
+     * @param request リクエスト
+     * @return レスポンス、タイムアウトした場合はnull
+     */
+    private Intent executeRequest(final Intent request) {
+        try {
+            return executeRequestAsync(request).get();
+        } catch (InterruptedException e) {
+            return null;
+        } catch (ExecutionException e) {
+            mLogger.warning("Failed to execute a request: " + e.getCause());
+            return null;
         }
-        return holder.mResponse;
     }
 
     /**
@@ -591,9 +639,12 @@ public abstract class DConnectManager implements DConnectInterface {
             mRESTServer.setServerEventListener(new DConnectServerEventListener() {
                 @Override
                 public boolean onReceivedHttpRequest(final HttpRequest request, final HttpResponse response) {
-                    Intent requestIntent = DConnectHttpUtil.convertHttp2Intent(mContext, mCore.getFileMgr(), request, response);
+                    long startTime = System.nanoTime();
+                    Intent requestIntent = DConnectHttpUtil.convertHttp2Intent(mContext, mCore.getFileMgr(), mCore.getMetrics(),
+                            request, response);
                     if (requestIntent != null) {
                         Intent responseIntent = executeRequest(requestIntent);
+                        long serializeTime = System.nanoTime();
                         try {
                             if (responseIntent == null) {
                                 DConnectHttpUtil.setTimeoutResponse(response);
@@ -605,6 +656,8 @@ public abstract class DConnectManager implements DConnectInterface {
                         } catch (UnsupportedEncodingException e) {
                             DConnectHttpUtil.setUnknownError(response);
                         }
+                        long endTime = System.nanoTime();
+                        mCore.getMetrics().recordResponse(requestIntent, endTime - serializeTime, endTime - startTime);
                     }
                     return true;
                 }
@@ -886,10 +939,20 @@ public abstract class DConnectManager implements DConnectInterface {
                 mExecutor.execute(() -> {
                     int requestCode = message.getIntExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, -1);
                     ComponentName cn = message.getParcelableExtra(IntentDConnectMessage.EXTRA_RECEIVER);
-                    Intent responseIntent = executeRequest(message);
-                    responseIntent.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
-                    responseIntent.setComponent(cn);
-                    mContext.sendBroadcast(responseIntent);
+                    executeRequestAsync(message).whenComplete((response, e) -> {
+                        Intent responseIntent = response;
+                        if (responseIntent == null) {
+                            responseIntent = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+                            if (e != null) {
+                                MessageUtils.setUnknownError(responseIntent, e.getMessage());
+                            } else {
+                                MessageUtils.setTimeoutError(responseIntent);
+                            }
+                        }
+                        responseIntent.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
+                        responseIntent.setComponent(cn);
+                        mContext.sendBroadcast(responseIntent);
+                    });
                 });
             } else {
                 mCore.onReceivedMessage(message);
@@ -11,6 +11,7 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Environment;
 
+import org.deviceconnect.android.manager.core.event.EventDispatcher;
 import org.deviceconnect.android.manager.core.util.DConnectUtil;
 
 import java.io.File;
@@ -41,6 +42,21 @@ public final class DConnectSettings {
      */
     private static final int DEFAULT_INTERVAL = 1000 * 60 * 5;
 
+    /**
+     * イベントセッションごとの配送待ちイベント数の上限のデフォルト値を定義.
+     */
+    private static final int DEFAULT_EVENT_QUEUE_SIZE = 64;
+
+    /**
+     * Service Discovery の結果のキャッシュ保持時間のデフォルト値を定義. (30秒)
+     */
+    private static final int DEFAULT_SERVICE_DISCOVERY_CACHE_TIME = 30 * 1000;
+
+    /**
+     * プラグインごとのリクエストの同時実行数の上限のデフォルト値を定義.
+     */
+    private static final int DEFAULT_MAX_IN_FLIGHT_PER_PLUGIN = 8;
+
     /**
      * デフォルトのキーワード.
      */
@@ -639,6 +655,141 @@ public final class DConnectSettings {
         return mPreferences.getBoolean(mContext.getString(R.string.key_settings_accesslog), false);
     }
 
+    /**
+     * イベントセッションごとの配送待ちイベント数の上限を取得します.
+     *
+     * @return 配送待ちイベント数の上限
+     */
+    public int getEventQueueSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_event_queue_size),
+                String.valueOf(DEFAULT_EVENT_QUEUE_SIZE)));
+    }
+
+    /**
+     * イベントセッションごとの配送待ちイベント数の上限を設定します.
+     *
+     * @param size 配送待ちイベント数の上限
+     */
+    public void setEventQueueSize(final int size) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_queue_size), String.valueOf(size));
+        editor.apply();
+    }
+
+    /**
+     * 配送待ちイベント数が上限を超えた場合のポリシーを取得します.
+     *
+     * @return ポリシー
+     */
+    public EventDispatcher.OverflowPolicy getEventOverflowPolicy() {
+        return EventDispatcher.OverflowPolicy.fromValue(mPreferences.getString(
+                mContext.getString(R.string.key_settings_event_overflow_policy),
+                EventDispatcher.OverflowPolicy.DROP_OLDEST.getValue()));
+    }
+
+    /**
+     * 配送待ちイベント数が上限を超えた場合のポリシーを設定します.
+     *
+     * @param policy ポリシー
+     */
+    public void setEventOverflowPolicy(final EventDispatcher.OverflowPolicy policy) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_overflow_policy), policy.getValue());
+        editor.apply();
+    }
+
+    /**
+     * Service Discovery の結果のキャッシュ保持時間を取得します.
+     *
+     * @return キャッシュ保持時間(ミリ秒)、0の場合はキャッシュしない
+     */
+    public int getServiceDiscoveryCacheTime() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_service_discovery_cache_time),
+                String.valueOf(DEFAULT_SERVICE_DISCOVERY_CACHE_TIME)));
+    }
+
+    /**
+     * Service Discovery の結果のキャッシュ保持時間を設定します.
+     *
+     * @param time キャッシュ保持時間(ミリ秒)、0の場合はキャッシュしない
+     */
+    public void setServiceDiscoveryCacheTime(final int time) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_service_discovery_cache_time), String.valueOf(time));
+        editor.apply();
+    }
+
+    /**
+     * Service Discovery で後から見つかったサービスをイベントで通知するかを取得します.
+     * <p>
+     * trueの場合には、キャッシュのないプラグインのレスポンスを待たずに Service Discovery のレスポンスを返却し、
+     * 後から見つかったサービスを serviceDiscovery/onServiceChange イベントで通知します。
+     * </p>
+     *
+     * @return 通知する場合はtrue、それ以外はfalse
+     */
+    public boolean isStreamingServiceDiscovery() {
+        return mPreferences.getBoolean(mContext.getString(R.string.key_settings_service_discovery_streaming), false);
+    }
+
+    /**
+     * Service Discovery で後から見つかったサービスをイベントで通知するかを設定します.
+     *
+     * @param streaming 通知する場合はtrue、それ以外はfalse
+     */
+    public void setStreamingServiceDiscovery(final boolean streaming) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putBoolean(mContext.getString(R.string.key_settings_service_discovery_streaming), streaming);
+        editor.apply();
+    }
+
+    /**
+     * プラグインごとのリクエストの同時実行数の上限を取得します.
+     *
+     * @return 同時実行数の上限
+     */
+    public int getMaxInFlightPerPlugin() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_plugin_max_in_flight),
+                String.valueOf(DEFAULT_MAX_IN_FLIGHT_PER_PLUGIN)));
+    }
+
+    /**
+     * プラグインごとのリクエストの同時実行数の上限を設定します.
+     *
+     * @param maxInFlight 同時実行数の上限
+     */
+    public void setMaxInFlightPerPlugin(final int maxInFlight) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_plugin_max_in_flight), String.valueOf(maxInFlight));
+        editor.apply();
+    }
+
+    /**
+     * プラグインへのリクエストのサーキットブレーカーの有効・無効を取得します.
+     * <p>
+     * 有効な場合には、タイムアウトや送信エラーが続いたプラグインへのリクエストを一定時間遮断します。
+     * </p>
+     *
+     * @return 有効な場合はtrue、それ以外はfalse
+     */
+    public boolean isCircuitBreakerEnabled() {
+        return mPreferences.getBoolean(mContext.getString(R.string.key_settings_plugin_circuit_breaker), true);
+    }
+
+    /**
+     * プラグインへのリクエストのサーキットブレーカーの有効・無効を設定します.
+     *
+     * @param enabled 有効にする場合はtrue、それ以外はfalse
+     */
+    public void setCircuitBreakerEnabled(final boolean enabled) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putBoolean(mContext.getString(R.string.key_settings_plugin_circuit_breaker), enabled);
+        editor.apply();
+    }
+
     @Override
     public String toString() {
         return "{\n" +
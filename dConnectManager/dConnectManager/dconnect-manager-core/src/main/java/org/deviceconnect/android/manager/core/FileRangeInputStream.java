@@ -0,0 +1,260 @@
+/*
+ FileRangeInputStream.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core;
+
+import android.os.ParcelFileDescriptor;
+import androidx.annotation.NonNull;
+
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * ファイルの指定された範囲を読み込むストリーム.
+ * <p>
+ * ファイルの範囲と任意のバイト列を順番に連結して読み込みます。
+ * ファイルは {@link FileChannel} の位置指定の読み込みを使用するので、skip で先頭から読み飛ばすことはありません。
+ * multipart/byteranges のレスポンスのように、1つのファイルから複数の範囲を返却する場合にも使用できます。
+ * </p>
+ * <p>
+ * ストリームを閉じた時に、ファイルディスクリプタも閉じます。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class FileRangeInputStream extends InputStream {
+    /**
+     * ロガー.
+     */
+    private static final Logger LOGGER = Logger.getLogger("dconnect.manager");
+
+    /**
+     * ファイルのストリーム.
+     * <p>
+     * クローズした時にファイルディスクリプタも閉じられます。
+     * </p>
+     */
+    private final ParcelFileDescriptor.AutoCloseInputStream mFileStream;
+
+    /**
+     * ファイルのチャンネル.
+     */
+    private final FileChannel mChannel;
+
+    /**
+     * 読み込むセグメントのリスト.
+     */
+    private final List<Segment> mSegments = new ArrayList<>();
+
+    /**
+     * 読み込み中のセグメントの番号.
+     */
+    private int mIndex;
+
+    /**
+     * 読み込み中のセグメント内の位置.
+     */
+    private long mOffset;
+
+    /**
+     * 読み込んだサイズ.
+     */
+    private long mTransferred;
+
+    /**
+     * 読み込みを開始した時刻.
+     */
+    private long mStartTime;
+
+    /**
+     * true: クローズ済み / false: 未クローズ.
+     */
+    private boolean mClosed;
+
+    /**
+     * 転送したサイズと時間を記録する性能情報、記録しない場合はnull.
+     */
+    private final DConnectMetrics mMetrics;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param pfd 読み込むファイルのディスクリプタ
+     * @param metrics 転送したサイズと時間を記録する性能情報、記録しない場合はnull
+     */
+    FileRangeInputStream(final ParcelFileDescriptor pfd, final DConnectMetrics metrics) {
+        mFileStream = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        mChannel = mFileStream.getChannel();
+        mMetrics = metrics;
+    }
+
+    /**
+     * ファイルの範囲を追加します.
+     *
+     * @param start 開始位置
+     * @param length サイズ
+     */
+    void addRange(final long start, final long length) {
+        mSegments.add(new Segment(null, start, length));
+    }
+
+    /**
+     * バイト列を追加します.
+     *
+     * @param data バイト列
+     */
+    void addBytes(final byte[] data) {
+        mSegments.add(new Segment(data, 0, data.length));
+    }
+
+    /**
+     * 読み込むデータの総サイズを取得します.
+     *
+     * @return 総サイズ
+     */
+    long getLength() {
+        long length = 0;
+        for (Segment segment : mSegments) {
+            length += segment.mLength;
+        }
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int len = read(b, 0, 1);
+        return len < 0 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(@NonNull final byte[] b, final int off, final int len) throws IOException {
+        if (mClosed) {
+            throw new IOException("Stream is already closed.");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (mStartTime == 0) {
+            mStartTime = System.nanoTime();
+        }
+
+        while (mIndex < mSegments.size()) {
+            Segment segment = mSegments.get(mIndex);
+            long remaining = segment.mLength - mOffset;
+            if (remaining <= 0) {
+                mIndex++;
+                mOffset = 0;
+                continue;
+            }
+
+            int size = (int) Math.min(len, remaining);
+            int read;
+            if (segment.mData != null) {
+                System.arraycopy(segment.mData, (int) mOffset, b, off, size);
+                read = size;
+            } else {
+                read = mChannel.read(ByteBuffer.wrap(b, off, size), segment.mStart + mOffset);
+                if (read < 0) {
+                    // ファイルが途中で短くなった場合
+                    throw new IOException("Unexpected end of file.");
+                }
+            }
+            mOffset += read;
+            mTransferred += read;
+            return read;
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && mIndex < mSegments.size()) {
+            Segment segment = mSegments.get(mIndex);
+            long size = Math.min(n - skipped, segment.mLength - mOffset);
+            mOffset += size;
+            skipped += size;
+            if (mOffset >= segment.mLength) {
+                mIndex++;
+                mOffset = 0;
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long remaining = -mOffset;
+        for (int i = mIndex; i < mSegments.size(); i++) {
+            remaining += mSegments.get(i).mLength;
+        }
+        return (int) Math.max(0, Math.min(remaining, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            mFileStream.close();
+        } finally {
+            if (mStartTime != 0) {
+                long elapsed = Math.max(1, System.nanoTime() - mStartTime);
+                if (mMetrics != null) {
+                    mMetrics.recordFileTransfer(mTransferred, elapsed);
+                }
+                if (BuildConfig.DEBUG) {
+                    long bytesPerSec = (long) (mTransferred * 1000000000.0 / elapsed);
+                    LOGGER.info("File transfer: " + mTransferred + " bytes, " + (elapsed / 1000000) + " ms, "
+                            + bytesPerSec + " bytes/sec");
+                }
+            }
+        }
+    }
+
+    /**
+     * 読み込むデータのセグメント.
+     */
+    private static final class Segment {
+        /**
+         * バイト列、ファイルの範囲の場合はnull.
+         */
+        private final byte[] mData;
+
+        /**
+         * ファイルの開始位置.
+         */
+        private final long mStart;
+
+        /**
+         * サイズ.
+         */
+        private final long mLength;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param data バイト列、ファイルの範囲の場合はnull
+         * @param start ファイルの開始位置
+         * @param length サイズ
+         */
+        private Segment(final byte[] data, final long start, final long length) {
+            mData = data;
+            mStart = start;
+            mLength = length;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import org.deviceconnect.android.manager.core.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.core.DConnectSettings;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.core.plugin.DevicePluginManager;
+import org.deviceconnect.android.manager.core.request.ServiceDiscoveryCache;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.message.DConnectMessage;
@@ -40,10 +41,14 @@ public class EventBroker {
 
     private final DevicePluginManager mPluginManager;
 
+    private final EventDispatcher mDispatcher;
+
     private EventProtocol mProtocol;
 
     private RegistrationListener mListener;
 
+    private ServiceDiscoveryCache mServiceDiscoveryCache;
+
     /**
      * コンストラクタ.
      *
@@ -60,6 +65,22 @@ public class EventBroker {
         mLocalOAuth = localOAuth;
         mPluginManager = pluginManager;
         mProtocol = new EventProtocol(settings, factory);
+        mDispatcher = new EventDispatcher(settings.getEventQueueSize(), settings.getEventOverflowPolicy());
+        mDispatcher.setOnOverflowListener(this::onOverflow);
+    }
+
+    /**
+     * イベントの配送を開始します.
+     */
+    public void start() {
+        mDispatcher.start();
+    }
+
+    /**
+     * イベントの配送を停止します.
+     */
+    public void stop() {
+        mDispatcher.stop();
     }
 
     /**
@@ -71,6 +92,15 @@ public class EventBroker {
         mListener = listener;
     }
 
+    /**
+     * プラグインから通知されたサービスの変更を反映する Service Discovery のキャッシュを設定します.
+     *
+     * @param cache キャッシュ
+     */
+    public void setServiceDiscoveryCache(final ServiceDiscoveryCache cache) {
+        mServiceDiscoveryCache = cache;
+    }
+
     /**
      * 指定されたレシーバーIDのセッションを削除します.
      *
@@ -157,18 +187,10 @@ public class EventBroker {
         String interfaceName = DConnectProfile.getInterface(event);
         String attributeName = DConnectProfile.getAttribute(event);
 
-        EventSession targetSession = null;
+        List<EventSession> sessions = null;
         if (pluginAccessToken != null) {
-            for (EventSession session : mTable.getAll()) {
-                if (isSameNameCaseSensitive(pluginAccessToken, session.getAccessToken()) &&
-                    isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                    isSameName(profileName, session.getProfileName()) &&
-                    isSameName(interfaceName, session.getInterfaceName()) &&
-                    isSameName(attributeName, session.getAttributeName())) {
-                    targetSession = session;
-                    break;
-                }
-            }
+            sessions = mTable.findEventSessions(pluginAccessToken, serviceId,
+                    profileName, interfaceName, attributeName);
         } else {
             // 旧バージョンのイベントAPIとの互換性保持
             String sessionKey = DConnectProfile.getSessionKey(event);
@@ -176,39 +198,38 @@ public class EventBroker {
                 sessionKey = trimReceiverName(sessionKey);
                 String pluginId = EventProtocol.convertSessionKey2PluginId(sessionKey);
                 String receiverId = EventProtocol.convertSessionKey2Key(sessionKey);
-                for (EventSession session : mTable.getAll()) {
-                    if (isSameNameCaseSensitive(pluginId, session.getPluginId()) &&
-                        isSameNameCaseSensitive(receiverId, session.getReceiverId()) &&
-                        isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                        isSameName(profileName, session.getProfileName()) &&
-                        isSameName(interfaceName, session.getInterfaceName()) &&
-                        isSameName(attributeName, session.getAttributeName())) {
-                        targetSession = session;
-                        break;
-                    }
-                }
+                sessions = mTable.findEventSessionsForSessionKey(pluginId, receiverId, serviceId,
+                        profileName, interfaceName, attributeName);
             }
         }
 
-        if (targetSession != null) {
-            try {
-                DevicePlugin plugin = mPluginManager.getDevicePlugin(targetSession.getPluginId());
-                if (plugin != null) {
-                    event.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, targetSession.getReceiverId());
-                    event.putExtra(DConnectMessage.EXTRA_SERVICE_ID, mPluginManager.appendServiceId(plugin, serviceId));
-                    targetSession.sendEvent(event);
-                } else {
-                    mLogger.warning("onEvent: Plugin is not found: id = " + targetSession.getPluginId());
-                }
-            } catch (IOException e) {
-                error("Failed to send event.");
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+
+        int size = sessions.size();
+        for (int i = 0; i < size; i++) {
+            EventSession targetSession = sessions.get(i);
+            DevicePlugin plugin = mPluginManager.getDevicePlugin(targetSession.getPluginId());
+            if (plugin == null) {
+                mLogger.warning("onEvent: Plugin is not found: id = " + targetSession.getPluginId());
+                continue;
             }
+
+            // セッションごとに宛先が異なるので、複数のセッションに送る場合には複製する
+            Intent target = (size == 1) ? event : new Intent(event);
+            target.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, targetSession.getReceiverId());
+            target.putExtra(DConnectMessage.EXTRA_SERVICE_ID, mPluginManager.appendServiceId(plugin, serviceId));
+            mDispatcher.dispatch(targetSession, target);
         }
     }
 
     /**
      * プラグインからのイベントを受け取り処理を行います.
      *  Device Connect Manager 自身のイベントを処理します.
+     * <p>
+     * イベントにセッションキーが指定されている場合には、そのセッションキーをレシーバーIDに持つセッションに送信します。
+     * </p>
      *
      * @param event イベント
      */
@@ -216,10 +237,12 @@ public class EventBroker {
         String profileName = DConnectProfile.getProfile(event);
         String interfaceName = DConnectProfile.getInterface(event);
         String attributeName = DConnectProfile.getAttribute(event);
+        String receiverId = event.getStringExtra(IntentDConnectMessage.EXTRA_SESSION_KEY);
 
         EventSession targetSession = null;
         for (EventSession session : mTable.getAll()) {
-            if (isSameName(profileName, session.getProfileName()) &&
+            if ((receiverId == null || receiverId.equals(session.getReceiverId())) &&
+                isSameName(profileName, session.getProfileName()) &&
                 isSameName(interfaceName, session.getInterfaceName()) &&
                 isSameName(attributeName, session.getAttributeName())) {
                 targetSession = session;
@@ -237,6 +260,17 @@ public class EventBroker {
         }
     }
 
+    /**
+     * イベントの配送が追いつかなくなったセッションを破棄します.
+     *
+     * @param session 破棄するセッション
+     */
+    private void onOverflow(final EventSession session) {
+        warn("onOverflow: disconnect the event session: receiverId = " + session.getReceiverId());
+        mTable.removeForReceiverId(session.getReceiverId());
+        session.disconnect();
+    }
+
     /**
      * 登録イベントを処理します.
      *
@@ -311,8 +345,20 @@ public class EventBroker {
 
         // network service discoveryの場合には、networkServiceのオブジェクトの中にデータが含まれる
         Bundle service = event.getParcelableExtra(ServiceDiscoveryProfile.PARAM_NETWORK_SERVICE);
+        if (service == null) {
+            warn("onServiceChangeEvent: networkService is not found");
+            return;
+        }
         String id = service.getString(ServiceDiscoveryProfile.PARAM_ID);
 
+        // Service Discovery のキャッシュに変更を反映
+        ServiceDiscoveryCache cache = mServiceDiscoveryCache;
+        if (cache != null && id != null) {
+            Bundle cached = new Bundle(service);
+            cached.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginManager.appendServiceId(plugin, id));
+            cache.update(plugin, cached);
+        }
+
         // サービスIDを変更
         replaceServiceId(event, plugin);
 
@@ -373,23 +419,6 @@ public class EventBroker {
         }
     }
 
-    /**
-     * 大文字小文字を区別して文字列が一致するか確認します.
-     * @param a
-     * @param b
-     * @return
-     */
-    private boolean isSameNameCaseSensitive(final String a, final  String b) {
-        if (a == null && b == null) {
-            return true;
-        }
-        if (a != null) {
-            return a.equals(b);
-        } else {
-            return b.equals(a);
-        }
-    }
-
     /**
      * 指定されたリクエストがイベント登録のリクエストか確認します.
      * <p>
@@ -0,0 +1,150 @@
+/*
+ EventDeliveryQueue.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.event;
+
+import android.content.Intent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * イベントセッションごとの配送待ちイベントを保持するキュー.
+ * <p>
+ * ロックを使用せずにイベントの追加・取り出しを行います。
+ * 上限を超えた場合の動作は {@link EventDispatcher.OverflowPolicy} で指定します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class EventDeliveryQueue {
+    /**
+     * 配送待ちのイベント.
+     */
+    private final Queue<Intent> mQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 配送待ちのイベント数.
+     */
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    /**
+     * 送信スレッドに配送処理が割り当てられているかを示すフラグ.
+     */
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    /**
+     * 上限を超えたために破棄したイベント数.
+     */
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * イベントを追加します.
+     * <p>
+     * 上限を超えた場合には、ポリシーに従って古いイベントを破棄します。
+     * ポリシーが {@link EventDispatcher.OverflowPolicy#DISCONNECT} の場合には、イベントを追加せずに false を返却します。
+     * </p>
+     *
+     * @param event イベント
+     * @param capacity キューの上限
+     * @param policy 上限を超えた場合のポリシー
+     * @return イベントを追加した場合はtrue、それ以外はfalse
+     */
+    boolean offer(final Intent event, final int capacity, final EventDispatcher.OverflowPolicy policy) {
+        if (mSize.incrementAndGet() > capacity) {
+            switch (policy) {
+                case DISCONNECT:
+                    mSize.decrementAndGet();
+                    mDroppedCount.incrementAndGet();
+                    return false;
+
+                case COALESCE_LATEST:
+                    // 最新のイベントだけを残す
+                    while (poll() != null) {
+                        mDroppedCount.incrementAndGet();
+                    }
+                    break;
+
+                case DROP_OLDEST:
+                default:
+                    if (poll() != null) {
+                        mDroppedCount.incrementAndGet();
+                    }
+                    break;
+            }
+        }
+        mQueue.offer(event);
+        return true;
+    }
+
+    /**
+     * 先頭のイベントを取り出します.
+     *
+     * @return イベント、存在しない場合はnull
+     */
+    Intent poll() {
+        Intent event = mQueue.poll();
+        if (event != null) {
+            mSize.decrementAndGet();
+        }
+        return event;
+    }
+
+    /**
+     * 配送待ちのイベントを全て破棄します.
+     */
+    void clear() {
+        while (poll() != null) {
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 配送待ちのイベントが存在するか確認します.
+     *
+     * @return 存在しない場合はtrue、それ以外はfalse
+     */
+    boolean isEmpty() {
+        return mQueue.isEmpty();
+    }
+
+    /**
+     * 配送待ちのイベント数を取得します.
+     *
+     * @return 配送待ちのイベント数
+     */
+    int size() {
+        return Math.max(0, mSize.get());
+    }
+
+    /**
+     * 上限を超えたために破棄したイベント数を取得します.
+     *
+     * @return 破棄したイベント数
+     */
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * 送信スレッドへの配送処理の割り当てを試みます.
+     *
+     * @return 割り当てに成功した場合はtrue、既に割り当てられている場合はfalse
+     */
+    boolean trySchedule() {
+        return mScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * 送信スレッドへの配送処理の割り当てを解除します.
+     */
+    void unschedule() {
+        mScheduled.set(false);
+    }
+}
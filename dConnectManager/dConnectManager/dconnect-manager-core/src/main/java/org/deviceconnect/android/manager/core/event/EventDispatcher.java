@@ -0,0 +1,399 @@
+/*
+ EventDispatcher.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.event;
+
+import android.content.Intent;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * イベントセッションにイベントを配送するクラス.
+ * <p>
+ * イベントはセッションごとのキュー {@link EventDeliveryQueue} に格納し、送信スレッドから配送します。
+ * キューの上限とポリシーはセッションごとに適用します。
+ * </p>
+ * <p>
+ * 配送はレシーバーIDごとに直列化します。1つのWebSocketには複数のセッションが紐付くので、
+ * 同じレシーバーIDのセッションは同時に1つの送信スレッドだけが配送します。
+ * 送信に時間がかかるクライアントがあっても、占有される送信スレッドは1つだけなので、
+ * プラグインのスレッドや他のクライアントへの配送は待たされません。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class EventDispatcher {
+    /**
+     * 送信スレッド数.
+     */
+    private static final int SENDER_THREAD_SIZE = 4;
+
+    /**
+     * 1回の割り当てで1つのセッションに連続して配送するイベント数の上限.
+     * <p>
+     * 1つのセッションや1つのレシーバーが送信スレッドを占有しないようにするために使用します。
+     * </p>
+     */
+    private static final int MAX_BATCH_SIZE = 16;
+
+    /**
+     * キューの上限を超えた場合のポリシー.
+     */
+    public enum OverflowPolicy {
+        /**
+         * 最も古いイベントを破棄する.
+         */
+        DROP_OLDEST("drop_oldest"),
+
+        /**
+         * 配送待ちのイベントを破棄して最新のイベントだけを配送する.
+         */
+        COALESCE_LATEST("coalesce_latest"),
+
+        /**
+         * イベントセッションを切断する.
+         */
+        DISCONNECT("disconnect");
+
+        /**
+         * 設定値.
+         */
+        private final String mValue;
+
+        OverflowPolicy(final String value) {
+            mValue = value;
+        }
+
+        /**
+         * 設定値を取得します.
+         *
+         * @return 設定値
+         */
+        public String getValue() {
+            return mValue;
+        }
+
+        /**
+         * 設定値からポリシーを取得します.
+         *
+         * @param value 設定値
+         * @return ポリシー、該当するポリシーが存在しない場合は {@link #DROP_OLDEST}
+         */
+        public static OverflowPolicy fromValue(final String value) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.mValue.equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            return DROP_OLDEST;
+        }
+    }
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /**
+     * セッションごとのキューの上限.
+     */
+    private final int mQueueSize;
+
+    /**
+     * キューの上限を超えた場合のポリシー.
+     */
+    private final OverflowPolicy mPolicy;
+
+    /**
+     * 送信スレッド.
+     */
+    private ExecutorService mExecutor;
+
+    /**
+     * キューの上限を超えたことを通知するリスナー.
+     */
+    private OnOverflowListener mOnOverflowListener;
+
+    /**
+     * 配送待ちのイベントがあるレシーバーの一覧.
+     * <p>
+     * キーにはレシーバーIDを使用します。
+     * </p>
+     */
+    private final Map<String, ReceiverLane> mLanes = new ConcurrentHashMap<>();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param queueSize セッションごとのキューの上限
+     * @param policy キューの上限を超えた場合のポリシー
+     */
+    public EventDispatcher(final int queueSize, final OverflowPolicy policy) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize is invalid.");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy is null.");
+        }
+        mQueueSize = queueSize;
+        mPolicy = policy;
+    }
+
+    /**
+     * キューの上限を超えたことを通知するリスナーを設定します.
+     * <p>
+     * ポリシーが {@link OverflowPolicy#DISCONNECT} の場合に通知されます。
+     * </p>
+     *
+     * @param listener リスナー
+     */
+    public void setOnOverflowListener(final OnOverflowListener listener) {
+        mOnOverflowListener = listener;
+    }
+
+    /**
+     * イベントの配送を開始します.
+     */
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+        mExecutor = Executors.newFixedThreadPool(SENDER_THREAD_SIZE);
+    }
+
+    /**
+     * イベントの配送を停止します.
+     * <p>
+     * 配送待ちのイベントは破棄されます。
+     * </p>
+     */
+    public synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * 指定されたセッションにイベントを配送します.
+     * <p>
+     * イベントはキューに格納され、送信スレッドから非同期で配送されます。
+     * </p>
+     *
+     * @param session 配送先のセッション
+     * @param event イベント
+     */
+    public void dispatch(final EventSession session, final Intent event) {
+        EventDeliveryQueue queue = session.getDeliveryQueue();
+        if (!queue.offer(event, mQueueSize, mPolicy)) {
+            queue.clear();
+            mLogger.warning("dispatch: event queue overflowed: receiverId = " + session.getReceiverId());
+            OnOverflowListener l = mOnOverflowListener;
+            if (l != null) {
+                l.onOverflow(session);
+            }
+            return;
+        }
+        schedule(session, queue);
+    }
+
+    /**
+     * セッションの配送処理を、セッションのレシーバーの配送待ちに追加します.
+     * <p>
+     * セッションが既に配送待ちになっている場合には何もしません。
+     * </p>
+     *
+     * @param session セッション
+     * @param queue セッションのキュー
+     */
+    private void schedule(final EventSession session, final EventDeliveryQueue queue) {
+        if (!queue.trySchedule()) {
+            return;
+        }
+
+        String receiverId = session.getReceiverId() != null ? session.getReceiverId() : "";
+        while (true) {
+            ReceiverLane lane = mLanes.computeIfAbsent(receiverId, ReceiverLane::new);
+            synchronized (lane) {
+                if (lane.mRemoved) {
+                    // 配送を終えて削除されたレシーバーなので作り直す
+                    continue;
+                }
+                lane.mSessions.add(session);
+                if (lane.mScheduled) {
+                    return;
+                }
+                lane.mScheduled = true;
+            }
+            execute(lane);
+            return;
+        }
+    }
+
+    /**
+     * レシーバーの配送処理を送信スレッドに割り当てます.
+     *
+     * @param lane レシーバー
+     */
+    private void execute(final ReceiverLane lane) {
+        ExecutorService executor = mExecutor;
+        if (executor == null) {
+            discard(lane);
+            return;
+        }
+
+        try {
+            executor.execute(() -> drain(lane));
+        } catch (RejectedExecutionException e) {
+            // 停止処理中のため破棄
+            discard(lane);
+        }
+    }
+
+    /**
+     * レシーバーの配送待ちのイベントを全て破棄します.
+     *
+     * @param lane レシーバー
+     */
+    private void discard(final ReceiverLane lane) {
+        synchronized (lane) {
+            EventSession session;
+            while ((session = lane.mSessions.poll()) != null) {
+                EventDeliveryQueue queue = session.getDeliveryQueue();
+                queue.unschedule();
+                queue.clear();
+            }
+            lane.mScheduled = false;
+            lane.mRemoved = true;
+            mLanes.remove(lane.mReceiverId, lane);
+        }
+    }
+
+    /**
+     * レシーバーの配送待ちのセッションを1つ取り出して、キューに溜まっているイベントを配送します.
+     * <p>
+     * 配送待ちのセッションが残っている場合には、他のレシーバーの配送を待たせないように、
+     * 送信スレッドに割り当て直します。
+     * </p>
+     *
+     * @param lane レシーバー
+     */
+    private void drain(final ReceiverLane lane) {
+        EventSession session;
+        synchronized (lane) {
+            session = lane.mSessions.poll();
+        }
+
+        if (session != null) {
+            EventDeliveryQueue queue = session.getDeliveryQueue();
+            for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                Intent event = queue.poll();
+                if (event == null) {
+                    break;
+                }
+                send(session, event);
+            }
+
+            if (!queue.isEmpty()) {
+                // 割り当てを維持したまま、同じレシーバーの他のセッションの後ろに並べる
+                synchronized (lane) {
+                    lane.mSessions.add(session);
+                }
+            } else {
+                queue.unschedule();
+                // 割り当て解除の直前に追加されたイベントを取りこぼさないように再確認
+                if (!queue.isEmpty() && queue.trySchedule()) {
+                    synchronized (lane) {
+                        lane.mSessions.add(session);
+                    }
+                }
+            }
+        }
+
+        synchronized (lane) {
+            if (lane.mSessions.isEmpty()) {
+                lane.mScheduled = false;
+                lane.mRemoved = true;
+                mLanes.remove(lane.mReceiverId, lane);
+                return;
+            }
+        }
+        execute(lane);
+    }
+
+    /**
+     * セッションにイベントを送信します.
+     *
+     * @param session セッション
+     * @param event イベント
+     */
+    private void send(final EventSession session, final Intent event) {
+        try {
+            session.sendEvent(event);
+        } catch (IOException e) {
+            mLogger.severe("Failed to send event.");
+        } catch (RuntimeException e) {
+            mLogger.severe("Failed to send event: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 同じレシーバーIDのセッションの配送待ちを保持するクラス.
+     * <p>
+     * 同時に1つの送信スレッドだけが配送処理を行います。フィールドはインスタンスのロックを取得して操作します。
+     * </p>
+     */
+    private static class ReceiverLane {
+        /**
+         * レシーバーID.
+         */
+        private final String mReceiverId;
+
+        /**
+         * 配送待ちのイベントがあるセッション.
+         */
+        private final Queue<EventSession> mSessions = new ArrayDeque<>();
+
+        /**
+         * 送信スレッドに配送処理が割り当てられているかを示すフラグ.
+         */
+        private boolean mScheduled;
+
+        /**
+         * 一覧から削除されたかを示すフラグ.
+         */
+        private boolean mRemoved;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param receiverId レシーバーID
+         */
+        ReceiverLane(final String receiverId) {
+            mReceiverId = receiverId;
+        }
+    }
+
+    /**
+     * キューの上限を超えたことを通知するリスナー.
+     */
+    public interface OnOverflowListener {
+        /**
+         * キューの上限を超えたことを通知します.
+         *
+         * @param session 上限を超えたセッション
+         */
+        void onOverflow(EventSession session);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ EventRouteKey.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.event;
+
+/**
+ * イベントセッションの索引に使用するキー.
+ * <p>
+ * 先頭の2つの識別子とサービスIDは大文字小文字を区別して比較し、
+ * プロファイル名・インターフェース名・アトリビュート名は大文字小文字を無視して比較します。
+ * </p>
+ * <p>
+ * 検索時には {@link #set(String, String, String, String, String, String)} で値を
+ * 上書きしたインスタンスを使い回すことで、オブジェクトの生成を行わずに索引を引くことができます。
+ * 索引に格納したインスタンスの値は変更しないこと。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class EventRouteKey {
+    /**
+     * 1番目の識別子(アクセストークン、またはプラグインID).
+     */
+    private String mFirst;
+
+    /**
+     * 2番目の識別子(レシーバーID).
+     */
+    private String mSecond;
+
+    /**
+     * サービスID.
+     */
+    private String mServiceId;
+
+    /**
+     * プロファイル名.
+     */
+    private String mProfileName;
+
+    /**
+     * インターフェース名.
+     */
+    private String mInterfaceName;
+
+    /**
+     * アトリビュート名.
+     */
+    private String mAttributeName;
+
+    /**
+     * ハッシュ値.
+     */
+    private int mHash;
+
+    /**
+     * キーの値を設定します.
+     *
+     * @param first 1番目の識別子
+     * @param second 2番目の識別子
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return このインスタンス
+     */
+    EventRouteKey set(final String first, final String second, final String serviceId,
+                      final String profileName, final String interfaceName, final String attributeName) {
+        mFirst = first;
+        mSecond = second;
+        mServiceId = serviceId;
+        mProfileName = profileName;
+        mInterfaceName = interfaceName;
+        mAttributeName = attributeName;
+
+        int h = hash(first);
+        h = 31 * h + hash(second);
+        h = 31 * h + hash(serviceId);
+        h = 31 * h + hashIgnoreCase(profileName);
+        h = 31 * h + hashIgnoreCase(interfaceName);
+        h = 31 * h + hashIgnoreCase(attributeName);
+        mHash = h;
+        return this;
+    }
+
+    /**
+     * 参照を解放します.
+     * <p>
+     * 検索用に使い回すインスタンスが文字列を保持し続けないようにするために使用します。
+     * </p>
+     */
+    void clear() {
+        set(null, null, null, null, null, null);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventRouteKey)) {
+            return false;
+        }
+        EventRouteKey that = (EventRouteKey) o;
+        return mHash == that.mHash
+                && isSame(mFirst, that.mFirst)
+                && isSame(mSecond, that.mSecond)
+                && isSame(mServiceId, that.mServiceId)
+                && isSameIgnoreCase(mProfileName, that.mProfileName)
+                && isSameIgnoreCase(mInterfaceName, that.mInterfaceName)
+                && isSameIgnoreCase(mAttributeName, that.mAttributeName);
+    }
+
+    private static int hash(final String s) {
+        return s == null ? 0 : s.hashCode();
+    }
+
+    /**
+     * 大文字小文字を無視したハッシュ値を計算します.
+     * <p>
+     * {@link String#equalsIgnoreCase(String)} で一致する文字列は同じハッシュ値になります。
+     * </p>
+     *
+     * @param s 文字列
+     * @return ハッシュ値
+     */
+    private static int hashIgnoreCase(final String s) {
+        if (s == null) {
+            return 0;
+        }
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+        }
+        return h;
+    }
+
+    private static boolean isSame(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean isSameIgnoreCase(final String a, final String b) {
+        return a == null ? b == null : a.equalsIgnoreCase(b);
+    }
+}
@@ -60,6 +60,11 @@ public abstract class EventSession {
      */
     private String mAccessToken;
 
+    /**
+     * 配送待ちのイベントを保持するキュー.
+     */
+    private final EventDeliveryQueue mDeliveryQueue = new EventDeliveryQueue();
+
     public Context getContext() {
         return mContext;
     }
@@ -134,6 +139,25 @@ public abstract class EventSession {
 
     public abstract void sendEvent(final Intent event) throws IOException;
 
+    /**
+     * イベントの送信先との接続を切断します.
+     * <p>
+     * イベントの配送が追いつかずにセッションを破棄する場合に呼び出されます。
+     * 接続を持たないセッションでは何もしません。
+     * </p>
+     */
+    public void disconnect() {
+    }
+
+    /**
+     * 配送待ちのイベントを保持するキューを取得します.
+     *
+     * @return キュー
+     */
+    EventDeliveryQueue getDeliveryQueue() {
+        return mDeliveryQueue;
+    }
+
     @Override
     public String toString() {
         return "{\n" +
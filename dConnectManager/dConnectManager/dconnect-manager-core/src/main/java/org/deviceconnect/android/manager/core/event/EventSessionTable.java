@@ -3,11 +3,24 @@ package org.deviceconnect.android.manager.core.event;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * イベントのセッションを保持するクラス.
+ * <p>
+ * イベント配送時の検索を高速化するために、以下の索引を保持します。
+ * <ul>
+ *     <li>アクセストークン、サービスID、プロファイル名、インターフェース名、アトリビュート名をキーとした索引</li>
+ *     <li>旧バージョンのイベントAPI用に、プラグインID、レシーバーID、サービスID、プロファイル名、インターフェース名、アトリビュート名をキーとした索引</li>
+ *     <li>Keep Alive やアクセストークンの更新用に、プラグインIDをキーとした索引</li>
+ * </ul>
+ * 索引の値は変更されないリストで、更新時には新しいリストに差し替えます。
+ * そのため、検索はロックを取得せず、テーブルのコピーも行いません。
+ * </p>
  *
  * @author NTT DOCOMO, INC.
  */
@@ -18,6 +31,29 @@ public class EventSessionTable {
      */
     private final List<EventSession> mEventSessions = new ArrayList<>();
 
+    /**
+     * アクセストークンをキーにしたセッションの索引.
+     */
+    private final Map<EventRouteKey, List<EventSession>> mAccessTokenIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 旧バージョンのイベントAPI用のセッションキーをキーにしたセッションの索引.
+     */
+    private final Map<EventRouteKey, List<EventSession>> mSessionKeyIndex = new ConcurrentHashMap<>();
+
+    /**
+     * プラグインIDをキーにしたセッションの索引.
+     */
+    private final Map<String, List<EventSession>> mPluginIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 検索用のキー.
+     * <p>
+     * 検索のたびにキーを生成しないように、スレッドごとに使い回します。
+     * </p>
+     */
+    private final ThreadLocal<EventRouteKey> mSearchKey = ThreadLocal.withInitial(EventRouteKey::new);
+
     /**
      * セッションのリストを取得します.
      *
@@ -29,6 +65,49 @@ public class EventSessionTable {
         }
     }
 
+    /**
+     * プラグインから送られてきたイベントの送信先となるセッションを取得します.
+     * <p>
+     * サービスIDとアクセストークンは大文字小文字を区別し、プロファイル名・インターフェース名・アトリビュート名は
+     * 大文字小文字を無視して比較します。
+     * </p>
+     * <p>
+     * 返却するリストは変更できません。セッションが存在しない場合は、空のリストを返却します。
+     * </p>
+     *
+     * @param accessToken プラグインのアクセストークン
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return セッションのリスト
+     */
+    public List<EventSession> findEventSessions(final String accessToken, final String serviceId,
+                                                final String profileName, final String interfaceName,
+                                                final String attributeName) {
+        return lookup(mAccessTokenIndex, accessToken, null, serviceId, profileName, interfaceName, attributeName);
+    }
+
+    /**
+     * 旧バージョンのイベントAPIで送られてきたイベントの送信先となるセッションを取得します.
+     * <p>
+     * 返却するリストは変更できません。セッションが存在しない場合は、空のリストを返却します。
+     * </p>
+     *
+     * @param pluginId プラグインID
+     * @param receiverId レシーバーID
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return セッションのリスト
+     */
+    public List<EventSession> findEventSessionsForSessionKey(final String pluginId, final String receiverId,
+                                                             final String serviceId, final String profileName,
+                                                             final String interfaceName, final String attributeName) {
+        return lookup(mSessionKeyIndex, pluginId, receiverId, serviceId, profileName, interfaceName, attributeName);
+    }
+
     /**
      * 指定されたプラグインが持っているイベントセッションを取得します.
      * <p>
@@ -38,15 +117,8 @@ public class EventSessionTable {
      * @return イベントセッションのリスト
      */
     List<EventSession> findEventSessionsForPlugin(final DevicePlugin plugin) {
-        List<EventSession> result = new ArrayList<>();
-        synchronized (mEventSessions) {
-            for (EventSession session : mEventSessions) {
-                if (plugin.getPluginId().equals(session.getPluginId())) {
-                    result.add(session);
-                }
-            }
-        }
-        return result;
+        List<EventSession> sessions = mPluginIndex.get(plugin.getPluginId());
+        return sessions != null ? sessions : Collections.emptyList();
     }
 
     /**
@@ -57,6 +129,7 @@ public class EventSessionTable {
     void add(final EventSession session) {
         synchronized(mEventSessions) {
             mEventSessions.add(session);
+            addIndex(session);
         }
     }
 
@@ -67,7 +140,9 @@ public class EventSessionTable {
      */
     void remove(final EventSession session) {
         synchronized (mEventSessions) {
-            mEventSessions.remove(session);
+            if (mEventSessions.remove(session)) {
+                removeIndex(session);
+            }
         }
     }
 
@@ -78,11 +153,18 @@ public class EventSessionTable {
      * @param newAccessToken アクセストークン
      */
     void updateAccessTokenForPlugin(final String pluginId, final String newAccessToken) {
+        if (pluginId == null) {
+            return;
+        }
         synchronized (mEventSessions) {
-            for (EventSession session : mEventSessions) {
-                if (session.getPluginId() != null && session.getPluginId().equals(pluginId)) {
-                    session.setAccessToken(newAccessToken);
-                }
+            List<EventSession> sessions = mPluginIndex.get(pluginId);
+            if (sessions == null) {
+                return;
+            }
+            for (EventSession session : sessions) {
+                removeFromIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
+                session.setAccessToken(newAccessToken);
+                addToIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
             }
         }
     }
@@ -93,11 +175,17 @@ public class EventSessionTable {
      * @param pluginId プラグインID
      */
     void removeForPlugin(final String pluginId) {
+        if (pluginId == null) {
+            return;
+        }
         synchronized (mEventSessions) {
-            for (Iterator<EventSession> it = mEventSessions.iterator(); it.hasNext(); ) {
-                EventSession session = it.next();
-                if (session.getPluginId() != null && session.getPluginId().equals(pluginId)) {
-                    it.remove();
+            List<EventSession> sessions = mPluginIndex.get(pluginId);
+            if (sessions == null) {
+                return;
+            }
+            for (EventSession session : sessions) {
+                if (mEventSessions.remove(session)) {
+                    removeIndex(session);
                 }
             }
         }
@@ -111,13 +199,111 @@ public class EventSessionTable {
     void removeForReceiverId(final String receiverId) {
         synchronized (mEventSessions) {
             for (Iterator<EventSession> it = mEventSessions.iterator(); it.hasNext(); ) {
-                if (it.next().getReceiverId().equals(receiverId)) {
+                EventSession session = it.next();
+                if (session.getReceiverId().equals(receiverId)) {
                     it.remove();
+                    removeIndex(session);
                 }
             }
         }
     }
 
+    /**
+     * 索引からセッションを検索します.
+     *
+     * @param index 索引
+     * @param first 1番目の識別子
+     * @param second 2番目の識別子
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return セッションのリスト
+     */
+    private List<EventSession> lookup(final Map<EventRouteKey, List<EventSession>> index,
+                                      final String first, final String second, final String serviceId,
+                                      final String profileName, final String interfaceName,
+                                      final String attributeName) {
+        EventRouteKey key = mSearchKey.get();
+        try {
+            List<EventSession> sessions = index.get(
+                    key.set(first, second, serviceId, profileName, interfaceName, attributeName));
+            return sessions != null ? sessions : Collections.emptyList();
+        } finally {
+            key.clear();
+        }
+    }
+
+    /**
+     * 索引にセッションを追加します.
+     * <p>
+     * mEventSessions のロックを取得した状態で呼び出すこと。
+     * </p>
+     *
+     * @param session 追加するセッション
+     */
+    private void addIndex(final EventSession session) {
+        addToIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
+        addToIndex(mSessionKeyIndex, createSessionKey(session), session);
+        if (session.getPluginId() != null) {
+            addToIndex(mPluginIndex, session.getPluginId(), session);
+        }
+    }
+
+    /**
+     * 索引からセッションを削除します.
+     * <p>
+     * mEventSessions のロックを取得した状態で呼び出すこと。
+     * </p>
+     *
+     * @param session 削除するセッション
+     */
+    private void removeIndex(final EventSession session) {
+        removeFromIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
+        removeFromIndex(mSessionKeyIndex, createSessionKey(session), session);
+        if (session.getPluginId() != null) {
+            removeFromIndex(mPluginIndex, session.getPluginId(), session);
+        }
+    }
+
+    private static <K> void addToIndex(final Map<K, List<EventSession>> index,
+                                       final K key, final EventSession session) {
+        List<EventSession> sessions = index.get(key);
+        List<EventSession> newSessions = new ArrayList<>(sessions != null ? sessions.size() + 1 : 1);
+        if (sessions != null) {
+            newSessions.addAll(sessions);
+        }
+        newSessions.add(session);
+        index.put(key, Collections.unmodifiableList(newSessions));
+    }
+
+    private static <K> void removeFromIndex(final Map<K, List<EventSession>> index,
+                                            final K key, final EventSession session) {
+        List<EventSession> sessions = index.get(key);
+        if (sessions == null) {
+            return;
+        }
+        List<EventSession> newSessions = new ArrayList<>(sessions);
+        if (!newSessions.remove(session)) {
+            return;
+        }
+        if (newSessions.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableList(newSessions));
+        }
+    }
+
+    private static EventRouteKey createAccessTokenKey(final EventSession session) {
+        return new EventRouteKey().set(session.getAccessToken(), null, session.getServiceId(),
+                session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+    }
+
+    private static EventRouteKey createSessionKey(final EventSession session) {
+        return new EventRouteKey().set(session.getPluginId(), session.getReceiverId(), session.getServiceId(),
+                session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+    }
+
     @Override
     public String toString() {
         return mEventSessions.toString();
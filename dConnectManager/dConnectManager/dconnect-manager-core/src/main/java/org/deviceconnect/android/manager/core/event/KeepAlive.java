@@ -22,12 +22,15 @@ public class KeepAlive {
     /**
      * イベントカウンター.
      */
-    private int mEventCounter;
+    private volatile int mEventCounter;
 
     /**
      * レスポンスフラグ.
+     * <p>
+     * レスポンスを受信したスレッドから設定されるので volatile にしています。
+     * </p>
      */
-    private Boolean mResponseFlag;
+    private volatile Boolean mResponseFlag;
 
     /**
      * コンストラクター.
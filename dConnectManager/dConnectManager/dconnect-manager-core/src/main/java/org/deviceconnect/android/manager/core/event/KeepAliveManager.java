@@ -14,16 +14,29 @@ import org.deviceconnect.android.manager.core.BuildConfig;
 import org.deviceconnect.android.manager.core.DConnectConst;
 import org.deviceconnect.android.manager.core.DConnectInterface;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
+import org.deviceconnect.android.manager.core.request.DConnectRequestManager;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.logging.Logger;
 
 /**
  * Keep Alive Manager.
+ * <p>
+ * Keep Alive の状態はプラグインIDをキーにして管理し、定期処理は {@link DConnectRequestManager} の
+ * タイムアウトを監視するスレッドで実行します。
+ * </p>
+ * <p>
+ * 生存確認(CHECK)は、プラグインのパッケージごとにまとめて1回だけ送信します。
+ * 同じパッケージのプラグインは同じプロセスで動作しているので、代表のプラグインから応答があった場合には、
+ * そのパッケージの全てのプラグインが生存しているものとします。
+ * </p>
  *
  * @author NTT DOCOMO, INC.
  */
@@ -33,6 +46,11 @@ public class KeepAliveManager {
      */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
+    /**
+     * 定期処理間隔(ミリ秒).
+     */
+    private static final long PROCESS_INTERVAL = 30000;
+
     /**
      * コンテキスト.
      */
@@ -43,25 +61,36 @@ public class KeepAliveManager {
      */
     private final EventSessionTable mEventSessionTable;
 
+    /**
+     * 定期処理を実行するリクエスト管理クラス.
+     */
+    private final DConnectRequestManager mRequestManager;
+
     /**
      * イベント Keep Alive 管理テーブル.
+     * <p>
+     * キーにはプラグインIDを使用します。
+     * </p>
      */
-    private final LinkedList<KeepAlive> mManagementList = new LinkedList<>();
+    private final Map<String, KeepAlive> mManagementTable = new ConcurrentHashMap<>();
 
     /**
-     * 機能有効フラグ 初期起動時は有効.
+     * 直前の生存確認でまとめて確認したプラグインの一覧.
+     * <p>
+     * キーには生存確認の送信に使用したプラグインIDを使用します。
+     * </p>
      */
-    private Boolean mEnableKeepAlive = true;
+    private volatile Map<String, List<KeepAlive>> mCheckGroups = new HashMap<>();
 
     /**
-     * タイマーハンドラー.
+     * 機能有効フラグ 初期起動時は有効.
      */
-    private Timer mTimer;
+    private volatile Boolean mEnableKeepAlive = true;
 
     /**
-     * 定期処理中フラグ.
+     * 定期処理.
      */
-    private Boolean mRunningPeriodicProcess = false;
+    private ScheduledFuture<?> mPeriodicTask;
 
     private DConnectInterface mInterface;
     /**
@@ -69,10 +98,13 @@ public class KeepAliveManager {
      *
      * @param context コンテキスト
      * @param table   イベントセッション管理テーブル
+     * @param requestManager 定期処理を実行するリクエスト管理クラス
      */
-    public KeepAliveManager(final Context context, final EventSessionTable table) {
+    public KeepAliveManager(final Context context, final EventSessionTable table,
+                            final DConnectRequestManager requestManager) {
         mContext = context;
         mEventSessionTable = table;
+        mRequestManager = requestManager;
     }
 
     /**
@@ -88,6 +120,26 @@ public class KeepAliveManager {
     public void setDConnectInterface(final DConnectInterface i) {
         mInterface = i;
     }
+
+    /**
+     * 管理しているプラグインがある場合には、定期処理を開始します.
+     * <p>
+     * {@link DConnectRequestManager} を開始した後に呼び出すこと。
+     * </p>
+     */
+    public synchronized void start() {
+        if (isEnableKeepAlive() && !mManagementTable.isEmpty()) {
+            startPeriodicProcess();
+        }
+    }
+
+    /**
+     * 定期処理を停止します.
+     */
+    public synchronized void stop() {
+        stopPeriodicProcess();
+    }
+
     /**
      * KeepAlive機能無効.
      *
@@ -96,11 +148,8 @@ public class KeepAliveManager {
     public synchronized Boolean disableKeepAlive() {
         setKeepAliveFunction(false);
         stopPeriodicProcess();
-        if (!mManagementList.isEmpty()) {
-            for (int i = 0; i < mManagementList.size(); i++) {
-                KeepAlive data = mManagementList.get(i);
-                sendKeepAlive(data.getPlugin(), "STOP");
-            }
+        for (KeepAlive data : mManagementTable.values()) {
+            sendKeepAlive(data.getPlugin(), "STOP");
         }
         return true;
     }
@@ -112,12 +161,9 @@ public class KeepAliveManager {
      */
     public synchronized Boolean enableKeepAlive() {
         setKeepAliveFunction(true);
-        if (!mManagementList.isEmpty()) {
-            if (!mManagementList.isEmpty()) {
-                for (int i = 0; i < mManagementList.size(); i++) {
-                    KeepAlive data = mManagementList.get(i);
-                    sendKeepAlive(data.getPlugin(), "START");
-                }
+        if (!mManagementTable.isEmpty()) {
+            for (KeepAlive data : mManagementTable.values()) {
+                sendKeepAlive(data.getPlugin(), "START");
             }
             startPeriodicProcess();
         }
@@ -138,15 +184,15 @@ public class KeepAliveManager {
      *
      * @param plugin デバイスプラグイン.
      */
-    public void setManagementTable(DevicePlugin plugin) {
-        KeepAlive data = getKeepAlive(plugin);
+    public synchronized void setManagementTable(DevicePlugin plugin) {
+        KeepAlive data = mManagementTable.get(plugin.getPluginId());
         if (data == null) {
-            mManagementList.add(new KeepAlive(plugin));
+            mManagementTable.put(plugin.getPluginId(), new KeepAlive(plugin));
             sendKeepAlive(plugin, "START");
         } else {
             data.additionEventCounter();
         }
-        if (isEnableKeepAlive() && !mRunningPeriodicProcess) {
+        if (isEnableKeepAlive()) {
             startPeriodicProcess();
         }
     }
@@ -157,22 +203,15 @@ public class KeepAliveManager {
      * @param plugin デバイスプラグイン.
      */
     public synchronized void removeManagementTable(final DevicePlugin plugin) {
-        if (!(mManagementList.isEmpty())) {
-            for (int i = 0; i < mManagementList.size(); i++) {
-                KeepAlive data = mManagementList.get(i);
-                if (data.getServiceId().equals(plugin.getPluginId())) {
-                    data.subtractionEventCounter();
-                    if (data.getEventCounter() <= 0) {
-                        sendKeepAlive(plugin, "STOP");
-                        mManagementList.remove(i);
-                    }
-                    break;
-                }
-            }
-            if (isEnableKeepAlive() && mManagementList.isEmpty() && mRunningPeriodicProcess) {
-                stopPeriodicProcess();
+        KeepAlive data = mManagementTable.get(plugin.getPluginId());
+        if (data != null) {
+            data.subtractionEventCounter();
+            if (data.getEventCounter() <= 0) {
+                sendKeepAlive(plugin, "STOP");
+                mManagementTable.remove(plugin.getPluginId());
             }
-        } else if (isEnableKeepAlive() && mRunningPeriodicProcess) {
+        }
+        if (isEnableKeepAlive() && mManagementTable.isEmpty()) {
             stopPeriodicProcess();
         }
     }
@@ -181,38 +220,41 @@ public class KeepAliveManager {
      * 該当するデバイスプラグインのKeepAlive要素を取得する.
      *
      * @param plugin デバイスプラグイン.
-     * @return KeepAliveデータ.
+     * @return KeepAliveデータ、該当なしならnull.
      */
-    public synchronized KeepAlive getKeepAlive(final DevicePlugin plugin) {
-        if (!(mManagementList.isEmpty())) {
-            /* 要素数分ループ. */
-            for (KeepAlive data : mManagementList) {
-                if (data.getServiceId().equals(plugin.getPluginId())) {
-                    return data;
-                }
-            }
-        }
-        /* 要素0または該当なしならnull. */
-        return null;
+    public KeepAlive getKeepAlive(final DevicePlugin plugin) {
+        return getKeepAlive(plugin.getPluginId());
     }
 
     /**
      * 該当するプラグインIDのKeepAlive要素を取得する.
      *
      * @param serviceId プラグインID.
-     * @return KeepAliveデータ.
+     * @return KeepAliveデータ、該当なしならnull.
      */
-    public synchronized KeepAlive getKeepAlive(final String serviceId) {
-        if (!(mManagementList.isEmpty())) {
-            /* 要素数分ループ. */
-            for (KeepAlive data : mManagementList) {
-                if (data.getServiceId().equals(serviceId)) {
-                    return data;
-                }
+    public KeepAlive getKeepAlive(final String serviceId) {
+        return mManagementTable.get(serviceId);
+    }
+
+    /**
+     * プラグインから KeepAlive の応答を受信した時の処理を行う.
+     * <p>
+     * 直前の生存確認をまとめて送信したプラグインがある場合には、それらのプラグインも応答があったものとします。
+     * </p>
+     *
+     * @param serviceId 応答したプラグインID.
+     */
+    public void onKeepAliveResponse(final String serviceId) {
+        List<KeepAlive> group = mCheckGroups.get(serviceId);
+        if (group != null) {
+            for (KeepAlive data : group) {
+                data.setResponseFlag();
             }
         }
-        /* 要素0または該当なしならnull. */
-        return null;
+        KeepAlive data = getKeepAlive(serviceId);
+        if (data != null) {
+            data.setResponseFlag();
+        }
     }
 
     /**
@@ -251,9 +293,10 @@ public class KeepAliveManager {
     private synchronized void periodicProcess() {
         if (isEnableKeepAlive()) {
             if (BuildConfig.DEBUG) {
-                mLogger.info("periodicProcess: plugins = " + mManagementList.size());
+                mLogger.info("periodicProcess: plugins = " + mManagementTable.size());
             }
-            Iterator<KeepAlive> iterator = mManagementList.iterator();
+            Map<String, List<KeepAlive>> packages = new HashMap<>();
+            Iterator<KeepAlive> iterator = mManagementTable.values().iterator();
             while (iterator.hasNext()) {
                 KeepAlive data = iterator.next();
                 if (data.getResponseFlag()) {
@@ -261,7 +304,13 @@ public class KeepAliveManager {
                         mLogger.info("Plugin " + data.getPlugin().getPackageName() + " is alive.");
                     }
                     data.resetResponseFlag();
-                    sendKeepAlive(data.getPlugin(), "CHECK");
+                    String packageName = data.getPlugin().getPackageName();
+                    List<KeepAlive> group = packages.get(packageName);
+                    if (group == null) {
+                        group = new ArrayList<>();
+                        packages.put(packageName, group);
+                    }
+                    group.add(data);
                 } else {
                     if (BuildConfig.DEBUG) {
                         mLogger.info("Plugin " + data.getPlugin().getPackageName() + " is dead.");
@@ -283,7 +332,23 @@ public class KeepAliveManager {
                     }
                 }
             }
-            if (isEnableKeepAlive() && mManagementList.isEmpty() && mRunningPeriodicProcess) {
+
+            // 同じパッケージのプラグインには、代表のプラグインにまとめて1回だけ生存確認を送信する
+            Map<String, List<KeepAlive>> checkGroups = new HashMap<>();
+            for (List<KeepAlive> group : packages.values()) {
+                DevicePlugin plugin = group.get(0).getPlugin();
+                checkGroups.put(plugin.getPluginId(), group);
+            }
+            mCheckGroups = checkGroups;
+            for (Map.Entry<String, List<KeepAlive>> entry : packages.entrySet()) {
+                if (BuildConfig.DEBUG) {
+                    mLogger.info("Send CHECK: package = " + entry.getKey()
+                            + ", plugins = " + entry.getValue().size() + ", broadcasts = 1");
+                }
+                sendKeepAlive(entry.getValue().get(0).getPlugin(), "CHECK");
+            }
+
+            if (isEnableKeepAlive() && mManagementTable.isEmpty()) {
                 stopPeriodicProcess();
             }
         }
@@ -291,19 +356,13 @@ public class KeepAliveManager {
 
     /**
      * 定期処理開始.
+     * <p>
+     * リクエスト管理クラスが停止している場合には開始しません。
+     * </p>
      */
     private void startPeriodicProcess() {
-        if (mTimer == null) {
-            mTimer = new Timer(true);
-            /* 定期処理間隔(mSec). */
-            int PROCESS_INTERVAL = 30000;
-            mTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    periodicProcess();
-                }
-            }, PROCESS_INTERVAL, PROCESS_INTERVAL);
-            mRunningPeriodicProcess = true;
+        if (mPeriodicTask == null) {
+            mPeriodicTask = mRequestManager.scheduleWithFixedDelay(this::periodicProcess, PROCESS_INTERVAL);
         }
     }
 
@@ -311,10 +370,10 @@ public class KeepAliveManager {
      * 定期処理停止.
      */
     private void stopPeriodicProcess() {
-        mRunningPeriodicProcess = false;
-        if (mTimer != null) {
-            mTimer.cancel();
-            mTimer = null;
+        if (mPeriodicTask != null) {
+            mPeriodicTask.cancel(false);
+            mPeriodicTask = null;
         }
+        mCheckGroups = new HashMap<>();
     }
 }
@@ -16,6 +16,9 @@ import android.provider.BaseColumns;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -36,11 +39,43 @@ public final class HmacManager {
      */
     private static final String EMPTY = "";
 
+    /**
+     * The maximum number of origins whose HMAC keys are cached.
+     */
+    private static final int MAX_CACHED_KEYS = 256;
+
+    /**
+     * The characters for hex string expressions.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The version of the HMAC key database.
+     * <p>
+     * This is incremented whenever HMAC keys are changed in this process,
+     * so that every instance of this class can notice the change.
+     * </p>
+     */
+    private static final AtomicInteger sVersion = new AtomicInteger();
+
+    /**
+     * The {@link Mac} instance for each thread.
+     */
+    private static final ThreadLocal<KeyedMac> sMac = ThreadLocal.withInitial(KeyedMac::new);
+
     /**
      * The HMAC key database.
      */
     private final HmacKeyDB mCache;
 
+    /**
+     * The cache of HMAC keys in the database.
+     * <p>
+     * Key: origin. Origins without HMAC keys are also cached.
+     * </p>
+     */
+    private final Map<String, CachedKey> mKeys = new ConcurrentHashMap<>();
+
     /**
      * Constructor.
      * @param context Context
@@ -69,10 +104,14 @@ public final class HmacManager {
             throw new IllegalArgumentException("key is null.");
         }
 
-        if (key.equals(EMPTY)) {
-            mCache.removeKey(origin);
-        } else {
-            mCache.addKey(origin, key);
+        try {
+            if (key.equals(EMPTY)) {
+                mCache.removeKey(origin);
+            } else {
+                mCache.addKey(origin, key);
+            }
+        } finally {
+            sVersion.incrementAndGet();
         }
     }
 
@@ -86,7 +125,7 @@ public final class HmacManager {
         if (origin == null) {
             throw new IllegalArgumentException("origin is null.");
         }
-        return mCache.hasKey(origin);
+        return getCachedKey(origin).mKey != null;
     }
 
     /**
@@ -103,16 +142,13 @@ public final class HmacManager {
         if (nonce == null) {
             throw new IllegalArgumentException("nonce is null.");
         }
-        HmacKey hmacKey = mCache.getKey(origin);
-        if (hmacKey == null) {
+        CachedKey cachedKey = getCachedKey(origin);
+        if (cachedKey.mKey == null) {
             return null;
         }
         // HMAC generation with key and nonce.
         try {
-            Mac mac = Mac.getInstance(HASH_ALGORITHM);
-            SecretKeySpec keySpec = new SecretKeySpec(toByteArray(hmacKey.getKey()), HASH_ALGORITHM);
-            mac.init(keySpec);
-            byte[] hmac = mac.doFinal(toByteArray(nonce));
+            byte[] hmac = sMac.get().doFinal(cachedKey.getKeySpec(), toByteArray(nonce));
             return toHexString(hmac);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(HASH_ALGORITHM + " is not supported.");
@@ -121,6 +157,30 @@ public final class HmacManager {
         }
     }
 
+    /**
+     * Gets the cached HMAC key for the specified origin.
+     * <p>
+     * The HMAC key is read from the database only if it is not cached,
+     * or HMAC keys have been changed since it was cached.
+     * </p>
+     *
+     * @param origin Origin of application
+     * @return the cached HMAC key
+     */
+    private CachedKey getCachedKey(final String origin) {
+        int version = sVersion.get();
+        CachedKey cachedKey = mKeys.get(origin);
+        if (cachedKey == null || cachedKey.mVersion != version) {
+            HmacKey hmacKey = mCache.getKey(origin);
+            cachedKey = new CachedKey(version, hmacKey != null ? hmacKey.getKey() : null);
+            if (mKeys.size() >= MAX_CACHED_KEYS) {
+                mKeys.clear();
+            }
+            mKeys.put(origin, cachedKey);
+        }
+        return cachedKey;
+    }
+
     /**
      * Parse a hex string expression of a byte array to raw.
      * @param b a hex string expression of a byte array
@@ -149,15 +209,96 @@ public final class HmacManager {
         if (b == null) {
             throw new IllegalArgumentException("b is null.");
         }
-        StringBuilder str = new StringBuilder();
+        char[] str = new char[b.length * 2];
         for (int i = 0; i < b.length; i++) {
-            String substr = Integer.toHexString(b[i] & 0xff);
-            if (substr.length() < 2) {
-                str.append("0");
+            str[2 * i] = HEX[(b[i] >> 4) & 0x0f];
+            str[2 * i + 1] = HEX[b[i] & 0x0f];
+        }
+        return new String(str);
+    }
+
+    /**
+     * Cached HMAC key.
+     */
+    private static final class CachedKey {
+
+        /**
+         * The version of the HMAC key database when cached.
+         */
+        private final int mVersion;
+
+        /**
+         * The hex string expression of the HMAC key, or <code>null</code> if the origin has no HMAC key.
+         */
+        private final String mKey;
+
+        /**
+         * The HMAC key, which is created when used for the first time.
+         */
+        private volatile SecretKeySpec mKeySpec;
+
+        /**
+         * Constructor.
+         * @param version the version of the HMAC key database
+         * @param key the hex string expression of the HMAC key
+         */
+        private CachedKey(final int version, final String key) {
+            mVersion = version;
+            mKey = key;
+        }
+
+        /**
+         * Gets the HMAC key.
+         * @return the HMAC key
+         */
+        private SecretKeySpec getKeySpec() {
+            SecretKeySpec keySpec = mKeySpec;
+            if (keySpec == null) {
+                keySpec = new SecretKeySpec(toByteArray(mKey), HASH_ALGORITHM);
+                mKeySpec = keySpec;
+            }
+            return keySpec;
+        }
+    }
+
+    /**
+     * {@link Mac} instance which keeps the last HMAC key.
+     * <p>
+     * The instance is used only by one thread, and initialized again only when a different key is used.
+     * </p>
+     */
+    private static final class KeyedMac {
+
+        /**
+         * The {@link Mac} instance, which is created when used for the first time.
+         */
+        private Mac mMac;
+
+        /**
+         * The HMAC key which {@link #mMac} is initialized with.
+         */
+        private SecretKeySpec mKeySpec;
+
+        /**
+         * Computes HMAC of the specified data.
+         * @param keySpec the HMAC key
+         * @param data the data
+         * @return HMAC
+         * @throws NoSuchAlgorithmException if {@link #HASH_ALGORITHM} is not supported
+         * @throws InvalidKeyException if the key is invalid
+         */
+        private byte[] doFinal(final SecretKeySpec keySpec, final byte[] data)
+                throws NoSuchAlgorithmException, InvalidKeyException {
+            if (mMac == null) {
+                mMac = Mac.getInstance(HASH_ALGORITHM);
+            }
+            if (mKeySpec != keySpec) {
+                mKeySpec = null;
+                mMac.init(keySpec);
+                mKeySpec = keySpec;
             }
-            str.append(substr);
+            return mMac.doFinal(data);
         }
-        return str.toString();
     }
 
     /**
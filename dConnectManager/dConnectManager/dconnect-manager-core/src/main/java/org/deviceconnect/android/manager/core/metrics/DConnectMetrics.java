@@ -0,0 +1,668 @@
+/*
+ DConnectMetrics.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.metrics;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.deviceconnect.android.manager.core.plugin.CircuitBreaker;
+import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
+import org.deviceconnect.android.manager.core.plugin.MessagingException;
+import org.deviceconnect.android.manager.core.request.DConnectRequestManager;
+import org.deviceconnect.android.manager.core.util.DConnectUtil;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Device Connect Manager の性能情報を集計するクラス.
+ * <p>
+ * 以下の情報を集計して、JSON 形式の {@link Bundle} または Prometheus のテキスト形式で出力します。
+ * <ul>
+ * <li>プラグインごとの待ち時間とラウンドトリップ時間</li>
+ * <li>API ごとのラウンドトリップ時間、シリアライズ時間、リクエスト全体の処理時間</li>
+ * <li>プラグインごとのタイムアウトと送信エラーの回数</li>
+ * <li>{@link DConnectRequestManager} の処理中・待機中のリクエスト数</li>
+ * <li>イベントの送信回数と直近の送信頻度</li>
+ * <li>ファイル転送のサイズと時間</li>
+ * </ul>
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class DConnectMetrics {
+    /**
+     * WebSocket で送信したイベントを表す送信方法.
+     */
+    public static final String TRANSPORT_WEBSOCKET = "websocket";
+
+    /**
+     * Broadcast で送信したイベントを表す送信方法.
+     */
+    public static final String TRANSPORT_BROADCAST = "broadcast";
+
+    /**
+     * 集計する API の最大数.
+     * <p>
+     * 上限を超えた API は {@link #OTHER_API} にまとめて集計します。
+     * </p>
+     */
+    private static final int MAX_API_COUNT = 256;
+
+    /**
+     * 上限を超えた API をまとめて集計する時の名前.
+     */
+    private static final String OTHER_API = "other";
+
+    /**
+     * 出力するパーセンタイル.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * プラグイン側の待ち時間.
+     */
+    private static final String PHASE_QUEUE = "queue";
+
+    /**
+     * プラグインとのラウンドトリップ時間.
+     */
+    private static final String PHASE_ROUND_TRIP = "roundTrip";
+
+    /**
+     * レスポンスのシリアライズ時間.
+     */
+    private static final String PHASE_SERIALIZATION = "serialization";
+
+    /**
+     * リクエスト全体の処理時間.
+     */
+    private static final String PHASE_TOTAL = "total";
+
+    /**
+     * 集計を開始した時刻.
+     */
+    private final long mStartTime = System.currentTimeMillis();
+
+    /**
+     * プラグインIDをキーにしたプラグインごとの集計.
+     */
+    private final Map<String, PluginMetrics> mPlugins = new ConcurrentHashMap<>();
+
+    /**
+     * API をキーにした API ごとの集計.
+     */
+    private final Map<String, ApiMetrics> mApis = new ConcurrentHashMap<>();
+
+    /**
+     * 送信方法をキーにしたイベントの集計.
+     */
+    private final Map<String, EventMetrics> mEvents = new ConcurrentHashMap<>();
+
+    /**
+     * ファイル転送の集計.
+     */
+    private final FileTransferMetrics mFileTransfers = new FileTransferMetrics();
+
+    /**
+     * リクエスト数を取得するリクエスト管理クラス.
+     */
+    private volatile DConnectRequestManager mRequestManager;
+
+    /**
+     * リクエスト数を取得するリクエスト管理クラスを設定します.
+     *
+     * @param requestManager リクエスト管理クラス
+     */
+    public void setRequestManager(final DConnectRequestManager requestManager) {
+        mRequestManager = requestManager;
+    }
+
+    /**
+     * プラグインへの送信を待機した時間を記録します.
+     *
+     * @param plugin 送信先のプラグイン
+     * @param nanos 待機した時間(ナノ秒)
+     */
+    public void recordQueueTime(final DevicePlugin plugin, final long nanos) {
+        getPluginMetrics(plugin).mQueue.record(nanos);
+    }
+
+    /**
+     * プラグインとのラウンドトリップ時間を記録します.
+     *
+     * @param plugin 送信先のプラグイン
+     * @param request プラグインへのリクエスト
+     * @param nanos ラウンドトリップ時間(ナノ秒)
+     */
+    public void recordRoundTripTime(final DevicePlugin plugin, final Intent request, final long nanos) {
+        getPluginMetrics(plugin).mRoundTrip.record(nanos);
+        getApiMetrics(request).mRoundTrip.record(nanos);
+    }
+
+    /**
+     * プラグインからのレスポンスがタイムアウトしたことを記録します.
+     *
+     * @param plugin 送信先のプラグイン
+     */
+    public void recordTimeout(final DevicePlugin plugin) {
+        getPluginMetrics(plugin).mTimeouts.increment();
+    }
+
+    /**
+     * プラグインへの送信に失敗したことを記録します.
+     *
+     * @param plugin 送信先のプラグイン
+     * @param reason 失敗した理由
+     */
+    public void recordMessagingError(final DevicePlugin plugin, final MessagingException.Reason reason) {
+        getPluginMetrics(plugin).mMessagingErrors.get(reason).increment();
+    }
+
+    /**
+     * リクエストの処理時間を記録します.
+     *
+     * @param request リクエスト
+     * @param serializationNanos レスポンスのシリアライズ時間(ナノ秒)
+     * @param totalNanos リクエスト全体の処理時間(ナノ秒)
+     */
+    public void recordResponse(final Intent request, final long serializationNanos, final long totalNanos) {
+        ApiMetrics metrics = getApiMetrics(request);
+        metrics.mSerialization.record(serializationNanos);
+        metrics.mTotal.record(totalNanos);
+    }
+
+    /**
+     * イベントの送信を記録します.
+     *
+     * @param transport 送信方法
+     * @param success 送信に成功した場合はtrue、それ以外はfalse
+     */
+    public void recordEvent(final String transport, final boolean success) {
+        EventMetrics metrics = mEvents.computeIfAbsent(transport, (t) -> new EventMetrics());
+        if (success) {
+            metrics.mSent.mark();
+        } else {
+            metrics.mErrors.increment();
+        }
+    }
+
+    /**
+     * ファイル転送を記録します.
+     *
+     * @param bytes 転送したサイズ
+     * @param nanos 転送にかかった時間(ナノ秒)
+     */
+    public void recordFileTransfer(final long bytes, final long nanos) {
+        mFileTransfers.mBytes.add(bytes);
+        mFileTransfers.mDuration.record(nanos);
+    }
+
+    /**
+     * 集計結果を JSON 形式の {@link Bundle} で取得します.
+     *
+     * @return 集計結果
+     */
+    public Bundle toBundle() {
+        DConnectRequestManager requestManager = mRequestManager;
+
+        Bundle root = new Bundle();
+        root.putLong("uptime", System.currentTimeMillis() - mStartTime);
+
+        Bundle requests = new Bundle();
+        if (requestManager != null) {
+            requests.putInt("processing", requestManager.getRequestCount());
+            requests.putInt("waitingResponse", requestManager.getPendingResponseCount());
+            requests.putInt("queued", requestManager.getQueuedTaskCount());
+        }
+        root.putBundle("requests", requests);
+
+        List<Bundle> plugins = new ArrayList<>();
+        for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+            PluginMetrics metrics = entry.getValue();
+            Bundle plugin = new Bundle();
+            plugin.putString("pluginId", entry.getKey());
+            plugin.putString("packageName", metrics.mPackageName);
+            if (requestManager != null) {
+                plugin.putInt("inFlight", requestManager.getInFlightCount(entry.getKey()));
+                plugin.putInt("waiting", requestManager.getWaitingCount(entry.getKey()));
+            }
+            plugin.putLong("timeouts", metrics.mTimeouts.sum());
+            Bundle errors = new Bundle();
+            for (Map.Entry<MessagingException.Reason, LongAdder> error : metrics.mMessagingErrors.entrySet()) {
+                errors.putLong(toCamelCase(error.getKey().name()), error.getValue().sum());
+            }
+            plugin.putBundle("messagingErrors", errors);
+            Bundle circuitBreaker = new Bundle();
+            circuitBreaker.putString("state", toCamelCase(metrics.mCircuitBreaker.getState().name()));
+            circuitBreaker.putLong("rejected", metrics.mCircuitBreaker.getRejectedCount());
+            plugin.putBundle("circuitBreaker", circuitBreaker);
+            plugin.putBundle(PHASE_QUEUE, toBundle(metrics.mQueue));
+            plugin.putBundle(PHASE_ROUND_TRIP, toBundle(metrics.mRoundTrip));
+            plugins.add(plugin);
+        }
+        root.putParcelableArray("plugins", plugins.toArray(new Bundle[0]));
+
+        List<Bundle> apis = new ArrayList<>();
+        for (Map.Entry<String, ApiMetrics> entry : mApis.entrySet()) {
+            ApiMetrics metrics = entry.getValue();
+            Bundle api = new Bundle();
+            api.putString("api", entry.getKey());
+            api.putBundle(PHASE_ROUND_TRIP, toBundle(metrics.mRoundTrip));
+            api.putBundle(PHASE_SERIALIZATION, toBundle(metrics.mSerialization));
+            api.putBundle(PHASE_TOTAL, toBundle(metrics.mTotal));
+            apis.add(api);
+        }
+        root.putParcelableArray("apis", apis.toArray(new Bundle[0]));
+
+        List<Bundle> events = new ArrayList<>();
+        for (Map.Entry<String, EventMetrics> entry : mEvents.entrySet()) {
+            EventMetrics metrics = entry.getValue();
+            Bundle event = new Bundle();
+            event.putString("transport", entry.getKey());
+            event.putLong("count", metrics.mSent.getCount());
+            event.putLong("errors", metrics.mErrors.sum());
+            event.putDouble("rate", metrics.mSent.getRate());
+            events.add(event);
+        }
+        root.putParcelableArray("events", events.toArray(new Bundle[0]));
+
+        Bundle files = new Bundle();
+        long bytes = mFileTransfers.mBytes.sum();
+        long nanos = mFileTransfers.mDuration.getSum();
+        files.putLong("bytes", bytes);
+        files.putDouble("throughput", nanos > 0 ? bytes * 1000000000.0 / nanos : 0);
+        files.putBundle("duration", toBundle(mFileTransfers.mDuration));
+        root.putBundle("files", files);
+        return root;
+    }
+
+    /**
+     * 集計結果を Prometheus のテキスト形式で取得します.
+     *
+     * @return 集計結果
+     */
+    public String toPrometheusText() {
+        DConnectRequestManager requestManager = mRequestManager;
+        StringBuilder sb = new StringBuilder(4096);
+
+        header(sb, "dconnect_uptime_seconds", "gauge", "Time since the manager started.");
+        sample(sb, "dconnect_uptime_seconds", null, (System.currentTimeMillis() - mStartTime) / 1000.0);
+
+        if (requestManager != null) {
+            header(sb, "dconnect_requests", "gauge", "Number of requests in the request manager.");
+            sample(sb, "dconnect_requests", new String[] {"state", "processing"}, requestManager.getRequestCount());
+            sample(sb, "dconnect_requests", new String[] {"state", "waiting_response"}, requestManager.getPendingResponseCount());
+            sample(sb, "dconnect_requests", new String[] {"state", "queued"}, requestManager.getQueuedTaskCount());
+
+            header(sb, "dconnect_plugin_requests", "gauge", "Number of requests to each plug-in.");
+            for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+                String[] labels = {"plugin", entry.getKey(), "package", entry.getValue().mPackageName};
+                sample(sb, "dconnect_plugin_requests", append(labels, "state", "in_flight"),
+                        requestManager.getInFlightCount(entry.getKey()));
+                sample(sb, "dconnect_plugin_requests", append(labels, "state", "waiting"),
+                        requestManager.getWaitingCount(entry.getKey()));
+            }
+        }
+
+        header(sb, "dconnect_plugin_latency_seconds", "summary", "Latency of requests to each plug-in.");
+        for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+            String[] labels = {"plugin", entry.getKey(), "package", entry.getValue().mPackageName};
+            summary(sb, "dconnect_plugin_latency_seconds", append(labels, "phase", PHASE_QUEUE), entry.getValue().mQueue);
+            summary(sb, "dconnect_plugin_latency_seconds", append(labels, "phase", PHASE_ROUND_TRIP), entry.getValue().mRoundTrip);
+        }
+
+        header(sb, "dconnect_plugin_timeouts_total", "counter", "Number of requests to each plug-in that timed out.");
+        for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+            String[] labels = {"plugin", entry.getKey(), "package", entry.getValue().mPackageName};
+            sample(sb, "dconnect_plugin_timeouts_total", labels, entry.getValue().mTimeouts.sum());
+        }
+
+        header(sb, "dconnect_plugin_messaging_errors_total", "counter", "Number of requests that could not be sent to each plug-in.");
+        for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+            String[] labels = {"plugin", entry.getKey(), "package", entry.getValue().mPackageName};
+            for (Map.Entry<MessagingException.Reason, LongAdder> error : entry.getValue().mMessagingErrors.entrySet()) {
+                sample(sb, "dconnect_plugin_messaging_errors_total",
+                        append(labels, "reason", error.getKey().name().toLowerCase(Locale.ENGLISH)), error.getValue().sum());
+            }
+        }
+
+        header(sb, "dconnect_plugin_circuit_state", "gauge", "State of the circuit breaker for each plug-in.");
+        for (Map.Entry<String, PluginMetrics> entry : mPlugins.entrySet()) {
+            String[] labels = {"plugin", entry.getKey(), "package", entry.getValue().mPackageName};
+            CircuitBreaker.State current = entry.getValue().mCircuitBreaker.getState();
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                sample(sb, "dconnect_plugin_circuit_state",
+                        append(labels, "state", state.name().toLowerCase(Locale.ENGLISH)), state == current ? 1 : 0);
+            }
+        }
+
+        header(sb, "dconnect_api_latency_seconds", "summary", "Latency of requests for each API.");
+        for (Map.Entry<String, ApiMetrics> entry : mApis.entrySet()) {
+            String[] labels = {"api", entry.getKey()};
+            summary(sb, "dconnect_api_latency_seconds", append(labels, "phase", PHASE_ROUND_TRIP), entry.getValue().mRoundTrip);
+            summary(sb, "dconnect_api_latency_seconds", append(labels, "phase", PHASE_SERIALIZATION), entry.getValue().mSerialization);
+            summary(sb, "dconnect_api_latency_seconds", append(labels, "phase", PHASE_TOTAL), entry.getValue().mTotal);
+        }
+
+        header(sb, "dconnect_events_total", "counter", "Number of events sent to applications.");
+        for (Map.Entry<String, EventMetrics> entry : mEvents.entrySet()) {
+            sample(sb, "dconnect_events_total", new String[] {"transport", entry.getKey()}, entry.getValue().mSent.getCount());
+        }
+
+        header(sb, "dconnect_event_errors_total", "counter", "Number of events that could not be sent to applications.");
+        for (Map.Entry<String, EventMetrics> entry : mEvents.entrySet()) {
+            sample(sb, "dconnect_event_errors_total", new String[] {"transport", entry.getKey()}, entry.getValue().mErrors.sum());
+        }
+
+        header(sb, "dconnect_event_rate", "gauge", "Events sent per second over the last minute.");
+        for (Map.Entry<String, EventMetrics> entry : mEvents.entrySet()) {
+            sample(sb, "dconnect_event_rate", new String[] {"transport", entry.getKey()}, entry.getValue().mSent.getRate());
+        }
+
+        header(sb, "dconnect_file_transfer_bytes_total", "counter", "Number of bytes sent by the files API.");
+        sample(sb, "dconnect_file_transfer_bytes_total", null, mFileTransfers.mBytes.sum());
+
+        header(sb, "dconnect_file_transfer_seconds", "summary", "Duration of file transfers by the files API.");
+        summary(sb, "dconnect_file_transfer_seconds", new String[0], mFileTransfers.mDuration);
+        return sb.toString();
+    }
+
+    /**
+     * プラグインの集計を取得します.
+     *
+     * @param plugin プラグイン
+     * @return プラグインの集計
+     */
+    private PluginMetrics getPluginMetrics(final DevicePlugin plugin) {
+        PluginMetrics metrics = mPlugins.get(plugin.getPluginId());
+        if (metrics == null) {
+            metrics = mPlugins.computeIfAbsent(plugin.getPluginId(), (id) -> new PluginMetrics(plugin.getPackageName(), plugin.getCircuitBreaker()));
+        } else if (metrics.mCircuitBreaker != plugin.getCircuitBreaker()) {
+            metrics.mCircuitBreaker = plugin.getCircuitBreaker();
+        }
+        return metrics;
+    }
+
+    /**
+     * API の集計を取得します.
+     * <p>
+     * 集計している API の数が上限を超えた場合には、{@link #OTHER_API} の集計を返却します。
+     * </p>
+     *
+     * @param request リクエスト
+     * @return API の集計
+     */
+    private ApiMetrics getApiMetrics(final Intent request) {
+        String api = DConnectUtil.convertRequestToString(request).toLowerCase(Locale.ENGLISH);
+        ApiMetrics metrics = mApis.get(api);
+        if (metrics == null) {
+            if (mApis.size() >= MAX_API_COUNT) {
+                api = OTHER_API;
+            }
+            metrics = mApis.computeIfAbsent(api, (a) -> new ApiMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * ヒストグラムを JSON 形式の {@link Bundle} に変換します.
+     * <p>
+     * 時間はミリ秒で格納します。
+     * </p>
+     *
+     * @param histogram ヒストグラム
+     * @return Bundle
+     */
+    private static Bundle toBundle(final LatencyHistogram histogram) {
+        Bundle b = new Bundle();
+        b.putLong("count", histogram.getCount());
+        b.putDouble("mean", histogram.getMean() / 1000000.0);
+        b.putDouble("max", histogram.getMax() / 1000000.0);
+        for (double p : PERCENTILES) {
+            b.putDouble("p" + (int) p, histogram.getValueAtPercentile(p) / 1000000.0);
+        }
+        return b;
+    }
+
+    /**
+     * Prometheus のメトリクスのヘッダーを追加します.
+     *
+     * @param sb 追加先
+     * @param name メトリクス名
+     * @param type メトリクスの種類
+     * @param help メトリクスの説明
+     */
+    private static void header(final StringBuilder sb, final String name, final String type, final String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Prometheus の summary の値を追加します.
+     *
+     * @param sb 追加先
+     * @param name メトリクス名
+     * @param labels ラベルの名前と値を交互に並べた配列
+     * @param histogram ヒストグラム
+     */
+    private static void summary(final StringBuilder sb, final String name, final String[] labels,
+                                final LatencyHistogram histogram) {
+        for (double p : PERCENTILES) {
+            sample(sb, name, append(labels, "quantile", String.valueOf(p / 100)),
+                    histogram.getValueAtPercentile(p) / 1000000000.0);
+        }
+        sample(sb, name + "_sum", labels, histogram.getSum() / 1000000000.0);
+        sample(sb, name + "_count", labels, histogram.getCount());
+    }
+
+    /**
+     * Prometheus の値を1行追加します.
+     *
+     * @param sb 追加先
+     * @param name メトリクス名
+     * @param labels ラベルの名前と値を交互に並べた配列、ラベルが無い場合はnull
+     * @param value 値
+     */
+    private static void sample(final StringBuilder sb, final String name, final String[] labels, final double value) {
+        sb.append(name);
+        if (labels != null && labels.length > 0) {
+            sb.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(labels[i]).append("=\"");
+                escape(sb, labels[i + 1]);
+                sb.append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Prometheus のラベルの値をエスケープして追加します.
+     *
+     * @param sb 追加先
+     * @param value ラベルの値
+     */
+    private static void escape(final StringBuilder sb, final String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * ラベルの配列にラベルを追加した配列を作成します.
+     *
+     * @param labels ラベルの名前と値を交互に並べた配列
+     * @param name 追加するラベルの名前
+     * @param value 追加するラベルの値
+     * @return ラベルを追加した配列
+     */
+    private static String[] append(final String[] labels, final String name, final String value) {
+        String[] result = new String[labels.length + 2];
+        System.arraycopy(labels, 0, result, 0, labels.length);
+        result[labels.length] = name;
+        result[labels.length + 1] = value;
+        return result;
+    }
+
+    /**
+     * 大文字とアンダーバーの名前をキャメルケースに変換します.
+     *
+     * @param name 変換する名前
+     * @return キャメルケースの名前
+     */
+    private static String toCamelCase(final String name) {
+        StringBuilder sb = new StringBuilder();
+        boolean upper = false;
+        for (char c : name.toLowerCase(Locale.ENGLISH).toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * プラグインごとの集計.
+     */
+    private static final class PluginMetrics {
+        /**
+         * プラグインのパッケージ名.
+         */
+        private final String mPackageName;
+
+        /**
+         * 送信を待機した時間.
+         */
+        private final LatencyHistogram mQueue = new LatencyHistogram();
+
+        /**
+         * ラウンドトリップ時間.
+         */
+        private final LatencyHistogram mRoundTrip = new LatencyHistogram();
+
+        /**
+         * タイムアウトの回数.
+         */
+        private final LongAdder mTimeouts = new LongAdder();
+
+        /**
+         * 送信に失敗した理由ごとの回数.
+         * <p>
+         * 作成時に全ての理由を格納して、以降は変更しません。
+         * </p>
+         */
+        private final Map<MessagingException.Reason, LongAdder> mMessagingErrors = new EnumMap<>(MessagingException.Reason.class);
+
+        /**
+         * プラグインのサーキットブレーカー.
+         * <p>
+         * プラグインが再読み込みされた場合には、新しいプラグインのサーキットブレーカーに置き換えます。
+         * </p>
+         */
+        private volatile CircuitBreaker mCircuitBreaker;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param packageName プラグインのパッケージ名
+         * @param circuitBreaker プラグインのサーキットブレーカー
+         */
+        private PluginMetrics(final String packageName, final CircuitBreaker circuitBreaker) {
+            mPackageName = packageName;
+            mCircuitBreaker = circuitBreaker;
+            for (MessagingException.Reason reason : MessagingException.Reason.values()) {
+                mMessagingErrors.put(reason, new LongAdder());
+            }
+        }
+    }
+
+    /**
+     * API ごとの集計.
+     */
+    private static final class ApiMetrics {
+        /**
+         * プラグインとのラウンドトリップ時間.
+         */
+        private final LatencyHistogram mRoundTrip = new LatencyHistogram();
+
+        /**
+         * レスポンスのシリアライズ時間.
+         */
+        private final LatencyHistogram mSerialization = new LatencyHistogram();
+
+        /**
+         * リクエスト全体の処理時間.
+         */
+        private final LatencyHistogram mTotal = new LatencyHistogram();
+    }
+
+    /**
+     * ファイル転送の集計.
+     */
+    private static final class FileTransferMetrics {
+        /**
+         * 転送したサイズの合計.
+         */
+        private final LongAdder mBytes = new LongAdder();
+
+        /**
+         * 転送にかかった時間.
+         */
+        private final LatencyHistogram mDuration = new LatencyHistogram();
+    }
+
+    /**
+     * イベントの送信方法ごとの集計.
+     */
+    private static final class EventMetrics {
+        /**
+         * 送信に成功したイベント.
+         */
+        private final RateMeter mSent = new RateMeter();
+
+        /**
+         * 送信に失敗したイベントの数.
+         */
+        private final LongAdder mErrors = new LongAdder();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ LatencyHistogram.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 処理時間の分布を記録するヒストグラム.
+ * <p>
+ * HdrHistogram と同様に、2のべき乗ごとの範囲をさらに {@value #SUB_BUCKET_COUNT} 個に分割したバケットで
+ * マイクロ秒単位の処理時間を数えます。値の相対誤差は 1/{@value #SUB_BUCKET_COUNT} 以内になります。
+ * </p>
+ * <p>
+ * 記録はロックを使用せずに行うので、複数のスレッドから同時に呼び出すことができます。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class LatencyHistogram {
+    /**
+     * 1マイクロ秒単位で数える範囲.
+     */
+    private static final int LINEAR_BUCKET_COUNT = 16;
+
+    /**
+     * 2のべき乗ごとの範囲を分割する数のビット数.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * 2のべき乗ごとの範囲を分割する数.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * {@link #LINEAR_BUCKET_COUNT} のビット数.
+     */
+    private static final int LINEAR_BUCKET_BITS = 4;
+
+    /**
+     * 記録できる最大値のビット数.
+     * <p>
+     * 2^40 マイクロ秒(約12日)を超える値は、最後のバケットに数えます。
+     * </p>
+     */
+    private static final int MAX_BITS = 40;
+
+    /**
+     * バケットの数.
+     */
+    private static final int BUCKET_COUNT = LINEAR_BUCKET_COUNT
+            + (MAX_BITS - LINEAR_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    /**
+     * バケットごとの記録数.
+     */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 記録数.
+     */
+    private final LongAdder mCount = new LongAdder();
+
+    /**
+     * 記録した値の合計(ナノ秒).
+     */
+    private final LongAdder mSum = new LongAdder();
+
+    /**
+     * 記録した値の最大値(ナノ秒).
+     */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 処理時間を記録します.
+     *
+     * @param nanos 処理時間(ナノ秒)、負の値の場合は0として記録する
+     */
+    public void record(final long nanos) {
+        long value = Math.max(0, nanos);
+        mBuckets.incrementAndGet(indexOf(value / 1000));
+        mCount.increment();
+        mSum.add(value);
+        mMax.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * 記録数を取得します.
+     *
+     * @return 記録数
+     */
+    public long getCount() {
+        return mCount.sum();
+    }
+
+    /**
+     * 記録した値の合計を取得します.
+     *
+     * @return 合計(ナノ秒)
+     */
+    public long getSum() {
+        return mSum.sum();
+    }
+
+    /**
+     * 記録した値の最大値を取得します.
+     *
+     * @return 最大値(ナノ秒)
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * 記録した値の平均値を取得します.
+     *
+     * @return 平均値(ナノ秒)、記録が無い場合は0
+     */
+    public long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * 指定されたパーセンタイルの値を取得します.
+     * <p>
+     * 該当するバケットの上限の値を返却します。ただし、記録した最大値を超えることはありません。
+     * </p>
+     *
+     * @param percentile パーセンタイル(0〜100)
+     * @return パーセンタイルの値(ナノ秒)、記録が無い場合は0
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        double p = Math.min(100, Math.max(0, percentile));
+        long target = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long sum = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sum += counts[i];
+            if (sum >= target) {
+                return Math.min(upperBoundOf(i) * 1000 + 999, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * マイクロ秒の値が含まれるバケットの番号を取得します.
+     *
+     * @param micros 値(マイクロ秒)
+     * @return バケットの番号
+     */
+    static int indexOf(final long micros) {
+        if (micros < LINEAR_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        int index = LINEAR_BUCKET_COUNT + (exp - LINEAR_BUCKET_BITS) * SUB_BUCKET_COUNT + sub;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * バケットに含まれる値の上限を取得します.
+     *
+     * @param index バケットの番号
+     * @return 上限の値(マイクロ秒)
+     */
+    static long upperBoundOf(final int index) {
+        if (index < LINEAR_BUCKET_COUNT) {
+            return index;
+        }
+        int exp = (index - LINEAR_BUCKET_COUNT) / SUB_BUCKET_COUNT + LINEAR_BUCKET_BITS;
+        int sub = (index - LINEAR_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long width = 1L << (exp - SUB_BUCKET_BITS);
+        return (SUB_BUCKET_COUNT + sub) * width + width - 1;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ RateMeter.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 発生回数と直近の発生頻度を計測するクラス.
+ * <p>
+ * 1秒ごとのスロットを {@value #WINDOW_SECONDS} 個持ち、直近 {@value #WINDOW_SECONDS} 秒間の1秒あたりの発生回数を計算します。
+ * スロットの切り替え時に同時に記録された回数を取りこぼすことがありますが、頻度の目安としては問題ありません。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class RateMeter {
+    /**
+     * 頻度を計算する期間(秒).
+     */
+    private static final int WINDOW_SECONDS = 60;
+
+    /**
+     * 総発生回数.
+     */
+    private final LongAdder mCount = new LongAdder();
+
+    /**
+     * スロットごとの発生回数.
+     */
+    private final AtomicLongArray mSlotCounts = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * スロットが表している時刻(秒).
+     */
+    private final AtomicLongArray mSlotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * 発生を記録します.
+     */
+    void mark() {
+        mCount.increment();
+
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+        long old = mSlotSeconds.get(slot);
+        if (old != second && mSlotSeconds.compareAndSet(slot, old, second)) {
+            mSlotCounts.set(slot, 0);
+        }
+        mSlotCounts.incrementAndGet(slot);
+    }
+
+    /**
+     * 総発生回数を取得します.
+     *
+     * @return 総発生回数
+     */
+    long getCount() {
+        return mCount.sum();
+    }
+
+    /**
+     * 直近の1秒あたりの発生回数を取得します.
+     *
+     * @return 1秒あたりの発生回数
+     */
+    double getRate() {
+        long now = System.currentTimeMillis() / 1000;
+        long sum = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            long second = mSlotSeconds.get(i);
+            if (second > now - WINDOW_SECONDS && second <= now) {
+                sum += mSlotCounts.get(i);
+            }
+        }
+        return (double) sum / WINDOW_SECONDS;
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ org.deviceconnect.android.manager.core.metrics
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+/**
+ * Device Connect Managerの性能情報を集計するパッケージ.
+ */
+package org.deviceconnect.android.manager.core.metrics;
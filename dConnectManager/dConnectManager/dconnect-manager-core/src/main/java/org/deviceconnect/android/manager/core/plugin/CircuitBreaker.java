@@ -0,0 +1,269 @@
+/*
+ CircuitBreaker.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.plugin;
+
+/**
+ * プラグインへのリクエストの失敗が続いた場合に、一定時間リクエストを遮断するサーキットブレーカー.
+ * <p>
+ * 直近 {@value #WINDOW_SIZE} 回のリクエストのうち、タイムアウトと送信エラーの割合が
+ * {@value #FAILURE_RATE_THRESHOLD}% 以上になった場合に {@link State#OPEN} に遷移し、
+ * {@value #OPEN_DURATION} ミリ秒の間はリクエストを即座にエラーにします。
+ * </p>
+ * <p>
+ * 遮断時間が経過すると {@link State#HALF_OPEN} に遷移し、{@value #MAX_HALF_OPEN_PROBES} 件のリクエストだけを
+ * 試しにプラグインに送信します。試しに送信したリクエストが成功した場合は {@link State#CLOSED} に、
+ * 失敗した場合は再び {@link State#OPEN} に遷移します。
+ * 試しに送信したリクエストの結果が {@value #PROBE_TIMEOUT} ミリ秒経っても通知されない場合は、
+ * 別のリクエストを試しに送信します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class CircuitBreaker {
+    /**
+     * 失敗率を計算するリクエスト数.
+     */
+    private static final int WINDOW_SIZE = 20;
+
+    /**
+     * 失敗率を計算するために必要な最小のリクエスト数.
+     */
+    private static final int MIN_CALLS = 10;
+
+    /**
+     * 遮断する失敗率(%).
+     */
+    private static final int FAILURE_RATE_THRESHOLD = 50;
+
+    /**
+     * 遮断する時間(ミリ秒).
+     */
+    private static final long OPEN_DURATION = 30 * 1000;
+
+    /**
+     * {@link State#HALF_OPEN} の時に試しに送信するリクエストの数.
+     */
+    private static final int MAX_HALF_OPEN_PROBES = 1;
+
+    /**
+     * 試しに送信したリクエストの結果を待つ時間(ミリ秒).
+     * <p>
+     * リクエストのデフォルトのタイムアウトより長くする。
+     * </p>
+     */
+    private static final long PROBE_TIMEOUT = 90 * 1000;
+
+    /**
+     * サーキットブレーカーの状態.
+     */
+    public enum State {
+        /**
+         * リクエストを送信する.
+         */
+        CLOSED,
+
+        /**
+         * リクエストを遮断する.
+         */
+        OPEN,
+
+        /**
+         * 試しにリクエストを送信する.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 直近のリクエストの結果. true: 失敗 / false: 成功.
+     */
+    private final boolean[] mOutcomes = new boolean[WINDOW_SIZE];
+
+    /**
+     * 次に結果を書き込む位置.
+     */
+    private int mOutcomeIndex;
+
+    /**
+     * 記録した結果の数.
+     */
+    private int mOutcomeCount;
+
+    /**
+     * 記録した結果のうち、失敗の数.
+     */
+    private int mFailureCount;
+
+    /**
+     * 現在の状態.
+     */
+    private State mState = State.CLOSED;
+
+    /**
+     * {@link State#OPEN} に遷移した時刻(ナノ秒).
+     */
+    private long mOpenedNanos;
+
+    /**
+     * 試しに送信中のリクエスト数.
+     */
+    private int mProbeCount;
+
+    /**
+     * 最後に試しに送信を許可した時刻(ナノ秒).
+     */
+    private long mProbeNanos;
+
+    /**
+     * 遮断したリクエスト数.
+     */
+    private long mRejectedCount;
+
+    /**
+     * リクエストを送信してよいか確認します.
+     * <p>
+     * trueを返却した場合には、リクエストの完了後に {@link #onSuccess()}、{@link #onFailure()}、
+     * {@link #onIgnore()} のいずれかを呼び出して結果を通知してください。
+     * </p>
+     *
+     * @return 送信してよい場合はtrue、遮断する場合はfalse
+     */
+    public synchronized boolean tryAcquire() {
+        if (mState == State.OPEN) {
+            if (System.nanoTime() - mOpenedNanos < OPEN_DURATION * 1000000L) {
+                mRejectedCount++;
+                return false;
+            }
+            mState = State.HALF_OPEN;
+            mProbeCount = 0;
+        }
+        if (mState == State.HALF_OPEN) {
+            if (mProbeCount >= MAX_HALF_OPEN_PROBES) {
+                if (System.nanoTime() - mProbeNanos < PROBE_TIMEOUT * 1000000L) {
+                    mRejectedCount++;
+                    return false;
+                }
+                // 結果が通知されないリクエストは破棄して、次のリクエストを試しに送信する
+                mProbeCount = 0;
+            }
+            mProbeCount++;
+            mProbeNanos = System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * リクエストが成功したことを通知します.
+     */
+    public synchronized void onSuccess() {
+        switch (mState) {
+            case HALF_OPEN:
+                reset();
+                break;
+            case CLOSED:
+                record(false);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * リクエストがタイムアウト、または送信エラーになったことを通知します.
+     */
+    public synchronized void onFailure() {
+        switch (mState) {
+            case HALF_OPEN:
+                open();
+                break;
+            case CLOSED:
+                record(true);
+                if (mOutcomeCount >= MIN_CALLS
+                        && mFailureCount * 100 >= mOutcomeCount * FAILURE_RATE_THRESHOLD) {
+                    open();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * リクエストの結果を失敗率の計算に含めないことを通知します.
+     * <p>
+     * プラグインが無効化されていた場合など、プラグインの異常ではない理由で送信しなかった場合に使用します。
+     * </p>
+     */
+    public synchronized void onIgnore() {
+        if (mState == State.HALF_OPEN && mProbeCount > 0) {
+            mProbeCount--;
+        }
+    }
+
+    /**
+     * 状態を {@link State#CLOSED} に戻し、記録した結果を破棄します.
+     */
+    public synchronized void reset() {
+        mState = State.CLOSED;
+        mOutcomeIndex = 0;
+        mOutcomeCount = 0;
+        mFailureCount = 0;
+        mProbeCount = 0;
+    }
+
+    /**
+     * 現在の状態を取得します.
+     * <p>
+     * {@link State#OPEN} の遮断時間が経過している場合でも、次のリクエストが来るまでは {@link State#OPEN} を返却します。
+     * </p>
+     *
+     * @return 現在の状態
+     */
+    public synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * 遮断したリクエスト数を取得します.
+     *
+     * @return 遮断したリクエスト数
+     */
+    public synchronized long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /**
+     * 状態を {@link State#OPEN} に遷移します.
+     */
+    private void open() {
+        mState = State.OPEN;
+        mOpenedNanos = System.nanoTime();
+        mOutcomeIndex = 0;
+        mOutcomeCount = 0;
+        mFailureCount = 0;
+        mProbeCount = 0;
+    }
+
+    /**
+     * リクエストの結果を記録します.
+     *
+     * @param failure 失敗した場合はtrue、成功した場合はfalse
+     */
+    private void record(final boolean failure) {
+        if (mOutcomeCount == WINDOW_SIZE) {
+            if (mOutcomes[mOutcomeIndex]) {
+                mFailureCount--;
+            }
+        } else {
+            mOutcomeCount++;
+        }
+        mOutcomes[mOutcomeIndex] = failure;
+        if (failure) {
+            mFailureCount++;
+        }
+        mOutcomeIndex = (mOutcomeIndex + 1) % WINDOW_SIZE;
+    }
+}
@@ -65,6 +65,11 @@ public class DevicePlugin extends DConnectService {
      */
     private Connection mConnection;
 
+    /**
+     * プラグインへのリクエストを遮断するサーキットブレーカー.
+     */
+    private final CircuitBreaker mCircuitBreaker = new CircuitBreaker();
+
     /**
      * コンストラクタ.
      *
@@ -106,6 +111,15 @@ public class DevicePlugin extends DConnectService {
         return mHistory;
     }
 
+    /**
+     * プラグインへのリクエストを遮断するサーキットブレーカーを取得する.
+     *
+     * @return サーキットブレーカー
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
     /**
      * デバイスプラグインのパッケージ名を取得する.
      *
@@ -373,6 +387,15 @@ public class DevicePlugin extends DConnectService {
         return isEnabled() && mConnection.getState() == ConnectionState.CONNECTED;
     }
 
+    /**
+     * プラグインとの接続処理中かどうかを取得する.
+     *
+     * @return 接続処理中である場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    public boolean isConnecting() {
+        return mConnection.getState() == ConnectionState.CONNECTING;
+    }
+
     /**
      * プラグイン有効状態を設定する.
      *
@@ -405,6 +428,7 @@ public class DevicePlugin extends DConnectService {
      */
     public synchronized void enable() {
         setEnabled(true);
+        mCircuitBreaker.reset();
         apply();
         sendEnableState(true);
     }
@@ -474,33 +498,71 @@ public class DevicePlugin extends DConnectService {
         mConnection.removeConnectionStateListener(listener);
     }
 
+    /**
+     * サーキットブレーカーにプラグインへのリクエストの送信許可を求める.
+     * <p>
+     * 送信が許可された場合には、リクエストの完了後にサーキットブレーカーへ結果を通知すること。
+     * </p>
+     *
+     * @throws MessagingException サーキットブレーカーによってリクエストが遮断された場合
+     */
+    public void acquireSendPermit() throws MessagingException {
+        if (!mCircuitBreaker.tryAcquire()) {
+            mLogger.warning("Circuit breaker is open: plugin = " + mInfo.getPackageName() + "/" + mInfo.getClassName());
+            throw new MessagingException(MessagingException.Reason.CIRCUIT_OPEN);
+        }
+    }
+
     /**
      * プラグインに対してメッセージを送信する.
+     * <p>
+     * 複数のスレッドから同時に呼び出すことができます。
+     * 接続が中断されている場合の再接続のみ排他して行い、他のスレッドが再接続中の場合は再接続が終わるまで待ちます。
+     * </p>
      *
      * @param message メッセージ
      * @throws MessagingException メッセージ送信に失敗した場合
      */
-    public synchronized void send(final Intent message) throws MessagingException {
+    public void send(final Intent message) throws MessagingException {
         try {
             if (!isEnabled()) {
                 throw new MessagingException(MessagingException.Reason.NOT_ENABLED);
             }
-            switch (mConnection.getState()) {
-                case SUSPENDED:
-                    if (!tryConnection()) {
-                        throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
-                    }
-                    break;
-                default:
-                    break;
+            ConnectionState state = mConnection.getState();
+            if (state == ConnectionState.SUSPENDED || state == ConnectionState.CONNECTING) {
+                awaitConnection();
+            }
+            try {
+                mConnection.send(message);
+            } catch (MessagingException e) {
+                // 状態を確認した後に他のスレッドが再接続を始めた場合は、再接続が終わるのを待って送信し直す
+                if (e.getReason() != MessagingException.Reason.NOT_CONNECTED || !isConnecting()) {
+                    throw e;
+                }
+                awaitConnection();
+                mConnection.send(message);
             }
-            mConnection.send(message);
         } catch (MessagingException e) {
             mLogger.warning("Failed to send message: plugin = " + mInfo.getPackageName() + "/" + mInfo.getClassName());
             throw e;
         }
     }
 
+    /**
+     * 中断されている接続を再接続します.
+     * <p>
+     * 再接続は {@link #apply()} と同じロックで排他するので、他のスレッドが接続中の場合は接続が終わるまで待ちます。
+     * </p>
+     *
+     * @throws MessagingException 再接続に失敗した場合
+     */
+    private synchronized void awaitConnection() throws MessagingException {
+        // 他のスレッドで再接続済みの場合は再接続しない
+        if (mConnection.getState() == ConnectionState.SUSPENDED && !tryConnection()) {
+            throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
+        }
+    }
+
     /**
      * WebSocket の切断イベントを送信します.
      *
@@ -664,6 +726,29 @@ public class DevicePlugin extends DConnectService {
             return this;
         }
 
+        /**
+         * プラグインの静的な情報をまとめて設定する.
+         * <p>
+         * キャッシュから復元した情報を使用する場合に使用する。
+         * </p>
+         *
+         * @param info プラグインの静的な情報
+         * @return ビルダー
+         */
+        Builder setInfo(final Info info) {
+            mInfo = info;
+            return this;
+        }
+
+        /**
+         * 設定されたプラグインの静的な情報を取得する.
+         *
+         * @return プラグインの静的な情報
+         */
+        Info getInfo() {
+            return mInfo;
+        }
+
         /**
          * {@link DevicePlugin}オブジェクトを生成する.
          *
@@ -43,12 +43,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -87,6 +93,11 @@ public class DevicePluginManager {
      */
     private static final String VALUE_META_DATA = "enable";
 
+    /**
+     * プラグインの解析を並列に行うスレッドの最大数.
+     */
+    private static final int MAX_SCAN_THREADS = 4;
+
     /**
      * インストールされたPlug-inの情報を取得するためのReceiver.
      */
@@ -144,6 +155,11 @@ public class DevicePluginManager {
      */
     private final Context mContext;
 
+    /**
+     * 解析したプラグインの情報のキャッシュ.
+     */
+    private final PluginMetadataCache mMetadataCache;
+
     /**
      * 接続管理用インスタンスのファクトリー.
      */
@@ -168,6 +184,28 @@ public class DevicePluginManager {
     public DevicePluginManager(final Context context, final String domain) {
         mContext = context;
         mDConnectDomain = domain;
+        mMetadataCache = new PluginMetadataCache(context, getCacheEnvironment(context));
+    }
+
+    /**
+     * プラグインの情報のキャッシュを作成した環境を表す文字列を取得します.
+     * <p>
+     * OS のビルド、Device Connect Manager の更新日時、ロケールのいずれかが変わった場合には
+     * キャッシュを破棄して、プラグインを解析し直します。
+     * </p>
+     *
+     * @param context コンテキスト
+     * @return 環境を表す文字列
+     */
+    private static String getCacheEnvironment(final Context context) {
+        long lastUpdateTime;
+        try {
+            lastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (NameNotFoundException e) {
+            lastUpdateTime = 0;
+        }
+        return Build.FINGERPRINT + "|" + lastUpdateTime + "|" + Locale.getDefault().toLanguageTag();
     }
 
     /**
@@ -252,15 +290,20 @@ public class DevicePluginManager {
 
     /**
      * アプリ一覧からデバイスプラグイン一覧を作成する.
+     * <p>
+     * 前回から更新されていないパッケージはキャッシュしたプラグインの情報を使用し、
+     * 更新されたパッケージのみを並列に解析します。各段階の処理時間はログに出力します。
+     * </p>
      *
      * @throws PluginDetectionException アプリケーション一覧のサイズが大きすぎて取得できなかった場合
      */
     public void createDevicePluginList() throws PluginDetectionException {
         PackageManager pkgMgr = mContext.getPackageManager();
+        ScanStatistics stats = new ScanStatistics();
 
-        Map<String, List<DevicePlugin>> allPlugins;
+        Map<String, List<DevicePlugin.Info>> allPlugins;
         try {
-            allPlugins = getInstalledPlugins(pkgMgr);
+            allPlugins = getInstalledPlugins(pkgMgr, stats);
         } catch (Exception e) {
             PluginDetectionException.Reason reason;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
@@ -276,81 +319,182 @@ public class DevicePluginManager {
         }
 
         // 重複したプラグインを除外してからリストに追加
-        for (Map.Entry<String, List<DevicePlugin>> entry : allPlugins.entrySet()) {
-            List<DevicePlugin> pluginListPerPackage = entry.getValue();
+        long start = System.nanoTime();
+        for (Map.Entry<String, List<DevicePlugin.Info>> entry : allPlugins.entrySet()) {
+            List<DevicePlugin> pluginListPerPackage = createPlugins(entry.getValue());
             for (DevicePlugin plugin : filterPlugin(pluginListPerPackage)) {
                 addDevicePlugin(plugin);
             }
         }
+        stats.mRegisterTime = System.nanoTime() - start;
+
+        mLogger.info("PluginManager: Scanned plugins: " + stats);
     }
 
     /**
-     * インストールされているプラグインのリストを取得します.
+     * インストールされているプラグインの情報をパッケージごとに取得します.
+     * <p>
+     * プラグインを含まないパッケージは結果に含めません。
+     * </p>
      *
      * @param pkgMgr パッケージマネージャ
-     * @return プラグインのリスト
+     * @param stats 処理時間を記録する統計情報
+     * @return パッケージ名をキーにしたプラグインの情報のリスト
+     * @throws Exception パッケージの情報の取得に失敗した場合に発生
      */
-    private Map<String, List<DevicePlugin>> getInstalledPlugins(final PackageManager pkgMgr) {
-        Map<String, List<DevicePlugin>> result = new HashMap<>();
-        List<DevicePlugin> allPlugins = new ArrayList<>();
-        allPlugins.addAll(getInstalledServices(pkgMgr));
-        allPlugins.addAll(getInstalledReceivers(pkgMgr));
-        for (DevicePlugin plugin : allPlugins) {
-            String key = plugin.getPackageName();
-            List<DevicePlugin> list = result.get(key);
-            if (list == null) {
-                list = new ArrayList<>();
-                result.put(key, list);
+    private Map<String, List<DevicePlugin.Info>> getInstalledPlugins(final PackageManager pkgMgr,
+                                                                   final ScanStatistics stats) throws Exception {
+        long start = System.nanoTime();
+        int flag = PackageManager.GET_SERVICES | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS;
+        List<PackageInfo> pkgList = pkgMgr.getInstalledPackages(flag);
+        stats.mPackageCount = pkgList.size();
+        stats.mListTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        mMetadataCache.load();
+        Map<String, List<DevicePlugin.Info>> allInfo = new HashMap<>();
+        List<PackageInfo> changedList = new ArrayList<>();
+        Set<String> packageNames = new HashSet<>();
+        for (PackageInfo pkg : pkgList) {
+            packageNames.add(pkg.packageName);
+            List<DevicePlugin.Info> cached = mMetadataCache.get(pkg);
+            if (cached != null) {
+                allInfo.put(pkg.packageName, cached);
+            } else {
+                changedList.add(pkg);
             }
-            list.add(plugin);
         }
-        return result;
+        mMetadataCache.retain(packageNames);
+        stats.mParsedCount = changedList.size();
+        stats.mCacheTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        allInfo.putAll(parsePackages(pkgMgr, changedList));
+        stats.mParseTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        mMetadataCache.save();
+        stats.mSaveTime = System.nanoTime() - start;
+
+        Iterator<List<DevicePlugin.Info>> it = allInfo.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isEmpty()) {
+                it.remove();
+            }
+        }
+        return allInfo;
     }
 
     /**
-     * パッケージ情報からインストールされているプラグインのリストを取得します.
+     * 指定されたパッケージを並列に解析して、プラグインの情報を取得します.
+     *
      * @param pkgMgr パッケージマネージャ
-     * @param pkg パッケージ情報
-     * @return プラグインのリスト
+     * @param pkgList 解析するパッケージのリスト
+     * @return パッケージ名をキーにしたプラグインの情報のリスト
+     * @throws Exception パッケージの解析に失敗した場合に発生
      */
-    private List<DevicePlugin> getInstalledPluginsForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
-        List<DevicePlugin> result = new ArrayList<>();
-        result.addAll(getInstalledServicesForPackage(pkgMgr, pkg));
-        result.addAll(getInstalledReceiversForPackage(pkgMgr, pkg));
+    private Map<String, List<DevicePlugin.Info>> parsePackages(final PackageManager pkgMgr,
+                                                             final List<PackageInfo> pkgList) throws Exception {
+        Map<String, List<DevicePlugin.Info>> result = new HashMap<>();
+        int threads = Math.min(MAX_SCAN_THREADS,
+                Math.min(Runtime.getRuntime().availableProcessors(), pkgList.size()));
+        if (threads <= 1) {
+            for (PackageInfo pkg : pkgList) {
+                result.put(pkg.packageName, parsePackage(pkgMgr, pkg));
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<DevicePlugin.Info>>> futures = new ArrayList<>();
+            for (PackageInfo pkg : pkgList) {
+                futures.add(executor.submit(() -> parsePackage(pkgMgr, pkg)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.put(pkgList.get(i).packageName, futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
         return result;
     }
 
     /**
-     * インストールされているService型プラグインのリストを取得します.
+     * パッケージ情報からプラグインの情報を取得します.
      * <p>
-     * Android OS が O 以上になるとバックグラウンドで動作することができなくなります。<br>
-     * そのために Device Connect では、Manager がフォアグラウンドで動作し、各プラグインのサービス
-     * に対して Bind することで、プラグインもフォアグラウンドで動作するようにします。<br>
+     * キャッシュに一致する情報がある場合にはキャッシュを使用し、無い場合にはパッケージを解析してキャッシュに格納します。
      * </p>
+     *
+     * @param pkgMgr パッケージマネージャ
+     * @param pkg パッケージ情報
+     * @return プラグインの情報のリスト
+     */
+    private List<DevicePlugin.Info> getInstalledPluginsForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
+        mMetadataCache.load();
+        List<DevicePlugin.Info> cached = mMetadataCache.get(pkg);
+        if (cached != null) {
+            return cached;
+        }
+        return parsePackage(pkgMgr, pkg);
+    }
+
+    /**
+     * パッケージを解析してプラグインの情報を取得し、キャッシュに格納します.
      * <p>
-     * 上記の対応を行うためにプラグインもサービスで動作するように変更され、このメソッドで、そのプラグインを取得します。
+     * 複数のスレッドから同時に呼び出されます。
      * </p>
+     *
      * @param pkgMgr パッケージマネージャ
-     * @return サービスに対応したプラグインのリスト
+     * @param pkg パッケージ情報
+     * @return プラグインの情報のリスト
+     */
+    private List<DevicePlugin.Info> parsePackage(final PackageManager pkgMgr, final PackageInfo pkg) {
+        List<DevicePlugin.Info> result = new ArrayList<>();
+        result.addAll(getInstalledServicesForPackage(pkgMgr, pkg));
+        result.addAll(getInstalledReceiversForPackage(pkgMgr, pkg));
+        mMetadataCache.put(pkg, result);
+        return result;
+    }
+
+    /**
+     * プラグインの情報から DevicePlugin のインスタンスを作成します.
+     *
+     * @param infoList プラグインの情報のリスト
+     * @return プラグインのリスト
      */
-    private List<DevicePlugin> getInstalledServices(final PackageManager pkgMgr) {
+    private List<DevicePlugin> createPlugins(final List<DevicePlugin.Info> infoList) {
         List<DevicePlugin> result = new ArrayList<>();
-        List<PackageInfo> pkgList = pkgMgr.getInstalledPackages(PackageManager.GET_SERVICES | PackageManager.GET_PROVIDERS);
-        for (PackageInfo pkg : pkgList) {
-            result.addAll(getInstalledServicesForPackage(pkgMgr, pkg));
+        for (DevicePlugin.Info info : infoList) {
+            result.add(new DevicePlugin.Builder(mContext).setInfo(info).build());
         }
         return result;
     }
 
     /**
-     * パッケージ情報からプラグインのリストを取得します.
-     *
+     * パッケージ情報から Service 型プラグインの情報を取得します.
+     * <p>
+     * Android OS が O 以上になるとバックグラウンドで動作することができなくなります。<br>
+     * そのために Device Connect では、Manager がフォアグラウンドで動作し、各プラグインのサービス
+     * に対して Bind することで、プラグインもフォアグラウンドで動作するようにします。<br>
+     * </p>
+     * <p>
+     * 上記の対応を行うためにプラグインもサービスで動作するように変更され、このメソッドで、そのプラグインを取得します。
+     * </p>
      * @param pkgMgr パッケージマネージャ
      * @param pkg パッケージ情報
-     * @return プラグインのリスト
+     * @return サービスに対応したプラグインの情報のリスト
      */
-    private List<DevicePlugin> getInstalledServicesForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
-        List<DevicePlugin> result = new ArrayList<>();
+    private List<DevicePlugin.Info> getInstalledServicesForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
+        List<DevicePlugin.Info> result = new ArrayList<>();
         if (pkg != null) {
             ServiceInfo[] array = pkg.services;
             if (array != null) {
@@ -367,32 +511,17 @@ public class DevicePluginManager {
     }
 
     /**
-     * インストールされている BroadcastReceiver 型プラグインのリストを取得します.
+     * パッケージ情報から BroadcastReceiver 型プラグインの情報を取得します.
      * <p>
      * 従来の Device Connect は BroadcastReceiver を用いて各プラグインと通信を行なっていました。<br>
      * ここでは、下位互換のために BroadcastReceiver 型のプラグインのリスト取得を行います。
      * </p>
      * @param pkgMgr パッケージマネージャ
-     * @return サービスに対応したプラグインのリスト
-     */
-    private List<DevicePlugin> getInstalledReceivers(final PackageManager pkgMgr) {
-        List<DevicePlugin> result = new ArrayList<>();
-        List<PackageInfo> pkgList = pkgMgr.getInstalledPackages(PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS);
-        for (PackageInfo pkg : pkgList) {
-            result.addAll(getInstalledReceiversForPackage(pkgMgr, pkg));
-        }
-        return result;
-    }
-
-    /**
-     * パッケージ情報からプラグインのリストを取得します.
-     *
-     * @param pkgMgr パッケージマネージャ
      * @param pkg パッケージ情報
-     * @return プラグインのリスト
+     * @return レシーバーに対応したプラグインの情報のリスト
      */
-    private List<DevicePlugin> getInstalledReceiversForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
-        List<DevicePlugin> result = new ArrayList<>();
+    private List<DevicePlugin.Info> getInstalledReceiversForPackage(final PackageManager pkgMgr, final PackageInfo pkg) {
+        List<DevicePlugin.Info> result = new ArrayList<>();
         if (pkg != null) {
             ActivityInfo[] array = pkg.receivers;
             if (array != null) {
@@ -423,10 +552,11 @@ public class DevicePluginManager {
             int flag = PackageManager.GET_SERVICES | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS;
             PackageInfo pkg = pkgMgr.getPackageInfo(packageName, flag);
             if (pkg != null) {
-                List<DevicePlugin> plugins = getInstalledPluginsForPackage(pkgMgr, pkg);
+                List<DevicePlugin> plugins = createPlugins(getInstalledPluginsForPackage(pkgMgr, pkg));
                 for (DevicePlugin plugin : filterPlugin(plugins)) {
                     addDevicePlugin(plugin);
                 }
+                saveMetadataCache();
             }
         } catch (NameNotFoundException e) {
             // NOP.
@@ -533,15 +663,15 @@ public class DevicePluginManager {
     }
 
     /**
-     * 指定されたコンポーネントからプラグインの情報を取得して DevicePlugin のインスタンスを作成します.
+     * 指定されたコンポーネントからプラグインの情報を取得します.
      * <p>
      * 既に同じコンポーネントのプラグインが存在する場合には上書きします。
      * </p>
      * @param pkgInfo パッケージ情報
      * @param componentInfo コンポーネント情報
-     * @return DevicePlugin のインスタンス
+     * @return プラグインの情報
      */
-    private DevicePlugin parsePlugin(final PackageInfo pkgInfo, final ComponentInfo componentInfo) {
+    private DevicePlugin.Info parsePlugin(final PackageInfo pkgInfo, final ComponentInfo componentInfo) {
         PackageManager pkgMgr = mContext.getPackageManager();
 
         Bundle metaData = componentInfo.metaData;
@@ -561,7 +691,7 @@ public class DevicePluginManager {
         Integer iconId = (Integer) metaData.get(PLUGIN_META_PLUGIN_ICON);
 
         if (BuildConfig.DEBUG) {
-            mLogger.info("Added DevicePlugin: [" + hash + "]\n" +
+            mLogger.info("Parsed DevicePlugin: [" + hash + "]\n" +
                     "    PackageName: " + packageName + "\n" +
                     "    className: " + className + "\n" +
                     "    versionName: " + versionName + "\n" +
@@ -605,7 +735,7 @@ public class DevicePluginManager {
             }
         }
 
-        return plugin.build();
+        return plugin.getInfo();
     }
 
     /**
@@ -628,6 +758,9 @@ public class DevicePluginManager {
             throw new IllegalArgumentException("packageName is null.");
         }
 
+        mMetadataCache.remove(packageName);
+        saveMetadataCache();
+
         for (String key : mPlugins.keySet()) {
             DevicePlugin plugin = mPlugins.get(key);
             if (plugin.getPackageName().equals(packageName)) {
@@ -636,6 +769,17 @@ public class DevicePluginManager {
         }
     }
 
+    /**
+     * プラグインの情報のキャッシュをバックグラウンドで保存します.
+     */
+    private void saveMetadataCache() {
+        try {
+            mExecutor.execute(mMetadataCache::save);
+        } catch (RejectedExecutionException e) {
+            // ignore.
+        }
+    }
+
     /**
      * 指定されたキーのプラグインをリストから削除します.
      *
@@ -940,6 +1084,67 @@ public class DevicePluginManager {
         }
     }
 
+    /**
+     * プラグインの検索の統計情報.
+     */
+    private static class ScanStatistics {
+        /**
+         * パッケージ一覧の取得にかかった時間(ナノ秒).
+         */
+        long mListTime;
+
+        /**
+         * キャッシュの読み込みと照合にかかった時間(ナノ秒).
+         */
+        long mCacheTime;
+
+        /**
+         * 更新されたパッケージの解析にかかった時間(ナノ秒).
+         */
+        long mParseTime;
+
+        /**
+         * キャッシュの保存にかかった時間(ナノ秒).
+         */
+        long mSaveTime;
+
+        /**
+         * プラグインの登録にかかった時間(ナノ秒).
+         */
+        long mRegisterTime;
+
+        /**
+         * パッケージの数.
+         */
+        int mPackageCount;
+
+        /**
+         * 解析したパッケージの数.
+         */
+        int mParsedCount;
+
+        @Override
+        public String toString() {
+            return "packages=" + mPackageCount
+                    + ", parsed=" + mParsedCount
+                    + ", list=" + toMillis(mListTime) + "ms"
+                    + ", cache=" + toMillis(mCacheTime) + "ms"
+                    + ", parse=" + toMillis(mParseTime) + "ms"
+                    + ", save=" + toMillis(mSaveTime) + "ms"
+                    + ", register=" + toMillis(mRegisterTime) + "ms";
+        }
+
+        /**
+         * ナノ秒をミリ秒に変換します.
+         *
+         * @param nanos ナノ秒
+         * @return ミリ秒
+         */
+        private static long toMillis(final long nanos) {
+            return nanos / 1000000;
+        }
+    }
+
     /**
      * デバイスプラグインの発見、見失う通知を行うリスナー.
      *
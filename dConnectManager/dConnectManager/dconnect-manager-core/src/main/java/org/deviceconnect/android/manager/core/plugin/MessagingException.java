@@ -64,6 +64,11 @@ public class MessagingException extends Exception {
          */
         NOT_CONNECTED,
 
+        /**
+         * サーキットブレーカーによってリクエストが遮断されている.
+         */
+        CIRCUIT_OPEN,
+
         /**
          * その他.
          */
@@ -0,0 +1,367 @@
+/*
+ PluginMetadataCache.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.plugin;
+
+import android.content.Context;
+import android.content.pm.ComponentInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.ProviderInfo;
+import android.os.Build;
+import android.os.Parcel;
+import android.util.AtomicFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * パッケージから解析したプラグインの情報をファイルに保存するキャッシュ.
+ * <p>
+ * パッケージ名ごとに versionCode、lastUpdateTime、コンポーネント構成のハッシュ値と、
+ * 解析した {@link DevicePlugin.Info} のリストを保持します。
+ * 保存時とパッケージの情報が一致している場合には、プラグインの XML を解析し直さずにキャッシュの情報を使用します。
+ * プラグインを含まないパッケージも空のリストとして保持します。
+ * </p>
+ * <p>
+ * {@link DevicePlugin.Info} は {@link Parcel} にして保存します。{@link Parcel} の形式は OS やマネージャの
+ * バージョンによって変わる可能性があるため、生成時に指定された環境の文字列が保存時と異なる場合にはキャッシュ全体を破棄します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class PluginMetadataCache {
+    /**
+     * キャッシュファイルの形式のバージョン.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * キャッシュファイル名.
+     */
+    private static final String FILE_NAME = "plugin_metadata.cache";
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /**
+     * キャッシュファイル.
+     */
+    private final AtomicFile mFile;
+
+    /**
+     * キャッシュを作成した環境を表す文字列.
+     */
+    private final String mEnvironment;
+
+    /**
+     * パッケージ名ごとのキャッシュ.
+     */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * true: ファイルから読み込み済み / false: 未読み込み.
+     */
+    private boolean mLoaded;
+
+    /**
+     * true: ファイルに保存していない変更がある / false: 変更なし.
+     */
+    private volatile boolean mDirty;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param context コンテキスト
+     * @param environment キャッシュを作成した環境を表す文字列
+     */
+    PluginMetadataCache(final Context context, final String environment) {
+        mFile = new AtomicFile(new File(context.getCacheDir(), FILE_NAME));
+        mEnvironment = environment;
+    }
+
+    /**
+     * キャッシュをファイルから読み込みます.
+     * <p>
+     * 既に読み込み済みの場合には何もしません。
+     * ファイルが存在しない場合や、読み込みに失敗した場合には空のキャッシュになります。
+     * </p>
+     */
+    synchronized void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+
+        if (!mFile.getBaseFile().exists()) {
+            return;
+        }
+
+        FileInputStream fis = null;
+        try {
+            fis = mFile.openRead();
+            DataInputStream in = new DataInputStream(fis);
+            if (in.readInt() != FORMAT_VERSION || !mEnvironment.equals(in.readUTF())) {
+                mDirty = true;
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                long versionCode = in.readLong();
+                long lastUpdateTime = in.readLong();
+                int signature = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                mEntries.put(packageName, new Entry(versionCode, lastUpdateTime, signature, data));
+            }
+        } catch (IOException | RuntimeException e) {
+            mLogger.warning("PluginMetadataCache: Failed to load cache: " + e.getMessage());
+            mEntries.clear();
+            mDirty = true;
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    // ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * キャッシュに変更がある場合にはファイルに保存します.
+     */
+    synchronized void save() {
+        if (!mDirty) {
+            return;
+        }
+        mDirty = false;
+
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(fos);
+            List<Map.Entry<String, Entry>> entries = new ArrayList<>(mEntries.entrySet());
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(mEnvironment);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.mVersionCode);
+                out.writeLong(entry.mLastUpdateTime);
+                out.writeInt(entry.mSignature);
+                out.writeInt(entry.mData.length);
+                out.write(entry.mData);
+            }
+            out.flush();
+            mFile.finishWrite(fos);
+        } catch (IOException e) {
+            mLogger.warning("PluginMetadataCache: Failed to save cache: " + e.getMessage());
+            if (fos != null) {
+                mFile.failWrite(fos);
+            }
+            mDirty = true;
+        }
+    }
+
+    /**
+     * 指定されたパッケージのプラグイン情報をキャッシュから取得します.
+     * <p>
+     * キャッシュが存在しない場合や、パッケージが更新されている場合には null を返却します。
+     * </p>
+     *
+     * @param pkg パッケージ情報
+     * @return プラグイン情報のリスト、プラグインを含まないパッケージの場合は空のリスト
+     */
+    List<DevicePlugin.Info> get(final PackageInfo pkg) {
+        Entry entry = mEntries.get(pkg.packageName);
+        if (entry == null || !entry.matches(pkg)) {
+            return null;
+        }
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(entry.mData, 0, entry.mData.length);
+            parcel.setDataPosition(0);
+            return parcel.createTypedArrayList(DevicePlugin.Info.CREATOR);
+        } catch (RuntimeException e) {
+            mLogger.warning("PluginMetadataCache: Broken cache: package=" + pkg.packageName);
+            remove(pkg.packageName);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * 指定されたパッケージのプラグイン情報をキャッシュに格納します.
+     *
+     * @param pkg パッケージ情報
+     * @param infoList プラグイン情報のリスト、プラグインを含まないパッケージの場合は空のリスト
+     */
+    void put(final PackageInfo pkg, final List<DevicePlugin.Info> infoList) {
+        byte[] data;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(infoList);
+            data = parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+        mEntries.put(pkg.packageName, new Entry(getVersionCode(pkg), pkg.lastUpdateTime,
+                getSignature(pkg), data));
+        mDirty = true;
+    }
+
+    /**
+     * パッケージの versionCode を取得します.
+     * <p>
+     * {@link PackageInfo#getLongVersionCode()} は API 28 以降でしか使用できないので、
+     * それより前の OS では {@link PackageInfo#versionCode} を使用します。
+     * </p>
+     *
+     * @param pkg パッケージ情報
+     * @return versionCode
+     */
+    @SuppressWarnings("deprecation")
+    private static long getVersionCode(final PackageInfo pkg) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return pkg.getLongVersionCode();
+        }
+        return pkg.versionCode;
+    }
+
+    /**
+     * 指定されたパッケージのキャッシュを削除します.
+     *
+     * @param packageName パッケージ名
+     */
+    void remove(final String packageName) {
+        if (mEntries.remove(packageName) != null) {
+            mDirty = true;
+        }
+    }
+
+    /**
+     * 指定されたパッケージ以外のキャッシュを削除します.
+     *
+     * @param packageNames 残すパッケージ名
+     */
+    void retain(final Set<String> packageNames) {
+        if (mEntries.keySet().retainAll(packageNames)) {
+            mDirty = true;
+        }
+    }
+
+    /**
+     * パッケージのコンポーネント構成からハッシュ値を計算します.
+     * <p>
+     * コンポーネントの有効・無効はパッケージを更新せずに変更できるため、versionCode と lastUpdateTime に加えて
+     * 有効なサービス、レシーバー、公開されているコンテンツプロバイダーの構成を比較に使用します。
+     * </p>
+     *
+     * @param pkg パッケージ情報
+     * @return ハッシュ値
+     */
+    private static int getSignature(final PackageInfo pkg) {
+        int hash = 1;
+        hash = 31 * hash + hashComponents(pkg.services);
+        hash = 31 * hash + hashComponents(pkg.receivers);
+        if (pkg.providers != null) {
+            for (ProviderInfo provider : pkg.providers) {
+                if (provider.exported && provider.enabled) {
+                    hash = 31 * hash + String.valueOf(provider.authority).hashCode();
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * コンポーネント名のリストからハッシュ値を計算します.
+     *
+     * @param components コンポーネントの配列
+     * @return ハッシュ値
+     */
+    private static int hashComponents(final ComponentInfo[] components) {
+        if (components == null) {
+            return 0;
+        }
+        int hash = 1;
+        for (ComponentInfo info : components) {
+            hash = 31 * hash + info.name.hashCode();
+            hash = 31 * hash + (info.enabled ? 1 : 0);
+            hash = 31 * hash + (info.exported ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * パッケージごとのキャッシュ.
+     */
+    private static class Entry {
+        /**
+         * パッケージの versionCode.
+         */
+        private final long mVersionCode;
+
+        /**
+         * パッケージの lastUpdateTime.
+         */
+        private final long mLastUpdateTime;
+
+        /**
+         * コンポーネント構成のハッシュ値.
+         */
+        private final int mSignature;
+
+        /**
+         * プラグイン情報のリストを格納した {@link Parcel} のデータ.
+         */
+        private final byte[] mData;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param versionCode パッケージの versionCode
+         * @param lastUpdateTime パッケージの lastUpdateTime
+         * @param signature コンポーネント構成のハッシュ値
+         * @param data プラグイン情報のリストを格納した {@link Parcel} のデータ
+         */
+        Entry(final long versionCode, final long lastUpdateTime, final int signature, final byte[] data) {
+            mVersionCode = versionCode;
+            mLastUpdateTime = lastUpdateTime;
+            mSignature = signature;
+            mData = data;
+        }
+
+        /**
+         * キャッシュを作成した時とパッケージが同じか確認します.
+         *
+         * @param pkg パッケージ情報
+         * @return 同じ場合はtrue、それ以外はfalse
+         */
+        boolean matches(final PackageInfo pkg) {
+            return mVersionCode == getVersionCode(pkg)
+                    && mLastUpdateTime == pkg.lastUpdateTime
+                    && mSignature == getSignature(pkg);
+        }
+    }
+}
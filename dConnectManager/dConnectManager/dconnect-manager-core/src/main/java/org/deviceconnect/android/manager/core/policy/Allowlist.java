@@ -18,7 +18,10 @@ import android.util.Log;
 import org.deviceconnect.android.manager.core.BuildConfig;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Allowlist of origins.
@@ -27,9 +30,21 @@ import java.util.List;
  */
 public class Allowlist {
 
+    /**
+     * The version of the origin database.
+     * <p>
+     * This is incremented whenever origins are changed in this process,
+     * so that every instance of this class can notice the change.
+     * </p>
+     */
+    private static final AtomicInteger sVersion = new AtomicInteger();
+
     /** The origin database. */
     private final OriginDB mCache;
 
+    /** The origins compiled for matching, or <code>null</code> if not compiled yet. */
+    private volatile CompiledOrigins mCompiledOrigins;
+
     /**
      * Constructor.
      * 
@@ -47,13 +62,30 @@ public class Allowlist {
      *      otherwise <code>false</code>.
      */
     public boolean allows(final Origin origin) {
-        List<OriginInfo> patterns = getOrigins();
-        for (OriginInfo p : patterns) {
-            if (p.matches(origin)) {
-                return true;
+        return getCompiledOrigins().matches(origin);
+    }
+
+    /**
+     * Returns the origins compiled for matching.
+     * <p>
+     * The origins are read from the database only when they have been changed since the last compilation.
+     * </p>
+     *
+     * @return the compiled origins
+     */
+    private CompiledOrigins getCompiledOrigins() {
+        int version = sVersion.get();
+        CompiledOrigins compiled = mCompiledOrigins;
+        if (compiled == null || compiled.mVersion != version) {
+            synchronized (this) {
+                compiled = mCompiledOrigins;
+                if (compiled == null || compiled.mVersion != version) {
+                    compiled = new CompiledOrigins(version, mCache.getOrigins());
+                    mCompiledOrigins = compiled;
+                }
             }
         }
-        return false;
+        return compiled;
     }
 
     /**
@@ -70,13 +102,8 @@ public class Allowlist {
      * @param originExp a string expression of origin
      * @return <code>true</code> if origin is included, otherwise <code>false</code>
      */
-    public synchronized boolean hasOrigin(final String originExp) {
-        for (OriginInfo info : mCache.getOrigins()) {
-            if (info.matches(OriginParser.parse(originExp))) {
-                return true;
-            }
-        }
-        return false;
+    public boolean hasOrigin(final String originExp) {
+        return getCompiledOrigins().matches(OriginParser.parse(originExp));
     }
 
     /**
@@ -95,6 +122,8 @@ public class Allowlist {
             return new OriginInfo(id, origin, title, date);
         } catch (OriginDBException e) {
             throw new AllowlistException("Failed to store origin: " + origin, e);
+        } finally {
+            sVersion.incrementAndGet();
         }
     }
 
@@ -109,6 +138,8 @@ public class Allowlist {
             mCache.updateOrigin(info);
         } catch (OriginDBException e) {
             throw new AllowlistException("Failed to store origin: " + info.mOrigin, e);
+        } finally {
+            sVersion.incrementAndGet();
         }
     }
 
@@ -123,6 +154,61 @@ public class Allowlist {
             mCache.removeOrigin(info);
         } catch (OriginDBException e) {
             throw new AllowlistException("Failed to remove origin: " + info.mOrigin, e);
+        } finally {
+            sVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Origins compiled for matching.
+     * <p>
+     * Since all origins in the database are parsed by {@link OriginParser} and
+     * they match only the same origin, an origin is looked up by its key in a hash set
+     * instead of calling {@link Origin#matches(Origin)} for each origin.
+     * </p>
+     */
+    private static final class CompiledOrigins {
+
+        /** The version of the origin database when compiled. */
+        private final int mVersion;
+
+        /** The keys of web application origins. */
+        private final Set<String> mWebAppOrigins = new HashSet<>();
+
+        /** The literal origins. */
+        private final Set<String> mLiteralOrigins = new HashSet<>();
+
+        /**
+         * Constructor.
+         *
+         * @param version the version of the origin database
+         * @param origins all origins in the database
+         */
+        private CompiledOrigins(final int version, final List<OriginInfo> origins) {
+            mVersion = version;
+            for (OriginInfo info : origins) {
+                Origin origin = info.getOrigin();
+                if (origin instanceof WebAppOrigin) {
+                    mWebAppOrigins.add(((WebAppOrigin) origin).getMatchKey());
+                } else if (origin instanceof LiteralOrigin) {
+                    mLiteralOrigins.add(((LiteralOrigin) origin).getMatchKey());
+                }
+            }
+        }
+
+        /**
+         * Returns whether the specified origin matches one of the compiled origins.
+         *
+         * @param origin Origin of requests
+         * @return <code>true</code> if the specified origin matches, otherwise <code>false</code>.
+         */
+        private boolean matches(final Origin origin) {
+            if (origin instanceof WebAppOrigin) {
+                return mWebAppOrigins.contains(((WebAppOrigin) origin).getMatchKey());
+            } else if (origin instanceof LiteralOrigin) {
+                return mLiteralOrigins.contains(((LiteralOrigin) origin).getMatchKey());
+            }
+            return false;
         }
     }
 
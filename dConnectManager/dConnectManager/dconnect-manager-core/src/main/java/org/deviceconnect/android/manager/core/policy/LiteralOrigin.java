@@ -35,6 +35,15 @@ class LiteralOrigin implements Origin {
         return mOrigin.equals(((LiteralOrigin) origin).mOrigin);
     }
 
+    /**
+     * Gets the key which is equal for all origins matching this origin.
+     * @return the key for matching
+     * @see {@link #matches(Origin)}
+     */
+    String getMatchKey() {
+        return mOrigin;
+    }
+
     @Override
     public String toString() {
         return mOrigin;
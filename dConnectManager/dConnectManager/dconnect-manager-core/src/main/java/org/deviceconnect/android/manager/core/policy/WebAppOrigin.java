@@ -117,6 +117,19 @@ abstract class WebAppOrigin implements Origin {
         return mPort;
     }
 
+    /**
+     * Gets the key which is equal for all origins matching this origin.
+     * <p>
+     * The key consists of the scheme, the host and the port number.
+     * The default port number of the scheme is used if the port number was not specified.
+     * </p>
+     * @return the key for matching
+     * @see {@link #matches(Origin)}
+     */
+    String getMatchKey() {
+        return mScheme + SEP_HOST + mHost + SEP_PORT + getPort();
+    }
+
     /**
      * Gets the default port number for the scheme.
      * @return the default port number for the scheme
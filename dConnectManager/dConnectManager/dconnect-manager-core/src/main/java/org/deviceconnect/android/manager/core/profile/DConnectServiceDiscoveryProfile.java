@@ -7,11 +7,14 @@
 package org.deviceconnect.android.manager.core.profile;
 
 import android.content.Intent;
+import android.os.Bundle;
 
 import org.deviceconnect.android.event.EventError;
 import org.deviceconnect.android.event.EventManager;
+import org.deviceconnect.android.manager.core.DConnectSettings;
 import org.deviceconnect.android.manager.core.plugin.DevicePluginManager;
 import org.deviceconnect.android.manager.core.request.DConnectRequestManager;
+import org.deviceconnect.android.manager.core.request.ServiceDiscoveryCache;
 import org.deviceconnect.android.manager.core.request.ServiceDiscoveryRequest;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
@@ -20,8 +23,11 @@ import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.android.service.DConnectServiceProvider;
+import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.List;
+
 /**
  * Service Discovery プロファイル.
  *
@@ -39,19 +45,35 @@ public class DConnectServiceDiscoveryProfile extends ServiceDiscoveryProfile {
      */
     private DConnectRequestManager mRequestManager;
 
+    /**
+     * Device Connect Manager の設定.
+     */
+    private DConnectSettings mSettings;
+
+    /**
+     * Service Discovery の結果のキャッシュ.
+     */
+    private ServiceDiscoveryCache mCache;
+
     /**
      * コンストラクタ.
      *
      * @param provider プロファイルプロバイダ
+     * @param settings Device Connect Manager の設定
      * @param pluginManager デバイスプラグイン管理クラス
      * @param requestManager リクエスト管理クラス
+     * @param cache Service Discovery の結果のキャッシュ
      */
     public DConnectServiceDiscoveryProfile(final DConnectServiceProvider provider,
+                                           final DConnectSettings settings,
                                            final DevicePluginManager pluginManager,
-                                           final DConnectRequestManager requestManager) {
+                                           final DConnectRequestManager requestManager,
+                                           final ServiceDiscoveryCache cache) {
         super(provider);
+        mSettings = settings;
         mDevicePluginManager = pluginManager;
         mRequestManager = requestManager;
+        mCache = cache;
         addApi(mGetRequest);
         addApi(mPutRequest);
         addApi(mDeleteRequest);
@@ -68,12 +90,48 @@ public class DConnectServiceDiscoveryProfile extends ServiceDiscoveryProfile {
             req.setRequest(request);
             req.setTimeout(ServiceDiscoveryRequest.TIMEOUT);
             req.setDevicePluginManager(mDevicePluginManager);
+            req.setServiceDiscoveryCache(mCache);
+            if (mSettings.isStreamingServiceDiscovery()) {
+                req.setOnServicesFoundListener((plugin, services) -> notifyServicesFound(request, services));
+            }
             req.setOnResponseCallback((resp) -> sendResponse(resp));
             new Thread(req::run).start();
             return false;
         }
     };
 
+    /**
+     * Service Discovery のレスポンス返却後に見つかったサービスを onServiceChange イベントで通知します.
+     * <p>
+     * イベントは Service Discovery を要求したクライアントだけに送信します。
+     * 送信先は、イベント登録と同じくセッションキー、セッションキーがない場合にはオリジンで指定します。
+     * </p>
+     *
+     * @param request Service Discovery のリクエスト
+     * @param services 見つかったサービス一覧
+     */
+    private void notifyServicesFound(final Intent request, final List<Bundle> services) {
+        String receiverId = getSessionKey(request);
+        if (receiverId == null) {
+            receiverId = request.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN);
+        }
+        if (receiverId == null) {
+            return;
+        }
+
+        for (Bundle service : services) {
+            Bundle networkService = new Bundle(service);
+            setState(networkService, true);
+
+            Intent event = new Intent(IntentDConnectMessage.ACTION_EVENT);
+            event.putExtra(DConnectMessage.EXTRA_PROFILE, PROFILE_NAME);
+            event.putExtra(DConnectMessage.EXTRA_ATTRIBUTE, ATTRIBUTE_ON_SERVICE_CHANGE);
+            event.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, receiverId);
+            setNetworkService(event, networkService);
+            getPluginContext().sendEvent(event, null);
+        }
+    }
+
     /**
      * PUT /gotapi/onServiceChange.
      */
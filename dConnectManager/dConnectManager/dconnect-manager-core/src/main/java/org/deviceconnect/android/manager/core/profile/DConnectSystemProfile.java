@@ -13,6 +13,7 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 
 import org.deviceconnect.android.event.EventManager;
+import org.deviceconnect.android.manager.core.DConnectConst;
 import org.deviceconnect.android.manager.core.DConnectCore;
 import org.deviceconnect.android.manager.core.DConnectInterface;
 import org.deviceconnect.android.manager.core.R;
@@ -41,6 +42,31 @@ import java.util.UUID;
  * @author NTT DOCOMO, INC.
  */
 public class DConnectSystemProfile extends SystemProfile {
+    /**
+     * アトリビュート: {@value}.
+     */
+    private static final String ATTRIBUTE_METRICS = "metrics";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_FORMAT = "format";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_METRICS = "metrics";
+
+    /**
+     * 性能情報を Prometheus のテキスト形式で返却するフォーマット名.
+     */
+    private static final String FORMAT_PROMETHEUS = "prometheus";
+
+    /**
+     * Prometheus のテキスト形式の Content-Type.
+     */
+    private static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
     /**
      * プロファイル管理クラス.
      */
@@ -57,6 +83,7 @@ public class DConnectSystemProfile extends SystemProfile {
         mCore = core;
 
         addApi(mGetRequest);
+        addApi(mGetMetricsRequest);
         addApi(mPutKeywordRequest);
         addApi(mDeleteEvents);
     }
@@ -100,6 +127,38 @@ public class DConnectSystemProfile extends SystemProfile {
         }
     };
 
+    /**
+     * Device Connect Manager の性能情報を返却する API.
+     * <p>
+     * パラメータ format に prometheus が指定された場合には、Prometheus のテキスト形式で返却します。
+     * それ以外の場合には、JSON 形式で返却します。
+     * </p>
+     */
+    private final DConnectApi mGetMetricsRequest = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_METRICS;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            String format = request.getStringExtra(PARAM_FORMAT);
+            if (format != null && !FORMAT_PROMETHEUS.equalsIgnoreCase(format) && !"json".equalsIgnoreCase(format)) {
+                MessageUtils.setInvalidRequestParameterError(response, "format is invalid.");
+                return true;
+            }
+
+            setResult(response, DConnectMessage.RESULT_OK);
+            if (FORMAT_PROMETHEUS.equalsIgnoreCase(format)) {
+                response.putExtra(DConnectConst.EXTRA_INNER_RAW_BODY, mCore.getMetrics().toPrometheusText());
+                response.putExtra(DConnectConst.EXTRA_INNER_RAW_CONTENT_TYPE, CONTENT_TYPE_PROMETHEUS);
+            } else {
+                response.putExtra(PARAM_METRICS, mCore.getMetrics().toBundle());
+            }
+            return true;
+        }
+    };
+
     private final DConnectApi mPutKeywordRequest = new PutApi() {
         @Override
         public String getAttribute() {
@@ -127,10 +186,6 @@ public class DConnectSystemProfile extends SystemProfile {
                     }
                 }
 
-                @Override
-                public boolean hasRequestCode(final int requestCode) {
-                    return mRequestCode == requestCode;
-                }
 
                 @Override
                 public void run() {
@@ -148,11 +203,16 @@ public class DConnectSystemProfile extends SystemProfile {
                     intent.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, mRequestCode);
                     intent.setFlags(Intent.FLAG_ACTIVITY_NO_ANIMATION | Intent.FLAG_ACTIVITY_MULTIPLE_TASK
                             | Intent.FLAG_ACTIVITY_NEW_TASK);
-                    getContext().startActivity(intent);
+                    mCore.getRequestManager().registerRequestCode(mRequestCode, this, 0);
+                    try {
+                        getContext().startActivity(intent);
 
-                    // ダイアログからの返答を待つ
-                    if (mResponse == null) {
-                        waitForResponse();
+                        // ダイアログからの返答を待つ
+                        if (mResponse == null) {
+                            waitForResponse();
+                        }
+                    } finally {
+                        mCore.getRequestManager().unregisterRequestCode(mRequestCode);
                     }
 
                     // レスポンスを返却
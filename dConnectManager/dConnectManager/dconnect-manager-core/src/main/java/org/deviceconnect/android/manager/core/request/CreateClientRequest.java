@@ -29,10 +29,6 @@ public class CreateClientRequest extends DConnectRequest {
         mLocalOAuth2Main = localOAuth2Main;
     }
 
-    @Override
-    public boolean hasRequestCode(final int requestCode) {
-        return false;
-    }
 
     @Override
     public void run() {
@@ -9,11 +9,17 @@ package org.deviceconnect.android.manager.core.request;
 
 import android.content.Intent;
 
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.core.plugin.MessagingException;
 
 /**
  * プラグインへ送信するリクエスト.
+ * <p>
+ * プラグインへリクエストを送信した後、レスポンスを待つ間はスレッドを占有しません。
+ * レスポンスの受信またはタイムアウトを契機に、{@link #onResponseReceived(Intent, Intent)} または
+ * {@link #onResponseTimeout()} がスレッドプール上で呼び出されます。
+ * </p>
  *
  * @author NTT DOCOMO, INC.
  */
@@ -25,9 +31,9 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
     DevicePlugin mDevicePlugin;
 
     /**
-     * ロックオブジェクト.
+     * レスポンス待ちのリクエスト.
      */
-    private final Object mLockObj = new Object();
+    private volatile PendingRequest mPendingRequest;
 
     /**
      * リクエストコード.
@@ -39,10 +45,11 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
      */
     private boolean mIsReportedRoundTripFrag = true;
 
-    @Override
-    public boolean hasRequestCode(final int requestCode) {
-        return mRequestCode == requestCode;
-    }
+    /**
+     * プラグインごとの同時実行数の上限を適用するかどうかのフラグ.
+     */
+    private boolean mQueued = true;
+
 
     /**
      * 通信履歴を保存するかどうかのフラグを設定する.
@@ -53,6 +60,18 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
         mIsReportedRoundTripFrag = isReported;
     }
 
+    /**
+     * プラグインごとの同時実行数の上限を適用するかどうかを設定する.
+     * <p>
+     * false を設定した場合には、実行枠の空きを待たずにプラグインへ送信します。
+     * </p>
+     *
+     * @param queued 上限を適用する場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    public void setQueued(final boolean queued) {
+        mQueued = queued;
+    }
+
     /**
      * リクエスト先のデバイスプラグインを設定する.
      *
@@ -66,59 +85,128 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
      * プラグインにリクエストを送信します.
      * <p>
      * 送信に失敗した場合には、この中で、レスポンスを返却します。
+     * サーキットブレーカーが有効な場合には、サーキットブレーカーが遮断している間は送信せずにエラーとします。
      * </p>
      *
-     * @param request 送信するリクエスト
+     * @param pending 送信するリクエスト
      * @return 送信に成功した場合は<code>true</code>
      */
-    private boolean forwardRequest(final Intent request) {
+    private boolean forwardRequest(final PendingRequest pending) {
         if (mDevicePlugin == null) {
             throw new IllegalStateException("destination is not set.");
         }
 
         try {
-            mDevicePlugin.send(request);
+            if (mRequestManager.isCircuitBreakerEnabled()) {
+                mDevicePlugin.acquireSendPermit();
+                pending.mPermitted = true;
+            }
+            mDevicePlugin.send(pending.mRequest);
             return true;
         } catch (MessagingException e) {
+            if (pending.mPermitted) {
+                pending.mPermitted = false;
+                // プラグインが無効化されている場合や再接続中の場合はプラグインの異常ではないので失敗として数えない
+                if (e.getReason() == MessagingException.Reason.NOT_ENABLED
+                        || (e.getReason() == MessagingException.Reason.NOT_CONNECTED && mDevicePlugin.isConnecting())) {
+                    mDevicePlugin.getCircuitBreaker().onIgnore();
+                } else {
+                    mDevicePlugin.getCircuitBreaker().onFailure();
+                }
+            }
+            DConnectMetrics metrics = mRequestManager.getMetrics();
+            if (metrics != null) {
+                metrics.recordMessagingError(mDevicePlugin, e.getReason());
+            }
             onMessagingError(e);
             return false;
         }
     }
 
     /**
-     * 指定したリクエストを送信した後、プラグインからのレスポンスを待機する.
+     * 指定したリクエストをプラグインに送信する.
+     * <p>
+     * このメソッドはレスポンスを待たずに処理を返します。
+     * プラグインごとの同時実行数の上限に達している場合には、実行枠が空くまで送信を待機します。
+     * 実行枠が空く前にタイムアウト時間を過ぎた場合には、送信せずにタイムアウトとします。
+     * </p>
+     * <p>
+     * 送信結果は以下のいずれかで通知されます。
+     * <ul>
+     * <li>{@link #onResponseReceived(Intent, Intent)}: プラグインからレスポンスがあった場合
+     * <li>{@link #onResponseTimeout()}: 指定された時間内にレスポンスが返ってこない場合
+     * <li>{@link #onMessagingError(MessagingException)}: プラグインへの送信に失敗した場合
+     * </ul>
+     * </p>
      *
      * @param request プラグインへのリクエスト
-     * @return レスポンスの受信に成功した場合は<code>true</code>、そうでない場合は<code>false</code>
      */
-    boolean sendRequest(final Intent request) {
-        boolean forwarded = false;
-        boolean responded = false;
+    void sendRequest(final Intent request) {
+        if (mDevicePlugin == null) {
+            throw new IllegalStateException("destination is not set.");
+        }
 
-        long startDateTime = System.currentTimeMillis();
-        try {
-            forwarded = forwardRequest(request);
-            if (!forwarded) {
-                return false;
-            }
+        final PendingRequest pending = new PendingRequest(request, mQueued);
+        mResponse = null;
+        mPendingRequest = pending;
+        retain();
+        if (pending.mQueued) {
+            mRequestManager.enqueue(mDevicePlugin, () -> forward(pending), () -> expire(pending), mTimeout);
+        } else {
+            forward(pending);
+        }
+    }
 
-            if (mResponse == null) {
-                waitForResponse();
+    /**
+     * 実行枠の空きを待っている間にタイムアウトしたリクエストの処理を行う.
+     *
+     * @param pending タイムアウトしたリクエスト
+     */
+    private void expire(final PendingRequest pending) {
+        try {
+            mPendingRequest = null;
+            // プラグインには送信していないので、プラグインの履歴やサーキットブレーカーには通知しない
+            DConnectMetrics metrics = mRequestManager.getMetrics();
+            if (metrics != null) {
+                metrics.recordQueueTime(mDevicePlugin, System.nanoTime() - pending.mEnqueueNanos);
             }
+            onResponseTimeout();
+        } finally {
+            release();
+        }
+    }
 
-            final Intent response = mResponse;
-            responded = response != null;
-            if (responded) {
-                onResponseReceived(request, response);
-                return true;
-            } else {
-                onResponseTimeout();
-                return false;
+    /**
+     * レスポンス待ちのリクエストをプラグインに送信する.
+     * <p>
+     * 送信前にリクエストコードを {@link DConnectRequestManager} に登録し、
+     * レスポンスの振り分けとタイムアウトの監視を依頼します。
+     * </p>
+     *
+     * @param pending レスポンス待ちのリクエスト
+     */
+    private void forward(final PendingRequest pending) {
+        boolean forwarded = false;
+        try {
+            pending.mStartTime = System.currentTimeMillis();
+            pending.mStartNanos = System.nanoTime();
+            DConnectMetrics metrics = mRequestManager.getMetrics();
+            if (metrics != null) {
+                metrics.recordQueueTime(mDevicePlugin, pending.mStartNanos - pending.mEnqueueNanos);
             }
+            mRequestManager.registerRequestCode(mRequestCode, this, mTimeout);
+            forwarded = forwardRequest(pending);
         } finally {
-            long endDateTime = System.currentTimeMillis();
-            if (forwarded) {
-                reportHistory(request, responded, startDateTime, endDateTime);
+            if (!forwarded) {
+                if (pending.mPermitted) {
+                    mDevicePlugin.getCircuitBreaker().onIgnore();
+                }
+                mRequestManager.unregisterRequestCode(mRequestCode);
+                mPendingRequest = null;
+                if (pending.mQueued) {
+                    mRequestManager.done(mDevicePlugin);
+                }
+                release();
             }
         }
     }
@@ -142,21 +230,37 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
     }
 
     /**
-     * 各デバイスからのレスポンスを待つ.
-     * <p>
-     * この関数から返答があるのは以下の条件になる。
-     * <ul>
-     * <li>デバイスプラグインからレスポンスがあった場合
-     * <li>指定された時間無いにレスポンスが返ってこない場合
-     * </ul>
+     * プラグインに対する性能情報を記録します.
+     *
+     * @param pending 完了したリクエスト
+     * @param responded レスポンスの有無
      */
-    private void waitForResponse() {
-        synchronized (mLockObj) {
-            try {
-                mLockObj.wait(mTimeout);
-            } catch (InterruptedException e) {
-                // ignore
-            }
+    private void reportMetrics(final PendingRequest pending, final boolean responded) {
+        DConnectMetrics metrics = mRequestManager.getMetrics();
+        if (metrics == null) {
+            return;
+        }
+        if (responded) {
+            metrics.recordRoundTripTime(mDevicePlugin, pending.mRequest, pending.mEndNanos - pending.mStartNanos);
+        } else {
+            metrics.recordTimeout(mDevicePlugin);
+        }
+    }
+
+    /**
+     * サーキットブレーカーにリクエストの結果を通知します.
+     *
+     * @param pending 完了したリクエスト
+     * @param responded レスポンスの有無
+     */
+    private void reportCircuitBreaker(final PendingRequest pending, final boolean responded) {
+        if (!pending.mPermitted) {
+            return;
+        }
+        if (responded) {
+            mDevicePlugin.getCircuitBreaker().onSuccess();
+        } else {
+            mDevicePlugin.getCircuitBreaker().onFailure();
         }
     }
 
@@ -164,8 +268,46 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
     public void setResponse(final Intent response) {
         super.setResponse(response);
 
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
+        final PendingRequest pending = mPendingRequest;
+        if (pending != null) {
+            mPendingRequest = null;
+            pending.mEndNanos = System.nanoTime();
+            final long endTime = System.currentTimeMillis();
+            mRequestManager.execute(this, () -> onCompleted(pending, response, endTime));
+        }
+    }
+
+    @Override
+    protected void onRequestCodeTimeout(final int requestCode) {
+        final PendingRequest pending = mPendingRequest;
+        if (pending != null) {
+            mPendingRequest = null;
+            onCompleted(pending, null, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * レスポンス待ちのリクエストが完了した場合の処理を行う.
+     *
+     * @param pending 完了したリクエスト
+     * @param response レスポンス、タイムアウトの場合はnull
+     * @param endTime 完了時間
+     */
+    private void onCompleted(final PendingRequest pending, final Intent response, final long endTime) {
+        try {
+            if (pending.mQueued) {
+                mRequestManager.done(mDevicePlugin);
+            }
+            reportHistory(pending.mRequest, response != null, pending.mStartTime, endTime);
+            reportMetrics(pending, response != null);
+            reportCircuitBreaker(pending, response != null);
+            if (response != null) {
+                onResponseReceived(pending.mRequest, response);
+            } else {
+                onResponseTimeout();
+            }
+        } finally {
+            release();
         }
     }
 
@@ -181,6 +323,10 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
             case CONNECTION_SUSPENDED:
                 sendPluginSuspendedError();
                 break;
+            case CIRCUIT_OPEN:
+                sendPluginSuspendedError("Requests to the plugin are temporarily blocked due to repeated failures: "
+                        + mDevicePlugin.getPackageName());
+                break;
             default: // NOT_CONNECTED
                 sendIllegalServerStateError("Failed to send a message to the plugin: " + mDevicePlugin.getPackageName());
                 break;
@@ -204,4 +350,52 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
      */
     protected void onResponseReceived(final Intent request, final Intent response) {
     }
+
+    /**
+     * レスポンス待ちのリクエスト.
+     */
+    private static class PendingRequest {
+        /**
+         * プラグインへのリクエスト.
+         */
+        final Intent mRequest;
+
+        /**
+         * リクエスト送信時間.
+         */
+        volatile long mStartTime;
+
+        /**
+         * キューに追加した時刻(ナノ秒).
+         */
+        final long mEnqueueNanos = System.nanoTime();
+
+        /**
+         * リクエスト送信時刻(ナノ秒).
+         */
+        volatile long mStartNanos;
+
+        /**
+         * レスポンス受信時刻(ナノ秒).
+         */
+        volatile long mEndNanos;
+
+        /**
+         * サーキットブレーカーから送信の許可を得ている場合はtrue.
+         * <p>
+         * trueの場合には、リクエストの完了時にサーキットブレーカーへ結果を通知します。
+         * </p>
+         */
+        volatile boolean mPermitted;
+
+        /**
+         * プラグインごとの同時実行数の上限を適用している場合はtrue.
+         */
+        final boolean mQueued;
+
+        PendingRequest(final Intent request, final boolean queued) {
+            mRequest = request;
+            mQueued = queued;
+        }
+    }
 }
@@ -17,6 +17,9 @@ import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * DConnectリクエスト.
  *
@@ -68,6 +71,19 @@ public abstract class DConnectRequest {
      */
     protected DConnectInterface mInterface;
 
+    /**
+     * 実行中の処理の数.
+     * <p>
+     * 0 になった時点でリクエストの処理が完了したと判断します。
+     * </p>
+     */
+    private final AtomicInteger mTaskCount = new AtomicInteger();
+
+    /**
+     * リクエストの処理が完了したかを示すフラグ.
+     */
+    private final AtomicBoolean mFinished = new AtomicBoolean();
+
     /**
      * コンストラクタ.
      */
@@ -237,6 +253,17 @@ public abstract class DConnectRequest {
         sendResponse(createPluginSuspendedError());
     }
 
+    /**
+     * プラグイン連携中止エラーレスポンスを返却する.
+     *
+     * @param message エラーメッセージ
+     */
+    protected void sendPluginSuspendedError(final String message) {
+        Intent response = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+        MessageUtils.setPluginSuspendedError(response, message);
+        sendResponse(response);
+    }
+
     /**
      * プラグイン連携中止エラーレスポンスを作成する.
      */
@@ -299,15 +326,56 @@ public abstract class DConnectRequest {
     }
 
     /**
-     * 指定されたリクエストコードを持っているかチェックする.
+     * 非同期処理の開始を宣言する.
+     * <p>
+     * プラグインからのレスポンス待ちなどの非同期処理を開始する前に呼び出すこと。
+     * 対応する {@link #release()} が呼び出されるまで、リクエストは完了扱いになりません。
+     * </p>
+     */
+    protected void retain() {
+        mTaskCount.incrementAndGet();
+    }
+
+    /**
+     * 非同期処理の終了を宣言する.
+     * <p>
+     * 実行中の処理が無くなった時点で、{@link DConnectRequestManager} にリクエストの完了を通知します。
+     * </p>
+     */
+    protected void release() {
+        if (mTaskCount.decrementAndGet() == 0) {
+            if (mFinished.compareAndSet(false, true) && mRequestManager != null) {
+                mRequestManager.onFinished(this);
+            }
+        }
+    }
+
+    /**
+     * リクエストの処理が完了しているか確認する.
      *
-     * @param requestCode リクエストコード
-     * @return リクエストコードを持っている場合はtrue、それ以外はfalse
+     * @return 完了している場合はtrue、それ以外はfalse
      */
-    public abstract boolean hasRequestCode(final int requestCode);
+    public boolean isFinished() {
+        return mFinished.get();
+    }
+
+    /**
+     * {@link DConnectRequestManager#registerRequestCode(int, DConnectRequest, long)} で登録した
+     * リクエストコードのレスポンスがタイムアウトしたことを通知する.
+     * <p>
+     * NOTE: 必要な場合のみ、子クラスで拡張すること。
+     * </p>
+     *
+     * @param requestCode タイムアウトしたリクエストコード
+     */
+    protected void onRequestCodeTimeout(final int requestCode) {
+    }
 
     /**
      * 各デバイスプラグインへのリクエスト送信とレスポンスを待つ処理を行う.
+     * <p>
+     * レスポンスを非同期に待つ場合には、{@link #retain()} を呼び出してからこのメソッドを抜けること。
+     * </p>
      */
     public abstract void run();
 
@@ -12,15 +12,27 @@ import android.util.Log;
 
 import org.deviceconnect.android.manager.core.BuildConfig;
 import org.deviceconnect.android.manager.core.DConnectInterface;
+import org.deviceconnect.android.manager.core.metrics.DConnectMetrics;
+import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * dConnect Managerで処理されるリクエストを管理するクラス.
+ * <p>
+ * プラグインからのレスポンス待ちの間はスレッドを占有しないように、
+ * レスポンスの受信またはタイムアウトを契機にリクエストの処理を再開します。
+ * </p>
  *
  * @author NTT DOCOMO, INC.
  */
@@ -36,21 +48,62 @@ public class DConnectRequestManager {
     private static final int MAX_THREAD_SIZE = 32;
 
     /**
-     * リクエスト一覧.
+     * プラグインごとの同時実行数の上限のデフォルト値を定義する.
      */
-    private final List<DConnectRequest> mRequestList = new ArrayList<>();
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_PLUGIN = 8;
+
+    /**
+     * 処理中のリクエスト一覧.
+     */
+    private final Set<DConnectRequest> mRequests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * レスポンス待ちのリクエストコードとリクエストの対応表.
+     * <p>
+     * プラグインからのレスポンスを定数時間でリクエストに振り分けるために使用します。
+     * </p>
+     */
+    private final ConcurrentHashMap<Integer, PendingResponse> mPendingResponses = new ConcurrentHashMap<>();
+
+    /**
+     * プラグインごとのリクエストキュー.
+     * <p>
+     * キーにはプラグインIDを使用します。
+     * </p>
+     */
+    private final ConcurrentHashMap<String, PluginRequestQueue> mPluginQueues = new ConcurrentHashMap<>();
 
     /**
      * リクエストを実行するためのスレッドを管理するExecutor.
      */
     private ExecutorService mExecutor;
 
+    /**
+     * タイムアウトを管理するExecutor.
+     */
+    private ScheduledExecutorService mTimeoutExecutor;
+
     /**
      * コンテキスト.
      */
     private Context mContext;
     private DConnectInterface mInterface;
 
+    /**
+     * 性能情報を集計するクラス.
+     */
+    private DConnectMetrics mMetrics;
+
+    /**
+     * プラグインごとの同時実行数の上限.
+     */
+    private volatile int mMaxInFlightPerPlugin = DEFAULT_MAX_IN_FLIGHT_PER_PLUGIN;
+
+    /**
+     * サーキットブレーカーの有効・無効.
+     */
+    private volatile boolean mCircuitBreakerEnabled = true;
+
     /**
      * コンストラクタ.
      *
@@ -63,6 +116,72 @@ public class DConnectRequestManager {
         mInterface = i;
     }
 
+    /**
+     * 性能情報を集計するクラスを設定する.
+     *
+     * @param metrics 性能情報を集計するクラス
+     */
+    public void setMetrics(final DConnectMetrics metrics) {
+        mMetrics = metrics;
+        if (metrics != null) {
+            metrics.setRequestManager(this);
+        }
+    }
+
+    /**
+     * プラグインごとの同時実行数の上限を設定する.
+     * <p>
+     * 既に作成済みのプラグインごとのキューには、次にリクエストを送信した時から反映されます。
+     * </p>
+     *
+     * @param maxInFlight 同時実行数の上限
+     */
+    public void setMaxInFlightPerPlugin(final int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight is invalid.");
+        }
+        mMaxInFlightPerPlugin = maxInFlight;
+    }
+
+    /**
+     * プラグインごとの同時実行数の上限を取得する.
+     *
+     * @return 同時実行数の上限
+     */
+    public int getMaxInFlightPerPlugin() {
+        return mMaxInFlightPerPlugin;
+    }
+
+    /**
+     * サーキットブレーカーの有効・無効を設定する.
+     * <p>
+     * 有効な場合には、タイムアウトや送信エラーが続いたプラグインへのリクエストを一定時間遮断します。
+     * </p>
+     *
+     * @param enabled 有効にする場合はtrue、それ以外はfalse
+     */
+    public void setCircuitBreakerEnabled(final boolean enabled) {
+        mCircuitBreakerEnabled = enabled;
+    }
+
+    /**
+     * サーキットブレーカーの有効・無効を取得する.
+     *
+     * @return 有効な場合はtrue、それ以外はfalse
+     */
+    public boolean isCircuitBreakerEnabled() {
+        return mCircuitBreakerEnabled;
+    }
+
+    /**
+     * 性能情報を集計するクラスを取得する.
+     *
+     * @return 性能情報を集計するクラス、設定されていない場合はnull
+     */
+    DConnectMetrics getMetrics() {
+        return mMetrics;
+    }
+
     /**
      * リクエスト管理を開始します.
      */
@@ -71,6 +190,7 @@ public class DConnectRequestManager {
             return;
         }
         mExecutor = Executors.newFixedThreadPool(MAX_THREAD_SIZE);
+        mTimeoutExecutor = Executors.newSingleThreadScheduledExecutor();
     }
 
     /**
@@ -82,9 +202,21 @@ public class DConnectRequestManager {
             mExecutor = null;
         }
 
-        synchronized (mRequestList) {
-            mRequestList.clear();
+        if (mTimeoutExecutor != null) {
+            mTimeoutExecutor.shutdownNow();
+            mTimeoutExecutor = null;
+        }
+
+        for (PluginRequestQueue queue : mPluginQueues.values()) {
+            queue.clear();
         }
+        mPluginQueues.clear();
+
+        for (PendingResponse pending : mPendingResponses.values()) {
+            pending.cancelTimeout();
+        }
+        mPendingResponses.clear();
+        mRequests.clear();
     }
 
     /**
@@ -93,32 +225,241 @@ public class DConnectRequestManager {
      * @param request 追加するリクエスト
      */
     public synchronized void addRequest(final DConnectRequest request) {
-        if (mExecutor.isShutdown()) {
+        if (mExecutor == null || mExecutor.isShutdown()) {
             return;
         }
 
-        synchronized (mRequestList) {
-            request.setRequestManager(this);
-            request.setDConnectInterface(mInterface);
-            mRequestList.add(request);
-        }
+        request.setRequestManager(this);
+        request.setDConnectInterface(mInterface);
+        mRequests.add(request);
 
+        request.retain();
         mExecutor.execute(() -> {
             try {
-                request.run();
-            } catch (Throwable e) {
-                request.sendRuntimeException(e.getMessage());
-                if (BuildConfig.DEBUG) {
-                    Log.e("dConnectManager", "runtime", e);
-                }
+                runTask(request, request::run);
             } finally {
-                synchronized (mRequestList) {
-                    mRequestList.remove(request);
-                }
+                request.release();
             }
         });
     }
 
+    /**
+     * リクエストの続きの処理をスレッドプール上で実行する.
+     * <p>
+     * プラグインからのレスポンスを受け取ったスレッドで重い処理を行わないために使用します。
+     * </p>
+     *
+     * @param request 処理を行うリクエスト
+     * @param task 実行する処理
+     */
+    void execute(final DConnectRequest request, final Runnable task) {
+        ExecutorService executor = mExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> runTask(request, task));
+    }
+
+    /**
+     * 指定時間後に処理を実行する.
+     *
+     * @param task 実行する処理
+     * @param delay 遅延時間(ミリ秒)
+     * @return スケジュールされた処理、リクエスト管理が停止している場合はnull
+     */
+    ScheduledFuture<?> schedule(final Runnable task, final long delay) {
+        ScheduledExecutorService executor = mTimeoutExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return null;
+        }
+        return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 処理を定期的に実行する.
+     * <p>
+     * タイムアウトの監視と同じスレッドで実行するので、時間のかかる処理は行わないこと。
+     * リクエスト管理を停止した場合には、定期的な実行も停止します。
+     * </p>
+     *
+     * @param task 実行する処理
+     * @param interval 実行間隔(ミリ秒)
+     * @return スケジュールされた処理、リクエスト管理が停止している場合はnull
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable task, final long interval) {
+        ScheduledExecutorService executor = mTimeoutExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return null;
+        }
+        return executor.scheduleWithFixedDelay(task, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * プラグインへの送信処理をプラグインごとのキューに追加する.
+     * <p>
+     * 同時実行数の上限に達していない場合には、呼び出し元のスレッドで即座に実行します。
+     * 上限に達している場合には、{@link #done(DevicePlugin)} で実行枠が空くまで待機します。
+     * 待機中にタイムアウト時間を過ぎた場合には、送信処理の代わりに expiredTask を実行します。
+     * </p>
+     *
+     * @param plugin 送信先のプラグイン
+     * @param task 送信処理
+     * @param expiredTask 待機中にタイムアウトした場合の処理
+     * @param timeout タイムアウト時間(ミリ秒)
+     */
+    void enqueue(final DevicePlugin plugin, final Runnable task, final Runnable expiredTask, final long timeout) {
+        PluginRequestQueue queue = mPluginQueues.computeIfAbsent(plugin.getPluginId(),
+                (id) -> new PluginRequestQueue(mMaxInFlightPerPlugin));
+        if (queue.offer(task, expiredTask, timeout, mMaxInFlightPerPlugin)) {
+            task.run();
+        }
+    }
+
+    /**
+     * プラグインへのリクエストが完了したことを通知する.
+     * <p>
+     * キューに待機中の送信処理がある場合には、スレッドプール上で実行します。
+     * 待機中にタイムアウトした送信処理は破棄し、タイムアウト時の処理をスレッドプール上で実行します。
+     * </p>
+     *
+     * @param plugin 送信先のプラグイン
+     */
+    void done(final DevicePlugin plugin) {
+        PluginRequestQueue queue = mPluginQueues.get(plugin.getPluginId());
+        if (queue == null) {
+            return;
+        }
+        List<Runnable> expiredTasks = new ArrayList<>();
+        Runnable next = queue.poll(expiredTasks);
+        ExecutorService executor = mExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        for (Runnable expiredTask : expiredTasks) {
+            executor.execute(expiredTask);
+        }
+        if (next != null) {
+            executor.execute(next);
+        }
+    }
+
+    /**
+     * リクエストの処理が完了したことを通知する.
+     *
+     * @param request 完了したリクエスト
+     */
+    void onFinished(final DConnectRequest request) {
+        mRequests.remove(request);
+    }
+
+    /**
+     * レスポンスを待つリクエストコードを登録する.
+     * <p>
+     * タイムアウト時間に 0 以下を指定した場合には、タイムアウトの監視を行いません。
+     * 指定した時間内にレスポンスが無い場合には、{@link DConnectRequest#onRequestCodeTimeout(int)} が呼び出されます。
+     * </p>
+     *
+     * @param requestCode リクエストコード
+     * @param request レスポンスを受け取るリクエスト
+     * @param timeout タイムアウト時間(ミリ秒)
+     */
+    public void registerRequestCode(final int requestCode, final DConnectRequest request, final long timeout) {
+        final PendingResponse pending = new PendingResponse(request);
+        PendingResponse old = mPendingResponses.put(requestCode, pending);
+        if (old != null) {
+            old.cancelTimeout();
+        }
+        if (timeout > 0) {
+            pending.mTimeoutFuture = schedule(() -> {
+                if (mPendingResponses.remove(requestCode, pending)) {
+                    execute(request, () -> request.onRequestCodeTimeout(requestCode));
+                }
+            }, timeout);
+        }
+    }
+
+    /**
+     * レスポンスを待つリクエストコードの登録を解除する.
+     *
+     * @param requestCode リクエストコード
+     */
+    public void unregisterRequestCode(final int requestCode) {
+        PendingResponse pending = mPendingResponses.remove(requestCode);
+        if (pending != null) {
+            pending.cancelTimeout();
+        }
+    }
+
+    /**
+     * 処理中のリクエスト数を取得する.
+     *
+     * @return 処理中のリクエスト数
+     */
+    public int getRequestCount() {
+        return mRequests.size();
+    }
+
+    /**
+     * レスポンス待ちのリクエストコード数を取得する.
+     *
+     * @return レスポンス待ちのリクエストコード数
+     */
+    public int getPendingResponseCount() {
+        return mPendingResponses.size();
+    }
+
+    /**
+     * スレッドプールで実行待ちのタスク数を取得する.
+     *
+     * @return 実行待ちのタスク数
+     */
+    public int getQueuedTaskCount() {
+        ExecutorService executor = mExecutor;
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return 0;
+    }
+
+    /**
+     * 指定されたプラグインで実行中のリクエスト数を取得する.
+     *
+     * @param pluginId プラグインID
+     * @return 実行中のリクエスト数
+     */
+    public int getInFlightCount(final String pluginId) {
+        PluginRequestQueue queue = mPluginQueues.get(pluginId);
+        return queue != null ? queue.getInFlightCount() : 0;
+    }
+
+    /**
+     * 指定されたプラグインで同時実行数の上限のために送信を待機しているリクエスト数を取得する.
+     *
+     * @param pluginId プラグインID
+     * @return 送信を待機しているリクエスト数
+     */
+    public int getWaitingCount(final String pluginId) {
+        PluginRequestQueue queue = mPluginQueues.get(pluginId);
+        return queue != null ? queue.getPendingCount() : 0;
+    }
+
+    /**
+     * リクエストの処理を実行し、例外が発生した場合にはエラーレスポンスを返却する.
+     *
+     * @param request 処理を行うリクエスト
+     * @param task 実行する処理
+     */
+    private void runTask(final DConnectRequest request, final Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            request.sendRuntimeException(e.getMessage());
+            if (BuildConfig.DEBUG) {
+                Log.e("dConnectManager", "runtime", e);
+            }
+        }
+    }
+
     /**
      * レスポンスを受け取り、リクエストコードが一致するリクエストに設定します.
      *
@@ -126,12 +467,40 @@ public class DConnectRequestManager {
      */
     public void setResponse(final Intent response) {
         int code = response.getIntExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, ERROR_CODE);
-        synchronized (mRequestList) {
-            for (DConnectRequest request : mRequestList) {
-                if (request.hasRequestCode(code)) {
-                    request.setResponse(response);
-                    return;
-                }
+        PendingResponse pending = mPendingResponses.remove(code);
+        if (pending != null) {
+            pending.cancelTimeout();
+            pending.mRequest.setResponse(response);
+        } else if (BuildConfig.DEBUG) {
+            Log.w("dConnectManager", "No request is waiting for the response. requestCode=" + code);
+        }
+    }
+
+    /**
+     * レスポンス待ちのリクエスト.
+     */
+    private static class PendingResponse {
+        /**
+         * レスポンスを受け取るリクエスト.
+         */
+        final DConnectRequest mRequest;
+
+        /**
+         * タイムアウト処理.
+         */
+        volatile ScheduledFuture<?> mTimeoutFuture;
+
+        PendingResponse(final DConnectRequest request) {
+            mRequest = request;
+        }
+
+        /**
+         * タイムアウト処理を取り消す.
+         */
+        void cancelTimeout() {
+            ScheduledFuture<?> future = mTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
             }
         }
     }
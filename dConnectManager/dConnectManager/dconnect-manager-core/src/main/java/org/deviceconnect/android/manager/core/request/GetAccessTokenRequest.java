@@ -55,10 +55,6 @@ public class GetAccessTokenRequest extends DConnectRequest {
         mKeyword = keyword;
     }
 
-    @Override
-    public boolean hasRequestCode(final int requestCode) {
-        return false;
-    }
 
     @Override
     public void run() {
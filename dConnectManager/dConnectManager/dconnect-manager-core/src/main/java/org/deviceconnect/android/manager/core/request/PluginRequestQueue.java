@@ -0,0 +1,169 @@
+/*
+ PluginRequestQueue.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.request;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * プラグインごとにリクエストの同時実行数を制限するキュー.
+ * <p>
+ * 同時実行数の上限を超えたリクエストは、実行中のリクエストが完了するまでキューに保持します。
+ * キューで待機している間にタイムアウト時間を過ぎたリクエストは、実行せずにキューから破棄します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class PluginRequestQueue {
+    /**
+     * 同時実行数の上限.
+     */
+    private int mMaxInFlight;
+
+    /**
+     * 実行中のリクエスト数.
+     */
+    private int mInFlight;
+
+    /**
+     * 実行待ちのリクエスト.
+     */
+    private final Queue<Entry> mPending = new ArrayDeque<>();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param maxInFlight 同時実行数の上限
+     */
+    PluginRequestQueue(final int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight is invalid.");
+        }
+        mMaxInFlight = maxInFlight;
+    }
+
+    /**
+     * 同時実行数の上限を更新してから、リクエストを追加します.
+     * <p>
+     * 同時実行数の上限に達していない場合には、実行枠を確保して true を返却します。
+     * 上限に達している場合には、キューに追加して false を返却します。
+     * 上限を下げた場合には、実行中のリクエスト数が新しい上限を下回るまで、新しいリクエストをキューに追加します。
+     * </p>
+     *
+     * @param task 実行するタスク
+     * @param expiredTask キューで待機中にタイムアウトした場合に実行するタスク
+     * @param timeout タイムアウト時間(ミリ秒)
+     * @param maxInFlight 同時実行数の上限
+     * @return すぐに実行できる場合はtrue、それ以外はfalse
+     */
+    synchronized boolean offer(final Runnable task, final Runnable expiredTask, final long timeout, final int maxInFlight) {
+        if (maxInFlight > 0) {
+            mMaxInFlight = maxInFlight;
+        }
+        if (mInFlight < mMaxInFlight) {
+            mInFlight++;
+            return true;
+        }
+        mPending.add(new Entry(task, expiredTask, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)));
+        return false;
+    }
+
+    /**
+     * 実行中のリクエストが完了したことを通知し、次に実行するリクエストを取得します.
+     * <p>
+     * 次のリクエストが存在する場合には、実行枠をそのまま引き継ぎます。
+     * ただし、同時実行数の上限を下げたために実行中のリクエスト数が上限を超えている場合には、実行枠を返却します。
+     * </p>
+     * <p>
+     * タイムアウト時間を過ぎたリクエストはキューから破棄し、タイムアウト時に実行するタスクを expiredTasks に格納します。
+     * </p>
+     *
+     * @param expiredTasks タイムアウトしたリクエストのタスクを格納するリスト
+     * @return 次に実行するタスク、存在しない場合はnull
+     */
+    synchronized Runnable poll(final List<Runnable> expiredTasks) {
+        long now = System.nanoTime();
+        Entry next;
+        while ((next = mPending.peek()) != null && next.isExpired(now)) {
+            mPending.poll();
+            expiredTasks.add(next.mExpiredTask);
+        }
+        if (mInFlight > mMaxInFlight) {
+            mInFlight--;
+            return null;
+        }
+        next = mPending.poll();
+        if (next == null && mInFlight > 0) {
+            mInFlight--;
+        }
+        return next != null ? next.mTask : null;
+    }
+
+    /**
+     * 実行中のリクエスト数を取得します.
+     *
+     * @return 実行中のリクエスト数
+     */
+    synchronized int getInFlightCount() {
+        return mInFlight;
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得します.
+     *
+     * @return 実行待ちのリクエスト数
+     */
+    synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * 実行待ちのリクエストを破棄します.
+     */
+    synchronized void clear() {
+        mPending.clear();
+        mInFlight = 0;
+    }
+
+    /**
+     * 実行待ちのリクエスト.
+     */
+    private static class Entry {
+        /**
+         * 実行するタスク.
+         */
+        final Runnable mTask;
+
+        /**
+         * タイムアウトした場合に実行するタスク.
+         */
+        final Runnable mExpiredTask;
+
+        /**
+         * タイムアウトする時刻(ナノ秒).
+         */
+        final long mDeadlineNanos;
+
+        Entry(final Runnable task, final Runnable expiredTask, final long deadlineNanos) {
+            mTask = task;
+            mExpiredTask = expiredTask;
+            mDeadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * タイムアウト時間を過ぎているか確認します.
+         *
+         * @param now 現在時刻(ナノ秒)
+         * @return タイムアウト時間を過ぎている場合はtrue
+         */
+        boolean isExpired(final long now) {
+            return now - mDeadlineNanos >= 0;
+        }
+    }
+}
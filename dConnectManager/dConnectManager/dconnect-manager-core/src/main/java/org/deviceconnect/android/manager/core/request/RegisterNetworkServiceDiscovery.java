@@ -61,10 +61,6 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         }
     }
 
-    @Override
-    public boolean hasRequestCode(final int requestCode) {
-        return mRequestCode == requestCode;
-    }
 
     @Override
     public void run() {
@@ -77,13 +73,18 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         mRequest = request;
 
         // リクエスト送信
-        if (!forwardRequest(request)) {
-            return;
-        }
+        mRequestManager.registerRequestCode(mRequestCode, this, 0);
+        try {
+            if (!forwardRequest(request)) {
+                return;
+            }
 
-        if (mResponse == null) {
-            // 各デバイスのレスポンスを待つ
-            waitForResponse();
+            if (mResponse == null) {
+                // 各デバイスのレスポンスを待つ
+                waitForResponse();
+            }
+        } finally {
+            mRequestManager.unregisterRequestCode(mRequestCode);
         }
 
         // レスポンスを解析して、処理を行う
@@ -7,7 +7,6 @@
 package org.deviceconnect.android.manager.core.request;
 
 import android.content.Intent;
-import android.util.SparseArray;
 
 import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.core.plugin.MessagingException;
@@ -16,6 +15,8 @@ import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -30,19 +31,14 @@ public class RemoveEventsRequest extends DConnectRequest {
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
     /**
-     * レスポンスが返ってきた個数.
+     * レスポンスを待っているプラグインの数.
      */
-    private int mResponseCount;
+    private final AtomicInteger mRemainingCount = new AtomicInteger();
 
     /**
-     * リクエストコードを格納する配列.
+     * レスポンス返却済みフラグ.
      */
-    private SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<>();
-
-    /**
-     * ロックオブジェクト.
-     */
-    private final Object mLockObj = new Object();
+    private final AtomicBoolean mCompleted = new AtomicBoolean();
 
     @Override
     public void setResponse(final Intent response) {
@@ -55,17 +51,24 @@ public class RemoveEventsRequest extends DConnectRequest {
         }
 
         // レスポンス個数を追加
-        mResponseCount++;
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
-        }
+        countDown();
     }
 
     @Override
-    public boolean hasRequestCode(final int requestCode) {
-        return mRequestCodeArray.get(requestCode) != null;
+    protected void onRequestCodeTimeout(final int requestCode) {
+        countDown();
     }
 
+    /**
+     * プラグインからのレスポンスを1つ受け取った、またはタイムアウトしたことを通知する.
+     */
+    private void countDown() {
+        if (mRemainingCount.decrementAndGet() == 0) {
+            mRequestManager.execute(this, this::onCompleted);
+        }
+    }
+
+
     @Override
     public void run() {
         if (getRequest() == null) {
@@ -77,6 +80,11 @@ public class RemoveEventsRequest extends DConnectRequest {
         }
 
         List<DevicePlugin> plugins = mPluginMgr.getDevicePlugins();
+
+        // 各デバイスのレスポンスを受け取るかタイムアウトするまで、リクエストを完了させない
+        retain();
+        mRemainingCount.set(plugins.size());
+
         for (int i = 0; i < plugins.size(); i++) {
             DevicePlugin plugin = plugins.get(i);
 
@@ -89,40 +97,42 @@ public class RemoveEventsRequest extends DConnectRequest {
 
             // リクエストコード作成
             int requestCode = UUID.randomUUID().hashCode();
-            mRequestCodeArray.put(requestCode, plugin);
 
             request.setComponent(plugin.getComponentName());
             request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
+            mRequestManager.registerRequestCode(requestCode, this, mTimeout);
             try {
                 plugin.send(request);
             } catch (MessagingException e) {
-                // NOP.
+                // 送信できなかったプラグインのレスポンスは待たない
+                mRequestManager.unregisterRequestCode(requestCode);
+                mRemainingCount.decrementAndGet();
             }
         }
 
-        // 各デバイスのレスポンスを待つ
-        long start = System.currentTimeMillis();
-        while (plugins.size() > 0 && mResponseCount < plugins.size()) {
-            synchronized (mLockObj) {
-                try {
-                    mLockObj.wait(mTimeout);
-                } catch (InterruptedException e) {
-                    // do nothing.
-                    mLogger.warning("Exception ouccered in wait.");
-                }
-            }
-            // タイムアウトチェック
-            if (System.currentTimeMillis() - start > mTimeout) {
-                break;
-            }
+        if (mRemainingCount.get() <= 0) {
+            onCompleted();
+        }
+    }
+
+    /**
+     * 全プラグインからのレスポンスを受け取った、またはタイムアウトした場合の処理を行う.
+     */
+    private void onCompleted() {
+        if (!mCompleted.compareAndSet(false, true)) {
+            return;
         }
 
-        // パラメータを設定する
-        mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
-        mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT,
-                IntentDConnectMessage.RESULT_OK);
+        try {
+            // パラメータを設定する
+            mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+            mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT,
+                    IntentDConnectMessage.RESULT_OK);
 
-        // レスポンスを返却する
-        sendResponse(mResponse);
+            // レスポンスを返却する
+            sendResponse(mResponse);
+        } finally {
+            release();
+        }
     }
 }
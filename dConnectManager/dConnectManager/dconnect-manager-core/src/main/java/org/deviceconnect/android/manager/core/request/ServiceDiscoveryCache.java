@@ -0,0 +1,285 @@
+/*
+ ServiceDiscoveryCache.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.request;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.deviceconnect.android.manager.core.plugin.DevicePlugin;
+import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * プラグインごとに Service Discovery の結果を保持するキャッシュ.
+ * <p>
+ * プラグインからの Service Discovery のレスポンスと onServiceChange イベントで内容を更新します。
+ * 保持時間を過ぎたキャッシュも、再取得が終わるまでは結果として使用できます。
+ * </p>
+ * <p>
+ * キャッシュに格納するサービスのIDは、{@link org.deviceconnect.android.manager.core.plugin.DevicePluginManager#appendServiceId(DevicePlugin, String)}
+ * でプラグインIDを付加したIDとします。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ServiceDiscoveryCache {
+    /**
+     * プラグインIDをキーにしたキャッシュ.
+     */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * 再取得中のプラグインIDのセット.
+     */
+    private final Set<String> mRefreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * キャッシュの保持時間(ミリ秒).
+     */
+    private volatile long mCacheTime;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param cacheTime キャッシュの保持時間(ミリ秒)、0以下の場合はキャッシュを使用しない
+     */
+    public ServiceDiscoveryCache(final long cacheTime) {
+        mCacheTime = cacheTime;
+    }
+
+    /**
+     * キャッシュの保持時間を設定します.
+     *
+     * @param cacheTime キャッシュの保持時間(ミリ秒)、0以下の場合はキャッシュを使用しない
+     */
+    public void setCacheTime(final long cacheTime) {
+        mCacheTime = cacheTime;
+        if (cacheTime <= 0) {
+            clear();
+        }
+    }
+
+    /**
+     * キャッシュが有効か確認します.
+     *
+     * @return キャッシュが有効な場合はtrue、それ以外はfalse
+     */
+    public boolean isEnabled() {
+        return mCacheTime > 0;
+    }
+
+    /**
+     * 指定されたプラグインのキャッシュを取得します.
+     *
+     * @param plugin プラグイン
+     * @return キャッシュ、存在しない場合はnull
+     */
+    public Entry get(final DevicePlugin plugin) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return mEntries.get(plugin.getPluginId());
+    }
+
+    /**
+     * 指定されたプラグインのサービス一覧をキャッシュに格納します.
+     *
+     * @param plugin プラグイン
+     * @param services サービス一覧
+     */
+    public void put(final DevicePlugin plugin, final List<Bundle> services) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<Bundle> list = new ArrayList<>(services.size());
+        for (Bundle service : services) {
+            list.add(copyService(service));
+        }
+        mEntries.put(plugin.getPluginId(), new Entry(list, System.currentTimeMillis()));
+    }
+
+    /**
+     * onServiceChange イベントで通知されたサービスの状態をキャッシュに反映します.
+     * <p>
+     * キャッシュが存在しないプラグインの場合には何もしません。
+     * </p>
+     *
+     * @param plugin プラグイン
+     * @param networkService 通知されたサービス
+     */
+    public void update(final DevicePlugin plugin, final Bundle networkService) {
+        if (!isEnabled() || networkService == null) {
+            return;
+        }
+        String id = networkService.getString(ServiceDiscoveryProfileConstants.PARAM_ID);
+        if (id == null) {
+            return;
+        }
+        boolean exists = networkService.getBoolean(ServiceDiscoveryProfileConstants.PARAM_STATE, true);
+
+        Bundle service = copyService(networkService);
+        service.remove(ServiceDiscoveryProfileConstants.PARAM_STATE);
+
+        mEntries.computeIfPresent(plugin.getPluginId(), (key, entry) -> {
+            List<Bundle> list = new ArrayList<>(entry.mServices.size() + 1);
+            boolean replaced = false;
+            for (Bundle b : entry.mServices) {
+                if (id.equals(b.getString(ServiceDiscoveryProfileConstants.PARAM_ID))) {
+                    if (exists && !replaced) {
+                        list.add(service);
+                        replaced = true;
+                    }
+                } else {
+                    list.add(b);
+                }
+            }
+            if (exists && !replaced) {
+                list.add(service);
+            }
+            return new Entry(list, entry.mUpdateTime);
+        });
+    }
+
+    /**
+     * 指定されたプラグインのキャッシュを削除します.
+     *
+     * @param pluginId プラグインID
+     */
+    public void remove(final String pluginId) {
+        mEntries.remove(pluginId);
+    }
+
+    /**
+     * キャッシュを全て削除します.
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * 指定されたプラグインの再取得を開始します.
+     * <p>
+     * 既に再取得中の場合にはfalseを返却します。再取得が終わったら {@link #endRefresh(DevicePlugin)} を呼び出すこと。
+     * </p>
+     *
+     * @param plugin プラグイン
+     * @return 再取得を開始した場合はtrue、既に再取得中の場合はfalse
+     */
+    boolean beginRefresh(final DevicePlugin plugin) {
+        return mRefreshing.add(plugin.getPluginId());
+    }
+
+    /**
+     * 指定されたプラグインの再取得を終了します.
+     *
+     * @param plugin プラグイン
+     */
+    void endRefresh(final DevicePlugin plugin) {
+        mRefreshing.remove(plugin.getPluginId());
+    }
+
+    /**
+     * キャッシュの保持時間を過ぎているか確認します.
+     *
+     * @param entry キャッシュ
+     * @return 保持時間を過ぎている場合はtrue、それ以外はfalse
+     */
+    boolean isExpired(final Entry entry) {
+        long t = System.currentTimeMillis() - entry.mUpdateTime;
+        return t < 0 || t > mCacheTime;
+    }
+
+    /**
+     * サービスの情報を複製します.
+     * <p>
+     * Bundle のコピーコンストラクタは値を共有するので、入れ子の Bundle と配列も複製します。
+     * キャッシュの外で変更されても、キャッシュの内容が変わらないようにするために使用します。
+     * </p>
+     *
+     * @param service サービスの情報
+     * @return 複製したサービスの情報
+     */
+    static Bundle copyService(final Bundle service) {
+        Bundle copy = new Bundle(service);
+        for (String key : service.keySet()) {
+            Object value = service.get(key);
+            if (value instanceof Bundle) {
+                copy.putBundle(key, copyService((Bundle) value));
+            } else if (value instanceof Parcelable[]) {
+                Parcelable[] array = ((Parcelable[]) value).clone();
+                for (int i = 0; i < array.length; i++) {
+                    if (array[i] instanceof Bundle) {
+                        array[i] = copyService((Bundle) array[i]);
+                    }
+                }
+                copy.putParcelableArray(key, array);
+            } else if (value instanceof String[]) {
+                copy.putStringArray(key, ((String[]) value).clone());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * プラグインごとのキャッシュ.
+     * <p>
+     * 作成後に内容は変更されません。
+     * </p>
+     */
+    public static final class Entry {
+        /**
+         * サービス一覧.
+         */
+        private final List<Bundle> mServices;
+
+        /**
+         * 更新日時.
+         */
+        private final long mUpdateTime;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param services サービス一覧
+         * @param updateTime 更新日時
+         */
+        private Entry(final List<Bundle> services, final long updateTime) {
+            mServices = services;
+            mUpdateTime = updateTime;
+        }
+
+        /**
+         * サービス一覧のコピーを取得します.
+         * <p>
+         * レスポンスに格納する時に変更されても良いように、入れ子の Bundle と配列も含めて複製したものを返却します。
+         * </p>
+         *
+         * @return サービス一覧
+         */
+        public List<Bundle> getServices() {
+            List<Bundle> list = new ArrayList<>(mServices.size());
+            for (Bundle service : mServices) {
+                list.add(copyService(service));
+            }
+            return list;
+        }
+
+        /**
+         * 更新日時を取得します.
+         *
+         * @return 更新日時
+         */
+        public long getUpdateTime() {
+            return mUpdateTime;
+        }
+    }
+}
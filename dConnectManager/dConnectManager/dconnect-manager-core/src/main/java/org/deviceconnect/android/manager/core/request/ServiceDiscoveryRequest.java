@@ -22,8 +22,9 @@ import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -69,15 +70,35 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
     private final List<Bundle> mServices = new ArrayList<>();
 
     /**
-     * カウントダウン.
+     * レスポンスを待っているプラグインの数.
      */
-    private CountDownLatch mCountDownLatch;
+    private final AtomicInteger mRemainingCount = new AtomicInteger();
+
+    /**
+     * レスポンス返却済みフラグ.
+     */
+    private final AtomicBoolean mCompleted = new AtomicBoolean();
+
+    /**
+     * タイムアウト処理.
+     */
+    private ScheduledFuture<?> mTimeoutFuture;
 
     /**
      * リクエスト管理クラス.
      */
     private DConnectRequestManager mRequestManager;
 
+    /**
+     * Service Discovery の結果のキャッシュ.
+     */
+    private ServiceDiscoveryCache mCache;
+
+    /**
+     * レスポンス返却後に見つかったサービスを通知するリスナー.
+     */
+    private OnServicesFoundListener mOnServicesFoundListener;
+
     /**
      * コンストラクタ.
      * @param requestManager リクエスト管理クラス
@@ -86,11 +107,34 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
         mRequestManager = requestManager;
     }
 
-    @Override
-    public synchronized boolean hasRequestCode(final int requestCode) {
-        return false;
+    /**
+     * Service Discovery の結果のキャッシュを設定します.
+     * <p>
+     * キャッシュが設定されている場合には、キャッシュのあるプラグインにはリクエストを送信せずに、
+     * キャッシュの内容をすぐにレスポンスに格納します。キャッシュの保持時間を過ぎている場合には、
+     * バックグラウンドでプラグインに再取得のリクエストを送信します。
+     * </p>
+     *
+     * @param cache キャッシュ
+     */
+    public void setServiceDiscoveryCache(final ServiceDiscoveryCache cache) {
+        mCache = cache;
     }
 
+    /**
+     * レスポンス返却後に見つかったサービスを通知するリスナーを設定します.
+     * <p>
+     * リスナーが設定されている場合には、キャッシュのないプラグインのレスポンスを待たずにレスポンスを返却し、
+     * 後から届いたプラグインのサービスをリスナーに通知します。
+     * </p>
+     *
+     * @param listener リスナー
+     */
+    public void setOnServicesFoundListener(final OnServicesFoundListener listener) {
+        mOnServicesFoundListener = listener;
+    }
+
+
     @Override
     public void run() {
         if (getRequest() == null) {
@@ -103,37 +147,109 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
 
         List<DevicePlugin> plugins = mPluginMgr.getEnabledDevicePlugins();
 
-        mCountDownLatch = new CountDownLatch(plugins.size());
-        for (int i = 0; i < plugins.size(); i++) {
-            DiscoveryRequestForPlugin request = new DiscoveryRequestForPlugin();
-            request.setContext(mContext);
-            request.setRequest(getRequest());
-            request.setDevicePluginManager(mPluginMgr);
-            request.setDestination(plugins.get(i));
-            request.setTimeout(TIMEOUT);
-            mRequestManager.addRequest(request);
-        }
-
-        if (mCountDownLatch.getCount() > 0) {
-            try {
-                mCountDownLatch.await(TIMEOUT, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                mLogger.warning("Exception occurred in wait.");
+        // 全プラグインのレスポンスを受け取るかタイムアウトするまで、リクエストを完了させない
+        retain();
+        if (plugins.isEmpty()) {
+            onCompleted();
+            return;
+        }
+
+        // キャッシュのあるプラグインは、キャッシュの内容をレスポンスに使用する
+        List<DevicePlugin> waitingPlugins = new ArrayList<>();
+        List<DevicePlugin> backgroundPlugins = new ArrayList<>();
+        for (DevicePlugin plugin : plugins) {
+            ServiceDiscoveryCache.Entry entry = mCache != null ? mCache.get(plugin) : null;
+            if (entry != null) {
+                synchronized (mServices) {
+                    mServices.addAll(entry.getServices());
+                }
+                if (mCache.isExpired(entry) && mCache.beginRefresh(plugin)) {
+                    backgroundPlugins.add(plugin);
+                }
+            } else if (mOnServicesFoundListener != null && (mCache == null || mCache.beginRefresh(plugin))) {
+                // レスポンスを待たずに返却し、見つかったサービスは後からリスナーに通知する
+                backgroundPlugins.add(plugin);
+            } else {
+                // 他のリクエストが取得中の場合も、このリクエストの結果に含めるためにレスポンスを待つ
+                waitingPlugins.add(plugin);
+            }
+        }
+
+        for (DevicePlugin plugin : backgroundPlugins) {
+            addPluginRequest(plugin, false);
+        }
+
+        if (waitingPlugins.isEmpty()) {
+            onCompleted();
+            return;
+        }
+
+        mRemainingCount.set(waitingPlugins.size());
+        mTimeoutFuture = mRequestManager.schedule(() -> mRequestManager.execute(this, this::onCompleted), TIMEOUT);
+        for (DevicePlugin plugin : waitingPlugins) {
+            addPluginRequest(plugin, true);
+        }
+    }
+
+    /**
+     * プラグインに Service Discovery のリクエストを送信します.
+     *
+     * @param plugin 送信先のプラグイン
+     * @param waiting true: レスポンスを待ってから返却する / false: バックグラウンドで取得する
+     */
+    private void addPluginRequest(final DevicePlugin plugin, final boolean waiting) {
+        DiscoveryRequestForPlugin request = new DiscoveryRequestForPlugin(waiting);
+        request.setContext(mContext);
+        request.setRequest(getRequest());
+        request.setDevicePluginManager(mPluginMgr);
+        request.setDestination(plugin);
+        request.setTimeout(TIMEOUT);
+        // レスポンスを待つプラグインのタイムアウトは送信前から計測しているので、同時実行数の上限で待機させない
+        request.setQueued(!waiting);
+        mRequestManager.addRequest(request);
+    }
+
+    /**
+     * プラグインからのレスポンスを1つ受け取ったことを通知する.
+     */
+    private void countDown() {
+        if (mRemainingCount.decrementAndGet() == 0) {
+            ScheduledFuture<?> future = mTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
             }
+            onCompleted();
         }
+    }
 
-        // レスポンスの無かったプラグインをOFFにする
-        synchronized (mRequestCodeArray) {
-            outputNotRespondedPlugins(mRequestCodeArray);
+    /**
+     * 全プラグインからのレスポンスを受け取った、またはタイムアウトした場合の処理を行う.
+     */
+    private void onCompleted() {
+        if (!mCompleted.compareAndSet(false, true)) {
+            return;
         }
 
-        // パラメータを設定する
-        mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
-        mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT, IntentDConnectMessage.RESULT_OK);
-        mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES, mServices.toArray(new Bundle[0]));
+        try {
+            // レスポンスの無かったプラグインをOFFにする
+            synchronized (mRequestCodeArray) {
+                outputNotRespondedPlugins(mRequestCodeArray);
+            }
 
-        // レスポンスを返却する
-        sendResponse(mResponse);
+            // パラメータを設定する
+            Bundle[] services;
+            synchronized (mServices) {
+                services = mServices.toArray(new Bundle[0]);
+            }
+            mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+            mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT, IntentDConnectMessage.RESULT_OK);
+            mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES, services);
+
+            // レスポンスを返却する
+            sendResponse(mResponse);
+        } finally {
+            release();
+        }
     }
 
     /**
@@ -162,17 +278,46 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
         }
     }
 
+    /**
+     * レスポンス返却後に見つかったサービスを通知するリスナー.
+     */
+    public interface OnServicesFoundListener {
+        /**
+         * プラグインのサービスが見つかったことを通知します.
+         *
+         * @param plugin プラグイン
+         * @param services 見つかったサービス一覧
+         */
+        void onServicesFound(DevicePlugin plugin, List<Bundle> services);
+    }
+
     /**
      * プラグインに対して Service Discovery を要求するクラス.
      */
     private class DiscoveryRequestForPlugin extends DConnectPluginRequest {
+        /**
+         * true: レスポンスを待ってから返却する / false: バックグラウンドで取得する.
+         */
+        private final boolean mWaiting;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param waiting true: レスポンスを待ってから返却する / false: バックグラウンドで取得する
+         */
+        DiscoveryRequestForPlugin(final boolean waiting) {
+            mWaiting = waiting;
+        }
+
         @Override
         public void run() {
             // リクエストコード発行
             mRequestCode = UUID.randomUUID().hashCode();
 
-            synchronized (mRequestCodeArray) {
-                mRequestCodeArray.put(mRequestCode, mDevicePlugin);
+            if (mWaiting) {
+                synchronized (mRequestCodeArray) {
+                    mRequestCodeArray.put(mRequestCode, mDevicePlugin);
+                }
             }
 
             // 送信用のIntentを作成
@@ -196,21 +341,41 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
                 // 送られてきたサービスIDにデバイスプラグインのIDを付加して保存
                 Parcelable[] services = response.getParcelableArrayExtra(
                         ServiceDiscoveryProfileConstants.PARAM_SERVICES);
+                List<Bundle> found = new ArrayList<>();
                 if (services != null) {
                     for (Parcelable p : services) {
                         Bundle b = (Bundle) p;
                         String id = b.getString(ServiceDiscoveryProfile.PARAM_ID);
                         b.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginMgr.appendServiceId(mDevicePlugin, id));
-                        mServices.add(b);
+                        found.add(b);
                     }
                 }
+                if (mCache != null) {
+                    mCache.put(mDevicePlugin, found);
+                }
+                if (mWaiting) {
+                    synchronized (mServices) {
+                        mServices.addAll(found);
+                    }
+                } else if (mOnServicesFoundListener != null && !found.isEmpty()) {
+                    mOnServicesFoundListener.onServicesFound(mDevicePlugin, found);
+                }
             }
 
             // レスポンス個数を追加
             synchronized (mRequestCodeArray) {
                 mRequestCodeArray.remove(mRequestCode);
             }
-            mCountDownLatch.countDown();
+            onFinished();
+        }
+
+        @Override
+        protected void onResponseTimeout() {
+            if (!mWaiting && mCache != null) {
+                // 応答のないプラグインの古いキャッシュは使用しない
+                mCache.remove(mDevicePlugin.getPluginId());
+            }
+            onFinished();
         }
 
         @Override
@@ -218,7 +383,18 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             synchronized (mRequestCodeArray) {
                 mRequestCodeArray.remove(mRequestCode);
             }
-            mCountDownLatch.countDown();
+            onFinished();
+        }
+
+        /**
+         * プラグインへのリクエストが完了した時の処理を行います.
+         */
+        private void onFinished() {
+            if (mWaiting) {
+                countDown();
+            } else if (mCache != null) {
+                mCache.endRefresh(mDevicePlugin);
+            }
         }
     }
 }
@@ -0,0 +1,492 @@
+/*
+ BundleJSONWriter.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.core.util;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.deviceconnect.android.manager.core.DConnectSettings;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.json.JSONException;
+
+import java.util.List;
+
+/**
+ * BundleをJSON文字列のUTF-8のバイト列に直接書き出すクラス.
+ * <p>
+ * JSONObjectのツリーや中間の文字列を作成せずに、再利用するバッファに書き出します。
+ * 出力は {@link org.deviceconnect.utils.JSONUtils#convertBundleToJSON(org.json.JSONObject, Bundle)} で
+ * 変換したJSONObjectの {@link org.json.JSONObject#toString()} と同じになります。
+ * </p>
+ * <p>
+ * スレッドセーフではないので、スレッドごとにインスタンスを使用すること。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class BundleJSONWriter {
+    /**
+     * バッファの初期サイズ.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * 再利用するバッファの最大サイズ.
+     * <p>
+     * これより大きくなったバッファは、書き出し後に破棄します。
+     * </p>
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 512 * 1024;
+
+    /**
+     * 16進数の文字.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 書き出し用のバッファ.
+     */
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * バッファに書き出したサイズ.
+     */
+    private int mCount;
+
+    /**
+     * uriの変換に使用するDeviceConnect設定.
+     */
+    private DConnectSettings mSettings;
+
+    /**
+     * BundleをJSONに変換してUTF-8のバイト列を取得します.
+     * <p>
+     * content://から始まるuriは、{@link DConnectUtil#convertBundleToJSON(DConnectSettings, org.json.JSONObject, Bundle)}と同様に変換します。
+     * </p>
+     *
+     * @param settings DeviceConnect設定
+     * @param bundle 変換するBundle
+     * @return JSONのバイト列
+     * @throws JSONException 数値にNaNや無限大が含まれる場合に発生
+     */
+    byte[] write(final DConnectSettings settings, final Bundle bundle) throws JSONException {
+        mSettings = settings;
+        mCount = 0;
+        try {
+            writeBundle(bundle);
+            byte[] result = new byte[mCount];
+            System.arraycopy(mBuffer, 0, result, 0, mCount);
+            return result;
+        } finally {
+            mSettings = null;
+            if (mBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+                mBuffer = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+    }
+
+    /**
+     * BundleをJSONオブジェクトとして書き出します.
+     *
+     * @param b 書き出すBundle
+     * @throws JSONException 数値にNaNや無限大が含まれる場合に発生
+     */
+    private void writeBundle(final Bundle b) throws JSONException {
+        writeByte('{');
+        if (b != null) {
+            boolean first = true;
+            for (String key : b.keySet()) {
+                if (key.equals(IntentDConnectMessage.EXTRA_REQUEST_CODE)) {
+                    // request_codeはRESTfulにはいらないので削除しておく
+                    continue;
+                }
+                Object value = b.get(key);
+                if (!isSupported(value)) {
+                    continue;
+                }
+                if (!first) {
+                    writeByte(',');
+                }
+                first = false;
+                writeString(key);
+                writeByte(':');
+                writeMember(key, value);
+            }
+        }
+        writeByte('}');
+    }
+
+    /**
+     * JSONに変換できる値か確認します.
+     *
+     * @param value 値
+     * @return 変換できる場合はtrue、それ以外はfalse
+     */
+    private boolean isSupported(final Object value) {
+        if (value instanceof Object[] && !(value instanceof Bundle[]) && !(value instanceof Parcelable[])
+                && !isTypedWrapperArray(value)) {
+            return isPrimitiveWrapperArray((Object[]) value);
+        }
+        return value instanceof Integer || value instanceof int[]
+                || value instanceof Short || value instanceof short[]
+                || value instanceof Character || value instanceof char[]
+                || value instanceof Byte || value instanceof byte[]
+                || value instanceof Long || value instanceof long[]
+                || value instanceof Float || value instanceof float[]
+                || value instanceof Double || value instanceof double[]
+                || value instanceof Boolean || value instanceof boolean[]
+                || value instanceof String || value instanceof Bundle
+                || value instanceof Object[] || value instanceof List<?>;
+    }
+
+    /**
+     * プリミティブ型のラッパークラスや文字列の型付き配列か確認します.
+     *
+     * @param value 値
+     * @return 型付き配列の場合はtrue、それ以外はfalse
+     */
+    private boolean isTypedWrapperArray(final Object value) {
+        return value instanceof Integer[] || value instanceof Long[] || value instanceof Short[]
+                || value instanceof Byte[] || value instanceof Character[] || value instanceof Float[]
+                || value instanceof Double[] || value instanceof Boolean[] || value instanceof String[];
+    }
+
+    /**
+     * JSONオブジェクトのメンバーの値を書き出します.
+     *
+     * @param key キー
+     * @param value 値
+     * @throws JSONException 数値にNaNや無限大が含まれる場合に発生
+     */
+    private void writeMember(final String key, final Object value) throws JSONException {
+        if (value instanceof Bundle) {
+            writeBundle((Bundle) value);
+        } else if (value instanceof Bundle[]) {
+            Bundle[] bb = (Bundle[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBundle(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Parcelable[]) {
+            Parcelable[] bb = (Parcelable[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBundle(bb[i] instanceof Bundle ? (Bundle) bb[i] : null);
+            }
+            writeByte(']');
+        } else if (value instanceof Object[]) {
+            Object[] bb = (Object[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeValue(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof List<?>) {
+            List<?> bb = (List<?>) value;
+            writeByte('[');
+            for (int i = 0; i < bb.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                Object v = bb.get(i);
+                if (v instanceof Parcelable) {
+                    writeBundle((Bundle) v);
+                } else {
+                    writeValue(v);
+                }
+            }
+            writeByte(']');
+        } else if (value instanceof Character) {
+            // JSONObject#put(String, int) として格納されるので数値になる
+            writeAscii(Integer.toString((Character) value));
+        } else if (value instanceof Float) {
+            // JSONObject#put(String, double) として格納されるのでdoubleとして書き出す
+            writeNumber(((Float) value).doubleValue());
+        } else if (value instanceof String) {
+            String s = (String) value;
+            if (mSettings != null) {
+                s = DConnectUtil.convertContentUri(mSettings, key, s);
+            }
+            writeString(s);
+        } else if (value instanceof int[]) {
+            int[] bb = (int[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(Integer.toString(bb[i]));
+            }
+            writeByte(']');
+        } else if (value instanceof short[]) {
+            short[] bb = (short[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(Integer.toString(bb[i]));
+            }
+            writeByte(']');
+        } else if (value instanceof char[]) {
+            char[] bb = (char[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(Integer.toString(bb[i]));
+            }
+            writeByte(']');
+        } else if (value instanceof byte[]) {
+            byte[] bb = (byte[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(Integer.toString(bb[i]));
+            }
+            writeByte(']');
+        } else if (value instanceof long[]) {
+            long[] bb = (long[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(Long.toString(bb[i]));
+            }
+            writeByte(']');
+        } else if (value instanceof float[]) {
+            float[] bb = (float[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeNumber((double) bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof double[]) {
+            double[] bb = (double[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeNumber(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof boolean[]) {
+            boolean[] bb = (boolean[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(bb[i] ? "true" : "false");
+            }
+            writeByte(']');
+        } else {
+            writeValue(value);
+        }
+    }
+
+    /**
+     * JSON配列の要素などの値を書き出します.
+     * <p>
+     * JSONArray#put(Object) で格納した値と同じ形式で書き出します。
+     * </p>
+     *
+     * @param value 値
+     * @throws JSONException 数値にNaNや無限大が含まれる場合に発生
+     */
+    private void writeValue(final Object value) throws JSONException {
+        if (value == null) {
+            writeAscii("null");
+        } else if (value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * 数値を書き出します.
+     *
+     * @param number 数値
+     * @throws JSONException 数値にNaNや無限大が含まれる場合に発生
+     */
+    private void writeNumber(final Number number) throws JSONException {
+        double doubleValue = number.doubleValue();
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+            throw new JSONException("Forbidden numeric value: " + number);
+        }
+        if (number.equals(-0d)) {
+            writeAscii("-0");
+            return;
+        }
+        long longValue = number.longValue();
+        if (doubleValue == (double) longValue) {
+            writeAscii(Long.toString(longValue));
+        } else {
+            writeAscii(number.toString());
+        }
+    }
+
+    /**
+     * 文字列をJSONの文字列として書き出します.
+     *
+     * @param s 文字列
+     */
+    private void writeString(final String s) {
+        writeByte('"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '\t':
+                    writeByte('\\');
+                    writeByte('t');
+                    break;
+                case '\b':
+                    writeByte('\\');
+                    writeByte('b');
+                    break;
+                case '\n':
+                    writeByte('\\');
+                    writeByte('n');
+                    break;
+                case '\r':
+                    writeByte('\\');
+                    writeByte('r');
+                    break;
+                case '\f':
+                    writeByte('\\');
+                    writeByte('f');
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        writeByte('\\');
+                        writeByte('u');
+                        writeByte('0');
+                        writeByte('0');
+                        writeByte(HEX[(c >> 4) & 0xF]);
+                        writeByte(HEX[c & 0xF]);
+                    } else if (c < 0x80) {
+                        writeByte(c);
+                    } else if (c < 0x800) {
+                        writeByte(0xC0 | (c >> 6));
+                        writeByte(0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, s.charAt(++i));
+                        writeByte(0xF0 | (cp >> 18));
+                        writeByte(0x80 | ((cp >> 12) & 0x3F));
+                        writeByte(0x80 | ((cp >> 6) & 0x3F));
+                        writeByte(0x80 | (cp & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        // 対になっていないサロゲートは String#getBytes と同様に置換する
+                        writeByte('?');
+                    } else {
+                        writeByte(0xE0 | (c >> 12));
+                        writeByte(0x80 | ((c >> 6) & 0x3F));
+                        writeByte(0x80 | (c & 0x3F));
+                    }
+                    break;
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * ASCII文字だけの文字列を書き出します.
+     *
+     * @param s 文字列
+     */
+    private void writeAscii(final String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            mBuffer[mCount++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * 1バイト書き出します.
+     *
+     * @param b 書き出す値
+     */
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        mBuffer[mCount++] = (byte) b;
+    }
+
+    /**
+     * バッファに指定されたサイズの空きがあるようにします.
+     *
+     * @param size 必要なサイズ
+     */
+    private void ensureCapacity(final int size) {
+        if (mCount + size > mBuffer.length) {
+            byte[] buf = new byte[Math.max(mBuffer.length * 2, mCount + size)];
+            System.arraycopy(mBuffer, 0, buf, 0, mCount);
+            mBuffer = buf;
+        }
+    }
+
+    /**
+     * 指定したObject[]がプリミティブ型のラッパークラスの配列であるかどうかをチェックする.
+     * <p>
+     * {@link org.deviceconnect.utils.JSONUtils}と同じ判定を行います。
+     * </p>
+     *
+     * @param array チェックするオブジェクト配列
+     * @return プリミティブ型のラッパークラスの配列である場合はtrue、そうでない場合はfalse
+     */
+    private static boolean isPrimitiveWrapperArray(final Object[] array) {
+        String classNameCache = null;
+        for (Object obj : array) {
+            if (obj != null) {
+                if (obj instanceof Byte || obj instanceof Short || obj instanceof Integer
+                        || obj instanceof Long || obj instanceof Float || obj instanceof Double
+                        || obj instanceof Character || obj instanceof Boolean) {
+                    String className = obj.getClass().getName();
+                    if (classNameCache != null) {
+                        if (!classNameCache.equals(className)) {
+                            return false;
+                        }
+                    } else {
+                        classNameCache = className;
+                    }
+                } else {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
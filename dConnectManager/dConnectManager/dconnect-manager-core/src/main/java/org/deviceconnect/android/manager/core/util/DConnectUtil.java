@@ -233,8 +233,8 @@ public final class DConnectUtil {
             String key = it.next();
             Object value = root.opt(key);
             if (value instanceof String) {
-                if (isUriKey(key) && startWithContent((String) value)) {
-                    String u = createUri(settings, (String) value);
+                String u = convertContentUri(settings, key, (String) value);
+                if (u != value) {
                     root.put(key, u);
                 }
             } else if (value instanceof JSONObject) {
@@ -252,6 +252,21 @@ public final class DConnectUtil {
         }
     }
 
+    /**
+     * 指定されたキーの値がcontent://から始まるuriの場合は、ファイルへのURIに変換する.
+     *
+     * @param settings DeviceConnect設定
+     * @param key      キー
+     * @param value    値
+     * @return 変換したURI、変換しない場合は引数の値をそのまま返す
+     */
+    static String convertContentUri(final DConnectSettings settings, final String key, final String value) {
+        if (isUriKey(key) && startWithContent(value)) {
+            return createUri(settings, value);
+        }
+        return value;
+    }
+
     private static final String PARAM_URI_POSTFIX = "Uri";
 
     /**
@@ -288,6 +303,32 @@ public final class DConnectUtil {
         convertUri(settings, root);
     }
 
+    /**
+     * スレッドごとに再利用するBundleJSONWriter.
+     */
+    private static final ThreadLocal<BundleJSONWriter> sJSONWriter = new ThreadLocal<BundleJSONWriter>() {
+        @Override
+        protected BundleJSONWriter initialValue() {
+            return new BundleJSONWriter();
+        }
+    };
+
+    /**
+     * BundleからJSONに変換して、UTF-8のバイト列を取得する.
+     * <p>
+     * {@link #convertBundleToJSON(DConnectSettings, JSONObject, Bundle)}で変換したJSONObjectを
+     * 文字列にした場合と同じ内容を、JSONObjectを作成せずに直接書き出す。
+     * </p>
+     *
+     * @param settings DeviceConnect設定
+     * @param b        変換するBundle
+     * @return JSONのバイト列
+     * @throws JSONException JSONへの変換に失敗した場合に発生
+     */
+    public static byte[] convertBundleToJSONBytes(final DConnectSettings settings, final Bundle b) throws JSONException {
+        return sJSONWriter.get().write(settings, b);
+    }
+
     /**
      * AndroidManifest.xmlのversionNameを取得する.
      *
@@ -52,6 +52,12 @@ public final class DConnectServerConfig {
     /** アクセスログ機能の有効. */
     private boolean mEnableAccessLog;
 
+    /** アクセスログをDBに書き込む間隔(ミリ秒). */
+    private long mAccessLogFlushInterval;
+
+    /** 書き込み待ちのアクセスログを保持する最大数. */
+    private int mAccessLogQueueSize;
+
     /**
      * 最大コネクション数を取得する.
      * 
@@ -140,6 +146,24 @@ public final class DConnectServerConfig {
         return mEnableAccessLog;
     }
 
+    /**
+     * アクセスログをDBに書き込む間隔を取得する.
+     *
+     * @return 書き込む間隔(ミリ秒)
+     */
+    public long getAccessLogFlushInterval() {
+        return mAccessLogFlushInterval;
+    }
+
+    /**
+     * 書き込み待ちのアクセスログを保持する最大数を取得する.
+     *
+     * @return 最大数
+     */
+    public int getAccessLogQueueSize() {
+        return mAccessLogQueueSize;
+    }
+
     /**
      * コンストラクタ.
      * 
@@ -157,6 +181,8 @@ public final class DConnectServerConfig {
         this.mIpAllowList = builder.mIpAllowList;
         this.mCharset = builder.mCharset;
         this.mEnableAccessLog = builder.mEnableAccessLog;
+        this.mAccessLogFlushInterval = builder.mAccessLogFlushInterval;
+        this.mAccessLogQueueSize = builder.mAccessLogQueueSize;
     }
 
     /**
@@ -197,6 +223,12 @@ public final class DConnectServerConfig {
         /** アクセスログ機能の設定. **/
         private boolean mEnableAccessLog;
 
+        /** アクセスログをDBに書き込む間隔(ミリ秒). */
+        private long mAccessLogFlushInterval = 1000;
+
+        /** 書き込み待ちのアクセスログを保持する最大数. */
+        private int mAccessLogQueueSize = 1024;
+
         /**
          * DConnectServerConfigのインスタンスを設定された設定値で生成する.
          * 
@@ -225,6 +257,8 @@ public final class DConnectServerConfig {
                     ", mIpAllowList=" + mIpAllowList +
                     ", mCharset='" + mCharset + '\'' +
                     ", mEnableAccessLog='" + mEnableAccessLog + '\'' +
+                    ", mAccessLogFlushInterval=" + mAccessLogFlushInterval +
+                    ", mAccessLogQueueSize=" + mAccessLogQueueSize +
                     '}';
         }
 
@@ -363,5 +397,39 @@ public final class DConnectServerConfig {
             mEnableAccessLog = enable;
             return this;
         }
+
+        /**
+         * アクセスログをDBに書き込む間隔を設定する.
+         * <p>
+         * アクセスログは、この間隔でまとめてDBに書き込みます。
+         * デフォルトでは、1000ミリ秒が設定してあります。
+         * </p>
+         * @param interval 書き込む間隔(ミリ秒)。1以上を指定すること。
+         * @return ビルダー。
+         */
+        public Builder accessLogFlushInterval(final long interval) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("AccessLogFlushInterval must be larger than 0.");
+            }
+            mAccessLogFlushInterval = interval;
+            return this;
+        }
+
+        /**
+         * 書き込み待ちのアクセスログを保持する最大数を設定する.
+         * <p>
+         * 最大数を超えたアクセスログは破棄します。
+         * デフォルトでは、1024が設定してあります。
+         * </p>
+         * @param size 最大数。1以上を指定すること。
+         * @return ビルダー。
+         */
+        public Builder accessLogQueueSize(final int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("AccessLogQueueSize must be larger than 0.");
+            }
+            mAccessLogQueueSize = size;
+            return this;
+        }
     }
 }
@@ -0,0 +1,375 @@
+/*
+ AssetCache.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Web サーバで返却する静的ファイルをメモリ上に保持するキャッシュ.
+ * <p>
+ * 圧縮できるファイルは、格納時に gzip と deflate で圧縮したデータも作成しておき、
+ * リクエストの Accept-Encoding に応じて返却するデータを選択します。
+ * </p>
+ * <p>
+ * キャッシュの総サイズが上限を超えた場合には、最も長い間使用されていないファイルから破棄します。
+ * ファイルの更新日時とサイズが変わった場合には、キャッシュを破棄します。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class AssetCache {
+    /**
+     * 圧縮するファイルの最小サイズ.
+     */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    /**
+     * Content-Encoding: gzip.
+     */
+    static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * Content-Encoding: deflate.
+     */
+    static final String ENCODING_DEFLATE = "deflate";
+
+    /**
+     * キャッシュ.
+     * <p>
+     * アクセス順に並べて、先頭から破棄します。
+     * </p>
+     */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * キャッシュの総サイズの上限.
+     */
+    private final long mMaxSize;
+
+    /**
+     * キャッシュするファイルの最大サイズ.
+     */
+    private final int mMaxEntrySize;
+
+    /**
+     * キャッシュの総サイズ.
+     */
+    private long mSize;
+
+    /**
+     * キャッシュのヒット数.
+     */
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    /**
+     * キャッシュのミス数.
+     */
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param maxSize キャッシュの総サイズの上限
+     * @param maxEntrySize キャッシュするファイルの最大サイズ
+     */
+    AssetCache(final long maxSize, final int maxEntrySize) {
+        mMaxSize = maxSize;
+        mMaxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * 指定されたサイズのファイルをキャッシュできるか確認します.
+     *
+     * @param length ファイルサイズ
+     * @return キャッシュできる場合はtrue、それ以外はfalse
+     */
+    boolean isCacheable(final long length) {
+        return length >= 0 && length <= mMaxEntrySize;
+    }
+
+    /**
+     * キャッシュを取得します.
+     * <p>
+     * キャッシュした時からファイルの更新日時、またはサイズが変わっている場合には、キャッシュを破棄してnullを返却します。
+     * </p>
+     *
+     * @param key キー
+     * @param lastModified ファイルの更新日時
+     * @param length ファイルサイズ、負の値の場合はサイズを確認しない
+     * @return キャッシュ、存在しない場合はnull
+     */
+    Entry get(final String key, final long lastModified, final long length) {
+        synchronized (mEntries) {
+            Entry entry = mEntries.get(key);
+            if (entry != null && (entry.mLastModified != lastModified || (length >= 0 && entry.mLength != length))) {
+                mEntries.remove(key);
+                mSize -= entry.mSize;
+                entry = null;
+            }
+            if (entry != null) {
+                mHitCount.incrementAndGet();
+            } else {
+                mMissCount.incrementAndGet();
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * ファイルのデータをキャッシュに格納します.
+     *
+     * @param key キー
+     * @param lastModified ファイルの更新日時
+     * @param data ファイルのデータ
+     * @param mime ファイルのマイムタイプ
+     * @return 格納したキャッシュ
+     * @throws IOException 圧縮に失敗した場合に発生
+     */
+    Entry put(final String key, final long lastModified, final byte[] data, final String mime) throws IOException {
+        byte[] gzip = null;
+        byte[] deflate = null;
+        if (data.length >= MIN_COMPRESS_SIZE && isCompressible(mime)) {
+            gzip = gzip(data);
+            if (gzip.length >= data.length) {
+                gzip = null;
+            }
+            deflate = deflate(data);
+            if (deflate.length >= data.length) {
+                deflate = null;
+            }
+        }
+
+        Entry entry = new Entry(lastModified, data, gzip, deflate);
+        if (entry.mSize > mMaxSize) {
+            return entry;
+        }
+
+        synchronized (mEntries) {
+            Entry old = mEntries.put(key, entry);
+            if (old != null) {
+                mSize -= old.mSize;
+            }
+            mSize += entry.mSize;
+
+            Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+            while (mSize > mMaxSize && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                mSize -= eldest.mSize;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * キャッシュを全て破棄します.
+     */
+    void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+            mSize = 0;
+        }
+    }
+
+    /**
+     * キャッシュのヒット数を取得します.
+     *
+     * @return ヒット数
+     */
+    long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * キャッシュのミス数を取得します.
+     *
+     * @return ミス数
+     */
+    long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * 圧縮する価値のあるマイムタイプか確認します.
+     *
+     * @param mime マイムタイプ
+     * @return 圧縮する場合はtrue、それ以外はfalse
+     */
+    private static boolean isCompressible(final String mime) {
+        if (mime == null) {
+            return false;
+        }
+        String m = mime.toLowerCase(Locale.ENGLISH);
+        return m.startsWith("text/") || m.contains("javascript") || m.contains("json")
+                || m.contains("xml") || m.contains("svg");
+    }
+
+    /**
+     * gzip で圧縮します.
+     *
+     * @param data 圧縮するデータ
+     * @return 圧縮したデータ
+     * @throws IOException 圧縮に失敗した場合に発生
+     */
+    private static byte[] gzip(final byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * deflate (zlib形式) で圧縮します.
+     *
+     * @param data 圧縮するデータ
+     * @return 圧縮したデータ
+     * @throws IOException 圧縮に失敗した場合に発生
+     */
+    private static byte[] deflate(final byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Accept-Encoding ヘッダーで指定されたエンコーディングを受け入れるか確認します.
+     *
+     * @param acceptEncoding Accept-Encoding ヘッダーの値
+     * @param encoding エンコーディング
+     * @return 受け入れる場合はtrue、それ以外はfalse
+     */
+    private static boolean accepts(final String acceptEncoding, final String encoding) {
+        for (String token : acceptEncoding.split(",")) {
+            String[] params = token.trim().split(";");
+            if (!params[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Float.parseFloat(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * キャッシュしたファイル.
+     */
+    static final class Entry {
+        /**
+         * ファイルの更新日時.
+         */
+        private final long mLastModified;
+
+        /**
+         * ファイルサイズ.
+         */
+        private final long mLength;
+
+        /**
+         * ファイルのデータ.
+         */
+        private final byte[] mData;
+
+        /**
+         * gzip で圧縮したデータ、圧縮しない場合はnull.
+         */
+        private final byte[] mGzip;
+
+        /**
+         * deflate で圧縮したデータ、圧縮しない場合はnull.
+         */
+        private final byte[] mDeflate;
+
+        /**
+         * キャッシュで使用するサイズ.
+         */
+        private final long mSize;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param lastModified ファイルの更新日時
+         * @param data ファイルのデータ
+         * @param gzip gzip で圧縮したデータ
+         * @param deflate deflate で圧縮したデータ
+         */
+        private Entry(final long lastModified, final byte[] data, final byte[] gzip, final byte[] deflate) {
+            mLastModified = lastModified;
+            mLength = data.length;
+            mData = data;
+            mGzip = gzip;
+            mDeflate = deflate;
+            mSize = data.length + (gzip != null ? gzip.length : 0) + (deflate != null ? deflate.length : 0);
+        }
+
+        /**
+         * 圧縮したデータを持っているか確認します.
+         *
+         * @return 圧縮したデータを持っている場合はtrue、それ以外はfalse
+         */
+        boolean isCompressed() {
+            return mGzip != null || mDeflate != null;
+        }
+
+        /**
+         * Accept-Encoding ヘッダーから返却するエンコーディングを選択します.
+         *
+         * @param acceptEncoding Accept-Encoding ヘッダーの値
+         * @return エンコーディング、圧縮しない場合はnull
+         */
+        String negotiate(final String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return null;
+            }
+            if (mGzip != null && accepts(acceptEncoding, ENCODING_GZIP)) {
+                return ENCODING_GZIP;
+            }
+            if (mDeflate != null && accepts(acceptEncoding, ENCODING_DEFLATE)) {
+                return ENCODING_DEFLATE;
+            }
+            return null;
+        }
+
+        /**
+         * 指定されたエンコーディングのデータを取得します.
+         *
+         * @param encoding エンコーディング、nullの場合は圧縮していないデータ
+         * @return データ
+         */
+        byte[] getBody(final String encoding) {
+            if (ENCODING_GZIP.equals(encoding)) {
+                return mGzip;
+            } else if (ENCODING_DEFLATE.equals(encoding)) {
+                return mDeflate;
+            }
+            return mData;
+        }
+    }
+}
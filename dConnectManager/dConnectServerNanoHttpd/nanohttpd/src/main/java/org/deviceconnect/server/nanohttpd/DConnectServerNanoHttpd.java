@@ -20,25 +20,21 @@ import org.deviceconnect.server.nanohttpd.logger.AndroidHandler;
 import org.deviceconnect.server.nanohttpd.security.Firewall;
 import org.deviceconnect.server.websocket.DConnectWebSocket;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,6 +43,14 @@ import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -96,9 +100,30 @@ public class DConnectServerNanoHttpd extends DConnectServer {
     private static final int REQUEST_BUFFER_LEN = 1024;
 
     /**
-     * メモリ上に格納しておく上限サイズを定義.
+     * 文字列として読み込むbodyの最大サイズを定義.
+     * <p>
+     * multipart 以外のbodyはメモリ上に読み込むため、このサイズを超えるリクエストは 413 を返却します。
+     * </p>
+     */
+    private static final long MAX_MEMORY_BODY_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 413 Payload Too Large を定義.
+     * <p>
+     * NanoHTTPD の Status には定義されていないため、ここで定義します。
+     * </p>
      */
-    private static final int MEMORY_STORE_LIMIT = 1024;
+    private static final NanoHTTPD.Response.IStatus PAYLOAD_TOO_LARGE = new NanoHTTPD.Response.IStatus() {
+        @Override
+        public String getDescription() {
+            return "413 Payload Too Large";
+        }
+
+        @Override
+        public int getRequestStatus() {
+            return 413;
+        }
+    };
 
     /**
      * Content-Dispositionヘッダーを見つける正規表現を定義.
@@ -140,6 +165,21 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private static final int WEBSOCKET_KEEP_ALIVE_INTERVAL = 3000;
 
+    /**
+     * WebSocketのKeepAlive処理で送信するpingのペイロード.
+     */
+    private static final byte[] WEBSOCKET_PING_PAYLOAD = "DConnectServer".getBytes();
+
+    /**
+     * WebSocketのKeepAlive処理でpingの書き込みを行うスレッドの最大数.
+     */
+    private static final int WEBSOCKET_KEEP_ALIVE_WRITE_THREAD_SIZE = 4;
+
+    /**
+     * WebSocketのKeepAlive処理で書き込み待ちにできるpingの最大数.
+     */
+    private static final int WEBSOCKET_KEEP_ALIVE_WRITE_QUEUE_SIZE = 256;
+
     /**
      * application/jsonのContent-Typeを定義.
      */
@@ -165,6 +205,32 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private SSLServerSocketFactory mServerSocketFactory;
 
+    /**
+     * 全てのWebSocketのKeepAlive処理を実行するスケジューラ.
+     * <p>
+     * WebSocketごとにスレッドを作成しないように、1つのスレッドで全てのWebSocketを処理します。
+     * </p>
+     */
+    private ScheduledExecutorService mKeepAliveExecutor;
+
+    /**
+     * WebSocketのKeepAlive処理でpingの書き込みを行うスレッドプール.
+     * <p>
+     * 応答しないクライアントへの書き込みでKeepAlive処理のスレッドがブロックされないように、
+     * 書き込みはKeepAlive処理とは別のスレッドで行います。
+     * </p>
+     * <p>
+     * スレッド数とキューのサイズには上限があります。書き込みでブロックしたスレッドは、
+     * 次回のKeepAlive処理でソケットを閉じた時に解放されます。
+     * </p>
+     */
+    private ExecutorService mKeepAliveWriteExecutor;
+
+    /**
+     * KeepAlive処理で応答がなかったために切断したWebSocketの数.
+     */
+    private final AtomicLong mDeadWebSocketCount = new AtomicLong();
+
     /**
      * Keep-Aliveの状態定数.
      *
@@ -218,7 +284,8 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             throw new IllegalArgumentException("keyStoreManager must not be null if SSL is enabled.");
         }
         mServerSocketFactory = socketFactory;
-        mAccessLogProvider = new AccessLogProvider(context);
+        mAccessLogProvider = new AccessLogProvider(context,
+                config.getAccessLogQueueSize(), config.getAccessLogFlushInterval());
 
         if (BuildConfig.DEBUG) {
             Handler handler = new AndroidHandler(TAG);
@@ -272,6 +339,15 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             mServer.makeSecure(factory, null);
         }
 
+        ThreadPoolExecutor writeExecutor = new ThreadPoolExecutor(
+                WEBSOCKET_KEEP_ALIVE_WRITE_THREAD_SIZE, WEBSOCKET_KEEP_ALIVE_WRITE_THREAD_SIZE,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(WEBSOCKET_KEEP_ALIVE_WRITE_QUEUE_SIZE));
+        writeExecutor.allowCoreThreadTimeOut(true);
+        mKeepAliveWriteExecutor = writeExecutor;
+        mKeepAliveExecutor = Executors.newSingleThreadScheduledExecutor();
+        mKeepAliveExecutor.scheduleAtFixedRate(this::keepAliveWebSockets,
+                WEBSOCKET_KEEP_ALIVE_INTERVAL, WEBSOCKET_KEEP_ALIVE_INTERVAL, TimeUnit.MILLISECONDS);
+
         new Thread(() -> {
             try {
                 mServer.start();
@@ -307,8 +383,20 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
         mSockets.clear();
 
+        if (mKeepAliveExecutor != null) {
+            mKeepAliveExecutor.shutdownNow();
+            mKeepAliveExecutor = null;
+        }
+
+        if (mKeepAliveWriteExecutor != null) {
+            mKeepAliveWriteExecutor.shutdownNow();
+            mKeepAliveWriteExecutor = null;
+        }
+
         mServer.stop();
         mServer = null;
+
+        mAccessLogProvider.close();
     }
 
     @Override
@@ -321,6 +409,75 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         return VERSION;
     }
 
+    /**
+     * pingを送信して、pongの応答を待っているWebSocketの数を取得します.
+     *
+     * @return pongの応答を待っているWebSocketの数
+     */
+    public int getPendingPingCount() {
+        int count = 0;
+        for (DConnectWebSocket webSocket : mSockets.values()) {
+            if (webSocket instanceof NanoWebSocket && ((NanoWebSocket) webSocket).isWaitingPong()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * DBへの書き込み待ちのキューが一杯だったために破棄したアクセスログの数を取得します.
+     *
+     * @return 破棄したアクセスログの数
+     */
+    public long getAccessLogDroppedCount() {
+        return mAccessLogProvider.getDroppedCount();
+    }
+
+    /**
+     * KeepAlive処理で応答がなかったために切断したWebSocketの数を取得します.
+     *
+     * @return 切断したWebSocketの数
+     */
+    public long getDeadWebSocketCount() {
+        return mDeadWebSocketCount.get();
+    }
+
+    /**
+     * 接続中の全てのWebSocketのKeepAlive処理を行います.
+     */
+    private void keepAliveWebSockets() {
+        for (DConnectWebSocket webSocket : mSockets.values()) {
+            if (webSocket instanceof NanoWebSocket) {
+                try {
+                    ((NanoWebSocket) webSocket).keepAlive();
+                } catch (Exception e) {
+                    // 他のWebSocketの処理を継続するために例外は無視する
+                    mLogger.warning("Exception in the keepAliveWebSockets() method. " + e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * KeepAlive処理の書き込みを別スレッドで実行します.
+     * <p>
+     * サーバーが停止している場合、または書き込み待ちが上限に達している場合には実行しません。
+     * </p>
+     *
+     * @param task 書き込み処理
+     */
+    private void executeKeepAliveWrite(final Runnable task) {
+        ExecutorService executor = mKeepAliveWriteExecutor;
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // pingを送信できなかったクライアントは応答がないので、次回のKeepAlive処理で切断される
+        }
+    }
+
     /**
      * SSLサーバーソケットファクトリーを設定する.
      *
@@ -413,6 +570,11 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         private Firewall mFirewall;
 
+        /**
+         * クライアントの接続を処理するスレッドを起動するクラス.
+         */
+        private final SocketAsyncRunner mAsyncRunner = new SocketAsyncRunner();
+
         /**
          * コンストラクタ.
          *
@@ -421,6 +583,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         NanoServer(final String hostname, final int port) {
             super(hostname, port);
+            setAsyncRunner(mAsyncRunner);
             mFirewall = new Firewall(mConfig.getIPAllowList());
             try {
                 mimeTypes();
@@ -432,6 +595,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         @Override
         protected ClientHandler createClientHandler(final Socket finalAccept, final InputStream inputStream) {
             ClientHandler clientHandler = super.createClientHandler(finalAccept, inputStream);
+            mAsyncRunner.register(clientHandler, finalAccept);
             if (mFirewall != null && !mFirewall.isAllowIP(finalAccept.getInetAddress().getHostAddress())) {
                 clientHandler.close();
             }
@@ -519,6 +683,12 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                     response = execute(request);
                 }
                 return newFixedLengthResponse(response);
+            } catch (PayloadTooLargeException e) {
+                // 読み込んでいないbodyが残っているので、接続を閉じる
+                Response response = newFixedLengthResponse(PAYLOAD_TOO_LARGE, MIME_APPLICATION_JSON,
+                        "{\"result\" : 1, \"errorCode\" : 1, \"errorMessage\" : \"Too large request.\"}");
+                response.closeConnection(true);
+                return response;
             } catch (OutOfMemoryError e) {
                 return newFixedLengthResponse(Status.BAD_REQUEST, MIME_APPLICATION_JSON,
                         "{\"result\" : 1, \"errorCode\" : 1, \"errorMessage\" : \"Too large request.\"}");
@@ -536,7 +706,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         @Override
         protected WebSocket openWebSocket(final IHTTPSession handshake) {
-            return new NanoWebSocket(handshake);
+            return new NanoWebSocket(handshake, mAsyncRunner.getCurrentSocket());
         }
 
         /**
@@ -600,7 +770,10 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * アクセスログにレスポンスの情報を加えて、DBに保存します.
+         * アクセスログにレスポンスの情報を加えて、DBへの書き込み待ちのキューに追加します.
+         * <p>
+         * DBへの書き込みはバックグラウンドのスレッドでまとめて行うので、リクエストの処理を待たせません。
+         * </p>
          *
          * @param response レスポンス
          * @param accessLog アクセスログ
@@ -613,7 +786,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             accessLog.setResponseContentType(contentType);
             accessLog.setResponseStatusCode(response.getStatusCode().getCode());
             accessLog.setResponseSendTime(System.currentTimeMillis());
-            mAccessLogProvider.add(accessLog);
+            mAccessLogProvider.offer(accessLog);
         }
 
         /**
@@ -695,8 +868,10 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          * @param request Httpリクエストを格納するインスタンス
          * @throws IOException セッションのアクセスに失敗した場合
          * @throws ResponseException レスポンスの作成に失敗した場合
+         * @throws PayloadTooLargeException メモリ上に読み込むbodyのサイズが上限を超えている場合
          */
-        private void parseBody(final IHTTPSession session, final DConnectHttpRequest request) throws IOException, ResponseException {
+        private void parseBody(final IHTTPSession session, final DConnectHttpRequest request)
+                throws IOException, ResponseException, PayloadTooLargeException {
             Map<String, String> headers = session.getHeaders();
             if (!session.getMethod().equals(Method.PUT)
                     && !session.getMethod().equals(Method.POST)
@@ -705,75 +880,81 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
 
             Map<String, String> files = new HashMap<>();
-            RandomAccessFile randomAccessFile = null;
-            try {
-                long size = getBodySize(session);
-                ByteArrayOutputStream baos = null;
-                DataOutput requestDataOutput;
-                // Store the request in memory or a file, depending on size
-                if (size < MEMORY_STORE_LIMIT) {
-                    baos = new ByteArrayOutputStream();
-                    requestDataOutput = new DataOutputStream(baos);
-                } else {
-                    randomAccessFile = getTmpBucket(session);
-                    requestDataOutput = randomAccessFile;
-                }
-
-                InputStream inputStream = session.getInputStream();
-                int len = 0;
-                byte[] buf = new byte[REQUEST_BUFFER_LEN];
-                while (len >= 0 && size > 0) {
-                    len = inputStream.read(buf, 0, (int) Math.min(size, REQUEST_BUFFER_LEN));
-                    size -= len;
-                    if (len > 0) {
-                        requestDataOutput.write(buf, 0, len);
+            long size = getBodySize(session);
+            InputStream inputStream = session.getInputStream();
+
+            if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
+                ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
+                if (contentType.isMultipart()) {
+                    String boundary = contentType.getBoundary();
+                    if (boundary == null) {
+                        skipBody(inputStream, size);
+                        throw new ResponseException(BAD_REQUEST,
+                                "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
                     }
-                }
-
-                TempBuffer tmpBuf;
-                if (baos != null) {
-                    tmpBuf = new TempByteBuffer(ByteBuffer.wrap(baos.toByteArray(), 0, baos.size()));
+                    decodeMultipartFormData(session, contentType, inputStream, size, request.getQueryParameters(), files);
                 } else {
-                    try {
-                        tmpBuf = new TempByteBuffer(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length()));
-                    } catch (IOException e) {
-                        tmpBuf = new TempFileBuffer(randomAccessFile);
+                    if (size > MAX_MEMORY_BODY_SIZE) {
+                        throw new PayloadTooLargeException();
+                    }
+                    byte[] postBytes = readBody(inputStream, size);
+                    // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
+//                  String postLine = new String(postBytes, contentType.getEncoding()).trim();
+                    String postLine = new String(postBytes, mConfig.getCharset()).trim();
+                    if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
+                        decodeParms(postLine, request.getQueryParameters());
+                    } else if (postLine.length() != 0) {
+                        files.put("postData", postLine);
                     }
-                    randomAccessFile.seek(0);
                 }
+            } else {
+                skipBody(inputStream, size);
+            }
 
-                if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
-                    ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
-                    if (contentType.isMultipart()) {
-                        String boundary = contentType.getBoundary();
-                        if (boundary == null) {
-                            throw new ResponseException(BAD_REQUEST,
-                                    "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
-                        }
-                        decodeMultipartFormData(session, contentType, tmpBuf, request.getQueryParameters(), files);
-                    } else {
-                        byte[] postBytes = new byte[tmpBuf.remaining()];
-                        tmpBuf.get(postBytes);
-                        // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
-//                      String postLine = new String(postBytes, contentType.getEncoding()).trim();
-                        String postLine = new String(postBytes, mConfig.getCharset()).trim();
-                        if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
-                            decodeParms(postLine, request.getQueryParameters());
-                        } else if (postLine.length() != 0) {
-                            files.put("postData", postLine);
-                        }
-                    }
+            request.setFiles(files);
+        }
+
+        /**
+         * Httpリクエストのbodyを読み込む.
+         * <p>
+         * 文字列として扱うbodyを読み込むために使用します。
+         * Content-Length の値で領域を確保せずに、受信したデータに合わせて領域を拡張します。
+         * </p>
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
+         * @return bodyのデータ
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private byte[] readBody(final InputStream inputStream, final long size) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream((int) Math.min(size, REQUEST_BUFFER_LEN));
+            long remaining = size;
+            byte[] buf = new byte[REQUEST_BUFFER_LEN];
+            while (remaining > 0) {
+                int len = inputStream.read(buf, 0, (int) Math.min(remaining, REQUEST_BUFFER_LEN));
+                if (len < 0) {
+                    break;
                 }
+                body.write(buf, 0, len);
+                remaining -= len;
+            }
+            return body.toByteArray();
+        }
 
-                request.setFiles(files);
-            } finally {
-                if (randomAccessFile != null) {
-                    try {
-                        randomAccessFile.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+        /**
+         * Httpリクエストのbodyを読み捨てる.
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private void skipBody(final InputStream inputStream, final long size) throws IOException {
+            long remaining = size;
+            byte[] buf = new byte[REQUEST_BUFFER_LEN];
+            while (remaining > 0) {
+                int len = inputStream.read(buf, 0, (int) Math.min(remaining, REQUEST_BUFFER_LEN));
+                if (len < 0) {
+                    break;
                 }
+                remaining -= len;
             }
         }
 
@@ -784,11 +965,19 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          * </p>
          * @param session Httpリクエストのセッションデータ
          * @return Content-Lengthのサイズ
+         * @throws ResponseException Content-Lengthが不正な値の場合
          */
-        private long getBodySize(final IHTTPSession session) {
+        private long getBodySize(final IHTTPSession session) throws ResponseException {
             long size = 0;
             if (session.getHeaders().containsKey("content-length")) {
-                size = Integer.parseInt(session.getHeaders().get("content-length"));
+                try {
+                    size = Long.parseLong(session.getHeaders().get("content-length").trim());
+                } catch (NumberFormatException e) {
+                    size = -1;
+                }
+                if (size < 0) {
+                    throw new ResponseException(BAD_REQUEST, "BAD REQUEST: Content-Length is invalid.");
+                }
             }
             return size;
         }
@@ -818,83 +1007,6 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
         }
 
-        /**
-         * multipartで送られてきデータを一時的に格納するファイルを作成する.
-         * @param session Httpリクエストのセッションデータ
-         * @return 一時的なファイル
-         */
-        private RandomAccessFile getTmpBucket(final IHTTPSession session) {
-            try {
-                TempFileManager mgr = getTempFileManager(session);
-                if (mgr == null) {
-                    throw new RuntimeException("Cannot get a TempFileManager.");
-                }
-                TempFile tempFile = mgr.createTempFile(null);
-                return new RandomAccessFile(tempFile.getName(), "rw");
-            } catch (Exception e) {
-                throw new Error(e); // we won't recover, so throw an error
-            }
-        }
-
-        /**
-         * Find the byte positions where multipart boundaries start. This reads
-         * a large block at a time and uses a temporary buffer to optimize
-         * (memory mapped) file access.
-         */
-        private int[] getBoundaryPositions(final TempBuffer b, final byte[] boundary) throws IOException {
-            int[] res = new int[0];
-            if (b.remaining() < boundary.length) {
-                return res;
-            }
-
-            int search_window_pos = 0;
-            byte[] search_window = new byte[4 * 1024 + boundary.length];
-
-            int first_fill = (b.remaining() < search_window.length) ? b.remaining() : search_window.length;
-            b.get(search_window, 0, first_fill);
-            int new_bytes = first_fill - boundary.length;
-
-            do {
-                // Search the search_window
-                for (int j = 0; j < new_bytes; j++) {
-                    for (int i = 0; i < boundary.length; i++) {
-                        if (search_window[j + i] != boundary[i])
-                            break;
-                        if (i == boundary.length - 1) {
-                            // Match found, add it to results
-                            int[] new_res = new int[res.length + 1];
-                            System.arraycopy(res, 0, new_res, 0, res.length);
-                            new_res[res.length] = search_window_pos + j;
-                            res = new_res;
-                        }
-                    }
-                }
-                search_window_pos += new_bytes;
-
-                // Copy the end of the buffer to the start
-                System.arraycopy(search_window, search_window.length - boundary.length, search_window, 0, boundary.length);
-
-                // Refill search_window
-                new_bytes = search_window.length - boundary.length;
-                new_bytes = (b.remaining() < new_bytes) ? b.remaining() : new_bytes;
-                b.get(search_window, boundary.length, new_bytes);
-            } while (new_bytes > 0);
-            return res;
-        }
-
-        /**
-         * 改行コードまでオフセットを移動する.
-         * @param partHeaderBuff データ
-         * @param index オフセット
-         * @return 移動したインデックス
-         */
-        private int scipOverNewLine(final byte[] partHeaderBuff, int index) {
-            while (partHeaderBuff[index] != '\n') {
-                index++;
-            }
-            return ++index;
-        }
-
         /**
          * Decodes parameters in percent-encoded URI-format ( e.g.
          * "name=Jack%20Daniels&pass=Single%20Malt" ) and adds them to given
@@ -920,47 +1032,31 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         /**
          * multipartをデコードする.
+         * <p>
+         * bodyをストリームから順番に読み込み、ファイルのデータは一時ファイルに直接書き出します。
+         * Content-Typeのないパートは文字列としてメモリ上に読み込むので、その合計は {@link #MAX_MEMORY_BODY_SIZE} までとします。
+         * </p>
          * @param session Httpリクエストのセッションデータ
          * @param contentType コンテントタイプ
-         * @param fbuf bodyデータ
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
          * @param parms queryデータ
          * @param files multipartのファイルパスを格納するマップ
          * @throws ResponseException レスポンスの作成に失敗した場合
+         * @throws PayloadTooLargeException メモリ上に読み込むパートのサイズが上限を超えている場合
          */
-        private void decodeMultipartFormData(final IHTTPSession session, final ContentType contentType, final TempBuffer fbuf,
-                                             final Map<String, String> parms, final Map<String, String> files) throws ResponseException {
+        private void decodeMultipartFormData(final IHTTPSession session, final ContentType contentType, final InputStream inputStream,
+                                             final long size, final Map<String, String> parms, final Map<String, String> files)
+                throws ResponseException, PayloadTooLargeException {
             int pcount = 0;
+            long memorySize = 0;
             try {
-                int[] boundaryIdxs = getBoundaryPositions(fbuf, contentType.getBoundary().getBytes());
-                if (boundaryIdxs.length < 2) {
-                    throw new ResponseException(BAD_REQUEST,
-                            "BAD REQUEST: Content type is multipart/form-data but contains less than two boundary strings.");
-                }
-
-                byte[] partHeaderBuff = new byte[MAX_HEADER_SIZE];
-                for (int boundaryIdx = 0; boundaryIdx < boundaryIdxs.length - 1; boundaryIdx++) {
-                    fbuf.position(boundaryIdxs[boundaryIdx]);
-                    int len = (fbuf.remaining() < MAX_HEADER_SIZE) ? fbuf.remaining() : MAX_HEADER_SIZE;
-                    fbuf.get(partHeaderBuff, 0, len);
-                    BufferedReader in =
-                            new BufferedReader(new InputStreamReader(
-                                    new ByteArrayInputStream(partHeaderBuff, 0, len),
-                                        Charset.forName(contentType.getEncoding())), len);
-
-                    int headerLines = 0;
-                    // First line is boundary string
-                    String mpline = in.readLine();
-                    headerLines++;
-                    if (mpline == null || !mpline.contains(contentType.getBoundary())) {
-                        throw new ResponseException(BAD_REQUEST,
-                                "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
-                    }
-
+                MultipartStreamReader reader = new MultipartStreamReader(inputStream, size,
+                        contentType.getBoundary().getBytes(), MAX_HEADER_SIZE);
+                Charset headerCharset = Charset.forName(contentType.getEncoding());
+                while (reader.nextPart()) {
                     String partName = null, fileName = null, partContentType = null;
-                    // Parse the reset of the header lines
-                    mpline = in.readLine();
-                    headerLines++;
-                    while (mpline != null && mpline.trim().length() > 0) {
+                    for (String mpline : reader.getHeader(headerCharset).split("\r\n")) {
                         Matcher matcher = CONTENT_DISPOSITION_PATTERN.matcher(mpline);
                         if (matcher.matches()) {
                             String attributeString = matcher.group(2);
@@ -986,31 +1082,27 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                         if (matcher.matches()) {
                             partContentType = matcher.group(2).trim();
                         }
-                        mpline = in.readLine();
-                        headerLines++;
-                    }
-                    int partHeaderLength = 0;
-                    while (headerLines-- > 0) {
-                        partHeaderLength = scipOverNewLine(partHeaderBuff, partHeaderLength);
                     }
-                    // Read the part data
-                    if (partHeaderLength >= len - 4) {
-                        throw new ResponseException(Response.Status.INTERNAL_ERROR, "Multipart header size exceeds MAX_HEADER_SIZE.");
-                    }
-                    int partDataStart = boundaryIdxs[boundaryIdx] + partHeaderLength;
-                    int partDataEnd = boundaryIdxs[boundaryIdx + 1] - 4;
 
-                    fbuf.position(partDataStart);
                     if (partContentType == null) {
                         // Read the part into a string
-                        byte[] data_bytes = new byte[partDataEnd - partDataStart];
-                        fbuf.get(data_bytes);
+                        BoundedByteArrayChannel data = new BoundedByteArrayChannel(MAX_MEMORY_BODY_SIZE - memorySize);
+                        if (!reader.readData(data)) {
+                            break;
+                        }
+                        if (data.isOverflowed()) {
+                            throw new PayloadTooLargeException();
+                        }
+                        memorySize += data.size();
                         // MEMO: デフォルトの文字コードでマルチパートの文字列は取得する
-//                        parms.put(partName, new String(data_bytes, contentType.getEncoding()));
-                        parms.put(partName, new String(data_bytes, mConfig.getCharset()));
+//                        parms.put(partName, new String(data.toByteArray(), contentType.getEncoding()));
+                        parms.put(partName, new String(data.toByteArray(), mConfig.getCharset()));
                     } else {
                         // Read it into a file
-                        String path = saveTmpFile(session, fbuf, partDataStart, partDataEnd - partDataStart, fileName);
+                        String path = saveTmpFile(session, reader, fileName);
+                        if (path == null) {
+                            break;
+                        }
                         if (!files.containsKey(partName)) {
                             files.put(partName, path);
                         } else {
@@ -1024,43 +1116,46 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 //                        parms.put(partName, fileName);
                     }
                 }
-            } catch (ResponseException re) {
-                throw re;
+                reader.drain();
+
+                if (reader.getBoundaryCount() < 2) {
+                    throw new ResponseException(BAD_REQUEST,
+                            "BAD REQUEST: Content type is multipart/form-data but contains less than two boundary strings.");
+                }
+            } catch (ResponseException | PayloadTooLargeException e) {
+                throw e;
             } catch (Exception e) {
                 throw new ResponseException(Response.Status.INTERNAL_ERROR, "INTERNAL ERROR: Exception. e=" + e.toString());
             }
         }
 
         /**
-         * Retrieves the content of a sent file and saves it to a temporary
-         * file. The full path to the saved file is returned.
+         * multipartのパートのデータを一時ファイルに書き出す.
+         * <p>
+         * データが空の場合には一時ファイルは作成せずに空文字を返却する。
+         * </p>
+         * @param session Httpリクエストのセッションデータ
+         * @param reader multipartを読み込むクラス
+         * @param filename_hint ファイル名のヒント
+         * @return 一時ファイルのパス、パートが途中で終わっている場合はnull
+         * @throws IOException 書き出しに失敗した場合
          */
-        private String saveTmpFile(final IHTTPSession session, final TempBuffer b, final int offset, final int len, final String filename_hint) {
-            String path = "";
-            if (len > 0) {
-                FileOutputStream fileOutputStream = null;
-                try {
-                    TempFileManager mgr = getTempFileManager(session);
-                    if (mgr == null) {
-                        throw new RuntimeException("Cannot get a TempFileManager.");
-                    }
-                    TempFile tempFile = mgr.createTempFile(filename_hint);
-                    fileOutputStream = new FileOutputStream(tempFile.getName());
-                    b.write(fileOutputStream, offset, len);
-                    path = tempFile.getName();
-                } catch (Exception e) { // Catch exception if any
-                    throw new Error(e); // we won't recover, so throw an error
-                } finally {
-                    if (fileOutputStream != null) {
-                        try {
-                            fileOutputStream.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
+        private String saveTmpFile(final IHTTPSession session, final MultipartStreamReader reader, final String filename_hint) throws IOException {
+            TempFileManager mgr = getTempFileManager(session);
+            if (mgr == null) {
+                throw new IOException("Cannot get a TempFileManager.");
+            }
+            TempFileChannel channel = new TempFileChannel(mgr, filename_hint);
+            boolean completed = false;
+            try {
+                completed = reader.readData(channel);
+            } finally {
+                channel.close();
+                if (!completed) {
+                    channel.delete();
                 }
             }
-            return path;
+            return completed ? channel.getPath() : null;
         }
 
         /**
@@ -1122,6 +1217,99 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
     }
 
+    /**
+     * メモリ上に読み込むbodyのサイズが上限を超えていることを通知する例外.
+     */
+    private static class PayloadTooLargeException extends Exception {
+    }
+
+    /**
+     * 上限のサイズまでデータをメモリ上に保持するチャンネル.
+     * <p>
+     * 上限を超えたデータは保持せずに読み捨て、{@link #isOverflowed()} で通知します。
+     * </p>
+     */
+    private static class BoundedByteArrayChannel implements WritableByteChannel {
+        /**
+         * 書き込まれたデータ.
+         */
+        private final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+
+        /**
+         * 保持するデータのサイズの上限.
+         */
+        private final long mMaxSize;
+
+        /**
+         * 上限を超えたかを示すフラグ.
+         */
+        private boolean mOverflowed;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param maxSize 保持するデータのサイズの上限
+         */
+        BoundedByteArrayChannel(final long maxSize) {
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            int len = src.remaining();
+            if (mOverflowed || mData.size() + (long) len > mMaxSize) {
+                mOverflowed = true;
+                src.position(src.limit());
+                return len;
+            }
+            if (src.hasArray()) {
+                mData.write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.limit());
+            } else {
+                byte[] buf = new byte[len];
+                src.get(buf);
+                mData.write(buf, 0, len);
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * 上限を超えたデータが書き込まれたか確認します.
+         *
+         * @return 上限を超えた場合はtrue、それ以外はfalse
+         */
+        boolean isOverflowed() {
+            return mOverflowed;
+        }
+
+        /**
+         * 保持しているデータのサイズを取得します.
+         *
+         * @return データのサイズ
+         */
+        long size() {
+            return mData.size();
+        }
+
+        /**
+         * 保持しているデータを取得します.
+         *
+         * @return データ
+         */
+        byte[] toByteArray() {
+            return mData.toByteArray();
+        }
+    }
+
     /**
      * NanoWSD.WebSocketの実装クラス.
      *
@@ -1130,31 +1318,34 @@ public class DConnectServerNanoHttpd extends DConnectServer {
     private class NanoWebSocket extends NanoWSD.WebSocket implements DConnectWebSocket {
 
         /**
-         * KeepAlive実行用のタイマー.
+         * Keep-Aliveの処理状態.
          */
-        private Timer mKeepAliveTimer;
+        private KeepAliveState mKeepAliveState = KeepAliveState.GOT_PONG;
 
         /**
-         * Keep-Aliveのタスク.
+         * Keep-Aliveの処理を停止したかを示すフラグ.
          */
-        private final KeepAliveTask mKeepAliveTask;
+        private volatile boolean mKeepAliveStopped;
 
         /**
          * WebSocketを識別するID.
          */
         private final UUID mId = UUID.randomUUID();
 
+        /**
+         * WebSocketで使用しているソケット.
+         */
+        private final Socket mSocket;
+
         /**
          * コンストラクタ.
          *
          * @param handshakeRequest リクエスト
+         * @param socket WebSocketで使用しているソケット
          */
-        NanoWebSocket(final IHTTPSession handshakeRequest) {
+        NanoWebSocket(final IHTTPSession handshakeRequest, final Socket socket) {
             super(handshakeRequest);
-            mKeepAliveTask = new KeepAliveTask();
-            mKeepAliveTimer = new Timer();
-            mKeepAliveTimer.scheduleAtFixedRate(mKeepAliveTask,
-                    WEBSOCKET_KEEP_ALIVE_INTERVAL, WEBSOCKET_KEEP_ALIVE_INTERVAL);
+            mSocket = socket;
 
             mSockets.put(getId(), this);
             if (mListener != null) {
@@ -1231,9 +1422,9 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         @Override
         protected void onPong(final NanoWSD.WebSocketFrame pongFrame) {
-            synchronized (mKeepAliveTask) {
-                if (mKeepAliveTask.getState() == KeepAliveState.WAITING_PONG) {
-                    mKeepAliveTask.setState(KeepAliveState.GOT_PONG);
+            synchronized (this) {
+                if (mKeepAliveState == KeepAliveState.WAITING_PONG) {
+                    mKeepAliveState = KeepAliveState.GOT_PONG;
                 }
             }
         }
@@ -1259,7 +1450,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             if (mListener != null) {
                 mListener.onWebSocketDisconnected(this);
             }
-            mKeepAliveTimer.cancel();
+            mKeepAliveStopped = true;
         }
 
         @Override
@@ -1273,58 +1464,164 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * Keep-Alive用タイマータスク.
+         * pongの応答を待っているか確認します.
          *
-         * @author NTT DOCOMO, INC.
+         * @return pongの応答を待っている場合はtrue、それ以外はfalse
          */
-        private class KeepAliveTask extends TimerTask {
+        synchronized boolean isWaitingPong() {
+            return !mKeepAliveStopped && mKeepAliveState == KeepAliveState.WAITING_PONG;
+        }
 
-            /**
-             * 処理状態.
-             */
-            private KeepAliveState mState;
+        /**
+         * Keep-Aliveの処理を行います.
+         * <p>
+         * 共有のスケジューラから定期的に呼び出されます。
+         * 前回送信したpingに応答がない場合には、クライアントが停止したと判断して切断します。
+         * </p>
+         * <p>
+         * pingの書き込みはブロックする可能性があるので、別スレッドで行います。
+         * pingの書き込みが終わらない場合も応答がないので、次回の呼び出しで切断します。
+         * </p>
+         */
+        void keepAlive() {
+            if (mKeepAliveStopped) {
+                return;
+            }
 
-            /**
-             * コンストラクタ.
-             */
-            KeepAliveTask() {
-                setState(KeepAliveState.GOT_PONG);
+            synchronized (this) {
+                if (mKeepAliveState == KeepAliveState.GOT_PONG) {
+                    mKeepAliveState = KeepAliveState.WAITING_PONG;
+                    executeKeepAliveWrite(this::sendPing);
+                    return;
+                }
             }
 
-            /**
-             * 状態を変更する.
-             *
-             * @param state 状態
-             */
-            void setState(final KeepAliveState state) {
-                mState = state;
+            mKeepAliveStopped = true;
+            mDeadWebSocketCount.incrementAndGet();
+            closeDeadWebSocket();
+        }
+
+        /**
+         * pingを送信します.
+         */
+        private void sendPing() {
+            try {
+                ping(WEBSOCKET_PING_PAYLOAD);
+            } catch (IOException e) {
+                // 例外が発生したらKeepAliveを終了し、タイムアウトに任せる
+                mKeepAliveStopped = true;
             }
+        }
 
-            /**
-             * 状態を取得する.
-             *
-             * @return 状態
-             */
-            KeepAliveState getState() {
-                return mState;
+        /**
+         * 応答のないWebSocketを切断します.
+         * <p>
+         * 応答のないクライアントにはcloseフレームを書き込めないので、ソケットを直接閉じます。
+         * ソケットを閉じると、書き込みでブロックしているスレッドは例外で解放され、
+         * 受信処理のスレッドは {@link #onClose(NanoWSD.WebSocketFrame.CloseCode, String, boolean)} を呼び出して終了します。
+         * </p>
+         */
+        private void closeDeadWebSocket() {
+            if (mSocket == null) {
+                executeKeepAliveWrite(() -> {
+                    try {
+                        close(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Client is dead.", false);
+                    } catch (IOException e) {
+                        mLogger.warning("Exception in the NanoWebSocket#closeDeadWebSocket() method. " + e.toString());
+                    }
+                });
+                return;
             }
 
-            @Override
-            public void run() {
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                mLogger.warning("Exception in the NanoWebSocket#closeDeadWebSocket() method. " + e.toString());
+            }
+        }
+    }
+
+    /**
+     * クライアントの接続ごとにスレッドを起動して処理するクラス.
+     * <p>
+     * NanoHTTPD.DefaultAsyncRunner と同じ処理に加えて、処理中のスレッドから接続しているソケットを取得できるようにします。
+     * WebSocketの切断で、ソケットを直接閉じるために使用します。
+     * </p>
+     *
+     * @author NTT DOCOMO, INC.
+     */
+    private static class SocketAsyncRunner implements NanoHTTPD.AsyncRunner {
+        /**
+         * スレッドの起動を待っているクライアントのソケット.
+         */
+        private final Map<NanoHTTPD.ClientHandler, Socket> mPendingSockets = Collections.synchronizedMap(new HashMap<>());
+
+        /**
+         * 処理中のクライアント.
+         */
+        private final List<NanoHTTPD.ClientHandler> mRunning = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * 処理中のスレッドで接続しているソケット.
+         */
+        private final ThreadLocal<Socket> mCurrentSocket = new ThreadLocal<>();
+
+        /**
+         * 起動したスレッドの数.
+         */
+        private long mRequestCount;
+
+        /**
+         * クライアントが接続しているソケットを登録します.
+         *
+         * @param clientHandler クライアント
+         * @param socket ソケット
+         */
+        void register(final NanoHTTPD.ClientHandler clientHandler, final Socket socket) {
+            mPendingSockets.put(clientHandler, socket);
+        }
+
+        /**
+         * 処理中のスレッドで接続しているソケットを取得します.
+         *
+         * @return ソケット、取得できない場合はnull
+         */
+        Socket getCurrentSocket() {
+            return mCurrentSocket.get();
+        }
+
+        @Override
+        public void closeAll() {
+            List<NanoHTTPD.ClientHandler> running;
+            synchronized (mRunning) {
+                running = new ArrayList<>(mRunning);
+            }
+            for (NanoHTTPD.ClientHandler clientHandler : running) {
+                clientHandler.close();
+            }
+        }
+
+        @Override
+        public void closed(final NanoHTTPD.ClientHandler clientHandler) {
+            mRunning.remove(clientHandler);
+        }
+
+        @Override
+        public void exec(final NanoHTTPD.ClientHandler clientHandler) {
+            final Socket socket = mPendingSockets.remove(clientHandler);
+            mRequestCount++;
+            mRunning.add(clientHandler);
+            Thread t = new Thread(() -> {
+                mCurrentSocket.set(socket);
                 try {
-                    synchronized (this) {
-                        if (mState == KeepAliveState.GOT_PONG) {
-                            setState(KeepAliveState.WAITING_PONG);
-                            ping("DConnectServer".getBytes());
-                        } else {
-                            close(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Client is dead.", false);
-                        }
-                    }
-                } catch (IOException e) {
-                    // 例外が発生したらタスクを終了し、タイムアウトに任せる
-                    cancel();
+                    clientHandler.run();
+                } finally {
+                    mCurrentSocket.remove();
                 }
-            }
+            });
+            t.setDaemon(true);
+            t.setName("NanoHttpd Request Processor (#" + mRequestCount + ")");
+            t.start();
         }
     }
 
@@ -1458,106 +1755,102 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
     }
 
-    private interface TempBuffer {
-        TempBuffer position(int position) throws IOException;
-        int remaining() throws IOException;
-        TempBuffer get(byte[] dst, int dstOffset, int byteCount) throws IOException;
-        TempBuffer get(byte[] dst) throws IOException;
+    /**
+     * multipartのパートのデータを書き出す一時ファイルのチャンネル.
+     * <p>
+     * 最初にデータが書き込まれた時に一時ファイルを作成します。
+     * </p>
+     */
+    private class TempFileChannel implements WritableByteChannel {
+        /**
+         * 一時ファイルを管理するクラス.
+         */
+        private final NanoHTTPD.TempFileManager mTempFileManager;
 
-        void write(FileOutputStream out, int offset, int length) throws IOException;
-    }
+        /**
+         * ファイル名のヒント.
+         */
+        private final String mFileNameHint;
 
-    private class TempFileBuffer implements TempBuffer {
+        /**
+         * 一時ファイルのパス.
+         */
+        private String mPath = "";
 
-        private RandomAccessFile mRandomAccessFile;
-        private long mLimit;
-        private long mPosition;
+        /**
+         * 一時ファイルのストリーム.
+         */
+        private FileOutputStream mOutputStream;
 
-        TempFileBuffer(final RandomAccessFile file) throws IOException {
-            mRandomAccessFile = file;
-            mPosition = 0;
-            mLimit = file.length();
-        }
+        /**
+         * 一時ファイルのチャンネル.
+         */
+        private FileChannel mChannel;
 
-        @Override
-        public TempBuffer position(final int position) throws IOException {
-            mPosition = position;
-            mRandomAccessFile.seek(position);
-            return this;
-        }
+        /**
+         * true: 閉じている / false: 開いている.
+         */
+        private boolean mClosed;
 
-        @Override
-        public int remaining() {
-            return (int) (mLimit - mPosition);
+        /**
+         * コンストラクタ.
+         * @param tempFileManager 一時ファイルを管理するクラス
+         * @param fileNameHint ファイル名のヒント
+         */
+        TempFileChannel(final NanoHTTPD.TempFileManager tempFileManager, final String fileNameHint) {
+            mTempFileManager = tempFileManager;
+            mFileNameHint = fileNameHint;
         }
 
-        @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) throws IOException {
-            mRandomAccessFile.seek(mPosition);
-            mRandomAccessFile.readFully(dst, dstOffset, byteCount);
-            mPosition += byteCount;
-            return this;
+        /**
+         * 一時ファイルのパスを取得する.
+         * @return 一時ファイルのパス、データが書き込まれていない場合は空文字
+         */
+        String getPath() {
+            return mPath;
         }
 
-        @Override
-        public TempBuffer get(final byte[] dst) throws IOException {
-            return get(dst, 0, dst.length);
+        /**
+         * 一時ファイルを削除する.
+         */
+        void delete() {
+            if (!mPath.isEmpty()) {
+                new File(mPath).delete();
+                mPath = "";
+            }
         }
 
         @Override
-        public void write(final FileOutputStream out, final int offset, final int length) throws IOException {
-            mRandomAccessFile.seek(offset);
-            byte[] buf = new byte[4096];
-            int len = 4096;
-            int size = length;
-            while (size > 0) {
-                mRandomAccessFile.readFully(buf, 0, len);
-                out.write(buf, 0, len);
-                size -= len;
-                if (size < 4096) {
-                    len = size;
+        public int write(final ByteBuffer src) throws IOException {
+            if (mClosed) {
+                throw new IOException("channel is closed.");
+            }
+            if (mChannel == null) {
+                try {
+                    NanoHTTPD.TempFile tempFile = mTempFileManager.createTempFile(mFileNameHint);
+                    mPath = tempFile.getName();
+                } catch (Exception e) {
+                    throw new IOException(e);
                 }
+                mOutputStream = new FileOutputStream(mPath);
+                mChannel = mOutputStream.getChannel();
             }
-        }
-    }
-
-    private class TempByteBuffer implements TempBuffer {
-
-        private ByteBuffer mByteBuffer;
-
-        TempByteBuffer(ByteBuffer buffer) {
-            mByteBuffer = buffer;
-        }
-
-        @Override
-        public TempBuffer position(final int position) {
-            mByteBuffer.position(position);
-            return this;
+            return mChannel.write(src);
         }
 
         @Override
-        public int remaining() {
-            return mByteBuffer.remaining();
+        public boolean isOpen() {
+            return !mClosed;
         }
 
         @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) {
-            mByteBuffer.get(dst, dstOffset, byteCount);
-            return this;
-        }
-
-        @Override
-        public TempBuffer get(final byte[] dst) {
-            mByteBuffer.get(dst);
-            return this;
-        }
-
-        @Override
-        public void write(final FileOutputStream out, final int offset, final int len) throws IOException {
-            ByteBuffer src = mByteBuffer.duplicate();
-            FileChannel dest = out.getChannel();
-            src.position(offset).limit(offset + len);
-            dest.write(src.slice());
+        public void close() throws IOException {
+            mClosed = true;
+            if (mOutputStream != null) {
+                mOutputStream.close();
+                mOutputStream = null;
+                mChannel = null;
+            }
         }
     }
 }
@@ -11,6 +11,8 @@ import android.util.Log;
 
 import org.deviceconnect.server.DConnectServerConfig;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -46,6 +48,16 @@ public class DConnectWebServerNanoHttpd {
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "NanoWeb";
 
+    /**
+     * 静的ファイルのキャッシュの総サイズの上限.
+     */
+    private static final long MAX_CACHE_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * キャッシュする静的ファイルの最大サイズ.
+     */
+    private static final int MAX_CACHE_ENTRY_SIZE = 1024 * 1024;
+
     /**
      * Default Index file names.
      */
@@ -72,6 +84,11 @@ public class DConnectWebServerNanoHttpd {
      */
     private Dispatcher mDispatcher = (uri) -> null;
 
+    /**
+     * 静的ファイルのキャッシュ.
+     */
+    private final AssetCache mAssetCache = new AssetCache(MAX_CACHE_SIZE, MAX_CACHE_ENTRY_SIZE);
+
     /**
      * コンストラクタ.
      *
@@ -131,6 +148,25 @@ public class DConnectWebServerNanoHttpd {
             mWebServer.stop();
             mWebServer = null;
         }
+        mAssetCache.clear();
+    }
+
+    /**
+     * 静的ファイルのキャッシュのヒット数を取得します.
+     *
+     * @return ヒット数
+     */
+    public long getCacheHitCount() {
+        return mAssetCache.getHitCount();
+    }
+
+    /**
+     * 静的ファイルのキャッシュのミス数を取得します.
+     *
+     * @return ミス数
+     */
+    public long getCacheMissCount() {
+        return mAssetCache.getMissCount();
     }
 
     public void setDispatcher(final Dispatcher dispatcher) {
@@ -376,11 +412,25 @@ public class DConnectWebServerNanoHttpd {
 
             InputStream in = null;
             try {
-                in = mContext.getAssets().open(filePath);
-
                 // If-None-Match対応
                 String etag = createETag(filePath, queryString);
-                if (etag.equals(header.get("if-none-match"))) {
+
+                // assets のファイルは変更されないので、更新日時は確認しない
+                AssetCache.Entry entry = mAssetCache.get(filePath, 0, -1);
+                if (entry == null) {
+                    in = mContext.getAssets().open(filePath);
+                    int length = in.available();
+                    if (mAssetCache.isCacheable(length)) {
+                        byte[] data = readFully(in, length);
+                        in = null;
+                        entry = mAssetCache.put(filePath, 0, data, mime);
+                    }
+                }
+
+                if (entry != null) {
+                    retValue = newCachedResponse(entry, etag, mime, header);
+                } else if (etag.equals(header.get("if-none-match"))) {
+                    in.close();
                     retValue = newFixedLengthResponse(Response.Status.NOT_MODIFIED, mime, "");
                 } else {
                     retValue = newFixedLengthResponse(Response.Status.OK, mime, in, in.available());
@@ -420,8 +470,24 @@ public class DConnectWebServerNanoHttpd {
         private Response serveFile(final String uri, final String queryString, final Map<String, String> header, final File file, final String mime) {
             Response res;
             try {
+                long fileLen = file.length();
+                long lastModified = file.lastModified();
+
                 // If-None-Match対応
-                String etag = createETag(file, queryString);
+                String etag = createETag(file.getAbsolutePath(), lastModified, fileLen, queryString);
+
+                // 範囲指定のないリクエストは、キャッシュから返却する
+                if (header.get("range") == null && mAssetCache.isCacheable(fileLen)) {
+                    String key = file.getAbsolutePath();
+                    AssetCache.Entry entry = mAssetCache.get(key, lastModified, fileLen);
+                    if (entry == null) {
+                        byte[] data = readFully(new FileInputStream(file), (int) fileLen);
+                        entry = mAssetCache.put(key, lastModified, data, mime);
+                    }
+                    res = newCachedResponse(entry, etag, mime, header);
+                    res.addHeader("Accept-Ranges", "bytes");
+                    return res;
+                }
 
                 // Support (simple) skipping:
                 long startFrom = 0;
@@ -451,8 +517,6 @@ public class DConnectWebServerNanoHttpd {
 
                 // Change return code and add Content-Range header when skipping is
                 // requested
-                long fileLen = file.length();
-
                 if (headerIfRangeMissingOrMatching && range != null && startFrom >= 0 && startFrom < fileLen) {
                     // range request that matches current etag
                     // and the startFrom of the range is satisfiable
@@ -675,6 +739,64 @@ public class DConnectWebServerNanoHttpd {
             return res;
         }
 
+        /**
+         * キャッシュしたファイルのレスポンスを作成します.
+         * <p>
+         * Accept-Encoding ヘッダーに応じて、圧縮済みのデータを返却します。
+         * 圧縮したデータを返却する場合には、ETag にエンコーディング名を付加して区別します。
+         * </p>
+         *
+         * @param entry キャッシュ
+         * @param etag ETag
+         * @param mime マイムタイプ
+         * @param header リクエストヘッダー
+         * @return レスポンス
+         */
+        private Response newCachedResponse(final AssetCache.Entry entry, final String etag, final String mime,
+                                           final Map<String, String> header) {
+            String encoding = entry.negotiate(header.get("accept-encoding"));
+            String tag = encoding == null ? etag : etag + "-" + encoding;
+
+            Response res;
+            if (tag.equals(header.get("if-none-match"))) {
+                res = newFixedLengthResponse(Response.Status.NOT_MODIFIED, mime, "");
+            } else {
+                byte[] body = entry.getBody(encoding);
+                res = newFixedLengthResponse(Response.Status.OK, mime, new ByteArrayInputStream(body), body.length);
+                res.addHeader("Content-Length", "" + body.length);
+                if (encoding != null) {
+                    res.addHeader("Content-Encoding", encoding);
+                }
+            }
+            res.addHeader("ETag", tag);
+            if (entry.isCompressed()) {
+                res.addHeader("Vary", "Accept-Encoding");
+            }
+            return res;
+        }
+
+        /**
+         * ストリームから全てのデータを読み込み、ストリームを閉じます.
+         *
+         * @param in ストリーム
+         * @param length 予想されるデータサイズ
+         * @return 読み込んだデータ
+         * @throws IOException 読み込みに失敗した場合に発生
+         */
+        private byte[] readFully(final InputStream in, final int length) throws IOException {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(length, 32));
+                byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    out.write(buf, 0, len);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        }
+
         /**
          * 指定されたフォルダのファイルをリスト化したHTMLを返却します.
          *
@@ -755,11 +877,25 @@ public class DConnectWebServerNanoHttpd {
          * @return ETag
          */
         private String createETag(final File file, final String queryParameter) {
+            return createETag(file.getAbsolutePath(), file.lastModified(), file.length(), queryParameter);
+        }
+
+        /**
+         * ETagを作成します.
+         *
+         * @param absolutePath ファイルの絶対パス
+         * @param lastModified ファイルの更新日時
+         * @param length ファイルサイズ
+         * @param queryParameter クエリ
+         * @return ETag
+         */
+        private String createETag(final String absolutePath, final long lastModified, final long length,
+                                  final String queryParameter) {
             int hashCode = 0;
             if (mVersion != null) {
                 hashCode += mVersion.hashCode();
             }
-            hashCode += (file.getAbsolutePath() + file.lastModified() + "" + file.length()).hashCode();
+            hashCode += (absolutePath + lastModified + "" + length).hashCode();
             if (queryParameter != null) {
                 hashCode += queryParameter.hashCode();
             }
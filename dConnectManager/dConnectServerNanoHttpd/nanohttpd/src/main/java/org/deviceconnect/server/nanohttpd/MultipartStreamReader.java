@@ -0,0 +1,399 @@
+/*
+ MultipartStreamReader.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * multipart/form-data のボディをストリームから順番に読み込むクラス.
+ * <p>
+ * 固定サイズのバッファを使い回してバウンダリーを探索するので、ボディ全体をメモリ上に保持しません。
+ * パートのデータは {@link #readData(WritableByteChannel)} で指定されたチャンネルに直接書き出します。
+ * </p>
+ * <pre>
+ * MultipartStreamReader reader = new MultipartStreamReader(in, contentLength, boundary, maxHeaderSize);
+ * while (reader.nextPart()) {
+ *     String header = reader.getHeader(charset);
+ *     reader.readData(channel);
+ * }
+ * reader.drain();
+ * </pre>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class MultipartStreamReader {
+    /**
+     * バッファサイズ.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * 改行コード.
+     */
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * ヘッダーの終端.
+     */
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    /**
+     * 読み込み元のストリーム.
+     */
+    private final InputStream mInputStream;
+
+    /**
+     * 最初のバウンダリー("--" + boundary).
+     */
+    private final byte[] mFirstDelimiter;
+
+    /**
+     * パートの区切り("\r\n--" + boundary).
+     */
+    private final byte[] mDelimiter;
+
+    /**
+     * パートのヘッダーの最大サイズ.
+     */
+    private final int mMaxHeaderSize;
+
+    /**
+     * 読み込み用のバッファ.
+     */
+    private final byte[] mBuffer;
+
+    /**
+     * バッファ内の未処理データの開始位置.
+     */
+    private int mPosition;
+
+    /**
+     * バッファ内の未処理データの終了位置.
+     */
+    private int mLimit;
+
+    /**
+     * ストリームから読み込める残りのサイズ.
+     */
+    private long mRemaining;
+
+    /**
+     * 見つかったバウンダリーの数.
+     */
+    private int mBoundaryCount;
+
+    /**
+     * 現在のパートのヘッダー.
+     */
+    private byte[] mHeader;
+
+    /**
+     * true: 現在のパートのデータを読み込み済み / false: 未読み込み.
+     */
+    private boolean mDataConsumed = true;
+
+    /**
+     * true: 終端のバウンダリーまで読み込んだ / false: 読み込み中.
+     */
+    private boolean mClosed;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param in 読み込み元のストリーム
+     * @param contentLength ボディのサイズ
+     * @param boundary バウンダリー
+     * @param maxHeaderSize パートのヘッダーの最大サイズ
+     */
+    MultipartStreamReader(final InputStream in, final long contentLength, final byte[] boundary, final int maxHeaderSize) {
+        mInputStream = in;
+        mRemaining = contentLength;
+        mMaxHeaderSize = maxHeaderSize;
+        mFirstDelimiter = new byte[boundary.length + 2];
+        mFirstDelimiter[0] = '-';
+        mFirstDelimiter[1] = '-';
+        System.arraycopy(boundary, 0, mFirstDelimiter, 2, boundary.length);
+        mDelimiter = new byte[mFirstDelimiter.length + 2];
+        mDelimiter[0] = '\r';
+        mDelimiter[1] = '\n';
+        System.arraycopy(mFirstDelimiter, 0, mDelimiter, 2, mFirstDelimiter.length);
+        mBuffer = new byte[Math.max(BUFFER_SIZE, (maxHeaderSize + mDelimiter.length) * 2)];
+    }
+
+    /**
+     * 次のパートまで読み進め、パートのヘッダーを読み込みます.
+     *
+     * @return 次のパートが存在する場合はtrue、終端に達した場合はfalse
+     * @throws IOException 読み込みに失敗した場合、またはヘッダーが上限を超えた場合に発生
+     */
+    boolean nextPart() throws IOException {
+        if (mClosed) {
+            return false;
+        }
+
+        if (mBoundaryCount == 0) {
+            // 最初のバウンダリーより前のデータは読み飛ばす
+            if (!skipTo(mFirstDelimiter)) {
+                mClosed = true;
+                return false;
+            }
+            mBoundaryCount++;
+        } else if (!mDataConsumed) {
+            if (!readData(null)) {
+                return false;
+            }
+        }
+
+        // バウンダリーの後ろが "--" の場合は終端
+        if (!ensure(2)) {
+            mClosed = true;
+            return false;
+        }
+        if (mBuffer[mPosition] == '-' && mBuffer[mPosition + 1] == '-') {
+            mPosition += 2;
+            mClosed = true;
+            return false;
+        }
+
+        // バウンダリーの行の残りを読み飛ばす
+        if (!skipTo(new byte[] {'\n'})) {
+            mClosed = true;
+            return false;
+        }
+
+        mHeader = readHeader();
+        mDataConsumed = false;
+        return true;
+    }
+
+    /**
+     * 現在のパートのヘッダーを取得します.
+     *
+     * @param charset ヘッダーの文字コード
+     * @return ヘッダー
+     */
+    String getHeader(final Charset charset) {
+        return new String(mHeader, charset);
+    }
+
+    /**
+     * 現在のパートのデータを次のバウンダリーまで読み込み、チャンネルに書き出します.
+     *
+     * @param channel 書き出し先のチャンネル、nullの場合は読み飛ばす
+     * @return 次のバウンダリーが見つかった場合はtrue、途中でボディが終わった場合はfalse
+     * @throws IOException 読み込み、または書き出しに失敗した場合に発生
+     */
+    boolean readData(final WritableByteChannel channel) throws IOException {
+        mDataConsumed = true;
+        while (true) {
+            int index = indexOf(mDelimiter, mPosition, mLimit);
+            if (index >= 0) {
+                write(channel, mPosition, index - mPosition);
+                mPosition = index + mDelimiter.length;
+                mBoundaryCount++;
+                return true;
+            }
+
+            // 区切りの一部がバッファの末尾にある可能性があるので、その分は残しておく
+            int safe = mLimit - (mDelimiter.length - 1);
+            if (safe > mPosition) {
+                write(channel, mPosition, safe - mPosition);
+                mPosition = safe;
+            }
+            if (!fill()) {
+                mClosed = true;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 見つかったバウンダリーの数を取得します.
+     *
+     * @return バウンダリーの数
+     */
+    int getBoundaryCount() {
+        return mBoundaryCount;
+    }
+
+    /**
+     * ボディの残りを読み捨てます.
+     * <p>
+     * 同じコネクションで次のリクエストを読み込めるように、ボディの最後まで読み込みます。
+     * </p>
+     *
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    void drain() throws IOException {
+        mPosition = mLimit;
+        while (fill()) {
+            mPosition = mLimit;
+        }
+    }
+
+    /**
+     * パートのヘッダーを読み込みます.
+     *
+     * @return ヘッダーのデータ
+     * @throws IOException 読み込みに失敗した場合、またはヘッダーが上限を超えた場合に発生
+     */
+    private byte[] readHeader() throws IOException {
+        // ヘッダーが存在しない場合
+        if (ensure(2) && startsWith(CRLF, mPosition)) {
+            mPosition += 2;
+            return new byte[0];
+        }
+
+        int searched = mPosition;
+        while (true) {
+            int index = indexOf(HEADER_END, searched, mLimit);
+            if (index >= 0) {
+                if (index - mPosition > mMaxHeaderSize) {
+                    throw new IOException("Multipart header size exceeds MAX_HEADER_SIZE.");
+                }
+                byte[] header = new byte[index - mPosition];
+                System.arraycopy(mBuffer, mPosition, header, 0, header.length);
+                mPosition = index + HEADER_END.length;
+                return header;
+            }
+
+            if (mLimit - mPosition > mMaxHeaderSize) {
+                throw new IOException("Multipart header size exceeds MAX_HEADER_SIZE.");
+            }
+            searched = Math.max(mPosition, mLimit - (HEADER_END.length - 1));
+            int offset = mPosition;
+            if (!fill()) {
+                throw new IOException("Multipart header is not terminated.");
+            }
+            searched -= offset - mPosition;
+        }
+    }
+
+    /**
+     * 指定されたデータの直後まで読み飛ばします.
+     *
+     * @param target 探索するデータ
+     * @return 見つかった場合はtrue、それ以外はfalse
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    private boolean skipTo(final byte[] target) throws IOException {
+        while (true) {
+            int index = indexOf(target, mPosition, mLimit);
+            if (index >= 0) {
+                mPosition = index + target.length;
+                return true;
+            }
+            mPosition = Math.max(mPosition, mLimit - (target.length - 1));
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * バッファに指定されたサイズ以上の未処理データがあるようにします.
+     *
+     * @param size 必要なサイズ
+     * @return 必要なサイズを確保できた場合はtrue、それ以外はfalse
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    private boolean ensure(final int size) throws IOException {
+        while (mLimit - mPosition < size) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 未処理データをバッファの先頭に移動して、空いた領域にストリームから読み込みます.
+     *
+     * @return 読み込んだ場合はtrue、ストリームの終端に達した場合はfalse
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    private boolean fill() throws IOException {
+        if (mPosition > 0) {
+            System.arraycopy(mBuffer, mPosition, mBuffer, 0, mLimit - mPosition);
+            mLimit -= mPosition;
+            mPosition = 0;
+        }
+
+        if (mRemaining <= 0 || mLimit == mBuffer.length) {
+            return false;
+        }
+
+        int len = mInputStream.read(mBuffer, mLimit, (int) Math.min(mRemaining, mBuffer.length - mLimit));
+        if (len <= 0) {
+            mRemaining = 0;
+            return false;
+        }
+        mLimit += len;
+        mRemaining -= len;
+        return true;
+    }
+
+    /**
+     * バッファの指定された範囲からデータを探索します.
+     *
+     * @param target 探索するデータ
+     * @param from 探索の開始位置
+     * @param to 探索の終了位置
+     * @return 見つかった位置、見つからない場合は-1
+     */
+    private int indexOf(final byte[] target, final int from, final int to) {
+        byte first = target[0];
+        int max = to - target.length;
+        for (int i = from; i <= max; i++) {
+            if (mBuffer[i] == first && startsWith(target, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * バッファの指定された位置が指定されたデータで始まるか確認します.
+     *
+     * @param target 確認するデータ
+     * @param offset バッファの位置
+     * @return 一致する場合はtrue、それ以外はfalse
+     */
+    private boolean startsWith(final byte[] target, final int offset) {
+        if (offset + target.length > mLimit) {
+            return false;
+        }
+        for (int i = 1; i < target.length; i++) {
+            if (mBuffer[offset + i] != target[i]) {
+                return false;
+            }
+        }
+        return mBuffer[offset] == target[0];
+    }
+
+    /**
+     * バッファのデータをチャンネルに書き出します.
+     *
+     * @param channel 書き出し先のチャンネル、nullの場合は何もしない
+     * @param offset バッファの位置
+     * @param length 書き出すサイズ
+     * @throws IOException 書き出しに失敗した場合に発生
+     */
+    private void write(final WritableByteChannel channel, final int offset, final int length) throws IOException {
+        if (channel == null || length <= 0) {
+            return;
+        }
+        ByteBuffer src = ByteBuffer.wrap(mBuffer, offset, length);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+}
@@ -6,13 +6,14 @@
  */
 package org.deviceconnect.server.nanohttpd.accesslog;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,9 +25,22 @@ import java.util.Map;
  */
 public class AccessLog {
     /**
-     * アクセスログのテーブル名.
+     * 日付で分割する前のアクセスログのテーブル名.
      */
-    private static final String TABLE_NAME = "accessLog";
+    private static final String LEGACY_TABLE_NAME = "accessLog";
+
+    /**
+     * 日付ごとのアクセスログのテーブル名のプレフィックス.
+     * <p>
+     * テーブル名は、このプレフィックスに yyyyMMdd 形式の日付を付加したものになります。
+     * </p>
+     */
+    private static final String TABLE_NAME_PREFIX = "accessLog_";
+
+    /**
+     * アクセスログのIDでテーブルの日付より下位の桁の大きさ.
+     */
+    private static final long TABLE_ID_FACTOR = 10000000000L;
 
     private long mId = -1;
     private String mDate;
@@ -290,12 +304,21 @@ public class AccessLog {
     }
 
     /**
-     * アクセスログ用のテーブルを作成します.
+     * 指定された日付のアクセスログ用のテーブルを作成します.
+     * <p>
+     * アクセスログは日付ごとに別のテーブルに格納します。既にテーブルが存在する場合には何もしません。
+     * </p>
      *
      * @param db SQLiteDatabaseのインスタンス
+     * @param date 日付
+     * @return テーブル名、日付が不正な場合はnull
      */
-    static void createTable(final SQLiteDatabase db) {
-        db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
+    static String createTable(final SQLiteDatabase db, final String date) {
+        String tableName = toTableName(date);
+        if (tableName == null) {
+            return null;
+        }
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + AccessLogColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + AccessLogColumns.DATE + " TEXT,"
                 + AccessLogColumns.REQUEST_IP_ADDRESS + " TEXT,"
@@ -310,20 +333,66 @@ public class AccessLog {
                 + AccessLogColumns.RESPONSE_CONTENT_TYPE + " TEXT,"
                 + AccessLogColumns.RESPONSE_BODY + " TEXT"
                 + ");");
+        return tableName;
     }
 
     /**
-     * アクセスログのテーブルを削除します.
+     * アクセスログのテーブルを全て削除します.
      *
      * @param db SQLiteDatabaseのインスタンス
      * @return 常にtrueを返します.
      */
     static boolean removeTable(final SQLiteDatabase db) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        createTable(db);
+        for (String tableName : getTableNames(db)) {
+            db.execSQL("DROP TABLE IF EXISTS " + tableName);
+        }
         return true;
     }
 
+    /**
+     * 日付で分割する前のテーブルのアクセスログを、日付ごとのテーブルに移動します.
+     *
+     * @param db SQLiteDatabaseのインスタンス
+     */
+    static void migrateTable(final SQLiteDatabase db) {
+        if (!existsTable(db, LEGACY_TABLE_NAME)) {
+            return;
+        }
+
+        List<String> dates = new ArrayList<>();
+        Cursor cs = db.query(true, LEGACY_TABLE_NAME, new String[] {AccessLogColumns.DATE},
+                null, null, null, null, null, null);
+        try {
+            while (cs.moveToNext()) {
+                dates.add(cs.getString(0));
+            }
+        } finally {
+            cs.close();
+        }
+
+        String columns = AccessLogColumns.DATE + ","
+                + AccessLogColumns.REQUEST_IP_ADDRESS + ","
+                + AccessLogColumns.REQUEST_HOST_NAME + ","
+                + AccessLogColumns.REQUEST_RECEIVED_TIME + ","
+                + AccessLogColumns.REQUEST_HEADER + ","
+                + AccessLogColumns.REQUEST_METHOD + ","
+                + AccessLogColumns.REQUEST_PATH + ","
+                + AccessLogColumns.REQUEST_BODY + ","
+                + AccessLogColumns.RESPONSE_SEND_TIME + ","
+                + AccessLogColumns.RESPONSE_STATUS_CODE + ","
+                + AccessLogColumns.RESPONSE_CONTENT_TYPE + ","
+                + AccessLogColumns.RESPONSE_BODY;
+        for (String date : dates) {
+            String tableName = createTable(db, date);
+            if (tableName != null) {
+                db.execSQL("INSERT INTO " + tableName + " (" + columns + ") SELECT " + columns
+                        + " FROM " + LEGACY_TABLE_NAME + " WHERE " + AccessLogColumns.DATE + "=?"
+                        + " ORDER BY " + AccessLogColumns._ID, new Object[] {date});
+            }
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + LEGACY_TABLE_NAME);
+    }
+
     /**
      * アクセスログをテーブルに追加します.
      *
@@ -332,25 +401,78 @@ public class AccessLog {
      * @return 追加に成功した場合はtrue、それ以外はfalse
      */
     static boolean add(final SQLiteDatabase db, final AccessLog accessLog) {
-        ContentValues values = new ContentValues();
-        values.put(AccessLogColumns.DATE, accessLog.mDate);
-        values.put(AccessLogColumns.REQUEST_IP_ADDRESS, accessLog.mRemoteIpAddress);
-        values.put(AccessLogColumns.REQUEST_HOST_NAME, accessLog.mRemoteHostName);
-        values.put(AccessLogColumns.REQUEST_RECEIVED_TIME, accessLog.mRequestReceivedTime);
-        values.put(AccessLogColumns.REQUEST_HEADER, accessLog.mRequestHeader);
-        values.put(AccessLogColumns.REQUEST_METHOD, accessLog.mRequestMethod);
-        values.put(AccessLogColumns.REQUEST_PATH, accessLog.mRequestPath);
-        values.put(AccessLogColumns.REQUEST_BODY, accessLog.mRequestBody);
-        values.put(AccessLogColumns.RESPONSE_SEND_TIME, accessLog.mResponseSendTime);
-        values.put(AccessLogColumns.RESPONSE_STATUS_CODE, accessLog.mResponseStatusCode);
-        values.put(AccessLogColumns.RESPONSE_CONTENT_TYPE, accessLog.mResponseContentType);
-        values.put(AccessLogColumns.RESPONSE_BODY, accessLog.mResponseBody);
+        return addAll(db, Collections.singletonList(accessLog)) == 1;
+    }
 
+    /**
+     * 複数のアクセスログを1つのトランザクションでテーブルに追加します.
+     * <p>
+     * 日付ごとにコンパイルした INSERT 文を使い回して追加します。
+     * </p>
+     *
+     * @param db SQLiteDatabaseのインスタンス
+     * @param accessLogs 追加するアクセスログのリスト
+     * @return 追加したアクセスログの数
+     */
+    static int addAll(final SQLiteDatabase db, final List<AccessLog> accessLogs) {
+        Map<String, SQLiteStatement> statements = new HashMap<>();
+        int count = 0;
         try {
-            return db.insertOrThrow(TABLE_NAME, null, values) != -1;
+            db.beginTransaction();
+            try {
+                for (AccessLog accessLog : accessLogs) {
+                    SQLiteStatement statement = statements.get(accessLog.mDate);
+                    if (statement == null) {
+                        String tableName = createTable(db, accessLog.mDate);
+                        if (tableName == null) {
+                            continue;
+                        }
+                        statement = db.compileStatement("INSERT INTO " + tableName + " ("
+                                + AccessLogColumns.DATE + ","
+                                + AccessLogColumns.REQUEST_IP_ADDRESS + ","
+                                + AccessLogColumns.REQUEST_HOST_NAME + ","
+                                + AccessLogColumns.REQUEST_RECEIVED_TIME + ","
+                                + AccessLogColumns.REQUEST_HEADER + ","
+                                + AccessLogColumns.REQUEST_METHOD + ","
+                                + AccessLogColumns.REQUEST_PATH + ","
+                                + AccessLogColumns.REQUEST_BODY + ","
+                                + AccessLogColumns.RESPONSE_SEND_TIME + ","
+                                + AccessLogColumns.RESPONSE_STATUS_CODE + ","
+                                + AccessLogColumns.RESPONSE_CONTENT_TYPE + ","
+                                + AccessLogColumns.RESPONSE_BODY
+                                + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?)");
+                        statements.put(accessLog.mDate, statement);
+                    }
+
+                    statement.clearBindings();
+                    bindString(statement, 1, accessLog.mDate);
+                    bindString(statement, 2, accessLog.mRemoteIpAddress);
+                    bindString(statement, 3, accessLog.mRemoteHostName);
+                    statement.bindLong(4, accessLog.mRequestReceivedTime);
+                    bindString(statement, 5, accessLog.mRequestHeader);
+                    bindString(statement, 6, accessLog.mRequestMethod);
+                    bindString(statement, 7, accessLog.mRequestPath);
+                    bindString(statement, 8, accessLog.mRequestBody);
+                    statement.bindLong(9, accessLog.mResponseSendTime);
+                    statement.bindLong(10, accessLog.mResponseStatusCode);
+                    bindString(statement, 11, accessLog.mResponseContentType);
+                    bindString(statement, 12, accessLog.mResponseBody);
+                    if (statement.executeInsert() != -1) {
+                        count++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
         } catch (SQLException e) {
-            return false;
+            return 0;
+        } finally {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
         }
+        return count;
     }
 
     /**
@@ -364,21 +486,31 @@ public class AccessLog {
         if (accessLog.getId() == -1) {
             return false;
         }
-        String select = AccessLogColumns._ID + "=" + accessLog.getId();
-        return db.delete(TABLE_NAME, select, null) > 0;
+        String tableName = toTableName(accessLog.getId());
+        if (!existsTable(db, tableName)) {
+            return false;
+        }
+        String select = AccessLogColumns._ID + "=" + (accessLog.getId() % TABLE_ID_FACTOR);
+        return db.delete(tableName, select, null) > 0;
     }
 
     /**
      * 指定された日付のアクセスログを削除します.
+     * <p>
+     * 日付ごとのテーブルを削除するので、アクセスログの数に関わらず一定の時間で削除できます。
+     * </p>
      *
      * @param db SQLiteDatabaseのインスタンス
      * @param date 日付
      * @return 削除に成功した場合はtrue、それ以外はfalse
      */
     static boolean removeOfDate(final SQLiteDatabase db, final String date) {
-        String whereClause = AccessLogColumns.DATE + "=?";
-        String[] whereArgs = {date};
-        return db.delete(TABLE_NAME, whereClause, whereArgs) > 0;
+        String tableName = toTableName(date);
+        if (!existsTable(db, tableName)) {
+            return false;
+        }
+        db.execSQL("DROP TABLE " + tableName);
+        return true;
     }
 
     /**
@@ -389,24 +521,13 @@ public class AccessLog {
      */
     static List<String> getDateList(final SQLiteDatabase db) {
         List<String> list = new ArrayList<>();
-
-        String[] columns = {AccessLogColumns.DATE};
-        String orderBy = AccessLogColumns.DATE + " DESC";
-
-        Cursor cs = db.query(true, TABLE_NAME, columns,
-                null, null, AccessLogColumns.DATE,
-                null, orderBy, null) ;
-        if (cs != null) {
-            try {
-                while (cs.moveToNext()) {
-                    list.add(cs.getString(cs.getColumnIndex(AccessLogColumns.DATE)));
-                }
-            } catch (Exception e) {
-                // ignore.
-            } finally {
-                cs.close();
+        for (String tableName : getTableNames(db)) {
+            String date = toDate(tableName);
+            if (date != null) {
+                list.add(date);
             }
         }
+        Collections.sort(list, Collections.reverseOrder());
         return list;
     }
 
@@ -422,16 +543,19 @@ public class AccessLog {
     static List<AccessLog> getAccessLogsOfDate(final SQLiteDatabase db, final String date) {
         List<AccessLog> list = new ArrayList<>();
 
-        String selection = AccessLogColumns.DATE + "=?";
-        String[] selectionArgs = {date};
+        String tableName = toTableName(date);
+        if (!existsTable(db, tableName)) {
+            return list;
+        }
+
         String orderBy = AccessLogColumns.REQUEST_RECEIVED_TIME + " DESC";
 
-        Cursor cs = db.query(TABLE_NAME, null, selection, selectionArgs,
+        Cursor cs = db.query(tableName, null, null, null,
                 null, null, orderBy);
         if (cs != null) {
             try {
                 while (cs.moveToNext()) {
-                    list.add(createAccessLog(cs));
+                    list.add(createAccessLog(cs, tableName));
                 }
             } catch (Exception e) {
                 // ignore.
@@ -455,16 +579,21 @@ public class AccessLog {
     static List<AccessLog> getAccessLogsFromCondition(final SQLiteDatabase db, final String date, final String condition) {
         List<AccessLog> list = new ArrayList<>();
 
-        String selection = AccessLogColumns.DATE + "=? AND (" + AccessLogColumns.REQUEST_IP_ADDRESS + " LIKE ? OR " + AccessLogColumns.REQUEST_PATH + " LIKE ?)";
-        String[] selectionArgs = {date, "%" + condition + "%", "%" + condition + "%"};
+        String tableName = toTableName(date);
+        if (!existsTable(db, tableName)) {
+            return list;
+        }
+
+        String selection = AccessLogColumns.REQUEST_IP_ADDRESS + " LIKE ? OR " + AccessLogColumns.REQUEST_PATH + " LIKE ?";
+        String[] selectionArgs = {"%" + condition + "%", "%" + condition + "%"};
         String orderBy = AccessLogColumns.REQUEST_RECEIVED_TIME + " DESC";
 
-        Cursor cs = db.query(TABLE_NAME, null, selection, selectionArgs,
+        Cursor cs = db.query(tableName, null, selection, selectionArgs,
                 null, null, orderBy);
         if (cs != null) {
             try {
                 while (cs.moveToNext()) {
-                    list.add(createAccessLog(cs));
+                    list.add(createAccessLog(cs, tableName));
                 }
             } catch (Exception e) {
                 // ignore.
@@ -478,22 +607,27 @@ public class AccessLog {
     /**
      * アクセスログを取得します.
      * <p>
-     * アクセスログがない場合には空のListを返却します。
+     * アクセスログがない場合にはnullを返却します。
      * </p>
      * @param db SQLiteDatabaseのインスタンス
      * @param id 取得するアクセスログのID
      * @return アクセスログ。
      */
     static AccessLog getAccessLog(final SQLiteDatabase db, final long id) {
+        String tableName = toTableName(id);
+        if (!existsTable(db, tableName)) {
+            return null;
+        }
+
         String selection = AccessLogColumns._ID + "=?";
-        String[] selectionArgs = {String.valueOf(id)};
+        String[] selectionArgs = {String.valueOf(id % TABLE_ID_FACTOR)};
 
-        Cursor cs = db.query(TABLE_NAME, null, selection, selectionArgs,
+        Cursor cs = db.query(tableName, null, selection, selectionArgs,
                 null, null, null);
         if (cs != null) {
             try {
                 if (cs.moveToNext()) {
-                    return createAccessLog(cs);
+                    return createAccessLog(cs, tableName);
                 }
             } catch (Exception e) {
                 // ignore.
@@ -508,11 +642,12 @@ public class AccessLog {
      * Cursor から AccessLog を作成します.
      *
      * @param cs Cursor
+     * @param tableName テーブル名
      * @return AccessLog
      */
-    private static AccessLog createAccessLog(final Cursor cs) {
+    private static AccessLog createAccessLog(final Cursor cs, final String tableName) {
         AccessLog accessLog = new AccessLog();
-        accessLog.mId = cs.getLong(cs.getColumnIndex(AccessLogColumns._ID));
+        accessLog.mId = toId(tableName, cs.getLong(cs.getColumnIndex(AccessLogColumns._ID)));
         accessLog.mDate = cs.getString(cs.getColumnIndex(AccessLogColumns.DATE));
         accessLog.mRemoteIpAddress = cs.getString(cs.getColumnIndex(AccessLogColumns.REQUEST_IP_ADDRESS));
         accessLog.mRemoteHostName = cs.getString(cs.getColumnIndex(AccessLogColumns.REQUEST_HOST_NAME));
@@ -528,6 +663,120 @@ public class AccessLog {
         return accessLog;
     }
 
+    /**
+     * INSERT 文に文字列を設定します.
+     *
+     * @param statement INSERT 文
+     * @param index パラメータの番号
+     * @param value 値、nullの場合はNULLを設定
+     */
+    private static void bindString(final SQLiteStatement statement, final int index, final String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * 日付ごとのテーブル名のリストを取得します.
+     *
+     * @param db SQLiteDatabaseのインスタンス
+     * @return テーブル名のリスト
+     */
+    private static List<String> getTableNames(final SQLiteDatabase db) {
+        List<String> list = new ArrayList<>();
+        Cursor cs = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name LIKE ? ESCAPE '\\'",
+                new String[] {TABLE_NAME_PREFIX.replace("_", "\\_") + "%"});
+        try {
+            while (cs.moveToNext()) {
+                String tableName = cs.getString(0);
+                if (toDate(tableName) != null) {
+                    list.add(tableName);
+                }
+            }
+        } finally {
+            cs.close();
+        }
+        return list;
+    }
+
+    /**
+     * 指定されたテーブルが存在するか確認します.
+     *
+     * @param db SQLiteDatabaseのインスタンス
+     * @param tableName テーブル名
+     * @return 存在する場合はtrue、それ以外はfalse
+     */
+    private static boolean existsTable(final SQLiteDatabase db, final String tableName) {
+        if (tableName == null) {
+            return false;
+        }
+        Cursor cs = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type='table' AND name=?",
+                new String[] {tableName});
+        try {
+            return cs.moveToFirst();
+        } finally {
+            cs.close();
+        }
+    }
+
+    /**
+     * 日付(yyyy/MM/dd)からテーブル名を取得します.
+     *
+     * @param date 日付
+     * @return テーブル名、日付が不正な場合はnull
+     */
+    private static String toTableName(final String date) {
+        if (date == null || !date.matches("\\d{4}/\\d{2}/\\d{2}")) {
+            return null;
+        }
+        return TABLE_NAME_PREFIX + date.replace("/", "");
+    }
+
+    /**
+     * アクセスログのIDからテーブル名を取得します.
+     *
+     * @param id アクセスログのID
+     * @return テーブル名、IDが不正な場合はnull
+     */
+    private static String toTableName(final long id) {
+        long date = id / TABLE_ID_FACTOR;
+        if (id < 0 || date < 10000000L || date > 99999999L) {
+            return null;
+        }
+        return TABLE_NAME_PREFIX + date;
+    }
+
+    /**
+     * テーブル名から日付(yyyy/MM/dd)を取得します.
+     *
+     * @param tableName テーブル名
+     * @return 日付、日付ごとのテーブルではない場合はnull
+     */
+    private static String toDate(final String tableName) {
+        if (!tableName.matches(TABLE_NAME_PREFIX + "\\d{8}")) {
+            return null;
+        }
+        String d = tableName.substring(TABLE_NAME_PREFIX.length());
+        return d.substring(0, 4) + "/" + d.substring(4, 6) + "/" + d.substring(6, 8);
+    }
+
+    /**
+     * テーブル名とテーブル内のIDから、アクセスログのIDを作成します.
+     * <p>
+     * 日付ごとにテーブルが分かれていても一意になるように、テーブルの日付を上位の桁に入れます。
+     * </p>
+     *
+     * @param tableName テーブル名
+     * @param rowId テーブル内のID
+     * @return アクセスログのID
+     */
+    private static long toId(final String tableName, final long rowId) {
+        long date = Long.parseLong(tableName.substring(TABLE_NAME_PREFIX.length()));
+        return date * TABLE_ID_FACTOR + rowId;
+    }
+
     /**
      * Header の文字列を Map に変換します.
      *
@@ -23,8 +23,11 @@ class AccessLogHelper extends SQLiteOpenHelper {
 
     /**
      * DBのバージョンを定義.
+     * <p>
+     * バージョン2から、アクセスログを日付ごとのテーブルに格納します。
+     * </p>
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     /**
      * コンストラクタ.
@@ -36,11 +39,14 @@ class AccessLogHelper extends SQLiteOpenHelper {
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        AccessLog.createTable(db);
+        // アクセスログのテーブルは、アクセスログを追加する時に日付ごとに作成する
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            AccessLog.migrateTable(db);
+        }
     }
 
     /**
@@ -7,7 +7,6 @@
 package org.deviceconnect.server.nanohttpd.accesslog;
 
 import android.content.Context;
-import android.text.format.DateFormat;
 
 import java.util.Date;
 import java.util.List;
@@ -21,11 +20,39 @@ import java.util.concurrent.Executors;
  * @author NTT DOCOMO, INC.
  */
 public class AccessLogProvider {
+    /**
+     * 書き込み待ちのアクセスログを保持する最大数のデフォルト値.
+     */
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * アクセスログをDBに書き込む間隔のデフォルト値(ミリ秒).
+     */
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
     /**
      * アクセスログのDBを管理するクラス.
      */
     private AccessLogHelper mAccessLogHelper;
 
+    /**
+     * アクセスログをまとめてDBに書き込むクラス.
+     * <p>
+     * {@link #offer(AccessLog)} が初めて呼び出された時に作成します。
+     * </p>
+     */
+    private volatile AccessLogWriter mAccessLogWriter;
+
+    /**
+     * 書き込み待ちのアクセスログを保持する最大数.
+     */
+    private final int mQueueSize;
+
+    /**
+     * アクセスログをDBに書き込む間隔(ミリ秒).
+     */
+    private long mFlushInterval;
+
     /**
      * DB処理を非同期に行うためのスレッド.
      */
@@ -36,7 +63,26 @@ public class AccessLogProvider {
      * @param context コンテキスト
      */
     public AccessLogProvider(final Context context) {
+        this(context, DEFAULT_QUEUE_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * コンストラクタ.
+     *
+     * @param context コンテキスト
+     * @param queueSize 書き込み待ちのアクセスログを保持する最大数
+     * @param flushInterval アクセスログをDBに書き込む間隔(ミリ秒)
+     */
+    public AccessLogProvider(final Context context, final int queueSize, final long flushInterval) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize must be larger than 0.");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be larger than 0.");
+        }
         mAccessLogHelper = new AccessLogHelper(context);
+        mQueueSize = queueSize;
+        mFlushInterval = flushInterval;
     }
 
     /**
@@ -45,6 +91,7 @@ public class AccessLogProvider {
      * @return 日付のリスト
      */
     public List<String> getDateList() {
+        flush();
         return mAccessLogHelper.read(AccessLog::getDateList);
     }
 
@@ -66,6 +113,7 @@ public class AccessLogProvider {
      * @return アクセスログのリスト
      */
     public List<AccessLog> getAccessLogsOfDate(final String date) {
+        flush();
         return mAccessLogHelper.read((db) -> AccessLog.getAccessLogsOfDate(db, date));
     }
 
@@ -91,6 +139,7 @@ public class AccessLogProvider {
      * @return アクセスログのリスト
      */
     public List<AccessLog> getAccessLogsFromCondition(final String date, final String condition) {
+        flush();
         return mAccessLogHelper.read((db) -> AccessLog.getAccessLogsFromCondition(db, date, condition));
     }
 
@@ -116,6 +165,7 @@ public class AccessLogProvider {
      * @return アクセスログ
      */
     public AccessLog getAccessLog(final long id) {
+        flush();
         return mAccessLogHelper.read((db) -> AccessLog.getAccessLog(db, id));
     }
 
@@ -151,6 +201,94 @@ public class AccessLogProvider {
         mExecutorService.execute(() -> callback.onComplete(add(accessLog)));
     }
 
+    /**
+     * アクセスログを書き込み待ちのキューに追加します.
+     * <p>
+     * アクセスログは、バックグラウンドのスレッドで一定間隔ごとにまとめてDBに書き込みます。
+     * キューが一杯の場合には、アクセスログを破棄してfalseを返却します。
+     * </p>
+     *
+     * @param accessLog 追加するアクセスログ
+     * @return キューに追加した場合はtrue、破棄した場合はfalse
+     */
+    public boolean offer(final AccessLog accessLog) {
+        return getAccessLogWriter().offer(accessLog);
+    }
+
+    /**
+     * 書き込み待ちのアクセスログをDBに書き込みます.
+     * <p>
+     * アクセスログの取得と削除を行う前には、このメソッドが呼び出されます。
+     * </p>
+     */
+    public void flush() {
+        AccessLogWriter writer = mAccessLogWriter;
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * アクセスログをDBに書き込む間隔を設定します.
+     *
+     * @param flushInterval 書き込む間隔(ミリ秒)
+     */
+    public synchronized void setFlushInterval(final long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be larger than 0.");
+        }
+        mFlushInterval = flushInterval;
+        if (mAccessLogWriter != null) {
+            mAccessLogWriter.setFlushInterval(flushInterval);
+        }
+    }
+
+    /**
+     * 書き込み待ちのキューが一杯だったため、またはDBへの書き込みに失敗したために破棄したアクセスログの数を取得します.
+     *
+     * @return 破棄したアクセスログの数
+     */
+    public long getDroppedCount() {
+        AccessLogWriter writer = mAccessLogWriter;
+        return writer != null ? writer.getDroppedCount() : 0;
+    }
+
+    /**
+     * 書き込み待ちのアクセスログをDBに書き込んでから、書き込みのスレッドを停止します.
+     * <p>
+     * この後に {@link #offer(AccessLog)} が呼び出された場合には、新しく書き込みのスレッドを作成します。
+     * </p>
+     */
+    public void close() {
+        AccessLogWriter writer;
+        synchronized (this) {
+            writer = mAccessLogWriter;
+            mAccessLogWriter = null;
+        }
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * アクセスログをまとめてDBに書き込むクラスを取得します.
+     *
+     * @return アクセスログをまとめてDBに書き込むクラス
+     */
+    private AccessLogWriter getAccessLogWriter() {
+        AccessLogWriter writer = mAccessLogWriter;
+        if (writer == null) {
+            synchronized (this) {
+                writer = mAccessLogWriter;
+                if (writer == null) {
+                    writer = new AccessLogWriter(mAccessLogHelper, mQueueSize, mFlushInterval);
+                    mAccessLogWriter = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
     /**
      * アクセスログを削除します.
      *
@@ -158,6 +296,7 @@ public class AccessLogProvider {
      * @return 削除に成功した場合はtrue、それ以外はfalse
      */
     public boolean remove(final AccessLog accessLog) {
+        flush();
         return mAccessLogHelper.write((db) -> AccessLog.remove(db, accessLog));
     }
 
@@ -178,6 +317,7 @@ public class AccessLogProvider {
      * @return 削除に成功した場合はtrue、それ以外はfalse
      */
     public boolean remove(final String date) {
+        flush();
         return mAccessLogHelper.write((db) -> AccessLog.removeOfDate(db, date));
     }
 
@@ -195,6 +335,7 @@ public class AccessLogProvider {
      * 全てのアクセスログを削除します.
      */
     public void removeAll() {
+        flush();
         mAccessLogHelper.write(AccessLog::removeTable);
     }
 
@@ -236,11 +377,14 @@ public class AccessLogProvider {
 
     /**
      * 今日の日付の文字列を取得します.
+     * <p>
+     * 日付はテーブル名に使用するので、端末のロケールに関わらず ASCII の数字で作成します。
+     * </p>
      *
      * @return 今日の日付の文字列
      */
     private String getToday() {
-        return DateFormat.format("yyyy/MM/dd", System.currentTimeMillis()).toString();
+        return new java.text.SimpleDateFormat("yyyy/MM/dd", Locale.US).format(new Date());
     }
 
     /**
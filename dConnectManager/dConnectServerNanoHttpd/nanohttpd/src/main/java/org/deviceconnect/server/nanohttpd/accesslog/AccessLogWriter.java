@@ -0,0 +1,189 @@
+/*
+ AccessLogWriter.java
+ Copyright (c) 2021 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd.accesslog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * アクセスログをまとめてDBに書き込むクラス.
+ * <p>
+ * 追加されたアクセスログは上限のあるキューに格納し、バックグラウンドのスレッドで
+ * 一定間隔ごとに1つのトランザクションでまとめて書き込みます。
+ * キューが一杯の場合には、リクエストの処理を待たせないようにアクセスログを破棄して、破棄した数を数えます。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class AccessLogWriter {
+    /**
+     * 1つのトランザクションで書き込むアクセスログの最大数.
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * アクセスログのDBを管理するクラス.
+     */
+    private final AccessLogHelper mAccessLogHelper;
+
+    /**
+     * 書き込み待ちのアクセスログのキュー.
+     */
+    private final BlockingQueue<AccessLog> mQueue;
+
+    /**
+     * 書き込みを行うスレッド.
+     */
+    private final ScheduledExecutorService mExecutorService = Executors.newSingleThreadScheduledExecutor((r) -> {
+        Thread thread = new Thread(r, "AccessLogWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 破棄したアクセスログの数.
+     */
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * true: 書き込みを要求済み / false: 未要求.
+     */
+    private final AtomicBoolean mFlushRequested = new AtomicBoolean();
+
+    /**
+     * 書き込みを排他するためのロック.
+     */
+    private final Object mLock = new Object();
+
+    /**
+     * 定期的な書き込みのタスク.
+     */
+    private ScheduledFuture<?> mFlushTask;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param helper アクセスログのDBを管理するクラス
+     * @param queueSize 書き込み待ちのアクセスログを保持する最大数
+     * @param flushInterval 書き込む間隔(ミリ秒)
+     */
+    AccessLogWriter(final AccessLogHelper helper, final int queueSize, final long flushInterval) {
+        mAccessLogHelper = helper;
+        mQueue = new ArrayBlockingQueue<>(queueSize);
+        setFlushInterval(flushInterval);
+    }
+
+    /**
+     * アクセスログを書き込み待ちのキューに追加します.
+     * <p>
+     * キューが一杯の場合には、アクセスログを破棄してfalseを返却します。
+     * </p>
+     *
+     * @param accessLog アクセスログ
+     * @return キューに追加した場合はtrue、破棄した場合はfalse
+     */
+    boolean offer(final AccessLog accessLog) {
+        if (!mQueue.offer(accessLog)) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+
+        // 1回分の書き込みが溜まった場合には、書き込む間隔を待たずに書き込む
+        if (mQueue.size() >= MAX_BATCH_SIZE && mFlushRequested.compareAndSet(false, true)) {
+            try {
+                mExecutorService.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                mFlushRequested.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 書き込む間隔を設定します.
+     *
+     * @param flushInterval 書き込む間隔(ミリ秒)
+     */
+    synchronized void setFlushInterval(final long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be larger than 0.");
+        }
+        if (mFlushTask != null) {
+            mFlushTask.cancel(false);
+        }
+        mFlushTask = mExecutorService.scheduleWithFixedDelay(this::flush,
+                flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 破棄したアクセスログの数を取得します.
+     * <p>
+     * キューが一杯だった場合と、DBへの書き込みに失敗した場合に破棄した数を返却します。
+     * </p>
+     *
+     * @return 破棄したアクセスログの数
+     */
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * 書き込み待ちのアクセスログをDBに書き込みます.
+     * <p>
+     * 呼び出したスレッドで書き込みを行い、キューが空になるまで処理を返しません。
+     * </p>
+     */
+    void flush() {
+        mFlushRequested.set(false);
+        synchronized (mLock) {
+            if (mQueue.isEmpty()) {
+                return;
+            }
+            mAccessLogHelper.write((db) -> {
+                List<AccessLog> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                while (mQueue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                    int count;
+                    try {
+                        count = AccessLog.addAll(db, batch);
+                    } catch (RuntimeException e) {
+                        // キューから取り出し済みなので、書き込めなかったアクセスログは破棄した数に含める
+                        mDroppedCount.addAndGet(batch.size());
+                        return false;
+                    }
+                    if (count < batch.size()) {
+                        mDroppedCount.addAndGet(batch.size() - count);
+                    }
+                    batch.clear();
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * 書き込み待ちのアクセスログを書き込んでから、書き込みのスレッドを停止します.
+     */
+    void shutdown() {
+        synchronized (this) {
+            if (mFlushTask != null) {
+                mFlushTask.cancel(false);
+                mFlushTask = null;
+            }
+        }
+        mExecutorService.shutdown();
+        flush();
+    }
+}
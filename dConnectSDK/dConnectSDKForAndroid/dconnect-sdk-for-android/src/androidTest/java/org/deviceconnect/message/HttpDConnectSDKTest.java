@@ -40,6 +40,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -1236,6 +1237,39 @@ public class HttpDConnectSDKTest {
         assertThat(response.getString(AvailabilityProfileConstants.PARAM_UUID), is(uuid));
     }
 
+    /**
+     * openStreamを呼び出し、データを読み込めることを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・サーバから送信したデータと同じデータが読み込めること。
+     * ・連続して呼び出してもデータが読み込めること。
+     * </pre>
+     */
+    @Test
+    public void openStream() throws IOException {
+        final byte[] data = new byte[256 * 1024];
+        new SecureRandom().nextBytes(data);
+        mTestServer.setServerCallback(new TestServer.ServerCallback() {
+            @Override
+            public NanoHTTPD.Response serve(final String uri, final NanoHTTPD.Method method, final Map<String, String> headers,
+                                            final Map<String, String> parms, final Map<String, String> files) {
+                return newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/octet-stream",
+                        new ByteArrayInputStream(data), data.length);
+            }
+        });
+
+        DConnectSDK sdk = DConnectSDKFactory.create(InstrumentationRegistry.getInstrumentation().getContext(), DConnectSDKFactory.Type.HTTP);
+        sdk.setMaxConnectionsPerHost(1);
+        for (int i = 0; i < 3; i++) {
+            InputStream in = sdk.openStream("http://localhost:4035/files?uri=test");
+            try {
+                assertThat(Arrays.equals(getFile(in), data), is(true));
+            } finally {
+                in.close();
+            }
+        }
+    }
+
     /**
      * uriにnullを設定して、getを呼び出す。
      * <pre>
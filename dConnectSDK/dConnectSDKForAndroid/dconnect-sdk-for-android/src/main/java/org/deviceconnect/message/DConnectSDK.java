@@ -18,15 +18,23 @@ import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 import org.deviceconnect.profile.ServiceInformationProfileConstants;
 import org.deviceconnect.utils.HmacUtils;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * Device Connect Managerへのアクセスを行うクラス.
@@ -92,6 +100,11 @@ public abstract class DConnectSDK {
      */
     private static final int NONCE_BYTES = 16;
 
+    /**
+     * 1つのホストに同時に接続する最大数のデフォルト値.
+     */
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
     /**
      * メソッド.
      */
@@ -168,6 +181,19 @@ public abstract class DConnectSDK {
      */
     private boolean mEnabledAntiSpoofing;
 
+    /**
+     * 1つのホストに同時に接続する最大数.
+     */
+    private int mMaxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    /**
+     * ホストごとの接続数を制限するセマフォ.
+     * <p>
+     * キーはホスト名とポート番号。
+     * </p>
+     */
+    private final ConcurrentMap<String, HostPermits> mHostPermits = new ConcurrentHashMap<>();
+
     /**
      * 通信を行うスレッド.
      */
@@ -434,6 +460,68 @@ public abstract class DConnectSDK {
         return mEnabledAntiSpoofing;
     };
 
+    /**
+     * 1つのホストに同時に接続する最大数を取得する.
+     *
+     * @return 1つのホストに同時に接続する最大数
+     */
+    public int getMaxConnectionsPerHost() {
+        return mMaxConnectionsPerHost;
+    }
+
+    /**
+     * 1つのホストに同時に接続する最大数を設定する.
+     * <p>
+     * HTTP通信を使用する場合に、同じホストへの接続数を制限します。<br>
+     * 上限に達している場合には、他の通信が終わるまで待ってから接続を行います。<br>
+     * デフォルトでは4が設定してあります。
+     * </p>
+     * @param maxConnections 1つのホストに同時に接続する最大数
+     * @throws IllegalArgumentException maxConnectionsに0以下が指定された場合に発生
+     */
+    public void setMaxConnectionsPerHost(final int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections is invalid.");
+        }
+        synchronized (mHostPermits) {
+            mMaxConnectionsPerHost = maxConnections;
+            for (HostPermits permits : mHostPermits.values()) {
+                permits.resize(maxConnections);
+            }
+        }
+    }
+
+    /**
+     * 接続先のホストへの接続の許可を取得する.
+     * <p>
+     * 同じホストへの接続数が{@link #getMaxConnectionsPerHost()}に達している場合には、他の通信が終わるまで待ちます。<br>
+     * 通信が終わったら、{@link Semaphore#release()}で許可を返却すること。
+     * </p>
+     * @param url 接続先のURL
+     * @return 取得した許可を持つセマフォ
+     * @throws IOException 待機中に割り込まれた場合に発生
+     */
+    Semaphore acquireHostPermit(final URL url) throws IOException {
+        String key = url.getHost() + ":" + url.getPort();
+        HostPermits permits = mHostPermits.get(key);
+        if (permits == null) {
+            synchronized (mHostPermits) {
+                permits = mHostPermits.get(key);
+                if (permits == null) {
+                    permits = new HostPermits(mMaxConnectionsPerHost);
+                    mHostPermits.put(key, permits);
+                }
+            }
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted.");
+        }
+        return permits;
+    }
+
     /**
      * Device Connect Managerを起動する.
      * <p>
@@ -584,6 +672,29 @@ public abstract class DConnectSDK {
      */
     protected abstract DConnectResponseMessage sendRequest(final Method method, final Uri uri, final Map<String, String> headers, final Entity body);
 
+    /**
+     * 非同期にDevice Connect Managerとの通信を行う.
+     * <p>
+     * デフォルトの実装では、スレッドプールから{@link #sendRequest(Method, Uri, Map, Entity)}を呼び出します。<br>
+     * レスポンスを待つためにスレッドを占有しない方法がある場合には、サブクラスでオーバーライドすること。<br>
+     * リスナーには必ず1回だけレスポンスを通知し、nullを通知しないようにすること。
+     * </p>
+     * @param method メソッド
+     * @param uri アクセス先のURI
+     * @param headers リクエストに追加するヘッダー
+     * @param body リクエストに追加するボディデータ
+     * @param listener レスポンスを通知するリスナー
+     */
+    protected void sendRequest(final Method method, final Uri uri, final Map<String, String> headers, final Entity body,
+                               final OnResponseListener listener) {
+        mExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                listener.onResponse(sendRequest(method, uri, headers, body));
+            }
+        });
+    }
+
     /**
      * Device Connect Managerとの通信を行う.
      * <p>
@@ -599,26 +710,79 @@ public abstract class DConnectSDK {
     private DConnectResponseMessage sendRequestInternal(final Method method, final Uri uri, final Map<String, String> headers, final Entity body) {
         if (isEnabledAntiSpoofing()) {
             String nonce = generateRandom(NONCE_BYTES);
-
-            StringBuilder u = new StringBuilder();
-            u.append(uri.toString());
-            u.append((uri.getQuery() == null) ? "?" : "&");
-            u.append("nonce=");
-            u.append(nonce);
-
-            DConnectResponseMessage response = sendRequest(method, Uri.parse(u.toString()), headers, body);
-            if (!checkHmac(nonce, response.getString("hmac"))) {
-                DConnectResponseMessage msg = new DConnectResponseMessage(DConnectMessage.RESULT_ERROR);
-                msg.setErrorCode(DConnectMessage.ErrorCode.INVALID_SERVER.getCode());
-                msg.setErrorMessage(DConnectMessage.ErrorCode.INVALID_SERVER.toString());
-                return msg;
-            }
-            return response;
+            DConnectResponseMessage response = sendRequest(method, appendNonce(uri, nonce), headers, body);
+            return checkResponse(nonce, response);
         } else {
             return sendRequest(method, uri, headers, body);
         }
     }
 
+    /**
+     * 非同期にDevice Connect Managerとの通信を行う.
+     * <p>
+     * {@link #isEnabledAntiSpoofing()}がtrueの場合には、{@link #sendRequestInternal(Method, Uri, Map, Entity)}と同様にHMACの確認を行います。
+     * </p>
+     * @param method メソッド
+     * @param uri アクセス先のURI
+     * @param headers リクエストに追加するヘッダー
+     * @param body リクエストに追加するボディデータ
+     * @param listener レスポンスを通知するリスナー
+     */
+    private void sendRequestInternal(final Method method, final Uri uri, final Map<String, String> headers, final Entity body,
+                                     final OnResponseListener listener) {
+        if (isEnabledAntiSpoofing()) {
+            final String nonce = generateRandom(NONCE_BYTES);
+            sendRequest(method, appendNonce(uri, nonce), headers, body, new OnResponseListener() {
+                @Override
+                public void onResponse(final DConnectResponseMessage response) {
+                    if (listener != null) {
+                        listener.onResponse(checkResponse(nonce, response));
+                    }
+                }
+            });
+        } else {
+            sendRequest(method, uri, headers, body, new OnResponseListener() {
+                @Override
+                public void onResponse(final DConnectResponseMessage response) {
+                    if (listener != null) {
+                        listener.onResponse(response);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * URIにnonceを追加する.
+     * @param uri アクセス先のURI
+     * @param nonce HMACを生成するためのシード
+     * @return nonceを追加したURI
+     */
+    private Uri appendNonce(final Uri uri, final String nonce) {
+        StringBuilder u = new StringBuilder();
+        u.append(uri.toString());
+        u.append((uri.getQuery() == null) ? "?" : "&");
+        u.append("nonce=");
+        u.append(nonce);
+        return Uri.parse(u.toString());
+    }
+
+    /**
+     * レスポンスのHMACを確認する.
+     * @param nonce HMACを生成するために使用したシード
+     * @param response レスポンス
+     * @return HMACが一致する場合にはレスポンス、それ以外は不正なサーバを示すエラー
+     */
+    private DConnectResponseMessage checkResponse(final String nonce, final DConnectResponseMessage response) {
+        if (!checkHmac(nonce, response.getString("hmac"))) {
+            DConnectResponseMessage msg = new DConnectResponseMessage(DConnectMessage.RESULT_ERROR);
+            msg.setErrorCode(DConnectMessage.ErrorCode.INVALID_SERVER.getCode());
+            msg.setErrorMessage(DConnectMessage.ErrorCode.INVALID_SERVER.toString());
+            return msg;
+        }
+        return response;
+    }
+
     /**
      * URIBuilderを生成する.
      * <div>
@@ -713,15 +877,67 @@ public abstract class DConnectSDK {
         if (uri == null) {
             throw new NullPointerException("uri is null.");
         }
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage response = get(uri);
-                if (listener != null) {
-                    listener.onResponse(response);
-                }
+        sendRequestInternal(Method.GET, uri, null, null, listener);
+    }
+
+    /**
+     * 指定したURIのデータを読み込むストリームを開く.
+     * <p>
+     * ファイルやメディアなどのサイズが大きいデータを、メモリ上に全て読み込まずに取得する場合に使用します。<br>
+     * 読み込みが終わったら必ずストリームを閉じてください。<br>
+     * Device Connect Managerに同期的にアクセスを行う為にUIスレッドなどから呼び出すとエラーになります。
+     * </p>
+     * <div>
+     * <span style="margin:0;padding:2px;background:#029EBC;color:#EBF7FA;line-height:140%;font-weight:bold;">サンプルコード</span>
+     * <pre>
+     * DConnectSDK sdk = DConnectSDKFactory.create(context, DConnectSDKFactory.Type.HTTP);
+     * InputStream in = sdk.openStream(response.getString("uri"));
+     * try {
+     *     // データの読み込み
+     * } finally {
+     *     in.close();
+     * }
+     * </pre>
+     * </div>
+     * @param uri アクセス先のURI
+     * @return データを読み込むストリーム
+     * @throws IOException 接続に失敗した場合に発生
+     */
+    public InputStream openStream(final String uri) throws IOException {
+        if (uri == null) {
+            throw new NullPointerException("uri is null.");
+        }
+        return openStream(Uri.parse(uri));
+    }
+
+    /**
+     * 指定したURIのデータを読み込むストリームを開く.
+     * <p>
+     * 読み込みが終わったら必ずストリームを閉じてください。
+     * </p>
+     * @param uri アクセス先のURI
+     * @return データを読み込むストリーム
+     * @throws IOException 接続に失敗した場合に発生
+     */
+    public InputStream openStream(final Uri uri) throws IOException {
+        if (uri == null) {
+            throw new NullPointerException("uri is null.");
+        }
+        URL url = new URL(uri.toString());
+        Semaphore permits = acquireHostPermit(url);
+        InputStream in = null;
+        try {
+            URLConnection conn = url.openConnection();
+            if (getOrigin() != null) {
+                conn.setRequestProperty(DConnectMessage.HEADER_GOTAPI_ORIGIN, getOrigin());
             }
-        });
+            in = new StreamingInputStream(conn.getInputStream(), permits);
+            return in;
+        } finally {
+            if (in == null) {
+                permits.release();
+            }
+        }
     }
 
     /**
@@ -774,15 +990,7 @@ public abstract class DConnectSDK {
             throw new NullPointerException("uri is null.");
         }
 
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = put(uri, data);
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        sendRequestInternal(Method.PUT, uri, null, data, listener);
     }
 
     /**
@@ -898,15 +1106,7 @@ public abstract class DConnectSDK {
         if (uri == null) {
             throw new NullPointerException("uri is null.");
         }
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = post(uri, data);
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        sendRequestInternal(Method.POST, uri, null, data, listener);
     }
 
     /**
@@ -954,15 +1154,7 @@ public abstract class DConnectSDK {
         if (uri == null) {
             throw new NullPointerException("uri is null.");
         }
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = delete(uri);
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        sendRequestInternal(Method.DELETE, uri, null, null, listener);
     }
 
     /**
@@ -1017,15 +1209,9 @@ public abstract class DConnectSDK {
      * @param listener 結果を通知するリスナー
      */
     public void availability(final OnResponseListener listener) {
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = availability();
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        URIBuilder builder = new URIBuilder();
+        builder.setProfile(AvailabilityProfileConstants.PROFILE_NAME);
+        get(builder.build(), listener);
     }
 
     /**
@@ -1279,15 +1465,9 @@ public abstract class DConnectSDK {
      * @param listener レスポンスを通知するリスナー
      */
     public void serviceDiscovery(final OnResponseListener listener) {
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = serviceDiscovery();
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        URIBuilder builder = new URIBuilder();
+        builder.setProfile(ServiceDiscoveryProfileConstants.PROFILE_NAME);
+        get(builder.build(), listener);
     }
 
     /**
@@ -1314,15 +1494,10 @@ public abstract class DConnectSDK {
         if (serviceId == null) {
             throw new NullPointerException("serviceId is null.");
         }
-        mExecutorService.submit(new Runnable() {
-            @Override
-            public void run() {
-                DConnectResponseMessage result = getServiceInformation(serviceId);
-                if (listener != null) {
-                    listener.onResponse(result);
-                }
-            }
-        });
+        URIBuilder builder = new URIBuilder();
+        builder.setProfile(ServiceInformationProfileConstants.PROFILE_NAME);
+        builder.setServiceId(serviceId);
+        get(builder.build(), listener);
     }
 
     private DConnectResponseMessage createCreateClient() {
@@ -1353,6 +1528,23 @@ public abstract class DConnectSDK {
         return builder.toString();
     }
 
+    /**
+     * スレッドプールからリスナーにレスポンスを通知する.
+     * <p>
+     * レスポンスを受信したスレッドを止めないようにするために使用します。
+     * </p>
+     * @param listener レスポンスを通知するリスナー
+     * @param response レスポンス
+     */
+    void postResponse(final OnResponseListener listener, final DConnectResponseMessage response) {
+        mExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                listener.onResponse(response);
+            }
+        });
+    }
+
     DConnectResponseMessage createErrorMessage(final int errorCode, final String errorMessage) {
         DConnectResponseMessage message = new DConnectResponseMessage(DConnectMessage.RESULT_ERROR);
         message.setErrorCode(errorCode);
@@ -1907,6 +2099,81 @@ public abstract class DConnectSDK {
         void onError(int errorCode, String errorMessage);
     }
 
+    /**
+     * ホストへの接続数を制限するセマフォ.
+     * <p>
+     * 接続数の上限が変更された場合には、同じセマフォの許可数を増減させます。
+     * </p>
+     */
+    private static class HostPermits extends Semaphore {
+        /**
+         * 許可数の上限.
+         */
+        private int mMax;
+
+        /**
+         * コンストラクタ.
+         * @param max 許可数の上限
+         */
+        HostPermits(final int max) {
+            super(max);
+            mMax = max;
+        }
+
+        /**
+         * 許可数の上限を変更する.
+         * <p>
+         * 上限を下げた場合には、接続中の通信が終わって許可数が新しい上限を下回るまで、新しい接続を待たせます。
+         * </p>
+         * @param max 許可数の上限
+         */
+        synchronized void resize(final int max) {
+            if (max > mMax) {
+                release(max - mMax);
+            } else if (max < mMax) {
+                reducePermits(mMax - max);
+            }
+            mMax = max;
+        }
+    }
+
+    /**
+     * {@link #openStream(Uri)}で返却するストリーム.
+     * <p>
+     * ストリームを閉じた時にホストへの接続の許可を返却します。
+     * </p>
+     */
+    static class StreamingInputStream extends FilterInputStream {
+        /**
+         * 接続の許可を持つセマフォ.
+         */
+        private Semaphore mPermits;
+
+        /**
+         * コンストラクタ.
+         * @param in レスポンスのストリーム
+         * @param permits 接続の許可を持つセマフォ
+         */
+        StreamingInputStream(final InputStream in, final Semaphore permits) {
+            super(in);
+            mPermits = permits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                synchronized (this) {
+                    if (mPermits != null) {
+                        mPermits.release();
+                        mPermits = null;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * WebSocketとの接続状態を通知するリスナー.
      * @author NTT DOCOMO, INC.
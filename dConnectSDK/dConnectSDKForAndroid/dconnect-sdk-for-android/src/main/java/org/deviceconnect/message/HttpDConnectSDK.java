@@ -37,6 +37,7 @@ import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Semaphore;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -94,6 +95,14 @@ class HttpDConnectSDK extends DConnectSDK {
      */
     private final static String EOL = "\r\n";
 
+    /**
+     * 勝手サーバ証明書を許諾するSSLSocketFactory.
+     * <p>
+     * 同じSSLSocketFactoryを使用しないとコネクションやSSLセッションが再利用されないので、全ての通信で共有します。
+     * </p>
+     */
+    private static SSLSocketFactory sTrustAllSocketFactory;
+
     /**
      * {@link DConnectSDKFactory}で生成させるためにpackageスコープにしておく。
      */
@@ -111,6 +120,22 @@ class HttpDConnectSDK extends DConnectSDK {
      */
     private HttpsURLConnection makeHttpsURLConnection(final URL url) throws IOException, NoSuchAlgorithmException, KeyManagementException {
         HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+        connection.setSSLSocketFactory(getTrustAllSocketFactory());
+        return connection;
+    }
+
+    /**
+     * 勝手サーバ証明書を許諾するSSLSocketFactoryを取得する.
+     *
+     * @return SSLSocketFactoryのインスタンス
+     * @throws IOException SSLSocketFactoryの生成に失敗した場合に発生
+     * @throws NoSuchAlgorithmException SSLの暗号化に失敗した場合に発生
+     * @throws KeyManagementException Keyの管理に失敗した場合の発生
+     */
+    private static synchronized SSLSocketFactory getTrustAllSocketFactory() throws IOException, NoSuchAlgorithmException, KeyManagementException {
+        if (sTrustAllSocketFactory != null) {
+            return sTrustAllSocketFactory;
+        }
 
         TrustManager[] transManagers = {
                 new X509TrustManager() {
@@ -135,9 +160,41 @@ class HttpDConnectSDK extends DConnectSDK {
         if (socketFactory == null) {
             throw new IOException("Failed to create SSLSocketFactory object.");
         }
-        connection.setSSLSocketFactory(socketFactory);
+        sTrustAllSocketFactory = socketFactory;
+        return socketFactory;
+    }
 
-        return connection;
+    /**
+     * 指定したURLへのコネクションを開く.
+     *
+     * @param url 接続先のURL
+     * @return コネクション
+     * @throws IOException HttpsURLConnectionの生成に失敗した場合に発生
+     * @throws NoSuchAlgorithmException SSLの暗号化に失敗した場合に発生
+     * @throws KeyManagementException Keyの管理に失敗した場合の発生
+     */
+    private HttpURLConnection openConnection(final URL url) throws IOException, NoSuchAlgorithmException, KeyManagementException {
+        HttpURLConnection conn;
+        if ("https".equalsIgnoreCase(url.getProtocol())) {
+            conn = makeHttpsURLConnection(url);
+        } else {
+            conn = (HttpURLConnection) url.openConnection();
+        }
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+
+        // GotAPI 1.1からヘッダーにオリジンが必須になったので、ここで追加を行う
+        // 参考: http://technical.openmobilealliance.org/Technical/technical-information/release-program/current-releases/generic-open-terminal-api-framework-1-1
+        if (getOrigin() != null) {
+            conn.setRequestProperty(DConnectMessage.HEADER_GOTAPI_ORIGIN, getOrigin());
+        }
+
+        // 4.x系はkeep-aliveを行うと例外が発生するため、offにする
+        // 参考: http://osa030.hatenablog.com/entry/2015/05/22/181155
+        if (Build.VERSION.SDK_INT > 13 && Build.VERSION.SDK_INT < 19) {
+            conn.setRequestProperty("Connection", "close");
+        }
+        return conn;
     }
 
     /**
@@ -280,16 +337,12 @@ class HttpDConnectSDK extends DConnectSDK {
         }
 
         String boundary = String.format("%x", new Random().hashCode());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        URL url = new URL(uri);
+        Semaphore permits = acquireHostPermit(url);
         HttpURLConnection conn = null;
+        boolean completed = false;
         try {
-            if (uri.startsWith("https://")) {
-                conn = makeHttpsURLConnection(new URL(uri));
-            } else {
-                conn = (HttpURLConnection) new URL(uri).openConnection();
-            }
-            conn.setConnectTimeout(CONNECT_TIMEOUT);
-            conn.setReadTimeout(READ_TIMEOUT);
+            conn = openConnection(url);
             conn.setRequestMethod(method.getValue());
             conn.setDoInput(true);
             conn.setDoOutput(Method.POST.equals(method) || Method.PUT.equals(method));
@@ -299,18 +352,6 @@ class HttpDConnectSDK extends DConnectSDK {
                 }
             }
 
-            // GotAPI 1.1からヘッダーにオリジンが必須になったので、ここで追加を行う
-            // 参考: http://technical.openmobilealliance.org/Technical/technical-information/release-program/current-releases/generic-open-terminal-api-framework-1-1
-            if (getOrigin() != null) {
-                conn.setRequestProperty(DConnectMessage.HEADER_GOTAPI_ORIGIN, getOrigin());
-            }
-
-            // 4.x系はkeep-aliveを行うと例外が発生するため、offにする
-            // 参考: http://osa030.hatenablog.com/entry/2015/05/22/181155
-            if (Build.VERSION.SDK_INT > 13 && Build.VERSION.SDK_INT < 19) {
-                conn.setRequestProperty("Connection", "close");
-            }
-
             // マルチパートのContentTypeを設定する
             if (body instanceof MultipartEntity) {
                 conn.setRequestProperty("Content-Type", String.format("multipart/form-data; boundary=%s", boundary));
@@ -336,32 +377,50 @@ class HttpDConnectSDK extends DConnectSDK {
                 os.close();
             }
 
+            InputStream in;
             int resp = conn.getResponseCode();
             if (resp == SUCCESS_RESPONSE_CODE) {
-                InputStream in = conn.getInputStream();
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = in.read(buf)) > 0) {
-                    baos.write(buf, 0, len);
-                }
-                in.close();
+                in = conn.getInputStream();
             } else {
                 if (DEBUG) {
                     Log.w(TAG, "Failed to connect the server. response=" + resp);
                 }
-
-                InputStream in = conn.getErrorStream();
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = in.read(buf)) > 0) {
-                    baos.write(buf, 0, len);
-                }
-                in.close();
+                in = conn.getErrorStream();
             }
+
+            // ボディを最後まで読み込んでからストリームを閉じることで、コネクションが再利用される
+            byte[] result = readFully(in, conn.getContentLength());
+            completed = true;
+            return result;
         } finally {
-            if (conn != null) {
+            if (conn != null && !completed) {
                 conn.disconnect();
             }
+            permits.release();
+        }
+    }
+
+    /**
+     * ストリームからデータを最後まで読み込み、ストリームを閉じる.
+     *
+     * @param in 読み込むストリーム
+     * @param contentLength データサイズ、不明な場合は負の値
+     * @return 読み込んだデータ
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    private byte[] readFully(final InputStream in, final int contentLength) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(contentLength > 0 ? contentLength : BUF_SIZE);
+        try {
+            int len;
+            byte[] buf = new byte[BUF_SIZE];
+            while ((len = in.read(buf)) > 0) {
+                baos.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
         }
         return baos.toByteArray();
     }
@@ -408,6 +467,36 @@ class HttpDConnectSDK extends DConnectSDK {
         }
     }
 
+    @Override
+    public InputStream openStream(final Uri uri) throws IOException {
+        if (uri == null) {
+            throw new NullPointerException("uri is null.");
+        }
+
+        URL url = new URL(uri.toString());
+        Semaphore permits = acquireHostPermit(url);
+        HttpURLConnection conn = null;
+        try {
+            conn = openConnection(url);
+            conn.setRequestMethod(Method.GET.getValue());
+            conn.setDoInput(true);
+            int resp = conn.getResponseCode();
+            if (resp != SUCCESS_RESPONSE_CODE) {
+                throw new IOException("Failed to connect the server. response=" + resp);
+            }
+            InputStream in = new StreamingInputStream(conn.getInputStream(), permits);
+            conn = null;
+            return in;
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+                permits.release();
+            }
+        }
+    }
+
     @Override
     public void connectWebSocket(final OnWebSocketListener listener) {
         if (listener == null) {
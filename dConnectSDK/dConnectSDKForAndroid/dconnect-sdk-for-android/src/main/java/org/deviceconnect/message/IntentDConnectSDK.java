@@ -19,7 +19,6 @@ import org.deviceconnect.message.entity.StringEntity;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.json.JSONException;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -27,6 +26,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Intentを使用してDevice Connect Managerと通信を行うSDKクラス.
@@ -40,9 +44,14 @@ class IntentDConnectSDK extends DConnectSDK {
     private static final String JOIN_SERVICE_ID = "_";
 
     /**
-     * レスポンスを格納するマップ.
+     * レスポンス待ちのリクエストを格納するマップ.
      */
-    private static Map<Integer, Intent> sResponseMap = new ConcurrentHashMap<>();
+    private static final Map<Integer, PendingResponse> sPendingResponses = new ConcurrentHashMap<>();
+
+    /**
+     * 非同期のリクエストのタイムアウトを監視するスレッド.
+     */
+    private static final ScheduledExecutorService sTimeoutExecutor = Executors.newSingleThreadScheduledExecutor();
 
     /**
      * イベントを配送するSDKを登録するリスト.
@@ -228,7 +237,54 @@ class IntentDConnectSDK extends DConnectSDK {
     protected DConnectResponseMessage sendRequest(final Method method, final Uri uri,
                                                   final Map<String, String> headers, final Entity body) {
         final int requestCode = UUID.randomUUID().hashCode();
+        Intent request = createRequest(method, uri, body, requestCode);
+
+        PendingResponse pending = new PendingResponse(null);
+        sPendingResponses.put(requestCode, pending);
+        try {
+            mContext.sendBroadcast(request);
+            return convertResponse(pending.await(mSoTimeout));
+        } finally {
+            sPendingResponses.remove(requestCode);
+        }
+    }
+
+    @Override
+    protected void sendRequest(final Method method, final Uri uri, final Map<String, String> headers,
+                               final Entity body, final OnResponseListener listener) {
+        final int requestCode = UUID.randomUUID().hashCode();
+        Intent request;
+        try {
+            request = createRequest(method, uri, body, requestCode);
+        } catch (IllegalArgumentException e) {
+            postResponse(listener, createErrorMessage(DConnectMessage.ErrorCode.UNKNOWN.getCode(), e.getMessage()));
+            return;
+        }
 
+        final PendingResponse pending = new PendingResponse(listener);
+        sPendingResponses.put(requestCode, pending);
+        if (mSoTimeout > 0) {
+            pending.setTimeoutFuture(sTimeoutExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (sPendingResponses.remove(requestCode) != null) {
+                        pending.complete(null);
+                    }
+                }
+            }, mSoTimeout, TimeUnit.MILLISECONDS));
+        }
+        mContext.sendBroadcast(request);
+    }
+
+    /**
+     * Device Connect Managerに送信するリクエストを作成する.
+     * @param method メソッド
+     * @param uri アクセス先のURI
+     * @param body リクエストに追加するボディデータ
+     * @param requestCode リクエストコード
+     * @return リクエスト用のIntent
+     */
+    private Intent createRequest(final Method method, final Uri uri, final Entity body, final int requestCode) {
         String[] paths = parsePath(uri);
         String api;
         String profile;
@@ -287,15 +343,22 @@ class IntentDConnectSDK extends DConnectSDK {
         request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
         request.putExtra(IntentDConnectMessage.EXTRA_RECEIVER,
                 new ComponentName(mContext, DConnectMessageReceiver.class));
+        return request;
+    }
 
-        mContext.sendBroadcast(request);
-
+    /**
+     * レスポンス用のIntentをレスポンスメッセージに変換する.
+     * @param response レスポンス用のIntent、タイムアウトした場合はnull
+     * @return レスポンス
+     */
+    private DConnectResponseMessage convertResponse(final Intent response) {
+        if (response == null) {
+            return createTimeoutResponse();
+        }
         try {
-            return new DConnectResponseMessage(waitForResponse(requestCode));
+            return new DConnectResponseMessage(response);
         } catch (JSONException e) {
             return createErrorMessage(DConnectMessage.ErrorCode.UNKNOWN.getCode(), e.getMessage());
-        } catch (IOException e) {
-            return createTimeoutResponse();
         }
     }
 
@@ -345,34 +408,6 @@ class IntentDConnectSDK extends DConnectSDK {
         }
     }
 
-    /**
-     * レスポンスが返ってくるまで待ちます.
-     * <p>
-     * ただし、タイムアウトなどを起こした場合にはnullが返却される。
-     * </p>
-     *
-     * @param requestCode リクエストコード
-     * @return レスポンス用のIntent
-     */
-    private Intent waitForResponse(final int requestCode) throws IOException {
-        long parseStart = System.currentTimeMillis();
-
-        while (sResponseMap.get(requestCode) == null && (mSoTimeout == 0
-                || mSoTimeout > System.currentTimeMillis() - parseStart)) {
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException e) {
-                throw new IOException(e);
-            }
-        }
-
-        if (sResponseMap.get(requestCode) == null) {
-            throw new IOException("response timeout");
-        }
-
-        return sResponseMap.remove(requestCode);
-    }
-
     /**
      * イベントを受信した時の処理を行う.
      * @param intent イベントメッセージ
@@ -434,7 +469,10 @@ class IntentDConnectSDK extends DConnectSDK {
         if (IntentDConnectMessage.ACTION_RESPONSE.equals(action)) {
             int requestCode = intent.getIntExtra(DConnectMessage.EXTRA_REQUEST_CODE, 0);
             if (requestCode != 0) {
-                sResponseMap.put(requestCode, intent);
+                PendingResponse pending = sPendingResponses.remove(requestCode);
+                if (pending != null) {
+                    pending.complete(intent);
+                }
             }
         } else if (IntentDConnectMessage.ACTION_EVENT.equals(action)) {
             synchronized (sEventList) {
@@ -444,4 +482,100 @@ class IntentDConnectSDK extends DConnectSDK {
             }
         }
     }
+
+    /**
+     * レスポンス待ちのリクエスト.
+     * <p>
+     * レスポンスを受信した時点で待機しているスレッドを起こし、リスナーが設定されている場合にはレスポンスを通知します。
+     * </p>
+     */
+    private class PendingResponse {
+        /**
+         * レスポンスの受信を待つためのラッチ.
+         */
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        /**
+         * レスポンスを通知するリスナー.
+         */
+        private final OnResponseListener mListener;
+
+        /**
+         * レスポンス用のIntent.
+         */
+        private Intent mResponse;
+
+        /**
+         * true: 完了済み / false: レスポンス待ち.
+         */
+        private boolean mCompleted;
+
+        /**
+         * タイムアウトの監視.
+         */
+        private ScheduledFuture<?> mTimeoutFuture;
+
+        /**
+         * コンストラクタ.
+         * @param listener レスポンスを通知するリスナー、同期的に待つ場合はnull
+         */
+        PendingResponse(final OnResponseListener listener) {
+            mListener = listener;
+        }
+
+        /**
+         * タイムアウトの監視を設定する.
+         * @param future タイムアウトの監視
+         */
+        synchronized void setTimeoutFuture(final ScheduledFuture<?> future) {
+            if (mCompleted) {
+                future.cancel(false);
+            } else {
+                mTimeoutFuture = future;
+            }
+        }
+
+        /**
+         * レスポンスを受け取り、待機しているスレッドとリスナーに通知する.
+         * @param response レスポンス用のIntent、タイムアウトした場合はnull
+         */
+        void complete(final Intent response) {
+            synchronized (this) {
+                if (mCompleted) {
+                    return;
+                }
+                mCompleted = true;
+                mResponse = response;
+                if (mTimeoutFuture != null) {
+                    mTimeoutFuture.cancel(false);
+                    mTimeoutFuture = null;
+                }
+            }
+            mLatch.countDown();
+            if (mListener != null) {
+                postResponse(mListener, convertResponse(response));
+            }
+        }
+
+        /**
+         * レスポンスを受信するまで待つ.
+         * @param timeout タイムアウト(ミリ秒)、0の場合は無制限に待つ
+         * @return レスポンス用のIntent、タイムアウトした場合はnull
+         */
+        Intent await(final long timeout) {
+            try {
+                if (timeout == 0) {
+                    mLatch.await();
+                } else if (!mLatch.await(timeout, TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            synchronized (this) {
+                return mResponse;
+            }
+        }
+    }
 }